@@ -208,7 +208,8 @@ public class LiquidityEntryListPage
   @Override
   protected DOListExcelExporter createExcelExporter(final String filenameIdentifier)
   {
-    return new DOListExcelExporter("liquidity")
+    // The forecast sheets contain all open invoices, so the workbook is streamed:
+    return new DOListExcelExporter("liquidity", true)
     {
       /**
        * @see org.projectforge.export.DOListExcelExporter#putFieldFormat(org.projectforge.excel.ContentProvider,
@@ -251,29 +252,17 @@ public class LiquidityEntryListPage
   }
 
   /**
-   * Calculates expected dates of payments inside the last year (-365 days).
+   * Calculates expected dates of payments of the open invoices by the paid invoices of the last year (-365 days).
    * 
    * @return
    */
   public LiquidityForecast getForecast()
   {
-    // Consider only invoices of the last year:
-    final java.sql.Date fromDate = new DayHolder().add(Calendar.DAY_OF_YEAR, -365).getSQLDate();
-    {
-      final List<RechnungDO> paidInvoices = rechnungDao
-          .getList(new RechnungFilter().setShowBezahlt().setFromDate(fromDate));
-      forecast.calculateExpectedTimeOfPayments(paidInvoices);
-      final List<RechnungDO> invoices = rechnungDao.getList(new RechnungFilter().setShowUnbezahlt());
-      forecast.setInvoices(invoices);
-    }
-    {
-      final List<EingangsrechnungDO> paidInvoices = eingangsrechnungDao
-          .getList(new RechnungFilter().setShowBezahlt().setFromDate(fromDate));
-      forecast.calculateExpectedTimeOfCreditorPayments(paidInvoices);
-      final List<EingangsrechnungDO> creditorInvoices = eingangsrechnungDao.getList(new RechnungFilter()
-          .setListType(RechnungFilter.FILTER_UNBEZAHLT));
-      forecast.setCreditorInvoices(creditorInvoices);
-    }
+    final List<RechnungDO> invoices = rechnungDao.getList(new RechnungFilter().setShowUnbezahlt());
+    forecast.setInvoices(invoices);
+    final List<EingangsrechnungDO> creditorInvoices = eingangsrechnungDao.getList(new RechnungFilter()
+        .setListType(RechnungFilter.FILTER_UNBEZAHLT));
+    forecast.setCreditorInvoices(creditorInvoices);
     final List<LiquidityEntryDO> list = liquidityEntryDao
         .getList(new LiquidityFilter().setPaymentStatus(PaymentStatus.UNPAID));
     forecast.set(list);
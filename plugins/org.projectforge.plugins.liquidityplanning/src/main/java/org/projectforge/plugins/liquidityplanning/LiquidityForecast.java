@@ -29,21 +29,22 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.projectforge.business.fibu.EingangsrechnungDO;
 import org.projectforge.business.fibu.KontoCache;
 import org.projectforge.business.fibu.KontoDO;
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.KundeFormatter;
+import org.projectforge.business.fibu.PaymentDelayCache;
+import org.projectforge.business.fibu.PaymentDelayIndex;
+import org.projectforge.business.fibu.PaymentDelayIndex.Area;
 import org.projectforge.business.fibu.ProjektDO;
 import org.projectforge.business.fibu.ProjektFormatter;
 import org.projectforge.business.fibu.RechnungDO;
 import org.projectforge.framework.time.DayHolder;
-import org.projectforge.statistics.IntAggregatedValues;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -59,6 +60,9 @@ public class LiquidityForecast implements Serializable
   @Autowired
   KontoCache accountCache;
 
+  @Autowired
+  private PaymentDelayCache paymentDelayCache;
+
   private final List<LiquidityEntry> entries = new LinkedList<LiquidityEntry>();
 
   private Collection<LiquidityEntry> liquiEntries;
@@ -67,16 +71,6 @@ public class LiquidityForecast implements Serializable
 
   private Collection<LiquidityEntry> invoicesLiquidityEntries;
 
-  /**
-   * Used for calculating the expected date of payment for future invoices.
-   */
-  private final Map<String, IntAggregatedValues> aggregatedDebitorInvoicesValuesMap = new HashMap<String, IntAggregatedValues>();
-
-  /**
-   * Used for calculating the expected date of payment for future invoices.
-   */
-  private final Map<String, IntAggregatedValues> aggregatedCreditorInvoicesValuesMap = new HashMap<String, IntAggregatedValues>();
-
   private Collection<EingangsrechnungDO> creditorInvoices;
 
   private Collection<LiquidityEntry> creditorInvoicesLiquidityEntries;
@@ -153,191 +147,84 @@ public class LiquidityForecast implements Serializable
     return this;
   }
 
-  /**
-   * For calculating the expected date of payment of future invoices. <br/>
-   * Should be called before {@link #setInvoices(Collection)}!
-   * 
-   * @param list
-   */
-  public LiquidityForecast calculateExpectedTimeOfPayments(final Collection<RechnungDO> list)
-  {
-    if (list == null) {
-      return this;
-    }
-    for (final RechnungDO invoice : list) {
-      final DayHolder date = new DayHolder(invoice.getDatum());
-      final DayHolder dateOfPayment = new DayHolder(invoice.getBezahlDatum());
-      if (date == null || dateOfPayment == null) {
-        continue;
-      }
-      final int timeForPayment = date.daysBetween(dateOfPayment);
-      final int amount = invoice.getGrossSum().intValue();
-      // Store values for different groups:
-      final Integer projectId = invoice.getProjektId();
-      if (projectId != null) {
-        ensureAndAddDebitorPaymentValue("project#" + projectId, timeForPayment, amount);
-      }
-      final Integer customerId = invoice.getKundeId();
-      if (customerId != null) {
-        ensureAndAddDebitorPaymentValue("customer#" + customerId, timeForPayment, amount);
-      }
-      final KontoDO account = accountCache.getKonto(invoice);
-      final Integer accountId = account != null ? account.getId() : null;
-      if (accountId != null) {
-        ensureAndAddDebitorPaymentValue("account#" + accountId, timeForPayment, amount);
-      }
-      String customerText = invoice.getKundeText();
-      if (customerText != null) {
-        customerText = customerText.toLowerCase();
-        ensureAndAddDebitorPaymentValue("customer:" + customerText, timeForPayment, amount);
-        if (customerText.length() > 5) {
-          customerText = customerText.substring(0, 5);
-        }
-        ensureAndAddDebitorPaymentValue("shortCustomer:" + customerText, timeForPayment, amount);
-      }
-    }
-    return this;
-  }
 
   private void setExpectedTimeOfPayment(final LiquidityEntry entry, final RechnungDO invoice)
   {
+    final PaymentDelayIndex index = paymentDelayCache.getDebitorIndex();
+    if (index == null) {
+      return;
+    }
     Date dateOfInvoice = invoice.getDatum();
     if (dateOfInvoice == null) {
       dateOfInvoice = new DayHolder().getSQLDate();
     }
     final ProjektDO project = invoice.getProjekt();
     if (project != null
-        && setExpectedDateOfPayment(entry, dateOfInvoice, "project#" + project.getId(),
-            ProjektFormatter.formatProjektKundeAsString(project, null, null)) == true) {
+        && setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.PROJECT, project.getId()),
+            "project#" + project.getId(), ProjektFormatter.formatProjektKundeAsString(project, null, null)) == true) {
       return;
     }
     final KundeDO customer = invoice.getKunde();
     if (customer != null
-        && setExpectedDateOfPayment(entry, dateOfInvoice, "customer#" + customer.getId(),
-            KundeFormatter.formatKundeAsString(customer, null)) == true) {
+        && setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.CUSTOMER, customer.getId()),
+            "customer#" + customer.getId(), KundeFormatter.formatKundeAsString(customer, null)) == true) {
       return;
     }
     final KontoDO account = accountCache.getKonto(invoice);
     if (account != null
-        && setExpectedDateOfPayment(entry, dateOfInvoice, "account#" + account.getId(),
-            "" + account.getNummer() + " - " + account.getBezeichnung()) == true) {
+        && setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.ACCOUNT, account.getId()),
+            "account#" + account.getId(), "" + account.getNummer() + " - " + account.getBezeichnung()) == true) {
       return;
     }
-    String customerText = invoice.getKundeText();
+    final String customerText = invoice.getKundeText();
     if (customerText != null) {
-      customerText = customerText.toLowerCase();
-      if (setExpectedDateOfPayment(entry, dateOfInvoice, "customer:" + customerText, customerText) == true) {
+      final String lowerCustomerText = customerText.toLowerCase();
+      if (setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.CUSTOMER_TEXT, customerText),
+          "customer:" + lowerCustomerText, lowerCustomerText) == true) {
         return;
       }
-      if (customerText.length() > 5) {
-        customerText = customerText.substring(0, 5);
-      }
-      if (setExpectedDateOfPayment(entry, dateOfInvoice, "shortCustomer:" + customerText, customerText) == true) {
+      final String shortCustomerText = StringUtils.left(lowerCustomerText, 5);
+      if (setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.SHORT_CUSTOMER_TEXT, customerText),
+          "shortCustomer:" + shortCustomerText, shortCustomerText) == true) {
         return;
       }
     }
   }
 
-  private boolean setExpectedDateOfPayment(final LiquidityEntry entry, final Date dateOfInvoice, final String mapKey,
-      final String area)
-  {
-    final IntAggregatedValues values = aggregatedDebitorInvoicesValuesMap.get(mapKey);
-    if (values != null && values.getNumberOfValues() >= 1) {
-      entry.setExpectedDateOfPayment(getDate(dateOfInvoice, values.getWeightedAverage()));
-      entry.setComment(mapKey
-          + ": "
-          + area
-          + ": "
-          + values.getWeightedAverage()
-          + " days ("
-          + values.getNumberOfValues()
-          + " paid invoices)");
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  private void ensureAndAddDebitorPaymentValue(final String mapId, final int timeForPayment, final int amount)
-  {
-    IntAggregatedValues values = aggregatedDebitorInvoicesValuesMap.get(mapId);
-    if (values == null) {
-      values = new IntAggregatedValues();
-      aggregatedDebitorInvoicesValuesMap.put(mapId, values);
-    }
-    values.add(timeForPayment, amount);
-  }
-
-  /**
-   * For calculating the expected date of payment of future invoices. <br/>
-   * Should be called before {@link #setInvoices(Collection)}!
-   * 
-   * @param list
-   */
-  public LiquidityForecast calculateExpectedTimeOfCreditorPayments(final Collection<EingangsrechnungDO> list)
-  {
-    if (list == null) {
-      return this;
-    }
-    for (final EingangsrechnungDO invoice : list) {
-      final DayHolder date = new DayHolder(invoice.getDatum());
-      final DayHolder dateOfPayment = new DayHolder(invoice.getBezahlDatum());
-      if (date == null || dateOfPayment == null) {
-        continue;
-      }
-      final int timeForPayment = date.daysBetween(dateOfPayment);
-      final int amount = invoice.getGrossSum().intValue();
-      final KontoDO account = invoice.getKonto();
-      final Integer accountId = account != null ? account.getId() : null;
-      if (accountId != null) {
-        ensureAndAddCreditorPaymentValue("account#" + accountId, timeForPayment, amount);
-      }
-      String creditorText = invoice.getKreditor();
-      if (creditorText != null) {
-        creditorText = creditorText.toLowerCase();
-        ensureAndAddCreditorPaymentValue("creditor:" + creditorText, timeForPayment, amount);
-        if (creditorText.length() > 5) {
-          creditorText = creditorText.substring(0, 5);
-        }
-        ensureAndAddCreditorPaymentValue("shortCreditor:" + creditorText, timeForPayment, amount);
-      }
-    }
-    return this;
-  }
-
   private void setExpectedTimeOfPayment(final LiquidityEntry entry, final EingangsrechnungDO invoice)
   {
+    final PaymentDelayIndex index = paymentDelayCache.getCreditorIndex();
+    if (index == null) {
+      return;
+    }
     Date dateOfInvoice = invoice.getDatum();
     if (dateOfInvoice == null) {
       dateOfInvoice = new DayHolder().getSQLDate();
     }
     final KontoDO account = invoice.getKonto();
     if (account != null
-        && setExpectedDateOfCreditorPayment(entry, dateOfInvoice, "account#" + account.getId(),
-            "" + account.getNummer() + " - " + account.getBezeichnung()) == true) {
+        && setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.ACCOUNT, account.getId()),
+            "account#" + account.getId(), "" + account.getNummer() + " - " + account.getBezeichnung()) == true) {
       return;
     }
-    String creditorText = invoice.getKreditor();
+    final String creditorText = invoice.getKreditor();
     if (creditorText != null) {
-      creditorText = creditorText.toLowerCase();
-      if (setExpectedDateOfCreditorPayment(entry, dateOfInvoice, "creditor:" + creditorText, creditorText) == true) {
+      final String lowerCreditorText = creditorText.toLowerCase();
+      if (setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.CUSTOMER_TEXT, creditorText),
+          "creditor:" + lowerCreditorText, lowerCreditorText) == true) {
         return;
       }
-      if (creditorText.length() > 5) {
-        creditorText = creditorText.substring(0, 5);
-      }
-      if (setExpectedDateOfCreditorPayment(entry, dateOfInvoice, "shortCreditor:" + creditorText,
-          creditorText) == true) {
+      final String shortCreditorText = StringUtils.left(lowerCreditorText, 5);
+      if (setExpectedDateOfPayment(entry, dateOfInvoice, index.getAggregate(Area.SHORT_CUSTOMER_TEXT, creditorText),
+          "shortCreditor:" + shortCreditorText, shortCreditorText) == true) {
         return;
       }
     }
   }
 
-  private boolean setExpectedDateOfCreditorPayment(final LiquidityEntry entry, final Date dateOfInvoice,
-      final String mapKey,
-      final String area)
+  private boolean setExpectedDateOfPayment(final LiquidityEntry entry, final Date dateOfInvoice,
+      final PaymentDelayIndex.Aggregate values, final String mapKey, final String area)
   {
-    final IntAggregatedValues values = aggregatedCreditorInvoicesValuesMap.get(mapKey);
     if (values != null && values.getNumberOfValues() >= 1) {
       entry.setExpectedDateOfPayment(getDate(dateOfInvoice, values.getWeightedAverage()));
       entry.setComment(mapKey
@@ -354,16 +241,6 @@ public class LiquidityForecast implements Serializable
     }
   }
 
-  private void ensureAndAddCreditorPaymentValue(final String mapId, final int timeForPayment, final int amount)
-  {
-    IntAggregatedValues values = aggregatedCreditorInvoicesValuesMap.get(mapId);
-    if (values == null) {
-      values = new IntAggregatedValues();
-      aggregatedCreditorInvoicesValuesMap.put(mapId, values);
-    }
-    values.add(timeForPayment, amount);
-  }
-
   private Date getDate(final Date date, final int timeOfPayment)
   {
     final DayHolder day = new DayHolder(date);
@@ -372,7 +249,8 @@ public class LiquidityForecast implements Serializable
   }
 
   /**
-   * Should be called after {@link #calculateExpectedTimeOfPayments(Collection)}-
+   * The expected dates of payment of the given invoices are calculated by the times of payment of the paid invoices of
+   * the last year (see {@link PaymentDelayCache}).
    * 
    * @param list
    * @return
@@ -0,0 +1,165 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.configuration.Configuration;
+import org.projectforge.framework.configuration.ConfigurationParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate5.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the {@link PhoneNumberIndex} and the {@link BirthdayIndex} of all addresses (not deleted). The indexes are
+ * updated by the {@link AddressDao} on every modification of an address and re-read from the data base every hour.
+ */
+@Component
+public class AddressCache extends AbstractCache
+{
+  private static final long serialVersionUID = 3815735423948613237L;
+
+  private static Logger log = Logger.getLogger(AddressCache.class);
+
+  @Autowired
+  private transient HibernateTemplate hibernateTemplate;
+
+  private transient volatile PhoneNumberIndex phoneNumberIndex;
+
+  private transient volatile BirthdayIndex birthdayIndex;
+
+  /**
+   * Addresses modified while refreshing. They're updated in the new index afterwards, because their modification may
+   * be missed by the running query.
+   */
+  private transient List<AddressDO> modifiedWhileRefreshing;
+
+  private final transient Object updateLock = new Object();
+
+  public AddressCache()
+  {
+    setBackgroundRefresh(true);
+  }
+
+  /**
+   * @param number
+   * @return The ids of all addresses with a phone number ending with the given number, the last updated address first.
+   *         Null, if the index isn't available (initialization failed).
+   * @see PhoneNumberIndex#getAddressIds(String)
+   */
+  public List<Integer> getAddressIdsByPhoneNumber(final String number)
+  {
+    checkRefresh();
+    final PhoneNumberIndex index = phoneNumberIndex;
+    return index != null ? index.getAddressIds(number) : null;
+  }
+
+  /**
+   * @return The ids of the addresses with birthdays in the given time period (grouped by day) or null, if the index
+   *         isn't available (initialization failed).
+   * @see BirthdayIndex#getAddressIds(int, int, int, int)
+   */
+  public List<List<Integer>> getBirthdayAddressIds(final int fromMonth, final int fromDayOfMonth, final int toMonth,
+      final int toDayOfMonth)
+  {
+    checkRefresh();
+    final BirthdayIndex index = birthdayIndex;
+    return index != null ? index.getAddressIds(fromMonth, fromDayOfMonth, toMonth, toDayOfMonth) : null;
+  }
+
+  /**
+   * Updates the given address in the indexes (or removes it, if deleted).
+   *
+   * @param address
+   */
+  void updateAddress(final AddressDO address)
+  {
+    synchronized (updateLock) {
+      if (modifiedWhileRefreshing != null) {
+        modifiedWhileRefreshing.add(address);
+      }
+    }
+    final PhoneNumberIndex phoneIndex = phoneNumberIndex;
+    final BirthdayIndex birthdays = birthdayIndex;
+    if (phoneIndex != null && birthdays != null) {
+      updateAddress(phoneIndex, birthdays, address);
+    }
+  }
+
+  private void updateAddress(final PhoneNumberIndex phoneIndex, final BirthdayIndex birthdays,
+      final AddressDO address)
+  {
+    if (address.isDeleted() == true) {
+      phoneIndex.remove(address.getId());
+      birthdays.remove(address.getId());
+    } else {
+      phoneIndex.put(address.getId(), address.getLastUpdate(), address.getBusinessPhone(), address.getMobilePhone(),
+          address.getFax(), address.getPrivatePhone(), address.getPrivateMobilePhone());
+      birthdays.put(address.getId(), address.getBirthday());
+    }
+  }
+
+  /**
+   * This method will be called by CacheHelper and is synchronized via getData();
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void refresh()
+  {
+    log.info("Initializing AddressCache ...");
+    synchronized (updateLock) {
+      modifiedWhileRefreshing = new ArrayList<AddressDO>();
+    }
+    try {
+      final PhoneNumberIndex phoneIndex = new PhoneNumberIndex(
+          Configuration.getInstance().getStringValue(ConfigurationParam.DEFAULT_COUNTRY_PHONE_PREFIX));
+      final BirthdayIndex birthdays = new BirthdayIndex();
+      final List<Object[]> list = (List<Object[]>) hibernateTemplate.find(
+          "select a.id, a.lastUpdate, a.businessPhone, a.mobilePhone, a.fax, a.privatePhone, a.privateMobilePhone, a.birthday from AddressDO a where a.deleted = false");
+      for (final Object[] row : list) {
+        phoneIndex.put((Integer) row[0], (Date) row[1], (String) row[2], (String) row[3], (String) row[4],
+            (String) row[5], (String) row[6]);
+        birthdays.put((Integer) row[0], (Date) row[7]);
+      }
+      synchronized (updateLock) {
+        for (final AddressDO address : modifiedWhileRefreshing) {
+          updateAddress(phoneIndex, birthdays, address);
+        }
+        this.phoneNumberIndex = phoneIndex;
+        this.birthdayIndex = birthdays;
+      }
+      log.info("Initializing of AddressCache done (" + phoneIndex.size() + " addresses with phone numbers, "
+          + birthdays.size() + " with birthdays).");
+    } finally {
+      synchronized (updateLock) {
+        modifiedWhileRefreshing = null;
+      }
+    }
+  }
+}
@@ -29,6 +29,8 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -51,6 +53,7 @@ import org.projectforge.framework.configuration.ConfigurationParam;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
 import org.projectforge.framework.persistence.api.QueryFilter;
+import org.projectforge.framework.persistence.api.TransactionHelper;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.framework.time.DateHolder;
@@ -76,6 +79,9 @@ public class AddressDao extends BaseDao<AddressDO>
   @Autowired
   private PersonalAddressDao personalAddressDao;
 
+  @Autowired
+  private AddressCache addressCache;
+
   public AddressDao()
   {
     super(AddressDO.class);
@@ -114,6 +120,46 @@ public class AddressDao extends BaseDao<AddressDO>
     return getList(queryFilter);
   }
 
+  /**
+   * Gets all addresses with a phone number ending with the given number (e. g. for displaying incoming calls). No
+   * access checking is done (used if no user is logged-in). With access checking use {@link #getList(BaseSearchFilter)}
+   * with {@link AddressFilter#setPhoneNumber(String)}.
+   *
+   * @param number
+   * @return The found addresses, the last updated address first.
+   * @see AddressCache#getAddressIdsByPhoneNumber(String)
+   */
+  public List<AddressDO> internalGetListByPhoneNumber(final String number)
+  {
+    final List<Integer> ids = addressCache.getAddressIdsByPhoneNumber(number);
+    final List<AddressDO> result;
+    if (ids == null) {
+      // Phone number index not available, use full text search:
+      final BaseSearchFilter filter = new BaseSearchFilter();
+      filter.setSearchString("*" + NumberHelper.extractPhonenumber(number));
+      result = internalGetList(new QueryFilter(filter));
+    } else if (ids.isEmpty() == true) {
+      return new ArrayList<AddressDO>();
+    } else {
+      result = new ArrayList<AddressDO>(ids.size());
+      for (final AddressDO address : internalLoad(ids)) {
+        if (address.isDeleted() == false) {
+          result.add(address);
+        }
+      }
+    }
+    // The last update of the index may be outdated:
+    Collections.sort(result, new Comparator<AddressDO>()
+    {
+      @Override
+      public int compare(final AddressDO o1, final AddressDO o2)
+      {
+        return o2.getLastUpdate().compareTo(o1.getLastUpdate());
+      }
+    });
+    return result;
+  }
+
   @Override
   public List<AddressDO> getList(final BaseSearchFilter filter)
   {
@@ -123,8 +169,14 @@ public class AddressDao extends BaseDao<AddressDO>
     } else {
       myFilter = new AddressFilter(filter);
     }
-    final QueryFilter queryFilter = new QueryFilter(myFilter);
-    if (StringUtils.isBlank(myFilter.getSearchString()) == true) {
+    final QueryFilter queryFilter;
+    if (StringUtils.isNotBlank(myFilter.getPhoneNumber()) == true) {
+      queryFilter = createPhoneNumberQueryFilter(myFilter);
+      if (queryFilter == null) {
+        return new ArrayList<AddressDO>();
+      }
+    } else if (StringUtils.isBlank(myFilter.getSearchString()) == true) {
+      queryFilter = new QueryFilter(myFilter);
       if (myFilter.isDeleted() == false) {
         if (myFilter.isNewest() == true) {
           return getNewest(myFilter);
@@ -135,6 +187,7 @@ public class AddressDao extends BaseDao<AddressDO>
         }
       }
     } else {
+      queryFilter = new QueryFilter(myFilter);
       if (StringUtils.isNumeric(filter.getSearchString()) == true) {
         myFilter.setSearchString("*" + myFilter.getSearchString() + "*");
       }
@@ -205,6 +258,32 @@ public class AddressDao extends BaseDao<AddressDO>
     return result;
   }
 
+  /**
+   * The addresses are restricted to the ids found by the phone number index, so no full text search is needed. If the
+   * index isn't available, the full text search is used. The given filter isn't modified.
+   *
+   * @param filter
+   * @return The query filter or null, if no address matches the phone number.
+   * @see AddressFilter#getPhoneNumber()
+   */
+  private QueryFilter createPhoneNumberQueryFilter(final AddressFilter filter)
+  {
+    final BaseSearchFilter searchFilter = new BaseSearchFilter(filter);
+    final List<Integer> ids = addressCache.getAddressIdsByPhoneNumber(filter.getPhoneNumber());
+    if (ids == null) {
+      // Phone number index not available, use full text search:
+      searchFilter.setSearchString("*" + NumberHelper.extractPhonenumber(filter.getPhoneNumber()));
+      return new QueryFilter(searchFilter);
+    }
+    if (ids.isEmpty() == true) {
+      return null;
+    }
+    searchFilter.setSearchString(null);
+    final QueryFilter queryFilter = new QueryFilter(searchFilter);
+    queryFilter.add(Restrictions.in("id", ids));
+    return queryFilter;
+  }
+
   private String getNormalizedFullname(final AddressDO address)
   {
     final StringBuilder builder = new StringBuilder();
@@ -228,6 +307,25 @@ public class AddressDao extends BaseDao<AddressDO>
     address.setTask(task);
   }
 
+  /**
+   * Updates the phone number index of the {@link AddressCache}.
+   *
+   * @see org.projectforge.framework.persistence.api.BaseDao#afterSaveOrModify(org.projectforge.framework.persistence.api.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterSaveOrModify(final AddressDO obj)
+  {
+    super.afterSaveOrModify(obj);
+    TransactionHelper.runAfterCommit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        addressCache.updateAddress(obj);
+      }
+    });
+  }
+
   /**
    * return Always true, no generic select access needed for address objects.
    * 
@@ -295,26 +393,66 @@ public class AddressDao extends BaseDao<AddressDO>
    * 
    * @param fromDate Search for birthdays from given date (ignoring the year).
    * @param toDate Search for birthdays until given date (ignoring the year).
-   * @param max Maximum number of result entries.
+   * @param max Maximum number of result entries. The birthdays of whole days are returned, so the number of result
+   *          entries may be greater.
    * @param all If false, only the birthdays of favorites will be returned.
    * @return The entries are ordered by date of year and name.
    */
   public Set<BirthdayAddress> getBirthdays(final Date fromDate, final Date toDate, final int max, final boolean all)
   {
-    final QueryFilter filter = new QueryFilter();
-    filter.add(Restrictions.isNotNull("birthday"));
-    final List<AddressDO> list = getList(filter);
+    checkLoggedInUserSelectAccess();
     // Uses not Collections.sort because every comparison needs Calendar.getDayOfYear().
     final Set<BirthdayAddress> set = new TreeSet<BirthdayAddress>();
     final Set<Integer> favorites = getFavorites();
     final DateHolder from = new DateHolder(fromDate);
     final DateHolder to = new DateHolder(toDate);
-    DateHolder dh;
     final int fromMonth = from.getMonth();
     final int fromDayOfMonth = from.getDayOfMonth();
     final int toMonth = to.getMonth();
     final int toDayOfMonth = to.getDayOfMonth();
+    final List<List<Integer>> idsByDay = addressCache.getBirthdayAddressIds(fromMonth, fromDayOfMonth, toMonth,
+        toDayOfMonth);
+    if (idsByDay == null) {
+      // Birthday index not available, read all addresses with birthdays:
+      final QueryFilter filter = new QueryFilter();
+      filter.add(Restrictions.isNotNull("birthday"));
+      addBirthdays(set, getList(filter), favorites, all, fromMonth, fromDayOfMonth, toMonth, toDayOfMonth);
+      return set;
+    }
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (final List<Integer> idsOfDay : idsByDay) {
+      for (final Integer id : idsOfDay) {
+        if (all == true || favorites.contains(id) == true) {
+          ids.add(id);
+        }
+      }
+      if (ids.isEmpty() == true || max <= 0 || ids.size() < max - set.size()) {
+        // Read the addresses of further days at once.
+        continue;
+      }
+      addBirthdays(set, extractEntriesWithSelectAccess(internalLoad(ids)), favorites, all, fromMonth, fromDayOfMonth,
+          toMonth, toDayOfMonth);
+      ids.clear();
+      if (max > 0 && set.size() >= max) {
+        return set;
+      }
+    }
+    if (ids.isEmpty() == false) {
+      addBirthdays(set, extractEntriesWithSelectAccess(internalLoad(ids)), favorites, all, fromMonth, fromDayOfMonth,
+          toMonth, toDayOfMonth);
+    }
+    return set;
+  }
+
+  private void addBirthdays(final Set<BirthdayAddress> set, final List<AddressDO> list, final Set<Integer> favorites,
+      final boolean all, final int fromMonth, final int fromDayOfMonth, final int toMonth, final int toDayOfMonth)
+  {
+    DateHolder dh;
     for (final AddressDO address : list) {
+      if (address.isDeleted() == true || address.getBirthday() == null) {
+        // May occur if the birthday index is outdated.
+        continue;
+      }
       if (all == false && favorites.contains(address.getId()) == false) {
         // Address is not a favorite address, so ignore it.
         continue;
@@ -331,7 +469,6 @@ public class AddressDao extends BaseDao<AddressDO>
       }
       set.add(ba);
     }
-    return set;
   }
 
   public List<PersonalAddressDO> getFavoriteVCards()
@@ -62,6 +62,8 @@ public class AddressFilter extends BaseSearchFilter implements Serializable
 
   private String listType = FILTER_FILTER;
 
+  private String phoneNumber;
+
   public AddressFilter()
   {
   }
@@ -224,4 +226,21 @@ public class AddressFilter extends BaseSearchFilter implements Serializable
   {
     this.listType = listType;
   }
+
+  /**
+   * If given, the addresses with a phone number ending with this number are searched via the phone number index of
+   * {@link AddressCache} instead of the full text search. The search string is ignored in this case.
+   * 
+   * @return the phone number to search for.
+   */
+  public String getPhoneNumber()
+  {
+    return phoneNumber;
+  }
+
+  public AddressFilter setPhoneNumber(final String phoneNumber)
+  {
+    this.phoneNumber = phoneNumber;
+    return this;
+  }
 }
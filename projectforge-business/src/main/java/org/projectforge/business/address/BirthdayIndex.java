@@ -0,0 +1,167 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the birthdays of addresses: the address ids are bucketed by month and day of month, so the birthdays of a
+ * time period are found without reading all addresses. The month and day are calculated in the default time zone of
+ * the server, therefore the queries return the addresses of one day before and after the time period too. The callers
+ * have to filter the results by the birthdays in the user's time zone.
+ */
+public class BirthdayIndex
+{
+  private static final int DAYS_PER_MONTH = 31;
+
+  private static final int NUMBER_OF_BUCKETS = 12 * DAYS_PER_MONTH;
+
+  /**
+   * A leap year for calculating the day before and after a time period (February 29th is a birthday too).
+   */
+  private static final int LEAP_YEAR = 2000;
+
+  @SuppressWarnings("unchecked")
+  private final Set<Integer>[] buckets = new Set[NUMBER_OF_BUCKETS];
+
+  private final Map<Integer, Integer> bucketByAddressId = new HashMap<Integer, Integer>();
+
+  /**
+   * Adds or replaces the birthday of the given address.
+   *
+   * @param addressId
+   * @param birthday If null, the address will be removed from the index.
+   */
+  public synchronized void put(final Integer addressId, final Date birthday)
+  {
+    remove(addressId);
+    if (birthday == null) {
+      return;
+    }
+    final Calendar cal = Calendar.getInstance();
+    cal.setTime(birthday);
+    final int bucket = getBucket(cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH));
+    Set<Integer> addressIds = buckets[bucket];
+    if (addressIds == null) {
+      addressIds = new HashSet<Integer>();
+      buckets[bucket] = addressIds;
+    }
+    addressIds.add(addressId);
+    bucketByAddressId.put(addressId, bucket);
+  }
+
+  /**
+   * @param addressId
+   */
+  public synchronized void remove(final Integer addressId)
+  {
+    final Integer bucket = bucketByAddressId.remove(addressId);
+    if (bucket != null) {
+      buckets[bucket].remove(addressId);
+    }
+  }
+
+  /**
+   * Same time period semantic as {@link org.projectforge.framework.time.DateHelper#dateOfYearBetween(int, int, int, int, int, int)}
+   * (if from month is after to month, the period goes over the end of the year).
+   *
+   * @param fromMonth 0-based (see {@link Calendar#MONTH}).
+   * @param fromDayOfMonth
+   * @param toMonth 0-based (see {@link Calendar#MONTH}).
+   * @param toDayOfMonth
+   * @return The ids of the addresses grouped by day in chronological order of the time period (days without birthdays
+   *         are omitted), including the day before and after the time period.
+   */
+  public synchronized List<List<Integer>> getAddressIds(final int fromMonth, final int fromDayOfMonth,
+      final int toMonth, final int toDayOfMonth)
+  {
+    final List<List<Integer>> result = new ArrayList<List<Integer>>();
+    final int fromBucket = getBucket(fromMonth, fromDayOfMonth);
+    final int toBucket = getBucket(toMonth, toDayOfMonth);
+    int length;
+    if (fromMonth > toMonth) {
+      length = (toBucket - fromBucket + NUMBER_OF_BUCKETS) % NUMBER_OF_BUCKETS + 1;
+    } else if (fromBucket <= toBucket) {
+      length = toBucket - fromBucket + 1;
+    } else {
+      // Empty time period.
+      return result;
+    }
+    // One day before and after (the buckets of non existing days like April 31st are empty):
+    final int dayBeforeBucket = getBucketOfNeighbourDay(fromMonth, fromDayOfMonth, -1);
+    final int dayAfterBucket = getBucketOfNeighbourDay(toMonth, toDayOfMonth, 1);
+    length += (fromBucket - dayBeforeBucket + NUMBER_OF_BUCKETS) % NUMBER_OF_BUCKETS
+        + (dayAfterBucket - toBucket + NUMBER_OF_BUCKETS) % NUMBER_OF_BUCKETS;
+    length = Math.min(length, NUMBER_OF_BUCKETS);
+    for (int i = 0; i < length; i++) {
+      final Set<Integer> addressIds = buckets[(dayBeforeBucket + i) % NUMBER_OF_BUCKETS];
+      if (addressIds != null && addressIds.isEmpty() == false) {
+        result.add(new ArrayList<Integer>(addressIds));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The number of indexed addresses.
+   */
+  public synchronized int size()
+  {
+    return bucketByAddressId.size();
+  }
+
+  /**
+   * February 29th is skipped additionally, because it doesn't exist in non leap years (e. g. the day before March 1st
+   * is February 28th or 29th).
+   *
+   * @param month
+   * @param dayOfMonth
+   * @param amount -1 for the day before or 1 for the day after.
+   * @return The bucket of the day before or after the given day.
+   */
+  private int getBucketOfNeighbourDay(final int month, final int dayOfMonth, final int amount)
+  {
+    final Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(LEAP_YEAR, month, dayOfMonth);
+    cal.add(Calendar.DAY_OF_MONTH, amount);
+    if (cal.get(Calendar.MONTH) == Calendar.FEBRUARY && cal.get(Calendar.DAY_OF_MONTH) == 29) {
+      cal.add(Calendar.DAY_OF_MONTH, amount);
+    }
+    return getBucket(cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH));
+  }
+
+  private int getBucket(final int month, final int dayOfMonth)
+  {
+    return month * DAYS_PER_MONTH + dayOfMonth - 1;
+  }
+}
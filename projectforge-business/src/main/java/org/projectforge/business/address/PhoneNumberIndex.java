@@ -0,0 +1,182 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.projectforge.common.StringHelper;
+import org.projectforge.framework.utils.NumberHelper;
+
+/**
+ * Index of the phone numbers of addresses for finding addresses by (the end of) a phone number, e. g. for incoming
+ * calls. The phone numbers are normalized the same way as by the full text index (digits only and digits with country
+ * prefix replaced, see {@link NumberHelper#extractPhonenumber(String, String)}) and stored reversed, so the numbers
+ * ending with the searched number are found by a range query of the sorted map.
+ */
+public class PhoneNumberIndex
+{
+  private final String countryPrefix;
+
+  /**
+   * Key is the reversed normalized phone number.
+   */
+  private final TreeMap<String, Set<Integer>> addressIdsByReversedNumber = new TreeMap<String, Set<Integer>>();
+
+  private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+  /**
+   * @param countryPrefix The default country prefix, see {@link NumberHelper#extractPhonenumber(String, String)}.
+   */
+  public PhoneNumberIndex(final String countryPrefix)
+  {
+    this.countryPrefix = countryPrefix;
+  }
+
+  /**
+   * Adds or replaces the phone numbers of the given address.
+   *
+   * @param addressId
+   * @param lastUpdate Used for ordering the results (newest first).
+   * @param numbers The phone numbers (null or empty entries are ignored).
+   */
+  public synchronized void put(final Integer addressId, final Date lastUpdate, final String... numbers)
+  {
+    remove(addressId);
+    final Set<String> reversedNumbers = new HashSet<String>();
+    for (final String number : numbers) {
+      if (StringUtils.isBlank(number) == true) {
+        continue;
+      }
+      addReversed(reversedNumbers, StringHelper.removeNonDigits(number));
+      addReversed(reversedNumbers, NumberHelper.extractPhonenumber(number, countryPrefix));
+    }
+    if (reversedNumbers.isEmpty() == true) {
+      return;
+    }
+    for (final String reversedNumber : reversedNumbers) {
+      Set<Integer> addressIds = addressIdsByReversedNumber.get(reversedNumber);
+      if (addressIds == null) {
+        addressIds = new HashSet<Integer>();
+        addressIdsByReversedNumber.put(reversedNumber, addressIds);
+      }
+      addressIds.add(addressId);
+    }
+    entries.put(addressId, new Entry(lastUpdate != null ? lastUpdate.getTime() : 0,
+        reversedNumbers.toArray(new String[reversedNumbers.size()])));
+  }
+
+  /**
+   * Removes all phone numbers of the given address.
+   *
+   * @param addressId
+   */
+  public synchronized void remove(final Integer addressId)
+  {
+    final Entry entry = entries.remove(addressId);
+    if (entry == null) {
+      return;
+    }
+    for (final String reversedNumber : entry.reversedNumbers) {
+      final Set<Integer> addressIds = addressIdsByReversedNumber.get(reversedNumber);
+      if (addressIds != null) {
+        addressIds.remove(addressId);
+        if (addressIds.isEmpty() == true) {
+          addressIdsByReversedNumber.remove(reversedNumber);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param number The (end of the) phone number to search for.
+   * @return The ids of all addresses with a phone number ending with the given number, the last updated address first.
+   */
+  public synchronized List<Integer> getAddressIds(final String number)
+  {
+    final String searchNumber = NumberHelper.extractPhonenumber(number, countryPrefix);
+    if (StringUtils.isEmpty(searchNumber) == true) {
+      return Collections.emptyList();
+    }
+    final String reversed = StringUtils.reverse(searchNumber);
+    final Set<Integer> addressIds = new HashSet<Integer>();
+    for (final Set<Integer> ids : addressIdsByReversedNumber
+        .subMap(reversed, true, reversed + Character.MAX_VALUE, false).values()) {
+      addressIds.addAll(ids);
+    }
+    final List<Integer> result = new ArrayList<Integer>(addressIds);
+    Collections.sort(result, new Comparator<Integer>()
+    {
+      @Override
+      public int compare(final Integer id1, final Integer id2)
+      {
+        final long lastUpdate1 = entries.get(id1).lastUpdate;
+        final long lastUpdate2 = entries.get(id2).lastUpdate;
+        if (lastUpdate1 != lastUpdate2) {
+          return lastUpdate1 > lastUpdate2 ? -1 : 1;
+        }
+        return id2.compareTo(id1);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return The number of indexed addresses.
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  private void addReversed(final Set<String> reversedNumbers, final String number)
+  {
+    if (StringUtils.isNotEmpty(number) == true) {
+      reversedNumbers.add(StringUtils.reverse(number));
+    }
+  }
+
+  private static class Entry
+  {
+    private final long lastUpdate;
+
+    private final String[] reversedNumbers;
+
+    private Entry(final long lastUpdate, final String[] reversedNumbers)
+    {
+      this.lastUpdate = lastUpdate;
+      this.reversedNumbers = reversedNumbers;
+    }
+  }
+}
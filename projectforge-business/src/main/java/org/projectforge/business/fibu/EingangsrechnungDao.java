@@ -41,6 +41,7 @@ import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
 import org.projectforge.framework.persistence.api.QueryFilter;
+import org.projectforge.framework.persistence.api.TransactionHelper;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.utils.SQLHelper;
@@ -67,6 +68,9 @@ public class EingangsrechnungDao extends BaseDao<EingangsrechnungDO>
   @Autowired
   private PfEmgrFactory pfEmgrFactory;
 
+  @Autowired
+  private PaymentDelayCache paymentDelayCache;
+
   public EingangsrechnungDao()
   {
     super(EingangsrechnungDO.class);
@@ -142,6 +146,19 @@ public class EingangsrechnungDao extends BaseDao<EingangsrechnungDO>
     RechnungDao.writeUiStatusToXml(rechnung);
   }
 
+  @Override
+  protected void afterSaveOrModify(final EingangsrechnungDO obj)
+  {
+    TransactionHelper.runAfterCommit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        paymentDelayCache.updateInvoice(obj);
+      }
+    });
+  }
+
   @Override
   public void afterLoad(final EingangsrechnungDO obj)
   {
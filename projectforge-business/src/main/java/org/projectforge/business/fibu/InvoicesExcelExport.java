@@ -36,6 +36,10 @@ import org.projectforge.excel.I18nExportColumn;
 import org.projectforge.excel.PropertyMapping;
 import org.projectforge.export.MyExcelExporter;
 
+/**
+ * Adds the sheets of debitor and creditor invoices to an exporter. The rows are added one by one, so the sheets may be
+ * part of a streaming workbook (see {@link MyExcelExporter#MyExcelExporter(String, boolean)}).
+ */
 public class InvoicesExcelExport
 {
   public InvoicesExcelExport()
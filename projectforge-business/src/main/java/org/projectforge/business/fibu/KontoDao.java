@@ -51,7 +51,8 @@ public class KontoDao extends BaseDao<KontoDO>
   @Override
   protected void afterSaveOrModify(final KontoDO obj)
   {
-    getKontoCache().refresh();
+    // Refreshed on next access, so bulk imports (e. g. DATEV) don't reload the cache for every Konto:
+    getKontoCache().setExpired();
   }
 
   @SuppressWarnings("unchecked")
@@ -277,15 +277,20 @@ public class OrderExport
   /**
    * Exports the filtered list as table with almost all fields. For members of group FINANCE_GROUP (PF_Finance) and
    * MARKETING_GROUP (PF_Marketing) all addresses are exported, for others only those which are marked as personal
-   * favorites.
+   * favorites. <br/>
+   * The rows are written to a streaming xlsx workbook, so only a window of rows is held in memory until the workbook is
+   * written by {@link ExportWorkbook#write(java.io.OutputStream)} (once).
+   * 
+   * @return The workbook or null, if the list is empty.
+   * @see ExportWorkbook#createStreamingWorkbook()
    */
-  public byte[] export(final List<AuftragDO> list)
+  public ExportWorkbook export(final List<AuftragDO> list)
   {
     if (CollectionUtils.isEmpty(list) == true) {
       return null;
     }
     log.info("Exporting order list.");
-    final ExportWorkbook xls = new ExportWorkbook();
+    final ExportWorkbook xls = ExportWorkbook.createStreamingWorkbook();
     final ContentProvider contentProvider = new MyContentProvider(xls);
     // create a default Date format and currency column
     xls.setContentProvider(contentProvider);
@@ -352,7 +357,7 @@ public class OrderExport
       }
     }
     sheet.setAutoFilter();
-    return xls.getAsByteArray();
+    return xls;
   }
 
   private ExportColumn[] createPaymentColumns()
@@ -0,0 +1,198 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.time.DayHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate5.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the {@link PaymentDelayIndex} of the paid debitor and creditor invoices of the last year (365 days, by date
+ * of invoice). The indexes are updated by the {@link RechnungDao} and {@link EingangsrechnungDao} on every modification
+ * of an invoice (e. g. if marked as paid) and re-read from the data base every hour.<br/>
+ * The aggregates aren't persisted: they're derived from the invoices only and the period slides daily, so a persisted
+ * store would have to hold the values of every single invoice for removing them after leaving the period, which
+ * duplicates the invoice table. Rebuilding the indexes needs one query per index and, after the first initialization,
+ * runs in the background while the last published indexes are still used (stale while revalidate).
+ */
+@Component
+public class PaymentDelayCache extends AbstractCache
+{
+  private static final long serialVersionUID = -6713271389614338263L;
+
+  private static Logger log = Logger.getLogger(PaymentDelayCache.class);
+
+  /**
+   * Only invoices of this period (in days) are considered.
+   */
+  private static final int PERIOD_IN_DAYS = 365;
+
+  @Autowired
+  private transient HibernateTemplate hibernateTemplate;
+
+  @Autowired
+  private transient KontoCache kontoCache;
+
+  private transient volatile PaymentDelayIndex debitorIndex;
+
+  private transient volatile PaymentDelayIndex creditorIndex;
+
+  /**
+   * Invoices modified while refreshing. They're updated in the new indexes afterwards, because their modification may
+   * be missed by the running query.
+   */
+  private transient List<AbstractRechnungDO<?>> modifiedWhileRefreshing;
+
+  private final transient Object updateLock = new Object();
+
+  public PaymentDelayCache()
+  {
+    setBackgroundRefresh(true);
+  }
+
+  /**
+   * @return The index of the paid debitor invoices or null, if the index isn't available (initialization failed).
+   */
+  public PaymentDelayIndex getDebitorIndex()
+  {
+    checkRefresh();
+    return debitorIndex;
+  }
+
+  /**
+   * @return The index of the paid creditor invoices or null, if the index isn't available (initialization failed).
+   */
+  public PaymentDelayIndex getCreditorIndex()
+  {
+    checkRefresh();
+    return creditorIndex;
+  }
+
+  /**
+   * Updates the given invoice in the index (or removes it, if deleted or not paid).
+   *
+   * @param invoice
+   */
+  void updateInvoice(final AbstractRechnungDO<?> invoice)
+  {
+    synchronized (updateLock) {
+      if (modifiedWhileRefreshing != null) {
+        modifiedWhileRefreshing.add(invoice);
+      }
+    }
+    final PaymentDelayIndex debitors = debitorIndex;
+    final PaymentDelayIndex creditors = creditorIndex;
+    if (debitors != null && creditors != null) {
+      updateInvoice(debitors, creditors, invoice, getFromDate());
+    }
+  }
+
+  private void updateInvoice(final PaymentDelayIndex debitors, final PaymentDelayIndex creditors,
+      final AbstractRechnungDO<?> invoice, final Date fromDate)
+  {
+    final boolean paid = invoice.isDeleted() == false && invoice.isBezahlt() == true && invoice.getDatum() != null
+        && invoice.getBezahlDatum() != null && invoice.getDatum().before(fromDate) == false;
+    if (invoice instanceof RechnungDO) {
+      final RechnungDO rechnung = (RechnungDO) invoice;
+      if (paid == false) {
+        debitors.remove(rechnung.getId());
+        return;
+      }
+      final KontoDO account = kontoCache.getKonto(rechnung);
+      debitors.put(rechnung.getId(), getTimeForPayment(rechnung), rechnung.getGrossSum().intValue(),
+          rechnung.getProjektId(), rechnung.getKundeId(), account != null ? account.getId() : null,
+          rechnung.getKundeText());
+    } else if (invoice instanceof EingangsrechnungDO) {
+      final EingangsrechnungDO eingangsrechnung = (EingangsrechnungDO) invoice;
+      if (paid == false) {
+        creditors.remove(eingangsrechnung.getId());
+        return;
+      }
+      creditors.put(eingangsrechnung.getId(), getTimeForPayment(eingangsrechnung),
+          eingangsrechnung.getGrossSum().intValue(), null, null, eingangsrechnung.getKontoId(),
+          eingangsrechnung.getKreditor());
+    }
+  }
+
+  private int getTimeForPayment(final AbstractRechnungDO<?> invoice)
+  {
+    return new DayHolder(invoice.getDatum()).daysBetween(new DayHolder(invoice.getBezahlDatum()));
+  }
+
+  private Date getFromDate()
+  {
+    return new DayHolder().add(Calendar.DAY_OF_YEAR, -PERIOD_IN_DAYS).getSQLDate();
+  }
+
+  /**
+   * This method will be called by CacheHelper and is synchronized via getData();
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void refresh()
+  {
+    log.info("Initializing PaymentDelayCache ...");
+    synchronized (updateLock) {
+      modifiedWhileRefreshing = new ArrayList<AbstractRechnungDO<?>>();
+    }
+    try {
+      final PaymentDelayIndex debitors = new PaymentDelayIndex();
+      final PaymentDelayIndex creditors = new PaymentDelayIndex();
+      final Date fromDate = getFromDate();
+      final List<RechnungDO> invoices = (List<RechnungDO>) hibernateTemplate.find(
+          "select distinct r from RechnungDO r left join fetch r.projekt p left join fetch p.kunde left join fetch r.kunde where r.deleted = false and r.datum >= ? and r.bezahlDatum is not null",
+          fromDate);
+      for (final RechnungDO invoice : invoices) {
+        updateInvoice(debitors, creditors, invoice, fromDate);
+      }
+      final List<EingangsrechnungDO> creditorInvoices = (List<EingangsrechnungDO>) hibernateTemplate.find(
+          "from EingangsrechnungDO r where r.deleted = false and r.datum >= ? and r.bezahlDatum is not null",
+          fromDate);
+      for (final EingangsrechnungDO invoice : creditorInvoices) {
+        updateInvoice(debitors, creditors, invoice, fromDate);
+      }
+      synchronized (updateLock) {
+        for (final AbstractRechnungDO<?> invoice : modifiedWhileRefreshing) {
+          updateInvoice(debitors, creditors, invoice, fromDate);
+        }
+        this.debitorIndex = debitors;
+        this.creditorIndex = creditors;
+      }
+      log.info("Initializing of PaymentDelayCache done (" + debitors.size() + " paid debitor invoices, "
+          + creditors.size() + " paid creditor invoices).");
+    } finally {
+      synchronized (updateLock) {
+        modifiedWhileRefreshing = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates the times of payment (days between date of invoice and date of payment) of paid invoices weighted by
+ * their gross sums per project, customer, account and customer text (or creditor text for creditor invoices). Used for
+ * calculating the expected dates of payment of open invoices. The values of an invoice may be replaced or removed
+ * later, so the aggregates are maintained incrementally on every modification of an invoice.
+ */
+public class PaymentDelayIndex
+{
+  public enum Area
+  {
+    PROJECT, CUSTOMER, ACCOUNT, CUSTOMER_TEXT, SHORT_CUSTOMER_TEXT
+  }
+
+  /**
+   * Length of the customer texts of {@link Area#SHORT_CUSTOMER_TEXT}.
+   */
+  private static final int SHORT_TEXT_LENGTH = 5;
+
+  /**
+   * The weighted average of the times of payment of all invoices of an area.
+   */
+  public static class Aggregate
+  {
+    private long weightedSum;
+
+    private long weightSum;
+
+    private int numberOfValues;
+
+    private void add(final int timeForPayment, final int amount, final int sign)
+    {
+      weightedSum += sign * (long) timeForPayment * amount;
+      weightSum += sign * amount;
+      numberOfValues += sign;
+    }
+
+    /**
+     * @return The average time of payment in days weighted by the amounts of the invoices (0, if the sum of amounts is
+     *         zero).
+     */
+    public int getWeightedAverage()
+    {
+      if (weightSum == 0) {
+        return 0;
+      }
+      return (int) (weightedSum / weightSum);
+    }
+
+    public int getNumberOfValues()
+    {
+      return numberOfValues;
+    }
+  }
+
+  /**
+   * The values of an invoice, needed for removing them from the aggregates.
+   */
+  private static class Entry
+  {
+    private final int timeForPayment;
+
+    private final int amount;
+
+    private final Object[] keys = new Object[Area.values().length];
+
+    private Entry(final int timeForPayment, final int amount)
+    {
+      this.timeForPayment = timeForPayment;
+      this.amount = amount;
+    }
+  }
+
+  private final Map<Area, Map<Object, Aggregate>> aggregates = new EnumMap<Area, Map<Object, Aggregate>>(Area.class);
+
+  private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+  public PaymentDelayIndex()
+  {
+    for (final Area area : Area.values()) {
+      aggregates.put(area, new HashMap<Object, Aggregate>());
+    }
+  }
+
+  /**
+   * Adds or replaces the values of the given paid invoice.
+   *
+   * @param invoiceId
+   * @param timeForPayment Days between date of invoice and date of payment.
+   * @param amount The gross sum of the invoice (used as weight).
+   * @param projectId
+   * @param customerId
+   * @param accountId
+   * @param customerText The customer or creditor text.
+   */
+  public synchronized void put(final Integer invoiceId, final int timeForPayment, final int amount,
+      final Integer projectId, final Integer customerId, final Integer accountId, final String customerText)
+  {
+    remove(invoiceId);
+    final Entry entry = new Entry(timeForPayment, amount);
+    entry.keys[Area.PROJECT.ordinal()] = projectId;
+    entry.keys[Area.CUSTOMER.ordinal()] = customerId;
+    entry.keys[Area.ACCOUNT.ordinal()] = accountId;
+    entry.keys[Area.CUSTOMER_TEXT.ordinal()] = getKey(Area.CUSTOMER_TEXT, customerText);
+    entry.keys[Area.SHORT_CUSTOMER_TEXT.ordinal()] = getKey(Area.SHORT_CUSTOMER_TEXT, customerText);
+    add(entry, 1);
+    entries.put(invoiceId, entry);
+  }
+
+  /**
+   * Removes the values of the given invoice, if added before.
+   *
+   * @param invoiceId
+   */
+  public synchronized void remove(final Integer invoiceId)
+  {
+    final Entry entry = entries.remove(invoiceId);
+    if (entry != null) {
+      add(entry, -1);
+    }
+  }
+
+  /**
+   * @param area
+   * @param id The id of the project, customer or account.
+   * @return A copy of the aggregated values or null, if no paid invoice exists for the given area.
+   */
+  public synchronized Aggregate getAggregate(final Area area, final Integer id)
+  {
+    return get(area, id);
+  }
+
+  /**
+   * @param area {@link Area#CUSTOMER_TEXT} or {@link Area#SHORT_CUSTOMER_TEXT}.
+   * @param customerText The customer text (not normalized).
+   * @return A copy of the aggregated values or null, if no paid invoice exists for the given area.
+   */
+  public synchronized Aggregate getAggregate(final Area area, final String customerText)
+  {
+    return get(area, getKey(area, customerText));
+  }
+
+  /**
+   * @return The number of paid invoices.
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  private Aggregate get(final Area area, final Object key)
+  {
+    if (key == null) {
+      return null;
+    }
+    final Aggregate aggregate = aggregates.get(area).get(key);
+    if (aggregate == null || aggregate.numberOfValues <= 0) {
+      return null;
+    }
+    // Copy, because the aggregate may be modified after leaving the synchronized block:
+    final Aggregate copy = new Aggregate();
+    copy.weightedSum = aggregate.weightedSum;
+    copy.weightSum = aggregate.weightSum;
+    copy.numberOfValues = aggregate.numberOfValues;
+    return copy;
+  }
+
+  private void add(final Entry entry, final int sign)
+  {
+    for (final Area area : Area.values()) {
+      final Object key = entry.keys[area.ordinal()];
+      if (key == null) {
+        continue;
+      }
+      final Map<Object, Aggregate> map = aggregates.get(area);
+      Aggregate aggregate = map.get(key);
+      if (aggregate == null) {
+        aggregate = new Aggregate();
+        map.put(key, aggregate);
+      }
+      aggregate.add(entry.timeForPayment, entry.amount, sign);
+      if (aggregate.numberOfValues <= 0) {
+        map.remove(key);
+      }
+    }
+  }
+
+  /**
+   * @return The lower case customer text, shortened for {@link Area#SHORT_CUSTOMER_TEXT}.
+   */
+  private static String getKey(final Area area, final String customerText)
+  {
+    if (customerText == null) {
+      return null;
+    }
+    final String key = customerText.toLowerCase();
+    if (area == Area.SHORT_CUSTOMER_TEXT && key.length() > SHORT_TEXT_LENGTH) {
+      return key.substring(0, SHORT_TEXT_LENGTH);
+    }
+    return key;
+  }
+}
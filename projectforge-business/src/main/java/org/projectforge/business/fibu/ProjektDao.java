@@ -225,10 +225,23 @@ public class ProjektDao extends BaseDao<ProjektDO>
     if (dbObj.getTaskId() != null && obj.getTaskId() == null) {
       // Project task was removed:
       taskDao.getTaskTree().internalSetProject(dbObj.getTaskId(), null);
+    } else if (dbObj.getTaskId() != null && dbObj.getTaskId().equals(obj.getTaskId()) == false) {
+      // Project was moved to another task:
+      taskDao.getTaskTree().internalRemoveProject(dbObj.getTaskId(), obj.getId());
     }
     super.afterUpdate(obj, dbObj);
   }
 
+  @Override
+  protected void afterDelete(final ProjektDO obj)
+  {
+    if (obj.getTaskId() != null) {
+      // Deleted projects aren't assigned to tasks (see TaskTree#refresh()):
+      taskDao.getTaskTree().internalRemoveProject(obj.getTaskId(), obj.getId());
+    }
+    super.afterDelete(obj);
+  }
+
   @Override
   public ProjektDO newInstance()
   {
@@ -54,6 +54,11 @@ public class RechnungCache extends AbstractCache
   /** The key is the order position id. */
   private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId;
 
+  public RechnungCache()
+  {
+    setBackgroundRefresh(true);
+  }
+
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragId(final Integer auftragId)
   {
     checkRefresh();
@@ -51,6 +51,7 @@ import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
 import org.projectforge.framework.persistence.api.QueryFilter;
+import org.projectforge.framework.persistence.api.TransactionHelper;
 import org.projectforge.framework.persistence.history.DisplayHistoryEntry;
 import org.projectforge.framework.persistence.utils.SQLHelper;
 import org.projectforge.framework.time.DateHelper;
@@ -89,6 +90,9 @@ public class RechnungDao extends BaseDao<RechnungDO>
   @Autowired
   private RechnungCache rechnungCache;
 
+  @Autowired
+  private PaymentDelayCache paymentDelayCache;
+
   public static BigDecimal getNettoSumme(final Collection<RechnungsPositionVO> col)
   {
     BigDecimal nettoSumme = BigDecimal.ZERO;
@@ -282,6 +286,14 @@ public class RechnungDao extends BaseDao<RechnungDO>
   protected void afterSaveOrModify(final RechnungDO obj)
   {
     getRechnungCache().setExpired(); // Expire the cache because assignments to order position may be changed.
+    TransactionHelper.runAfterCommit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        paymentDelayCache.updateInvoice(obj);
+      }
+    });
   }
 
   /**
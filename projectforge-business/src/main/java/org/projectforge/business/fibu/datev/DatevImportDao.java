@@ -26,9 +26,15 @@ package org.projectforge.business.fibu.datev;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.lang.Validate;
 import org.hibernate.LockMode;
+import org.projectforge.business.fibu.KontoCache;
 import org.projectforge.business.fibu.KontoDO;
 import org.projectforge.business.fibu.KontoDao;
 import org.projectforge.business.fibu.KostFormatter;
@@ -38,6 +44,7 @@ import org.projectforge.business.fibu.kost.Kost1DO;
 import org.projectforge.business.fibu.kost.Kost1Dao;
 import org.projectforge.business.fibu.kost.Kost2DO;
 import org.projectforge.business.fibu.kost.Kost2Dao;
+import org.projectforge.business.fibu.kost.KostCache;
 import org.projectforge.business.user.UserRightId;
 import org.projectforge.business.user.UserRightValue;
 import org.projectforge.excel.ExcelImportException;
@@ -61,14 +68,12 @@ import org.springframework.transaction.annotation.Transactional;
 public class DatevImportDao
 {
   /**
-   * Size of bulk inserts. If this value is too large, exceptions are expected and as more small the value is so as more
-   * slowly is the insert process.
+   * Number of Buchungssätze flushed at once (same as hibernate.jdbc.batch_size in persistence.xml).
    */
   private static final int BUCHUNGSSATZ_INSERT_BLOCK_SIZE = 50;
 
   /**
-   * Size of bulk inserts. If this value is too large, exceptions are expected and as more small the value is so as more
-   * slowly is the insert process.
+   * Number of Konten flushed at once (same as hibernate.jdbc.batch_size in persistence.xml).
    */
   private static final int KONTO_INSERT_BLOCK_SIZE = 50;
 
@@ -102,6 +107,12 @@ public class DatevImportDao
   @Autowired
   private BuchungssatzDao buchungssatzDao;
 
+  @Autowired
+  private KontoCache kontoCache;
+
+  @Autowired
+  private KostCache kostCache;
+
   @Autowired
   HibernateTemplate hibernateTemplate;
 
@@ -230,9 +241,10 @@ public class DatevImportDao
   private void reconcileKontenplan(final ImportedSheet<KontoDO> sheet)
   {
     log.info("Reconcile Kontenplan called");
+    final Map<Integer, KontoDO> dbKonten = getDbKonten();
     for (final ImportedElement<KontoDO> el : sheet.getElements()) {
       final KontoDO konto = el.getValue();
-      final KontoDO dbKonto = kontoDao.getKonto(konto.getNummer());
+      final KontoDO dbKonto = dbKonten.get(konto.getNummer());
       if (dbKonto != null) {
         el.setOldValue(dbKonto);
       }
@@ -244,6 +256,7 @@ public class DatevImportDao
   private void reconcileBuchungsdaten(final ImportedSheet<BuchungssatzDO> sheet)
   {
     log.info("Reconcile Buchungsdaten called");
+    final Map<String, BuchungssatzDO> dbSaetze = getDbBuchungssaetze(sheet);
     for (final ImportedElement<BuchungssatzDO> el : sheet.getElements()) {
       final BuchungssatzDO satz = el.getValue();
       if (el.isFaulty() == true) {
@@ -266,7 +279,7 @@ public class DatevImportDao
           }
         }
       }
-      final BuchungssatzDO dbSatz = buchungssatzDao.getBuchungssatz(satz.getYear(), satz.getMonth(), satz.getSatznr());
+      final BuchungssatzDO dbSatz = dbSaetze.get(getKey(satz));
       if (dbSatz != null) {
         el.setOldValue(dbSatz);
       }
@@ -278,10 +291,11 @@ public class DatevImportDao
   private int commitKontenplan(final ImportedSheet<KontoDO> sheet)
   {
     log.info("Commit Kontenplan called");
+    final Map<Integer, KontoDO> dbKonten = getDbKonten();
     final Collection<KontoDO> col = new ArrayList<KontoDO>();
     for (final ImportedElement<KontoDO> el : sheet.getElements()) {
       final KontoDO konto = el.getValue();
-      final KontoDO dbKonto = kontoDao.getKonto(konto.getNummer());
+      final KontoDO dbKonto = dbKonten.get(konto.getNummer());
       if (dbKonto != null) {
         konto.setId(dbKonto.getId());
         if (el.isSelected() == true) {
@@ -291,7 +305,7 @@ public class DatevImportDao
         col.add(konto);
       }
     }
-    kontoDao.internalSaveOrUpdate(kontoDao, col, KONTO_INSERT_BLOCK_SIZE);
+    kontoDao.internalSaveOrUpdateInBatches(col, KONTO_INSERT_BLOCK_SIZE);
     return col.size();
   }
 
@@ -303,13 +317,91 @@ public class DatevImportDao
     return hibernateTemplate.get(clazz, id, LockMode.READ);
   }
 
+  /**
+   * @return The Konto from the KontoCache or, if not (yet) cached, from the data base.
+   */
+  private KontoDO getKonto(final Integer id)
+  {
+    final KontoDO konto = kontoCache.getKonto(id);
+    return konto != null ? konto : (KontoDO) get(KontoDO.class, id);
+  }
+
+  /**
+   * @return The Kost1 from the KostCache or, if not (yet) cached, from the data base.
+   */
+  private Kost1DO getKost1(final Integer id)
+  {
+    final Kost1DO kost1 = kostCache.getKost1(id);
+    return kost1 != null ? kost1 : (Kost1DO) get(Kost1DO.class, id);
+  }
+
+  /**
+   * @return The Kost2 from the KostCache or, if not (yet) cached, from the data base.
+   */
+  private Kost2DO getKost2(final Integer id)
+  {
+    final Kost2DO kost2 = kostCache.getKost2(id);
+    return kost2 != null ? kost2 : (Kost2DO) get(Kost2DO.class, id);
+  }
+
+  /**
+   * @return All Konten of the data base by number (one query instead of one query per imported Konto).
+   */
+  private Map<Integer, KontoDO> getDbKonten()
+  {
+    final Map<Integer, KontoDO> result = new HashMap<Integer, KontoDO>();
+    for (final KontoDO konto : kontoDao.internalLoadAll()) {
+      if (result.containsKey(konto.getNummer()) == false) {
+        result.put(konto.getNummer(), konto);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return All Buchungssätze of the data base of the imported months by key (see {@link #getKey(BuchungssatzDO)}).
+   *         Only one query per year is needed instead of one query per imported Buchungssatz.
+   */
+  private Map<String, BuchungssatzDO> getDbBuchungssaetze(final ImportedSheet<BuchungssatzDO> sheet)
+  {
+    final Map<Integer, Set<Integer>> monthsByYear = new HashMap<Integer, Set<Integer>>();
+    for (final ImportedElement<BuchungssatzDO> el : sheet.getElements()) {
+      final BuchungssatzDO satz = el.getValue();
+      if (satz.getYear() == null || satz.getMonth() == null) {
+        continue;
+      }
+      Set<Integer> months = monthsByYear.get(satz.getYear());
+      if (months == null) {
+        months = new TreeSet<Integer>();
+        monthsByYear.put(satz.getYear(), months);
+      }
+      months.add(satz.getMonth());
+    }
+    final Map<String, BuchungssatzDO> result = new HashMap<String, BuchungssatzDO>();
+    for (final Map.Entry<Integer, Set<Integer>> entry : monthsByYear.entrySet()) {
+      for (final BuchungssatzDO dbSatz : buchungssatzDao.getBuchungssaetze(entry.getKey(), entry.getValue())) {
+        final String key = getKey(dbSatz);
+        if (result.containsKey(key) == false) {
+          result.put(key, dbSatz);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String getKey(final BuchungssatzDO satz)
+  {
+    return satz.getYear() + "-" + satz.getMonth() + "-" + satz.getSatznr();
+  }
+
   private int commitBuchungsdaten(final ImportedSheet<BuchungssatzDO> sheet)
   {
     log.info("Commit Buchungsdaten called");
-    final Collection<BuchungssatzDO> col = new ArrayList<BuchungssatzDO>();
+    final Map<String, BuchungssatzDO> dbSaetze = getDbBuchungssaetze(sheet);
+    final List<BuchungssatzDO> col = new ArrayList<BuchungssatzDO>();
     for (final ImportedElement<BuchungssatzDO> el : sheet.getElements()) {
       final BuchungssatzDO satz = el.getValue();
-      final BuchungssatzDO dbSatz = buchungssatzDao.getBuchungssatz(satz.getYear(), satz.getMonth(), satz.getSatznr());
+      final BuchungssatzDO dbSatz = dbSaetze.get(getKey(satz));
       boolean addSatz = false;
       if (dbSatz != null) {
         satz.setId(dbSatz.getId());
@@ -322,14 +414,15 @@ public class DatevImportDao
       if (addSatz == true) {
         final BuchungssatzDO newSatz = new BuchungssatzDO();
         newSatz.copyValuesFrom(satz, "konto", "gegenKonto", "kost1", "kost2");
-        newSatz.setKonto((KontoDO) get(KontoDO.class, satz.getKontoId()));
-        newSatz.setGegenKonto((KontoDO) get(KontoDO.class, satz.getGegenKontoId()));
-        newSatz.setKost1((Kost1DO) get(Kost1DO.class, satz.getKost1Id()));
-        newSatz.setKost2((Kost2DO) get(Kost2DO.class, satz.getKost2Id()));
+        newSatz.setId(satz.getId());
+        newSatz.setKonto(getKonto(satz.getKontoId()));
+        newSatz.setGegenKonto(getKonto(satz.getGegenKontoId()));
+        newSatz.setKost1(getKost1(satz.getKost1Id()));
+        newSatz.setKost2(getKost2(satz.getKost2Id()));
         col.add(newSatz);
       }
     }
-    buchungssatzDao.internalSaveOrUpdate(buchungssatzDao, col, BUCHUNGSSATZ_INSERT_BLOCK_SIZE);
+    buchungssatzDao.internalSaveOrUpdateInBatches(col, BUCHUNGSSATZ_INSERT_BLOCK_SIZE);
     return col.size();
   }
 
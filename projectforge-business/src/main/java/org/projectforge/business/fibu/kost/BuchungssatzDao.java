@@ -23,7 +23,9 @@
 
 package org.projectforge.business.fibu.kost;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -94,6 +96,25 @@ public class BuchungssatzDao extends BaseDao<BuchungssatzDO>
     return list.get(0);
   }
 
+  /**
+   * Gets all entries of the given months of a year in one query (e. g. for reconciling imports).
+   *
+   * @param year
+   * @param months
+   * @return The entries including the deleted ones (may be empty but never null).
+   * @see #getBuchungssatz(int, int, int)
+   */
+  @SuppressWarnings("unchecked")
+  public List<BuchungssatzDO> getBuchungssaetze(final int year, final Collection<Integer> months)
+  {
+    if (CollectionUtils.isEmpty(months) == true) {
+      return new ArrayList<BuchungssatzDO>();
+    }
+    return getSession()
+        .createQuery("from BuchungssatzDO satz where satz.year = :year and satz.month in (:months)")
+        .setParameter("year", year).setParameterList("months", months).list();
+  }
+
   public boolean validateTimeperiod(final BuchungssatzFilter myFilter)
   {
     final int toMonth = myFilter.getToMonth();
@@ -24,6 +24,7 @@
 package org.projectforge.business.fibu.kost;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,15 +55,16 @@ public class KostCache extends AbstractCache
   @Autowired
   private HibernateTemplate hibernateTemplate;
 
-  /** The key is the kost2-id. */
-  private Map<Integer, Kost2DO> kost2Map;
-
-  /** The key is the kost2-id. */
-  private Map<Integer, Kost1DO> kost1Map;
-
-  private List<Kost2Art> allKost2Arts;
+  /**
+   * The published data, replaced as a whole (by the refresh, which may run in the background, and by the updates).
+   */
+  private volatile KostData data = new KostData(new HashMap<Integer, Kost2DO>(), new HashMap<Integer, Kost1DO>(),
+      null, false);
 
-  private boolean kost2EntriesExists = false;
+  public KostCache()
+  {
+    setBackgroundRefresh(true);
+  }
 
   public Kost2DO getKost2(final Integer kost2Id)
   {
@@ -159,6 +161,10 @@ public class KostCache extends AbstractCache
     checkRefresh();
     final Set<Kost2ArtDO> set = getKost2Arts(projektId);
     final List<Kost2Art> result = new ArrayList<Kost2Art>();
+    final List<Kost2Art> allKost2Arts = data.allKost2Arts;
+    if (allKost2Arts == null) {
+      return result;
+    }
     for (final Kost2Art kost2Art : allKost2Arts) {
       if (kost2Art.isDeleted() == true) {
         continue;
@@ -178,6 +184,7 @@ public class KostCache extends AbstractCache
   {
     checkRefresh();
     final List<Kost2Art> list = new ArrayList<Kost2Art>();
+    final List<Kost2Art> allKost2Arts = data.allKost2Arts;
     if (allKost2Arts != null) {
       for (final Kost2Art kost2Art : allKost2Arts) {
         final Kost2ArtDO kost2ArtDO = ((Kost2ArtImpl) kost2Art).getKost2ArtDO();
@@ -192,7 +199,7 @@ public class KostCache extends AbstractCache
   public boolean isKost2EntriesExists()
   {
     checkRefresh();
-    return kost2EntriesExists;
+    return data.kost2EntriesExists;
   }
 
   /**
@@ -202,7 +209,14 @@ public class KostCache extends AbstractCache
    */
   void updateKost2(final Kost2DO kost2)
   {
-    getKost2Map().put(kost2.getId(), kost2);
+    checkRefresh();
+    synchronized (this) {
+      final KostData current = data;
+      final Map<Integer, Kost2DO> map = new HashMap<Integer, Kost2DO>(current.kost2Map);
+      map.put(kost2.getId(), kost2);
+      data = new KostData(map, current.kost1Map, current.allKost2Arts, current.kost2EntriesExists
+          || kost2.isDeleted() == false);
+    }
   }
 
   /**
@@ -212,11 +226,26 @@ public class KostCache extends AbstractCache
    */
   void updateKost1(final Kost1DO kost1)
   {
-    getKost1Map().put(kost1.getId(), kost1);
+    checkRefresh();
+    synchronized (this) {
+      final KostData current = data;
+      final Map<Integer, Kost1DO> map = new HashMap<Integer, Kost1DO>(current.kost1Map);
+      map.put(kost1.getId(), kost1);
+      data = new KostData(current.kost2Map, map, current.allKost2Arts, current.kost2EntriesExists);
+    }
   }
 
-  @SuppressWarnings("unchecked")
   void updateKost2Arts()
+  {
+    final List<Kost2Art> list = loadKost2Arts();
+    synchronized (this) {
+      final KostData current = data;
+      data = new KostData(current.kost2Map, current.kost1Map, list, current.kost2EntriesExists);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Kost2Art> loadKost2Arts()
   {
     final List<Kost2ArtDO> result = (List<Kost2ArtDO>) hibernateTemplate
         .find("from Kost2ArtDO t where t.deleted = false order by t.id");
@@ -225,20 +254,19 @@ public class KostCache extends AbstractCache
       final Kost2ArtImpl art = new Kost2ArtImpl(kost2ArtDO);
       list.add(art);
     }
-    // This method must not be synchronized because it works with a new copy of list.
-    this.allKost2Arts = list;
+    return Collections.unmodifiableList(list);
   }
 
   private Map<Integer, Kost2DO> getKost2Map()
   {
     checkRefresh();
-    return kost2Map;
+    return data.kost2Map;
   }
 
   private Map<Integer, Kost1DO> getKost1Map()
   {
     checkRefresh();
-    return kost1Map;
+    return data.kost1Map;
   }
 
   /**
@@ -249,25 +277,51 @@ public class KostCache extends AbstractCache
   protected void refresh()
   {
     log.info("Initializing KostCache ...");
-    // This method must not be synchronized because it works with a new copy of maps.
+    // This method must not be synchronized because it works with new maps published at the end in one step.
     final Map<Integer, Kost1DO> map1 = new HashMap<Integer, Kost1DO>();
     final List<Kost1DO> list1 = (List<Kost1DO>) hibernateTemplate.find("from Kost1DO t");
     for (final Kost1DO kost1 : list1) {
       map1.put(kost1.getId(), kost1);
     }
-    this.kost1Map = map1;
     final Map<Integer, Kost2DO> map2 = new HashMap<Integer, Kost2DO>();
     final List<Kost2DO> list2 = (List<Kost2DO>) hibernateTemplate.find("from Kost2DO t");
-    kost2EntriesExists = false;
+    boolean nKost2EntriesExists = false;
     for (final Kost2DO kost2 : list2) {
-      if (kost2EntriesExists == false && kost2.isDeleted() == false) {
-        kost2EntriesExists = true;
+      if (nKost2EntriesExists == false && kost2.isDeleted() == false) {
+        nKost2EntriesExists = true;
       }
       map2.put(kost2.getId(), kost2);
     }
-    this.kost2Map = map2;
-    updateKost2Arts();
+    final List<Kost2Art> kost2Arts = loadKost2Arts();
+    synchronized (this) {
+      data = new KostData(map2, map1, kost2Arts, nKost2EntriesExists);
+    }
     log.info("Initializing of KostCache done.");
   }
 
+  /**
+   * The data of this cache, never modified after publishing.
+   */
+  private static class KostData
+  {
+    /** The key is the kost2-id. */
+    private final Map<Integer, Kost2DO> kost2Map;
+
+    /** The key is the kost1-id. */
+    private final Map<Integer, Kost1DO> kost1Map;
+
+    private final List<Kost2Art> allKost2Arts;
+
+    private final boolean kost2EntriesExists;
+
+    private KostData(final Map<Integer, Kost2DO> kost2Map, final Map<Integer, Kost1DO> kost1Map,
+        final List<Kost2Art> allKost2Arts, final boolean kost2EntriesExists)
+    {
+      this.kost2Map = Collections.unmodifiableMap(kost2Map);
+      this.kost1Map = Collections.unmodifiableMap(kost1Map);
+      this.allKost2Arts = allKost2Arts;
+      this.kost2EntriesExists = kost2EntriesExists;
+    }
+  }
+
 }
@@ -33,9 +33,7 @@ import org.projectforge.business.fibu.ProjektDO;
 import org.projectforge.business.multitenancy.TenantRegistryMap;
 import org.projectforge.business.task.TaskTree;
 import org.projectforge.business.tasktree.TaskTreeHelper;
-import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.business.timesheet.TimesheetDao;
-import org.projectforge.business.timesheet.TimesheetFilter;
 import org.projectforge.business.user.UserDao;
 import org.projectforge.business.user.UserGroupCache;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
@@ -88,29 +86,32 @@ public class HRDao implements IDao<HRViewData>
       filter.setStopTime(day.getDate());
     }
     if (filter.isShowBookedTimesheets() == true) {
-      final TimesheetFilter tsFilter = new TimesheetFilter();
-      tsFilter.setStartTime(filter.getStartTime());
-      tsFilter.setStopTime(filter.getStopTime());
-      final List<TimesheetDO> sheets = timesheetDao.getList(tsFilter);
+      // Only the sums of the durations per user and task are needed, so the time sheets themselves aren't loaded:
+      final List<Object[]> durations = timesheetDao.getTotalDurationsByUserAndTask(filter.getStartTime(),
+          filter.getStopTime());
       final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
-      for (final TimesheetDO sheet : sheets) {
-        final PFUserDO user = userGroupCache.getUser(sheet.getUserId());
+      final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+      for (final Object[] row : durations) {
+        final Integer userId = (Integer) row[0];
+        final Integer taskId = (Integer) row[1];
+        final long seconds = (Long) row[2];
+        final PFUserDO user = userGroupCache.getUser(userId);
         if (user == null) {
-          log.error("Oups, user of time sheet is null or unknown? Ignoring entry: " + sheet);
+          log.error("Oups, user of time sheets is null or unknown? Ignoring entries of user with id " + userId
+              + " and task with id " + taskId);
           continue;
         }
-        final TaskTree taskTree = TaskTreeHelper.getTaskTree();
-        final ProjektDO projekt = taskTree.getProjekt(sheet.getTaskId());
+        final ProjektDO projekt = taskTree.getProjekt(taskId);
         final Object targetObject = getTargetObject(userGroupCache, filter, projekt);
         if (targetObject == null) {
-          data.addTimesheet(sheet, user);
+          data.addTimesheetDuration(seconds, user);
         } else if (targetObject instanceof ProjektDO) {
-          data.addTimesheet(sheet, user, (ProjektDO) targetObject);
+          data.addTimesheetDuration(seconds, user, (ProjektDO) targetObject);
         } else if (targetObject instanceof KundeDO) {
-          data.addTimesheet(sheet, user, (KundeDO) targetObject);
+          data.addTimesheetDuration(seconds, user, (KundeDO) targetObject);
         } else {
           log.error("Target object of type " + targetObject + " not supported.");
-          data.addTimesheet(sheet, user);
+          data.addTimesheetDuration(seconds, user);
         }
       }
     }
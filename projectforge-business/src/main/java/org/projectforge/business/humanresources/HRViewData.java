@@ -34,7 +34,6 @@ import java.util.Map;
 import org.hibernate.Hibernate;
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.ProjektDO;
-import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.common.StringHelper;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 
@@ -70,22 +69,22 @@ public class HRViewData implements Serializable
     customers = new HashMap<Integer, KundeDO>();
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user)
+  void addTimesheetDuration(final long seconds, final PFUserDO user)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet);
+    ensureAndGetUserData(user).addTimesheetDuration(seconds);
     sortedUserDatas = null;
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user, final ProjektDO projekt)
+  void addTimesheetDuration(final long seconds, final PFUserDO user, final ProjektDO projekt)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet, projekt);
+    ensureAndGetUserData(user).addTimesheetDuration(seconds, projekt);
     addProjekt(projekt);
     sortedUserDatas = null;
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user, final KundeDO kunde)
+  void addTimesheetDuration(final long seconds, final PFUserDO user, final KundeDO kunde)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet, kunde);
+    ensureAndGetUserData(user).addTimesheetDuration(seconds, kunde);
     addKunde(kunde);
     sortedUserDatas = null;
   }
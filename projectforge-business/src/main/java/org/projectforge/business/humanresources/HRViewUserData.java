@@ -31,7 +31,6 @@ import java.util.List;
 
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.ProjektDO;
-import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.framework.persistence.api.IdObject;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.utils.NumberHelper;
@@ -62,26 +61,26 @@ public class HRViewUserData implements Comparable<HRViewUserData>, Serializable,
     this.entries = new ArrayList<HRViewUserEntryData>();
   }
 
-  void addTimesheet(final TimesheetDO timesheet)
+  void addTimesheetDuration(final long seconds)
   {
-    addTimesheet(timesheet, (ProjektDO) null);
+    addTimesheetDuration(seconds, (ProjektDO) null);
   }
 
-  void addTimesheet(final TimesheetDO timesheet, final ProjektDO projekt)
+  void addTimesheetDuration(final long seconds, final ProjektDO projekt)
   {
-    ensureAndGetEntry(projekt).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    ensureAndGetEntry(projekt).addTimesheetDuration(seconds);
+    actualSecondsSum += seconds;
     if (projekt == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += seconds;
     }
   }
 
-  void addTimesheet(final TimesheetDO timesheet, final KundeDO kunde)
+  void addTimesheetDuration(final long seconds, final KundeDO kunde)
   {
-    ensureAndGetEntry(kunde).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    ensureAndGetEntry(kunde).addTimesheetDuration(seconds);
+    actualSecondsSum += seconds;
     if (kunde == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += seconds;
     }
   }
 
@@ -29,7 +29,6 @@ import java.math.RoundingMode;
 
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.ProjektDO;
-import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.framework.utils.NumberHelper;
 
 
@@ -64,9 +63,9 @@ public class HRViewUserEntryData implements Comparable<HRViewUserEntryData>, Ser
     this.planningEntryStatus = status;
   }
 
-  void addTimesheet(final TimesheetDO timesheet)
+  void addTimesheetDuration(final long seconds)
   {
-    actualSeconds += (timesheet.getDuration() / 1000);
+    actualSeconds += seconds;
   }
 
   void addPlanningEntry(final HRPlanningEntryDO entry)
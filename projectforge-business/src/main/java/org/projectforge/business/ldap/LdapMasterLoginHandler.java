@@ -29,6 +29,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.lang.StringUtils;
 import org.projectforge.business.login.LoginResult;
@@ -65,7 +68,35 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(LdapMasterLoginHandler.class);
 
-  private boolean refreshInProgress;
+  /**
+   * One worker thread for all synchronizations, so at maximum one synchronization is running at the same time.
+   */
+  private static final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+  {
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+      final Thread thread = new Thread(runnable, "LdapMasterLoginHandler-sync");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private volatile boolean refreshInProgress;
+
+  /**
+   * Users and groups of the latest cache refresh not yet synchronized. If a synchronization is already scheduled, only
+   * the newest users and groups are synchronized.
+   */
+  private Collection<PFUserDO> pendingUsers;
+
+  private Collection<GroupDO> pendingGroups;
+
+  private final Object pendingLock = new Object();
+
+  private final LdapSyncFingerprints userFingerprints = new LdapSyncFingerprints();
+
+  private final LdapSyncFingerprints groupFingerprints = new LdapSyncFingerprints();
 
   @Autowired
   private GroupDOConverter groupDOConverter;
@@ -145,21 +176,40 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
   @Override
   public void afterUserGroupCacheRefresh(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
   {
-    new Thread()
+    synchronized (pendingLock) {
+      final boolean scheduled = pendingUsers != null;
+      pendingUsers = users;
+      pendingGroups = groups;
+      refreshInProgress = true;
+      if (scheduled == true) {
+        // The already scheduled synchronization will use the given users and groups.
+        return;
+      }
+    }
+    syncExecutor.execute(new Runnable()
     {
       @Override
       public void run()
       {
-        synchronized (LdapMasterLoginHandler.this) {
-          try {
-            refreshInProgress = true;
+        final Collection<PFUserDO> users;
+        final Collection<GroupDO> groups;
+        synchronized (pendingLock) {
+          users = pendingUsers;
+          groups = pendingGroups;
+          pendingUsers = null;
+          pendingGroups = null;
+        }
+        try {
+          synchronized (LdapMasterLoginHandler.this) {
             updateLdap(users, groups);
-          } finally {
-            refreshInProgress = false;
+          }
+        } finally {
+          synchronized (pendingLock) {
+            refreshInProgress = pendingUsers != null;
           }
         }
       }
-    }.start();
+    });
   }
 
   /**
@@ -180,14 +230,23 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
         log.info("Updating LDAP...");
         // First, get set of all ldap entries:
         final List<LdapUser> ldapUsers = getAllLdapUsers(ctx);
+        final Map<String, LdapUser> ldapUsersByUid = new HashMap<>();
+        final Map<String, LdapUser> ldapUsersByEmployeeNumber = new HashMap<>();
+        for (final LdapUser ldapUser : ldapUsers) {
+          putIfAbsent(ldapUsersByUid, ldapUser.getUid(), ldapUser);
+          putIfAbsent(ldapUsersByEmployeeNumber, ldapUser.getEmployeeNumber(), ldapUser);
+        }
         final List<LdapUser> updatedLdapUsers = new ArrayList<>();
         int error = 0, unmodified = 0, created = 0, updated = 0, deleted = 0, renamed = 0;
         final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
         for (final PFUserDO user : users) {
           final LdapUser updatedLdapUser = pfUserDOConverter.convert(user);
           try {
-            final LdapUser ldapUser = getLdapUser(ldapUsers, user);
+            final LdapUser ldapUser = getLdapUser(ldapUsersByUid, ldapUsersByEmployeeNumber, user);
+            final byte[] fingerprint = ldapUser != null
+                ? LdapSyncFingerprints.getFingerprint(updatedLdapUser, ldapUser) : null;
             if (ldapUser == null) {
+              userFingerprints.remove(user.getId());
               updatedLdapUser.setOrganizationalUnit(userBase);
               if (user.isDeleted() == false && user.isLocalUser() == false) {
                 // Do not add deleted or local users.
@@ -197,7 +256,13 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
                 ldapUserDao.create(ctx, userBase, updatedLdapUser);
                 created++;
               }
+            } else if (user.isDeleted() == false && user.isLocalUser() == false
+                && userFingerprints.isUnmodified(user.getId(), fingerprint) == true) {
+              // Neither the user nor the ldap entry is changed since the last synchronization.
+              updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
+              unmodified++;
             } else {
+              userFingerprints.remove(user.getId());
               // Need to set organizational unit for detecting the change of deactivated flag. The updateLdapUser needs the organizational
               // unit of the original ldap object:
               updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
@@ -209,10 +274,12 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
                 deleted++;
               } else {
                 final boolean modified = pfUserDOConverter.copyUserFields(updatedLdapUser, ldapUser);
+                boolean written = modified;
                 if (StringUtils.equals(updatedLdapUser.getUid(), ldapUser.getUid()) == false) {
                   // uid (dn) changed.
                   ldapUserDao.rename(ctx, updatedLdapUser, ldapUser);
                   renamed++;
+                  written = true;
                 }
                 if (modified == true) {
                   updatedLdapUser.setObjectClasses(ldapUser.getObjectClasses());
@@ -235,8 +302,12 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
                   if (updatedLdapUser.isDeactivated()) {
                     log.warn("User password for deactivated user is set: " + ldapUser);
                     ldapUserDao.deactivateUser(ctx, updatedLdapUser);
+                    written = true;
                   }
                 }
+                if (written == false) {
+                  userFingerprints.setUnmodified(user.getId(), fingerprint);
+                }
               }
             }
             ldapUserDao.buildDn(userBase, updatedLdapUser);
@@ -263,13 +334,21 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
             + " deleted.");
         // Now get all groups:
         final List<LdapGroup> ldapGroups = getAllLdapGroups(ctx);
+        final Map<String, LdapGroup> ldapGroupsByBusinessCategory = new HashMap<>();
+        for (final LdapGroup ldapGroup : ldapGroups) {
+          putIfAbsent(ldapGroupsByBusinessCategory, ldapGroup.getBusinessCategory(), ldapGroup);
+        }
         final Map<Integer, LdapUser> ldapUserMap = getUserMap(updatedLdapUsers);
         error = unmodified = created = updated = renamed = deleted = 0;
         for (final GroupDO group : groups) {
           try {
             final LdapGroup updatedLdapGroup = groupDOConverter.convert(group, baseDN, ldapUserMap);
-            final LdapGroup ldapGroup = getLdapGroup(ldapGroups, group);
+            final LdapGroup ldapGroup = ldapGroupsByBusinessCategory
+                .get(groupDOConverter.buildBusinessCategory(group));
+            final byte[] fingerprint = ldapGroup != null
+                ? LdapSyncFingerprints.getFingerprint(updatedLdapGroup, ldapGroup) : null;
             if (ldapGroup == null) {
+              groupFingerprints.remove(group.getId());
               updatedLdapGroup.setOrganizationalUnit(groupBase);
               if (group.isDeleted() == false && group.isLocalGroup() == false) {
                 // Do not add deleted or local groups.
@@ -277,7 +356,12 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
                 ldapGroupDao.create(ctx, groupBase, updatedLdapGroup);
                 created++;
               }
+            } else if (group.isDeleted() == false && group.isLocalGroup() == false
+                && groupFingerprints.isUnmodified(group.getId(), fingerprint) == true) {
+              // Neither the group nor the ldap entry is changed since the last synchronization.
+              unmodified++;
             } else {
+              groupFingerprints.remove(group.getId());
               updatedLdapGroup.setOrganizationalUnit(ldapGroup.getOrganizationalUnit());
               if (group.isDeleted() == true || group.isLocalGroup() == true) {
                 // Deleted and local users shouldn't be synchronized with LDAP:
@@ -297,6 +381,8 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
                   // CommonName (cn) and therefor dn changed.
                   ldapGroupDao.rename(ctx, updatedLdapGroup, ldapGroup);
                   renamed++;
+                } else if (modified == false) {
+                  groupFingerprints.setUnmodified(group.getId(), fingerprint);
                 }
               }
             }
@@ -427,24 +513,28 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     return map;
   }
 
-  private LdapUser getLdapUser(final List<LdapUser> ldapUsers, final PFUserDO user)
+  /**
+   * @return The ldap user with the username of the given user as uid or, if not found, with the given user's employee
+   *         number.
+   */
+  private LdapUser getLdapUser(final Map<String, LdapUser> ldapUsersByUid,
+      final Map<String, LdapUser> ldapUsersByEmployeeNumber, final PFUserDO user)
   {
-    for (final LdapUser ldapUser : ldapUsers) {
-      if (StringUtils.equals(ldapUser.getUid(), user.getUsername()) == true
-          || StringUtils.equals(ldapUser.getEmployeeNumber(), PFUserDOConverter.buildEmployeeNumber(user)) == true) {
-        return ldapUser;
-      }
+    final LdapUser ldapUser = ldapUsersByUid.get(user.getUsername());
+    if (ldapUser != null) {
+      return ldapUser;
     }
-    return null;
+    final String employeeNumber = PFUserDOConverter.buildEmployeeNumber(user);
+    return employeeNumber != null ? ldapUsersByEmployeeNumber.get(employeeNumber) : null;
   }
 
-  private LdapGroup getLdapGroup(final List<LdapGroup> ldapGroups, final GroupDO group)
+  /**
+   * Only the first ldap object of a key is indexed.
+   */
+  private static <T> void putIfAbsent(final Map<String, T> map, final String key, final T ldapObject)
   {
-    for (final LdapGroup ldapGroup : ldapGroups) {
-      if (StringUtils.equals(ldapGroup.getBusinessCategory(), groupDOConverter.buildBusinessCategory(group)) == true) {
-        return ldapGroup;
-      }
+    if (key != null && map.containsKey(key) == false) {
+      map.put(key, ldapObject);
     }
-    return null;
   }
 }
@@ -0,0 +1,199 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.ldap;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fingerprints of the users or groups found in sync by the last LDAP synchronization of the
+ * {@link LdapMasterLoginHandler}. A fingerprint is built of the LDAP object converted from ProjectForge's user or group
+ * and of the LDAP entry read from the LDAP server. If both are unchanged since the last synchronization, nothing has to
+ * be compared or written. <br/>
+ * The fingerprint is the SHA-256 digest of all field values of both objects (members and other collections sorted),
+ * so a changed object isn't mistaken for an unchanged one because of colliding hash codes. <br/>
+ * Not thread safe, only used by the synchronization thread.
+ */
+class LdapSyncFingerprints
+{
+  private final Map<Integer, byte[]> fingerprints = new HashMap<>();
+
+  /**
+   * Must be called before any modification of the given objects.
+   *
+   * @param ldapObject The LDAP object converted from ProjectForge's user or group.
+   * @param ldapEntry The LDAP object read from the LDAP server.
+   * @return The fingerprint of both objects.
+   */
+  static byte[] getFingerprint(final LdapObject<?> ldapObject, final LdapObject<?> ldapEntry)
+  {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException ex) {
+      throw new RuntimeException(ex);
+    }
+    update(digest, ldapObject);
+    update(digest, ldapEntry);
+    return digest.digest();
+  }
+
+  /**
+   * Adds the values of all fields of the given object in a canonical order (by class hierarchy and field names). Every
+   * value is prefixed by its length, so different values can't result in the same byte sequence.
+   */
+  private static void update(final MessageDigest digest, final LdapObject<?> obj)
+  {
+    update(digest, obj.getClass().getName());
+    for (Class<?> clazz = obj.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+      final Field[] fields = clazz.getDeclaredFields();
+      Arrays.sort(fields, new Comparator<Field>()
+      {
+        @Override
+        public int compare(final Field f1, final Field f2)
+        {
+          return f1.getName().compareTo(f2.getName());
+        }
+      });
+      for (final Field field : fields) {
+        if (Modifier.isStatic(field.getModifiers()) == true) {
+          continue;
+        }
+        field.setAccessible(true);
+        final Object value;
+        try {
+          value = field.get(obj);
+        } catch (final IllegalAccessException ex) {
+          throw new RuntimeException(ex);
+        }
+        update(digest, field.getName());
+        updateValue(digest, value);
+      }
+    }
+  }
+
+  private static void updateValue(final MessageDigest digest, final Object value)
+  {
+    if (value == null) {
+      digest.update((byte) 0);
+    } else if (value instanceof Object[]) {
+      digest.update((byte) 1);
+      final Object[] array = (Object[]) value;
+      updateLength(digest, array.length);
+      for (final Object element : array) {
+        updateValue(digest, element);
+      }
+    } else if (value instanceof Collection) {
+      // Sets (e. g. the members of a group) have no defined order:
+      digest.update((byte) 2);
+      final List<String> elements = new ArrayList<>();
+      for (final Object element : (Collection<?>) value) {
+        elements.add(String.valueOf(element));
+      }
+      Collections.sort(elements);
+      updateLength(digest, elements.size());
+      for (final String element : elements) {
+        update(digest, element);
+      }
+    } else if (value instanceof Date) {
+      digest.update((byte) 3);
+      update(digest, String.valueOf(((Date) value).getTime()));
+    } else {
+      digest.update((byte) 4);
+      update(digest, value.toString());
+    }
+  }
+
+  private static void update(final MessageDigest digest, final String value)
+  {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    updateLength(digest, bytes.length);
+    digest.update(bytes);
+  }
+
+  private static void updateLength(final MessageDigest digest, final int length)
+  {
+    digest.update((byte) (length >>> 24));
+    digest.update((byte) (length >>> 16));
+    digest.update((byte) (length >>> 8));
+    digest.update((byte) length);
+  }
+
+  /**
+   * @param id The id of ProjectForge's user or group.
+   * @param fingerprint
+   * @return true, if the given fingerprint is the fingerprint of the last synchronization.
+   */
+  boolean isUnmodified(final Integer id, final byte[] fingerprint)
+  {
+    final byte[] last = fingerprints.get(id);
+    return last != null && Arrays.equals(last, fingerprint) == true;
+  }
+
+  /**
+   * Stores the fingerprint of an user or group found in sync.
+   *
+   * @param id The id of ProjectForge's user or group.
+   * @param fingerprint
+   */
+  void setUnmodified(final Integer id, final byte[] fingerprint)
+  {
+    if (id != null && fingerprint != null) {
+      fingerprints.put(id, fingerprint);
+    }
+  }
+
+  /**
+   * Should be called if the user or group is created, modified or deleted, so it will be compared again by the next
+   * synchronization.
+   *
+   * @param id The id of ProjectForge's user or group.
+   */
+  void remove(final Integer id)
+  {
+    fingerprints.remove(id);
+  }
+
+  void clear()
+  {
+    fingerprints.clear();
+  }
+
+  int size()
+  {
+    return fingerprints.size();
+  }
+}
@@ -23,10 +23,12 @@
 
 package org.projectforge.business.scripting;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.groovy.control.CompilationFailedException;
@@ -44,7 +46,9 @@ import groovy.text.Template;
 import groovy.text.TemplateEngine;
 
 /**
- * Executes groovy templates. For more functionality please refer GroovyEngine.
+ * Executes groovy templates. For more functionality please refer GroovyEngine.<br/>
+ * The compiled scripts and templates are cached (by their source), so repeated executions of the same script or
+ * template don't need the Groovy compiler. Every execution gets its own binding.
  * 
  * @author Kai Reinhard (k.reinhard@micromata.de)
  * 
@@ -54,6 +58,26 @@ public class GroovyExecutor
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(GroovyExecutor.class);
 
+  /**
+   * Maximum number of scripts and of templates held in the caches. The least recently used ones are removed first.
+   */
+  private static final int MAX_CACHE_SIZE = 200;
+
+  /**
+   * Compiled script classes by source (shared by all instances, GroovyEngine creates its own executor).
+   */
+  private static final Map<String, Class<?>> scriptCache = createCache();
+
+  /**
+   * Templates of the default template engine by source. {@link Template#make(Map)} creates a new script instance for
+   * every call.
+   */
+  private static final Map<String, Template> templateCache = createCache();
+
+  private static final AtomicLong cacheHits = new AtomicLong();
+
+  private static final AtomicLong cacheMisses = new AtomicLong();
+
   @Autowired
   private RefactoringService refService;
 
@@ -84,7 +108,21 @@ public class GroovyExecutor
   public String executeTemplate(final String template, final Map<String, Object> variables)
   {
     securityChecks(template);
-    return executeTemplate(new SimpleTemplateEngine(), template, variables);
+    if (template == null) {
+      return null;
+    }
+    Template templateObject = templateCache.get(template);
+    if (templateObject != null) {
+      cacheHits.incrementAndGet();
+    } else {
+      cacheMisses.incrementAndGet();
+      templateObject = createTemplate(new SimpleTemplateEngine(), template);
+      if (templateObject == null) {
+        return null;
+      }
+      templateCache.put(template, templateObject);
+    }
+    return executeTemplate(templateObject, template, variables);
   }
 
   public String executeTemplate(final TemplateEngine templateEngine, final String template,
@@ -94,8 +132,31 @@ public class GroovyExecutor
     if (template == null) {
       return null;
     }
+    final Template templateObject = createTemplate(templateEngine, template);
+    if (templateObject == null) {
+      return null;
+    }
+    return executeTemplate(templateObject, template, variables);
+  }
+
+  private Template createTemplate(final TemplateEngine templateEngine, final String template)
+  {
+    try {
+      return templateEngine.createTemplate(template);
+    } catch (final CompilationFailedException ex) {
+      log.error(ex.getMessage() + " while executing template: " + template, ex);
+    } catch (final ClassNotFoundException ex) {
+      log.error(ex.getMessage() + " while executing template: " + template, ex);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage() + " while executing template: " + template, ex);
+    }
+    return null;
+  }
+
+  private String executeTemplate(final Template templateObject, final String template,
+      final Map<String, Object> variables)
+  {
     try {
-      final Template templateObject = templateEngine.createTemplate(template);
       final Writable writable = templateObject.make(variables);
       final StringWriter writer = new StringWriter();
       writable.writeTo(writer);
@@ -104,12 +165,6 @@ public class GroovyExecutor
         log.debug(writer.toString());
       }
       return writer.toString();
-    } catch (final CompilationFailedException ex) {
-      log.error(ex.getMessage() + " while executing template: " + template, ex);
-    } catch (final FileNotFoundException ex) {
-      log.error(ex.getMessage() + " while executing template: " + template, ex);
-    } catch (final ClassNotFoundException ex) {
-      log.error(ex.getMessage() + " while executing template: " + template, ex);
     } catch (final IOException ex) {
       log.error(ex.getMessage() + " while executing template: " + template, ex);
     }
@@ -134,6 +189,92 @@ public class GroovyExecutor
   public Script compileGroovy(final GroovyResult result, final String script, final boolean bindScriptResult)
   {
     securityChecks(script);
+    Class<?> groovyClass = scriptCache.get(script);
+    if (groovyClass != null) {
+      cacheHits.incrementAndGet();
+    } else {
+      cacheMisses.incrementAndGet();
+      groovyClass = parseClass(result, script);
+      if (groovyClass == null) {
+        return null;
+      }
+      scriptCache.put(script, groovyClass);
+    }
+    Script groovyObject = null;
+    try {
+      groovyObject = (Script) groovyClass.newInstance();
+    } catch (final InstantiationException ex) {
+      log.error(ex.getMessage(), ex);
+      if (result != null) {
+        result.setException(ex);
+      }
+      return null;
+    } catch (final IllegalAccessException ex) {
+      log.error(ex.getMessage(), ex);
+      if (result != null) {
+        result.setException(ex);
+      }
+      return null;
+    }
+    if (bindScriptResult == true) {
+      final Binding binding = groovyObject.getBinding();
+      final GroovyResult scriptResult = new GroovyResult();
+      binding.setVariable("scriptResult", scriptResult);
+    }
+    return groovyObject;
+  }
+
+  /**
+   * @return The number of scripts and templates found in the caches.
+   */
+  public static long getCacheHits()
+  {
+    return cacheHits.get();
+  }
+
+  /**
+   * @return The number of scripts and templates compiled (not found in the caches).
+   */
+  public static long getCacheMisses()
+  {
+    return cacheMisses.get();
+  }
+
+  /**
+   * @return The number of cache hits divided by the number of cache requests (0, if nothing was requested yet).
+   */
+  public static double getCacheHitRate()
+  {
+    final long hits = cacheHits.get();
+    final long total = hits + cacheMisses.get();
+    return total > 0 ? (double) hits / total : 0;
+  }
+
+  /**
+   * Clears the caches of compiled scripts and templates, e. g. if the classes used by the scripts were changed.
+   */
+  public static void clearCaches()
+  {
+    scriptCache.clear();
+    templateCache.clear();
+  }
+
+  private static <V> Map<String, V> createCache()
+  {
+    return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = -3547812263845962781L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, V> eldest)
+      {
+        return size() > MAX_CACHE_SIZE;
+      }
+    });
+  }
+
+  private Class<?> parseClass(final GroovyResult result, final String script)
+  {
     final GroovyClassLoader gcl = new GroovyClassLoader()
     {
       @SuppressWarnings("rawtypes")
@@ -161,10 +302,8 @@ public class GroovyExecutor
         return loadClass;
       }
     };
-
-    Class<?> groovyClass = null;
     try {
-      groovyClass = gcl.parseClass(script);
+      return gcl.parseClass(script);
     } catch (final CompilationFailedException ex) {
       log.info("Groovy-CompilationFailedException: " + ex.getMessage());
       if (result != null) {
@@ -172,28 +311,6 @@ public class GroovyExecutor
       }
       return null;
     }
-    Script groovyObject = null;
-    try {
-      groovyObject = (Script) groovyClass.newInstance();
-    } catch (final InstantiationException ex) {
-      log.error(ex.getMessage(), ex);
-      if (result != null) {
-        result.setException(ex);
-      }
-      return null;
-    } catch (final IllegalAccessException ex) {
-      log.error(ex.getMessage(), ex);
-      if (result != null) {
-        result.setException(ex);
-      }
-      return null;
-    }
-    if (bindScriptResult == true) {
-      final Binding binding = groovyObject.getBinding();
-      final GroovyResult scriptResult = new GroovyResult();
-      binding.setVariable("scriptResult", scriptResult);
-    }
-    return groovyObject;
   }
 
   public GroovyResult execute(final Script groovyScript)
@@ -37,6 +37,7 @@ import org.projectforge.business.multitenancy.TenantRegistry;
 import org.projectforge.business.multitenancy.TenantRegistryMap;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskDao;
+import org.projectforge.framework.cache.AbstractCache;
 import org.projectforge.framework.persistence.database.SchemaExport;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -150,9 +151,40 @@ public class SystemDao
     } else {
       buf.append("\n\n*** Test FAILED, abandoned tasks detected.");
     }
+    buf.append("\n\n");
+    buf.append(getCacheStatistics());
     return buf.toString();
   }
 
+  /**
+   * @return Refresh statistics (duration of last refresh, age of the cached data and number of refreshs) of the main
+   *         caches.
+   */
+  public String getCacheStatistics()
+  {
+    final TenantRegistry tenantRegistry = TenantRegistryMap.getInstance().getTenantRegistry();
+    final StringBuffer buf = new StringBuffer();
+    buf.append("------------------------------------\n");
+    buf.append("|                                  |\n");
+    buf.append("| Cache statistics                 |\n");
+    buf.append("|                                  |\n");
+    buf.append("------------------------------------\n");
+    appendCacheStatistics(buf, "UserGroupCache", tenantRegistry.getUserGroupCache());
+    appendCacheStatistics(buf, "TaskTree", tenantRegistry.getTaskTree());
+    appendCacheStatistics(buf, "KontoCache", kontoCache);
+    appendCacheStatistics(buf, "KostCache", kostCache);
+    appendCacheStatistics(buf, "RechnungCache", rechnungCache);
+    appendCacheStatistics(buf, "SystemInfoCache", systemInfoCache);
+    return buf.toString();
+  }
+
+  private void appendCacheStatistics(final StringBuffer buf, final String name, final AbstractCache cache)
+  {
+    buf.append(name).append(": last refresh duration=").append(cache.getLastRefreshDuration())
+        .append("ms, age=").append(cache.getAge() / 1000).append("s, refreshs=").append(cache.getRefreshCounter())
+        .append(", background refresh=").append(cache.isBackgroundRefresh()).append("\n");
+  }
+
   /**
    * Refreshes the caches: TaskTree, userGroupCache and kost2.
    * 
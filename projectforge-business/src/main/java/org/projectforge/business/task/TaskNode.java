@@ -43,6 +43,7 @@ import org.projectforge.framework.access.GroupTaskAccessDO;
 import org.projectforge.framework.access.OperationType;
 import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.IdObject;
+import org.projectforge.framework.utils.IntHashMap;
 
 /**
  * Represents a single task as part of the TaskTree. The data of a task node is stored in the database.
@@ -85,6 +86,27 @@ public class TaskNode implements IdObject<Integer>, Serializable
    */
   private final List<GroupTaskAccessDO> groupTaskAccessList = new ArrayList<GroupTaskAccessDO>();
 
+  /**
+   * Number of bits used per access type in the permission masks: one bit for every operation type.
+   */
+  private static final int OPERATION_TYPE_BITS = OperationType.values().length;
+
+  /**
+   * Marks an explicit permission of this node which isn't inherited by the descendant nodes (recursive flag of
+   * GroupTaskAccessDO is false).
+   */
+  private static final int NOT_INHERITABLE_FLAG = 1 << 30;
+
+  private static final IntHashMap<Integer> EMPTY_PERMISSIONS = new IntHashMap<Integer>(0);
+
+  /**
+   * The effective permissions of this node compiled from the explicit group task access of this node and of the ancestor
+   * nodes: group id -> permission mask (one bit per access and operation type). This map is never modified after
+   * publishing, it's replaced completely by {@link #compilePermissions()}. Therefore read access needs no locking and
+   * nodes without own group task access share the map of their parent.
+   */
+  private volatile IntHashMap<Integer> effectivePermissions = EMPTY_PERMISSIONS;
+
   public TaskNode()
   {
   }
@@ -359,7 +381,8 @@ public class TaskNode implements IdObject<Integer>, Serializable
 
   /**
    * Checks the desired permission for the given group to this task. If no GroupTaskAccess is defined for this task for
-   * the given group, hasPermission will be called of the parent task.
+   * the given group, the permission of the parent task is used (if recursive). The permissions are compiled in advance,
+   * so this check is a simple look-up without any locking.
    * 
    * @param groupId The id of the group to check.
    * @param accessType TASK_ACCESS, ...
@@ -369,15 +392,11 @@ public class TaskNode implements IdObject<Integer>, Serializable
    */
   public boolean hasPermission(final Integer groupId, final AccessType accessType, final OperationType opType)
   {
-    final GroupTaskAccessDO groupAccess = getGroupTaskAccess(groupId);
-    if (groupAccess == null) {
-      if (parent != null) {
-        return parent.isPermissionRecursive(groupId) && parent.hasPermission(groupId, accessType, opType);
-      }
-      // This is the root node.
+    final Integer mask = effectivePermissions.get(groupId);
+    if (mask == null) {
       return false;
     }
-    return groupAccess.hasPermission(accessType, opType);
+    return (mask & getPermissionBit(accessType, opType)) != 0;
   }
 
   public boolean isPermissionRecursive(final Integer groupId)
@@ -422,6 +441,79 @@ public class TaskNode implements IdObject<Integer>, Serializable
     }
   }
 
+  /**
+   * Compiles the effective permissions of this node and all descendant nodes. Must be called after the group task
+   * access of this node was changed or after this node was moved to another parent. The caller has to ensure that only
+   * one thread compiles permissions at the same time (readers need no locking).
+   */
+  void compilePermissionsOfSubtree()
+  {
+    compilePermissions();
+    if (this.childs != null) {
+      for (final TaskNode child : this.childs) {
+        child.compilePermissionsOfSubtree();
+      }
+    }
+  }
+
+  /**
+   * Compiles the effective permissions of this node from the effective permissions of the parent node (which have to be
+   * compiled already) and the group task access of this node.
+   */
+  private void compilePermissions()
+  {
+    final IntHashMap<Integer> parentPermissions = parent != null ? parent.effectivePermissions : EMPTY_PERMISSIONS;
+    final List<GroupTaskAccessDO> accessList;
+    synchronized (groupTaskAccessList) {
+      accessList = new ArrayList<GroupTaskAccessDO>(groupTaskAccessList);
+    }
+    if (accessList.isEmpty() == true && isInheritable(parentPermissions) == true) {
+      // Nothing to change, share the permissions of the parent:
+      this.effectivePermissions = parentPermissions;
+      return;
+    }
+    final IntHashMap<Integer> permissions = new IntHashMap<Integer>(parentPermissions.size() + accessList.size());
+    for (final int groupId : parentPermissions.keys()) {
+      final int mask = parentPermissions.get(groupId);
+      if ((mask & NOT_INHERITABLE_FLAG) == 0) {
+        permissions.put(groupId, mask);
+      }
+    }
+    for (final GroupTaskAccessDO access : accessList) {
+      // An explicit access overwrites any inherited permission of the group:
+      permissions.put(access.getGroupId(), getPermissionMask(access));
+    }
+    this.effectivePermissions = permissions.isEmpty() == true ? EMPTY_PERMISSIONS : permissions;
+  }
+
+  private static boolean isInheritable(final IntHashMap<Integer> permissions)
+  {
+    for (final Integer mask : permissions.values()) {
+      if ((mask & NOT_INHERITABLE_FLAG) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int getPermissionMask(final GroupTaskAccessDO access)
+  {
+    int mask = access.isRecursive() == true ? 0 : NOT_INHERITABLE_FLAG;
+    for (final AccessType accessType : AccessType.values()) {
+      for (final OperationType opType : OperationType.values()) {
+        if (access.hasPermission(accessType, opType) == true) {
+          mask |= getPermissionBit(accessType, opType);
+        }
+      }
+    }
+    return mask;
+  }
+
+  private static int getPermissionBit(final AccessType accessType, final OperationType opType)
+  {
+    return 1 << (accessType.ordinal() * OPERATION_TYPE_BITS + opType.ordinal());
+  }
+
   /**
    * Removes the GroupTaskAccessDO for the given group if exists.
    * 
@@ -66,7 +66,12 @@ import org.projectforge.framework.utils.StackTraceHolder;
 
 /**
  * Holds the complete task list in a tree. It will be initialized by the values read from the database. Any changes will
- * be written to this tree and to the database.
+ * be written to this tree and to the database.<br/>
+ * Modifications of tasks, group task access', projects and time sheets are patched incrementally into the tree by the
+ * DAOs (bookable status, access entries, project links and total durations). The total durations are patched after
+ * the commit of the time sheet modifications. Therefore the tree isn't rebuilt periodically, but only if it's expired
+ * explicitly (e. g. after restoring a data base or by the administration action for refreshing the caches after
+ * modifications done outside of the DAOs).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -102,6 +107,11 @@ public class TaskTree extends AbstractCache implements Serializable
    */
   private long timeOfLastModification = 0;
 
+  /**
+   * Incremented on every modification of the tree, used for detecting modifications during a (background) refresh.
+   */
+  private transient volatile long modificationCounter = 0;
+
   /**
    * For faster searching of entries.
    */
@@ -156,10 +166,12 @@ public class TaskTree extends AbstractCache implements Serializable
       node.setParent(root);
     }
     taskMap.put(node.getId(), node);
-    final TimesheetDO timesheet = new TimesheetDO().setTask(task);
-    final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
-    node.bookableForTimesheets = bookable;
-    return addTaskNode(node, parent);
+    modificationCounter++;
+    addTaskNode(node, parent);
+    compilePermissions(node);
+    // The new node may also change the bookable status of the ancestor nodes (e. g. booking only for leafs):
+    updateBookableStatus(node);
+    return node;
   }
 
   /**
@@ -242,8 +254,27 @@ public class TaskTree extends AbstractCache implements Serializable
       throw new InternalErrorException("Could not found task with id " + taskId + " in internalSetProject");
     }
     node.projekt = projekt;
+    modificationCounter++;
   }
 
+  /**
+   * Removes the project of the given task, if the given project is assigned to this task. Will be called by ProjektDao
+   * after deleting a project or assigning a project to another task.
+   *
+   * @param taskId
+   * @param projektId
+   */
+  public void internalRemoveProject(final Integer taskId, final Integer projektId)
+  {
+    final TaskNode node = getTaskNodeById(taskId);
+    if (node == null || node.projekt == null || projektId == null) {
+      return;
+    }
+    if (projektId.equals(node.projekt.getId()) == true) {
+      node.projekt = null;
+      modificationCounter++;
+    }
+  }
   /**
    * recursive = true.
    *
@@ -377,6 +408,30 @@ public class TaskTree extends AbstractCache implements Serializable
     node.totalDuration = -1;
   }
 
+  /**
+   * Adds the given duration to the total duration of the given task. Should be called after inserting or modifying a
+   * time sheet assigned to the given task id (the duration is negative for removed time sheets or time sheets moved to
+   * other tasks). If the total duration of the task isn't yet known, nothing will be done (it's read from the data
+   * base on demand).
+   *
+   * @param taskId
+   * @param duration in seconds.
+   * @see TaskNode#getDuration(TaskTree, boolean)
+   */
+  public void addTotalDuration(final Integer taskId, final long duration)
+  {
+    final TaskNode node = getTaskNodeById(taskId);
+    if (node == null) {
+      log.error("Task id '" + taskId + "' not found.");
+      return;
+    }
+    synchronized (node) {
+      if (node.totalDuration >= 0) {
+        node.totalDuration += duration;
+      }
+    }
+  }
+
   /**
    * After changing a task this method will be called by TaskDao for updating the task and the task tree.
    *
@@ -392,6 +447,7 @@ public class TaskTree extends AbstractCache implements Serializable
       return addTaskNode(task);
     }
     node.setTask(task);
+    modificationCounter++;
     if (task.getParentTaskId() != null && task.getParentTaskId().equals(node.getParent().getId()) == false) {
       if (log.isDebugEnabled() == true) {
         log.debug("Task hierarchy was changed for task: " + task);
@@ -402,11 +458,55 @@ public class TaskTree extends AbstractCache implements Serializable
       final TaskNode newParent = getTaskNodeById(task.getParentTaskId());
       node.setParent(newParent);
       newParent.addChild(node);
+      // The inherited permissions of the moved sub tree may differ:
+      compilePermissions(node);
+      // The old parent may be a leaf now:
+      updateBookableStatus(oldParent);
     }
+    // Status and booking status of the task are inherited by the descendant nodes:
+    updateBookableStatus(node);
     updateTimeOfLastModification();
     return node;
   }
 
+  /**
+   * Recalculates the bookable status of the given node, all of its descendant nodes and all of its ancestor nodes. The
+   * status of a node depends on the ancestor nodes (closed, deleted etc.) and on the descendant nodes (leaf nodes and
+   * order positions).
+   *
+   * @param node
+   */
+  private void updateBookableStatus(final TaskNode node)
+  {
+    if (node == null) {
+      return;
+    }
+    final TimesheetDO timesheet = new TimesheetDO();
+    timesheet.setTenant(tenant);
+    updateBookableStatusOfSubtree(timesheet, node);
+    TaskNode ancestor = node.getParent();
+    while (ancestor != null) {
+      updateBookableStatus(timesheet, ancestor);
+      ancestor = ancestor.getParent();
+    }
+  }
+
+  private void updateBookableStatusOfSubtree(final TimesheetDO timesheet, final TaskNode node)
+  {
+    updateBookableStatus(timesheet, node);
+    if (node.hasChilds() == true) {
+      for (final TaskNode child : node.getChilds()) {
+        updateBookableStatusOfSubtree(timesheet, child);
+      }
+    }
+  }
+
+  private void updateBookableStatus(final TimesheetDO timesheet, final TaskNode node)
+  {
+    timesheet.setTask(node.getTask());
+    node.bookableForTimesheets = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
+  }
+
   /**
    * Sets an explicit task group access for the given task (stored in the given groupTaskAccess). This method will be
    * called by AccessDao after inserting or updating GroupTaskAccess to the database.
@@ -419,6 +519,8 @@ public class TaskTree extends AbstractCache implements Serializable
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
     node.setGroupTaskAccess(groupTaskAccess);
+    compilePermissions(node);
+    modificationCounter++;
   }
 
   /**
@@ -433,6 +535,22 @@ public class TaskTree extends AbstractCache implements Serializable
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
     node.removeGroupTaskAccess(groupTaskAccess.getGroupId());
+    compilePermissions(node);
+    modificationCounter++;
+  }
+
+  /**
+   * Recompiles the effective permissions of the given node and its descendant nodes after changing group task access or
+   * the task hierarchy. Writers are serialized, the permission checks itself need no locking.
+   *
+   * @param node
+   * @see TaskNode#hasPermission(Integer, org.projectforge.framework.access.AccessType, OperationType)
+   */
+  private void compilePermissions(final TaskNode node)
+  {
+    synchronized (this) {
+      node.compilePermissionsOfSubtree();
+    }
   }
 
   public long getTimeOfLastModification()
@@ -470,7 +588,8 @@ public class TaskTree extends AbstractCache implements Serializable
 
   public TaskTree()
   {
-    super(AbstractCache.TICKS_PER_HOUR);
+    // All modifications are patched incrementally, so the tree never expires by time:
+    super(Long.MAX_VALUE);
   }
 
   public void setTaskDao(final TaskDao taskDao)
@@ -786,12 +905,12 @@ public class TaskTree extends AbstractCache implements Serializable
   /**
    * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
    */
-  private void readTotalDurations()
+  private void readTotalDurations(final Map<Integer, TaskNode> nTaskMap)
   {
     final List<Object[]> list = taskDao.readTotalDurations();
     for (final Object[] res : list) {
       final Integer taskId = (Integer) res[1];
-      final TaskNode node = getTaskNodeById(taskId);
+      final TaskNode node = nTaskMap.get(taskId);
       if (node == null) {
         log.warn("Task not found: " + taskId);
       } else {
@@ -831,7 +950,9 @@ public class TaskTree extends AbstractCache implements Serializable
    * All tasks from database will be read and cached into this TaskTree. Also all explicit group task access' will be
    * read from database and will be cached in this tree (implicit access' will be created too).<br/>
    * The generation of the task tree will be done manually, not by hibernate because the task hierarchy is very
-   * sensible. Manipulations of the task tree should be done carefully for single task nodes.
+   * sensible. Manipulations of the task tree should be done carefully for single task nodes.<br/>
+   * The new tree is built in local variables and published at the end, so readers get the old tree until the refresh is
+   * done (needed for background refresh).
    *
    * @see org.projectforge.framework.cache.AbstractCache#refresh()
    */
@@ -846,8 +967,9 @@ public class TaskTree extends AbstractCache implements Serializable
       log.info(sth);
       return;
     }
+    long modificationCounterBefore = this.modificationCounter;
     TaskNode newRoot = null;
-    taskMap = new HashMap<Integer, TaskNode>();
+    final Map<Integer, TaskNode> nTaskMap = new HashMap<Integer, TaskNode>();
     final List<TaskDO> taskList;
     if (tenant != null) {
       taskList = taskDao.internalLoadAll(tenant);
@@ -859,7 +981,7 @@ public class TaskTree extends AbstractCache implements Serializable
     for (final TaskDO task : taskList) {
       node = new TaskNode();
       node.setTask(task);
-      taskMap.put(node.getTaskId(), node);
+      nTaskMap.put(node.getTaskId(), node);
       if (node.isRootNode() == true) {
         if (newRoot != null) {
           log.error("Duplicate root node found: " + newRoot.getId() + " and " + node.getId());
@@ -885,21 +1007,23 @@ public class TaskTree extends AbstractCache implements Serializable
       }
       rootTask.setTitle("root");
       rootTask.setTenant(tenant);
+      // Publish the map before saving, because internalSave adds the root task to this tree:
+      this.taskMap = nTaskMap;
       taskDao.internalSave(rootTask);
+      modificationCounterBefore = this.modificationCounter;
       newRoot = new TaskNode();
       newRoot.setTask(rootTask);
-      taskMap.put(newRoot.getTaskId(), newRoot);
+      nTaskMap.put(newRoot.getTaskId(), newRoot);
     }
-    this.root = newRoot;
     if (log.isDebugEnabled() == true) {
       log.debug("Creating tree for " + taskList.size() + " tasks ...");
     }
     for (final TaskDO task : taskList) {
       TaskNode parentNode = null;
-      node = taskMap.get(task.getId());
+      node = nTaskMap.get(task.getId());
       final Integer parentId = task.getParentTaskId();
       if (parentId != null) {
-        parentNode = taskMap.get(parentId);
+        parentNode = nTaskMap.get(parentId);
       }
       // log.debug("Processing node: " + node.getId() + ", parent: " + parentId);
       if (parentNode != null) {
@@ -912,18 +1036,24 @@ public class TaskTree extends AbstractCache implements Serializable
     }
 
     if (log.isDebugEnabled() == true) {
-      log.debug(this.root);
+      log.debug(newRoot);
     }
 
     // Now read all explicit group task access' from the database:
     final List<GroupTaskAccessDO> accessList = accessDao.internalLoadAll();
     for (final GroupTaskAccessDO access : accessList) {
-      node = taskMap.get(access.getTaskId());
+      node = nTaskMap.get(access.getTaskId());
       node.setGroupTaskAccess(access);
       if (log.isDebugEnabled() == true) {
         log.debug(access.toString());
       }
     }
+    // Compile the effective permissions of all nodes (root node and any orphaned node):
+    for (final TaskNode taskNode : nTaskMap.values()) {
+      if (taskNode.getParent() == null) {
+        taskNode.compilePermissionsOfSubtree();
+      }
+    }
     // Now read all projects with their references to tasks:
     final List<ProjektDO> projects = projektDao.internalLoadAll();
     if (projects != null) {
@@ -931,7 +1061,7 @@ public class TaskTree extends AbstractCache implements Serializable
         if (project.isDeleted() == true || project.getTaskId() == null) {
           continue;
         }
-        node = taskMap.get(project.getTaskId());
+        node = nTaskMap.get(project.getTaskId());
         if (node == null) {
           log.error("Oups, should not occur: project references a non existing task: " + project);
         } else {
@@ -939,18 +1069,36 @@ public class TaskTree extends AbstractCache implements Serializable
         }
       }
     }
+    readTotalDurations(nTaskMap);
+    // Take the bookable status of the current tree until it's recalculated below for the new tree:
+    final Map<Integer, TaskNode> oldTaskMap = this.taskMap;
+    if (oldTaskMap != null && oldTaskMap != nTaskMap) {
+      for (final TaskNode newNode : nTaskMap.values()) {
+        final TaskNode oldNode = oldTaskMap.get(newNode.getId());
+        if (oldNode != null) {
+          newNode.bookableForTimesheets = oldNode.bookableForTimesheets;
+        }
+      }
+    }
+    // Now publish the new tree:
+    synchronized (this) {
+      this.taskMap = nTaskMap;
+      this.root = newRoot;
+      refreshOrderPositionReferences();
+    }
     if (log.isDebugEnabled() == true) {
       log.debug(this.toString());
     }
-    readTotalDurations();
-    refreshOrderPositionReferences();
-    // Now update the status: bookable for time sheets:
+    // Now update the status: bookable for time sheets (the check needs the published tree):
     final TimesheetDO timesheet = new TimesheetDO();
+    // Tenant is needed for getting this task tree (the refresh may run without user context in background):
+    timesheet.setTenant(tenant);
     for (final TaskDO task : taskList) {
-      node = taskMap.get(task.getId());
-      timesheet.setTask(task);
-      final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
-      node.bookableForTimesheets = bookable;
+      updateBookableStatus(timesheet, nTaskMap.get(task.getId()));
+    }
+    if (modificationCounterBefore != this.modificationCounter) {
+      log.info("Task tree was modified during refresh, tree will be refreshed again on next access.");
+      setExpired();
     }
     log.info("Initializing task tree done.");
   }
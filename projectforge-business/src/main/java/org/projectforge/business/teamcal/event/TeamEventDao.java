@@ -52,7 +52,6 @@ import org.projectforge.business.teamcal.event.model.TeamEvent;
 import org.projectforge.business.teamcal.event.model.TeamEventAttendeeDO;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
 import org.projectforge.business.teamcal.externalsubscription.TeamEventExternalSubscriptionCache;
-import org.projectforge.business.teamcal.service.TeamCalServiceImpl;
 import org.projectforge.business.user.UserRightId;
 import org.projectforge.framework.calendar.CalendarUtils;
 import org.projectforge.framework.calendar.ICal4JUtils;
@@ -102,6 +101,9 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
   @Autowired
   private TeamEventExternalSubscriptionCache teamEventExternalSubscriptionCache;
 
+  @Autowired
+  private TeamEventRecurrenceCache teamEventRecurrenceCache;
+
   @Autowired
   private PfEmgrFactory emgrFac;
 
@@ -235,8 +237,8 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
           result.add(eventDO);
           continue;
         }
-        final Collection<TeamEvent> events = TeamCalServiceImpl.getRecurrenceEvents(teamEventFilter.getStartDate(),
-            teamEventFilter.getEndDate(), eventDO, timeZone);
+        final Collection<TeamEvent> events = teamEventRecurrenceCache.getRecurrenceEvents(
+            teamEventFilter.getStartDate(), teamEventFilter.getEndDate(), eventDO, timeZone);
         if (events == null) {
           continue;
         }
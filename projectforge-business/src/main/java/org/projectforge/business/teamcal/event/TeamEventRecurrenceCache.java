@@ -0,0 +1,157 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.teamcal.event;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.projectforge.business.teamcal.event.model.TeamEvent;
+import org.projectforge.business.teamcal.event.model.TeamEventDO;
+import org.projectforge.business.teamcal.service.TeamCalServiceImpl;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.time.DateHelper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the start dates of recurrence events (expanded by ical4j) of recurring events. The recurrences are calculated
+ * for whole months, so the different time periods of calendar views share the cached entries. The key contains all
+ * fields of the event the recurrences depend on (recurrence rule, ex-dates, start date etc.), so any modification of an
+ * event results in a new calculation. Outdated entries will be removed (least recently used) or on refresh (every
+ * hour).
+ */
+@Component
+public class TeamEventRecurrenceCache extends AbstractCache
+{
+  private static final long serialVersionUID = -8474361370937711735L;
+
+  private static Logger log = Logger.getLogger(TeamEventRecurrenceCache.class);
+
+  private static final int MAX_ENTRIES = 10000;
+
+  private final Map<String, List<Date>> recurrenceDatesMap = new LinkedHashMap<String, List<Date>>(256, 0.75f, true)
+  {
+    private static final long serialVersionUID = 2797405312424355398L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, List<Date>> eldest)
+    {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  /**
+   * Same as {@link TeamCalServiceImpl#getRecurrenceEvents(Date, Date, TeamEventDO, TimeZone)}, but the recurrences are
+   * calculated for the whole months of the given time period and taken from the cache if available. Therefore
+   * recurrence events outside the given time period (but inside the months) may be returned.
+   *
+   * @param startDate
+   * @param endDate
+   * @param event
+   * @param timeZone
+   * @return The recurrence events or null, if the given event has no recurrence.
+   */
+  public Collection<TeamEvent> getRecurrenceEvents(final Date startDate, final Date endDate, final TeamEventDO event,
+      final TimeZone timeZone)
+  {
+    if (event.hasRecurrence() == false) {
+      return null;
+    }
+    if (startDate == null || endDate == null) {
+      return TeamCalServiceImpl.getRecurrenceEvents(startDate, endDate, event, timeZone);
+    }
+    checkRefresh();
+    final Date periodStart = getBeginOfMonth(startDate, 0);
+    final Date periodEnd = getBeginOfMonth(endDate, 1);
+    final String key = getKey(periodStart, periodEnd, event, timeZone);
+    List<Date> dates;
+    synchronized (recurrenceDatesMap) {
+      dates = recurrenceDatesMap.get(key);
+    }
+    if (dates == null) {
+      // Calculate outside the lock, concurrent calculations of the same entry are harmless:
+      dates = TeamCalServiceImpl.getRecurrenceDates(periodStart, periodEnd, event, timeZone);
+      if (dates == null) {
+        return null;
+      }
+      dates = Collections.unmodifiableList(dates);
+      synchronized (recurrenceDatesMap) {
+        recurrenceDatesMap.put(key, dates);
+      }
+    }
+    return TeamCalServiceImpl.getRecurrenceEvents(dates, event, timeZone);
+  }
+
+  private Date getBeginOfMonth(final Date date, final int addMonths)
+  {
+    final Calendar cal = DateHelper.getUTCCalendar();
+    cal.setTime(date);
+    cal.set(Calendar.DAY_OF_MONTH, 1);
+    cal.set(Calendar.HOUR_OF_DAY, 0);
+    cal.set(Calendar.MINUTE, 0);
+    cal.set(Calendar.SECOND, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    cal.add(Calendar.MONTH, addMonths);
+    return cal.getTime();
+  }
+
+  private String getKey(final Date periodStart, final Date periodEnd, final TeamEventDO event,
+      final TimeZone timeZone)
+  {
+    // Events of external subscriptions have negative ids unique only per calendar:
+    return new StringBuilder()
+        .append(event.getCalendarId()).append('|')
+        .append(event.getId()).append('|')
+        .append(event.getStartDate() != null ? event.getStartDate().getTime() : null).append('|')
+        .append(event.isAllDay()).append('|')
+        .append(event.getRecurrenceRule()).append('|')
+        .append(event.getRecurrenceExDate()).append('|')
+        .append(event.getTimeZone().getID()).append('|')
+        .append(timeZone.getID()).append('|')
+        .append(periodStart.getTime()).append('|')
+        .append(periodEnd.getTime()).toString();
+  }
+
+  /**
+   * Clears the cache.
+   *
+   * @see org.projectforge.framework.cache.AbstractCache#refresh()
+   */
+  @Override
+  protected void refresh()
+  {
+    synchronized (recurrenceDatesMap) {
+      if (log.isDebugEnabled() == true) {
+        log.debug("Clearing " + recurrenceDatesMap.size() + " cached recurrences of team events.");
+      }
+      recurrenceDatesMap.clear();
+    }
+  }
+}
@@ -33,7 +33,10 @@ import org.projectforge.business.teamcal.event.TeamEventDao;
 import org.projectforge.business.teamcal.event.model.TeamEventDO;
 
 /**
- * Own abstraction of a RangeMap. You can add TeamEvents and access them through their start and end date.
+ * Own abstraction of a RangeMap. You can add TeamEvents and access them through their start and end date. <br/>
+ * After adding all events, {@link #sort()} builds an immutable index (events sorted by start date and the running
+ * maximum of the end dates), so {@link #getResultList(Long, Long, boolean)} needs no lock and finds the matching events
+ * by binary search.
  * 
  * @author Johannes Unterstein (j.unterstein@micromata.de)
  */
@@ -44,30 +47,30 @@ public class SubscriptionHolder implements Serializable
   // one day in milliseconds
   private static final int ONE_DAY = 86400000; // 60*60*24*1000
 
-  // private static final long MIN_DATE_1800 = lendar
-
   private final List<TeamEventDO> eventList;
 
-  private boolean sorted;
+  private volatile EventIndex index;
 
   public SubscriptionHolder()
   {
     eventList = new ArrayList<TeamEventDO>();
-    sorted = false;
   }
 
   public void clear()
   {
     eventList.clear();
-    sorted = false;
+    index = null;
   }
 
   public void add(final TeamEventDO value)
   {
     eventList.add(value);
-    sorted = false;
+    index = null;
   }
 
+  /**
+   * Builds the index of all added events. Should be called after adding all events and before publishing this holder.
+   */
   public void sort()
   {
     // the following comparator compares by startDate
@@ -76,39 +79,33 @@ public class SubscriptionHolder implements Serializable
       @Override
       public int compare(final TeamEventDO o1, final TeamEventDO o2)
       {
-        if ((o1 == null || o1.getStartDate() == null) && (o2 == null || o2.getStartDate() == null)) {
-          return 0;
-        }
-        if (o1 == null || o1.getStartDate() == null) {
-          return -1;
-        }
-        if (o2 == null || o2.getStartDate() == null) {
-          return 1;
-        }
-        // at this point, no NPE could occur
-        return o1.getStartDate().compareTo(o2.getStartDate());
+        return Long.compare(getStartTime(o1), getStartTime(o2));
       }
     };
-    Collections.sort(eventList, comparator);
-    sorted = true;
+    final List<TeamEventDO> sortedList = new ArrayList<TeamEventDO>(eventList);
+    Collections.sort(sortedList, comparator);
+    index = new EventIndex(sortedList);
   }
 
   public List<TeamEventDO> getResultList(final Long startTime, final Long endTime, final boolean minimalAccess)
   {
-    // sorting should by synchronized
-    synchronized (this) {
-      if (sorted == false) {
-        sort();
-      }
+    EventIndex current = index;
+    if (current == null) {
+      sort();
+      current = index;
     }
+    // Following period extension is needed due to all day events which are stored in UTC. The additional events in the
+    // result list not matching the time period have to be removed by caller!
+    final long extendedStartTime = startTime - ONE_DAY;
+    final long extendedEndTime = endTime + ONE_DAY;
+    // Events before fromIndex end before the time period, events beginning with toIndex start after the end date.
+    final int fromIndex = Math.min(current.firstIndexOfMaxEndTimeAtLeast(extendedStartTime),
+        current.firstIndexOfStartTimeAtLeast(extendedStartTime));
+    final int toIndex = current.firstIndexOfStartTimeAtLeast(endTime + 1);
     final List<TeamEventDO> result = new ArrayList<TeamEventDO>();
-    for (final TeamEventDO teamEventDo : eventList) {
-      // all our events are sorted, if we find a event which starts
-      // after the end date, we can break this iteration
-      if (teamEventDo.getStartDate().getTime() > endTime) {
-        break;
-      }
-      if (matches(teamEventDo, startTime, endTime) == true) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      if (matches(current.startTimes[i], current.endTimes[i], extendedStartTime, extendedEndTime) == true) {
+        final TeamEventDO teamEventDo = current.events[i];
         if (minimalAccess == true) {
           result.add(teamEventDo.createMinimalCopy());
         } else {
@@ -125,13 +122,9 @@ public class SubscriptionHolder implements Serializable
     return eventList.size();
   }
 
-  private boolean matches(final TeamEventDO teamEventDo, Long startTime, Long endTime)
+  private static boolean matches(final long eventStartTime, final long eventEndTime, final long startTime,
+      final long endTime)
   {
-    // Following period extension is needed due to all day events which are stored in UTC. The additional events in the result list not
-    // matching the time period have to be removed by caller!
-    startTime = startTime - ONE_DAY;
-    endTime = endTime + ONE_DAY;
-
     // the following implementation is inspired by TeamEventDao with the following lines:
 
     // queryFilter.add(Restrictions.or(
@@ -139,10 +132,6 @@ public class SubscriptionHolder implements Serializable
     // // get events whose duration overlap with chosen duration.
     // (Restrictions.and(Restrictions.le("startDate", startDate), Restrictions.ge("endDate", endDate)))));
 
-    final Long eventStartTime = teamEventDo.getStartDate() != null ? teamEventDo.getStartDate().getTime()
-        : TeamEventDao.MIN_DATE_1800;
-    final Long eventEndTime = teamEventDo.getEndDate() != null ? teamEventDo.getEndDate().getTime()
-        : TeamEventDao.MAX_DATE_3000;
     if (between(eventStartTime, startTime, endTime) || between(eventEndTime, startTime, endTime)) {
       return true;
     }
@@ -152,8 +141,80 @@ public class SubscriptionHolder implements Serializable
     return false;
   }
 
-  private boolean between(final Long searchTime, final Long startTime, final Long endTime)
+  private static boolean between(final long searchTime, final long startTime, final long endTime)
   {
     return searchTime >= startTime && searchTime <= endTime;
   }
+
+  private static long getStartTime(final TeamEventDO event)
+  {
+    return event != null && event.getStartDate() != null ? event.getStartDate().getTime() : TeamEventDao.MIN_DATE_1800;
+  }
+
+  private static long getEndTime(final TeamEventDO event)
+  {
+    return event != null && event.getEndDate() != null ? event.getEndDate().getTime() : TeamEventDao.MAX_DATE_3000;
+  }
+
+  /**
+   * Immutable index of events sorted by start time. maxEndTimes[i] is the maximum end time of the events 0..i, so it's
+   * ascending and events ending before a given time may be skipped by binary search.
+   */
+  private static class EventIndex implements Serializable
+  {
+    private static final long serialVersionUID = -2446016563963617372L;
+
+    private final TeamEventDO[] events;
+
+    private final long[] startTimes;
+
+    private final long[] endTimes;
+
+    private final long[] maxEndTimes;
+
+    private EventIndex(final List<TeamEventDO> sortedList)
+    {
+      final int size = sortedList.size();
+      events = sortedList.toArray(new TeamEventDO[size]);
+      startTimes = new long[size];
+      endTimes = new long[size];
+      maxEndTimes = new long[size];
+      long maxEndTime = Long.MIN_VALUE;
+      for (int i = 0; i < size; i++) {
+        startTimes[i] = getStartTime(events[i]);
+        endTimes[i] = getEndTime(events[i]);
+        maxEndTime = Math.max(maxEndTime, endTimes[i]);
+        maxEndTimes[i] = maxEndTime;
+      }
+    }
+
+    private int firstIndexOfStartTimeAtLeast(final long time)
+    {
+      return firstIndexOfAtLeast(startTimes, time);
+    }
+
+    private int firstIndexOfMaxEndTimeAtLeast(final long time)
+    {
+      return firstIndexOfAtLeast(maxEndTimes, time);
+    }
+
+    /**
+     * @return The first index of the ascending array with a value greater or equal than the given time, or the length
+     *         of the array if no such value exists.
+     */
+    private static int firstIndexOfAtLeast(final long[] values, final long time)
+    {
+      int low = 0;
+      int high = values.length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (values[mid] < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
 }
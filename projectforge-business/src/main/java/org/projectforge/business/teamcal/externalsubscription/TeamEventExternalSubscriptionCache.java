@@ -25,11 +25,24 @@ package org.projectforge.business.teamcal.externalsubscription;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.criterion.Restrictions;
@@ -61,10 +74,52 @@ public class TeamEventExternalSubscriptionCache
 
   private static final long MAX_WAIT_MS_AFTER_FAILED_UPDATE = 1000 * 60 * 60 * 24; // 24 h
 
-  private final Map<Integer, TeamEventSubscription> subscriptions = new HashMap<Integer, TeamEventSubscription>();
+  /**
+   * Maximum number of subscriptions updated (downloaded and parsed) at the same time.
+   */
+  private static final int MAX_PARALLEL_UPDATES = 4;
+
+  /**
+   * Maximum time for all updates of one run of {@link #updateCache()}. Updates not finished by then are cancelled (the
+   * running downloads are aborted). The download itself is also limited by the connection and read timeouts of
+   * {@link TeamEventSubscription}.
+   */
+  private static final long UPDATE_TIMEOUT_MS = 1000 * 60 * 3; // 3 min
+
+  private static final ExecutorService updateExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_UPDATES,
+      new ThreadFactory()
+      {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+          final Thread thread = new Thread(runnable, "ExternalSubscription-update-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  private final Map<Integer, TeamEventSubscription> subscriptions = new ConcurrentHashMap<Integer, TeamEventSubscription>();
+
+  /**
+   * Ids of the calendars of the currently running updates. A calendar is never updated by two threads at the same time.
+   */
+  private final Set<Integer> updatesInProgress = Collections
+      .newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
 
   private static final Long SUBSCRIPTION_UPDATE_TIME = 5L * 60 * 1000; // 5 min
 
+  /**
+   * Number of updates cancelled because of exceeding {@link #UPDATE_TIMEOUT_MS} (for monitoring).
+   */
+  private final AtomicLong timedOutUpdates = new AtomicLong();
+
+  /**
+   * Duration of the last run of {@link #updateCache()} in ms (for monitoring).
+   */
+  private volatile long lastUpdateCacheDuration;
+
   private transient TeamCalRight teamCalRight;
 
   @Autowired
@@ -78,16 +133,57 @@ public class TeamEventExternalSubscriptionCache
 
   private TeamCalServiceImpl teamEventConverter;
 
+  /**
+   * Updates all subscribed calendars which are due. Up to {@link #MAX_PARALLEL_UPDATES} calendars are updated in
+   * parallel, so a slow server doesn't delay the updates of the other calendars.
+   */
   public void updateCache()
   {
     log.info("Start updating TeamEventExternalSubscriptionCache.");
+    final long begin = System.currentTimeMillis();
     final QueryFilter filter = new QueryFilter();
     filter.add(Restrictions.eq("externalSubscription", true));
     // internalGetList is valid at this point, because we are calling this method in an asyn thread
     final List<TeamCalDO> subscribedCalendars = teamCalDao.internalGetList(filter);
 
+    final Map<Integer, Future<?>> futures = new LinkedHashMap<Integer, Future<?>>();
     for (final TeamCalDO calendar : subscribedCalendars) {
-      updateCache(calendar);
+      if (calendar.getId() == null || isUpdateNeeded(calendar) == false) {
+        continue;
+      }
+      futures.put(calendar.getId(), updateExecutor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          update(calendar);
+        }
+      }));
+    }
+    // All updates share one deadline, so the run doesn't take longer than UPDATE_TIMEOUT_MS:
+    final long deadline = begin + UPDATE_TIMEOUT_MS;
+    for (final Map.Entry<Integer, Future<?>> entry : futures.entrySet()) {
+      try {
+        entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (final TimeoutException ex) {
+        log.warn("Update of subscribed calendar #" + entry.getKey() + " not finished after "
+            + (UPDATE_TIMEOUT_MS / 1000) + "s, cancelled.");
+        timedOutUpdates.incrementAndGet();
+        entry.getValue().cancel(true);
+        final TeamEventSubscription subscription = subscriptions.get(entry.getKey());
+        if (subscription != null) {
+          subscription.abortUpdate();
+        }
+      } catch (final CancellationException ex) {
+        // Shouldn't occur, the futures are only cancelled here.
+      } catch (final InterruptedException ex) {
+        log.error("Interrupted while waiting for update of subscribed calendar #" + entry.getKey() + ".");
+        Thread.currentThread().interrupt();
+        break;
+      } catch (final ExecutionException ex) {
+        log.error("Exception while updating subscribed calendar #" + entry.getKey() + ": " + ex.getCause().getMessage(),
+            ex.getCause());
+      }
     }
 
     final List<Integer> idsToRemove = new ArrayList<Integer>();
@@ -98,6 +194,9 @@ public class TeamEventExternalSubscriptionCache
       }
     }
     removeCalendarsFromCache(idsToRemove);
+    lastUpdateCacheDuration = System.currentTimeMillis() - begin;
+    log.info("Updating TeamEventExternalSubscriptionCache of " + futures.size() + " calendars took "
+        + lastUpdateCacheDuration + " ms.");
   }
 
   private void removeCalendarsFromCache(final List<Integer> idsToRemove)
@@ -123,9 +222,9 @@ public class TeamEventExternalSubscriptionCache
   }
 
   /**
-   * @param teamCalDao
    * @param calendar
-   * @param force      If true then update is forced (independent of last update time and refresh interval).
+   * @param force If true then update is forced (independent of last update time, refresh interval and failed
+   *          updates).
    */
   public void updateCache(final TeamCalDO calendar, final boolean force)
   {
@@ -134,42 +233,121 @@ public class TeamEventExternalSubscriptionCache
       log.error("Oups, calId is null (can't update subscription): " + calendar);
       return;
     }
-    TeamEventSubscription teamEventSubscription = subscriptions.get(calId);
-    final Long now = System.currentTimeMillis();
-    final Long addedTime = calendar.getExternalSubscriptionUpdateInterval() == null ? SUBSCRIPTION_UPDATE_TIME
-        : 1000L * calendar
-        .getExternalSubscriptionUpdateInterval();
-    if (teamEventSubscription == null) {
-      // First update of subscribed calendar:
-      teamEventSubscription = new TeamEventSubscription();
-      subscriptions.put(calendar.getId(), teamEventSubscription);
+    if (force == false && isUpdateNeeded(calendar) == false) {
+      return;
+    }
+    update(calendar);
+  }
+
+  private void update(final TeamCalDO calendar)
+  {
+    final Integer calId = calendar.getId();
+    if (updatesInProgress.add(calId) == false) {
+      log.info("Update of subscribed calendar #" + calId + " is already in progress.");
+      return;
+    }
+    try {
+      TeamEventSubscription teamEventSubscription = subscriptions.get(calId);
+      if (teamEventSubscription == null) {
+        // First update of subscribed calendar:
+        teamEventSubscription = new TeamEventSubscription();
+        subscriptions.put(calId, teamEventSubscription);
+      }
       teamEventSubscription.update(teamCalDao, calendar, getTeamEventConverter());
-    } else if (force == true || teamEventSubscription.getLastUpdated() == null
-        || teamEventSubscription.getLastUpdated() + addedTime <= now) {
-      if (force == false && teamEventSubscription.getNumberOfFailedUpdates() > 0) {
-        // Errors occurred and update not forced. Don't update e. g. every 5 minutes if a permanently error occurs.
-        Long lastRun = teamEventSubscription.getLastUpdated();
-        if (lastRun == null) {
-          lastRun = teamEventSubscription.getLastFailedUpdate();
-        }
-        if (lastRun == null || lastRun + teamEventSubscription.getNumberOfFailedUpdates() * addedTime <= now) {
-          teamEventSubscription.update(teamCalDao, calendar, getTeamEventConverter());
-        } else if (lastRun + MAX_WAIT_MS_AFTER_FAILED_UPDATE > now) {
-          log.info("Try to update subscribed calendar after "
-              + (MAX_WAIT_MS_AFTER_FAILED_UPDATE / 1000 / 60 / 60)
-              + " hours. Number of failed updates: "
-              + teamEventSubscription.getNumberOfFailedUpdates()
-              + ", time of last successful update (UTC): "
-              + (teamEventSubscription.getLastUpdated() != null
-              ? DateHelper.formatAsUTC(new Date(teamEventSubscription.getLastUpdated()))
-              : "-"));
-          teamEventSubscription.update(teamCalDao, calendar, getTeamEventConverter());
-        }
-      } else {
-        // update the calendar
-        teamEventSubscription.update(teamCalDao, calendar, getTeamEventConverter());
+    } finally {
+      updatesInProgress.remove(calId);
+    }
+  }
+
+  /**
+   * An update is needed if the refresh interval of the calendar is exceeded since the last successful update. After
+   * failed updates the refresh interval is multiplied by the number of failed updates (but not more than 24 hours), so
+   * permanently failing servers aren't requested e. g. every 5 minutes.
+   */
+  private boolean isUpdateNeeded(final TeamCalDO calendar)
+  {
+    final TeamEventSubscription teamEventSubscription = subscriptions.get(calendar.getId());
+    if (teamEventSubscription == null) {
+      return true;
+    }
+    final long now = System.currentTimeMillis();
+    final long addedTime = calendar.getExternalSubscriptionUpdateInterval() == null ? SUBSCRIPTION_UPDATE_TIME
+        : 1000L * calendar.getExternalSubscriptionUpdateInterval();
+    final int numberOfFailedUpdates = teamEventSubscription.getNumberOfFailedUpdates();
+    if (numberOfFailedUpdates > 0 && teamEventSubscription.getLastFailedUpdate() != null) {
+      final long waitTime = Math.min(numberOfFailedUpdates * addedTime, MAX_WAIT_MS_AFTER_FAILED_UPDATE);
+      if (teamEventSubscription.getLastFailedUpdate() + waitTime > now) {
+        return false;
+      }
+      log.info("Try to update subscribed calendar #" + calendar.getId() + " after "
+          + (waitTime / 1000 / 60)
+          + " minutes. Number of failed updates: "
+          + numberOfFailedUpdates
+          + ", time of last successful update (UTC): "
+          + (teamEventSubscription.getLastUpdated() != null
+          ? DateHelper.formatAsUTC(new Date(teamEventSubscription.getLastUpdated()))
+          : "-"));
+      return true;
+    }
+    return teamEventSubscription.getLastUpdated() == null
+        || teamEventSubscription.getLastUpdated() + addedTime <= now;
+  }
+
+  /**
+   * For monitoring: the subscription contains the duration of the last update and the number of failed updates.
+   *
+   * @param calendarId
+   * @return The subscription of the given calendar or null, if the calendar isn't subscribed or not yet updated.
+   */
+  public TeamEventSubscription getSubscription(final Integer calendarId)
+  {
+    return subscriptions.get(calendarId);
+  }
+
+  /**
+   * For monitoring.
+   *
+   * @return The number of subscribed calendars held by this cache.
+   */
+  public int getNumberOfSubscriptions()
+  {
+    return subscriptions.size();
+  }
+
+  /**
+   * For monitoring.
+   *
+   * @return The number of subscribed calendars whose last update failed.
+   */
+  public int getNumberOfFailingSubscriptions()
+  {
+    int counter = 0;
+    for (final TeamEventSubscription subscription : subscriptions.values()) {
+      if (subscription.getNumberOfFailedUpdates() > 0) {
+        ++counter;
       }
     }
+    return counter;
+  }
+
+  /**
+   * For monitoring.
+   *
+   * @return The number of updates cancelled because they exceeded the time limit of {@link #updateCache()}.
+   */
+  public long getNumberOfTimedOutUpdates()
+  {
+    return timedOutUpdates.get();
+  }
+
+  /**
+   * For monitoring.
+   *
+   * @return The duration of the last run of {@link #updateCache()} in ms.
+   */
+  public long getLastUpdateCacheDuration()
+  {
+    return lastUpdateCacheDuration;
   }
 
   public boolean isExternalSubscribedCalendar(final Integer calendarId)
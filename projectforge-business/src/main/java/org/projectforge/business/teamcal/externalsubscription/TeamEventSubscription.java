@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.GetMethod;
@@ -63,19 +64,38 @@ public class TeamEventSubscription implements Serializable
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(TeamEventSubscription.class);
 
-  private Integer teamCalId;
+  // All fields are written by the updating thread and read by other threads (requests, monitoring), so they're
+  // volatile. The cache guarantees that only one thread updates a subscription at the same time.
 
-  private SubscriptionHolder subscription;
+  private volatile Integer teamCalId;
 
-  private List<TeamEventDO> recurrenceEvents;
+  private volatile SubscriptionHolder subscription;
 
-  private String currentInitializedHash;
+  private volatile List<TeamEventDO> recurrenceEvents;
 
-  private Long lastUpdated, lastFailedUpdate;
+  private volatile String currentInitializedHash;
 
-  private int numberOfFailedUpdates = 0;
+  private volatile Long lastUpdated, lastFailedUpdate;
 
-  private String lastErrorMessage;
+  private volatile int numberOfFailedUpdates = 0;
+
+  private volatile String lastErrorMessage;
+
+  private volatile Long lastUpdateDuration;
+
+  /**
+   * ETag and Last-Modified header of the last download, used for conditional requests.
+   */
+  private volatile String etag, lastModified;
+
+  /**
+   * The request of the running download, see {@link #abortUpdate()}.
+   */
+  private transient volatile GetMethod currentMethod;
+
+  private static final int CONNECTION_TIMEOUT_MS = 30 * 1000;
+
+  private static final int READ_TIMEOUT_MS = 60 * 1000;
 
   private static final Long TIME_IN_THE_PAST = 60L * 24 * 60 * 60 * 1000; // 60 days in millis in the past to subscribe
 
@@ -107,15 +127,45 @@ public class TeamEventSubscription implements Serializable
     return lastFailedUpdate;
   }
 
+  /**
+   * @return Duration of the last update (download and parsing) in ms or null if not yet updated.
+   */
+  public Long getLastUpdateDuration()
+  {
+    return lastUpdateDuration;
+  }
+
+  /**
+   * Aborts the running download (if any), e. g. if the update exceeds the time limit of the cache. Blocking reads of
+   * the download don't react on interrupts, but fail immediately after aborting the request.
+   */
+  public void abortUpdate()
+  {
+    final GetMethod method = currentMethod;
+    if (method != null) {
+      log.warn("Aborting download of subscribed calendar #" + teamCalId + ".");
+      method.abort();
+    }
+  }
+
   /**
    * We update the cache softly, therefore we create a new instance and replace the old instance in the cached map then
    * creation and update is therefore the same two lines of code, but semantically different things.
    */
   public void update(final TeamCalDao teamCalDao, final TeamCalDO teamCalDO, final TeamCalServiceImpl teamEventConverter)
+  {
+    final long startTime = System.currentTimeMillis();
+    try {
+      internalUpdate(teamCalDao, teamCalDO, teamEventConverter);
+    } finally {
+      lastUpdateDuration = System.currentTimeMillis() - startTime;
+    }
+  }
+
+  private void internalUpdate(final TeamCalDao teamCalDao, final TeamCalDO teamCalDO,
+      final TeamCalServiceImpl teamEventConverter)
   {
     this.teamCalId = teamCalDO.getId();
-    currentInitializedHash = null;
-    lastUpdated = null;
     String url = teamCalDO.getExternalSubscriptionUrl();
     if (teamCalDO.isExternalSubscription() == false || StringUtils.isEmpty(url) == true) {
       // No external subscription.
@@ -127,35 +177,67 @@ public class TeamEventSubscription implements Serializable
     log.info("Getting subscribed calendar #" + teamCalDO.getId() + " from: " + displayUrl);
     final CalendarBuilder builder = new CalendarBuilder();
     byte[] bytes = null;
+    boolean downloaded = false;
     try {
 
       // Create a method instance.
       final GetMethod method = new GetMethod(url);
-      final HttpClient client = new HttpClient();
-      final int statusCode = client.executeMethod(method);
-
-      if (statusCode != HttpStatus.SC_OK) {
-        error("Unable to gather subscription calendar #"
-            + teamCalDO.getId()
-            + " information, using database from url '"
-            + displayUrl
-            + "'. Received statusCode: "
-            + statusCode, null);
-        return;
+      if (subscription != null) {
+        // Conditional fetch: the server may respond with 304 (not modified) if the calendar wasn't modified since last
+        // download.
+        if (etag != null) {
+          method.setRequestHeader("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+          method.setRequestHeader("If-Modified-Since", lastModified);
+        }
       }
+      // Connect and read timeouts, so a stalled server can't block the update thread:
+      method.getParams().setSoTimeout(READ_TIMEOUT_MS);
+      final HttpClient client = new HttpClient();
+      client.getHttpConnectionManager().getParams().setConnectionTimeout(CONNECTION_TIMEOUT_MS);
+      client.getHttpConnectionManager().getParams().setSoTimeout(READ_TIMEOUT_MS);
+      client.getParams().setConnectionManagerTimeout(CONNECTION_TIMEOUT_MS);
+      currentMethod = method;
+      try {
+        final int statusCode = client.executeMethod(method);
+
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED && subscription != null) {
+          log.info("No modification of subscribed calendar #" + teamCalDO.getId() + " found from: " + displayUrl
+              + " (HTTP 304, OK, nothing to be done).");
+          lastUpdated = System.currentTimeMillis();
+          clear();
+          return;
+        }
+        if (statusCode != HttpStatus.SC_OK) {
+          error("Unable to gather subscription calendar #"
+              + teamCalDO.getId()
+              + " information, using database from url '"
+              + displayUrl
+              + "'. Received statusCode: "
+              + statusCode, null);
+          return;
+        }
 
-      final MessageDigest md = MessageDigest.getInstance("MD5");
-
-      // Read the response body.
-      final InputStream stream = method.getResponseBodyAsStream();
-      bytes = IOUtils.toByteArray(stream);
-
-      final String md5 = calcHexHash(md.digest(bytes));
-      if (StringUtils.equals(md5, teamCalDO.getExternalSubscriptionHash()) == false) {
-        teamCalDO.setExternalSubscriptionHash(md5);
-        teamCalDO.setExternalSubscriptionCalendarBinary(bytes);
-        // internalUpdate is valid at this point, because we are calling this method in an async thread
-        teamCalDao.internalUpdate(teamCalDO);
+        final MessageDigest md = MessageDigest.getInstance("MD5");
+
+        // Read the response body.
+        final InputStream stream = method.getResponseBodyAsStream();
+        bytes = IOUtils.toByteArray(stream);
+        downloaded = true;
+        etag = getResponseHeaderValue(method, "ETag");
+        lastModified = getResponseHeaderValue(method, "Last-Modified");
+
+        final String md5 = calcHexHash(md.digest(bytes));
+        if (StringUtils.equals(md5, teamCalDO.getExternalSubscriptionHash()) == false) {
+          teamCalDO.setExternalSubscriptionHash(md5);
+          teamCalDO.setExternalSubscriptionCalendarBinary(bytes);
+          // internalUpdate is valid at this point, because we are calling this method in an async thread
+          teamCalDao.internalUpdate(teamCalDO);
+        }
+      } finally {
+        currentMethod = null;
+        method.releaseConnection();
       }
     } catch (final Exception e) {
       bytes = teamCalDO.getExternalSubscriptionCalendarBinary();
@@ -172,12 +254,15 @@ public class TeamEventSubscription implements Serializable
           null);
       return;
     }
-    if (currentInitializedHash != null
+    if (subscription != null && currentInitializedHash != null
         && StringUtils.equals(currentInitializedHash, teamCalDO.getExternalSubscriptionHash()) == true) {
       // nothing to do here if the hashes are equal
-      log.info("No modification of subscribed calendar #" + teamCalDO.getId() + " found from: " + displayUrl
-          + " (OK, nothing to be done).");
-      clear();
+      if (downloaded == true) {
+        log.info("No modification of subscribed calendar #" + teamCalDO.getId() + " found from: " + displayUrl
+            + " (OK, nothing to be done).");
+        lastUpdated = System.currentTimeMillis();
+        clear();
+      }
       return;
     }
 
@@ -220,12 +305,16 @@ public class TeamEventSubscription implements Serializable
 
         startId--;
       }
+      // Build the index before publishing, so readers don't need any lock:
+      newSubscription.sort();
       // OK, update the subscription:
       recurrenceEvents = newRecurrenceEvents;
       subscription = newSubscription;
-      lastUpdated = System.currentTimeMillis();
       currentInitializedHash = teamCalDO.getExternalSubscriptionHash();
-      clear();
+      if (downloaded == true) {
+        lastUpdated = System.currentTimeMillis();
+        clear();
+      }
       log.info("Subscribed calendar #" + teamCalDO.getId() + " successfully received from: " + displayUrl);
     } catch (final Exception e) {
       error("Unable to instantiate team event list for calendar #"
@@ -237,6 +326,12 @@ public class TeamEventSubscription implements Serializable
     }
   }
 
+  private String getResponseHeaderValue(final GetMethod method, final String name)
+  {
+    final Header header = method.getResponseHeader(name);
+    return header != null ? header.getValue() : null;
+  }
+
   private void clear()
   {
     this.lastErrorMessage = null;
@@ -279,6 +374,7 @@ public class TeamEventSubscription implements Serializable
 
   public List<TeamEventDO> getEvents(final Long startTime, final Long endTime, final boolean minimalAccess)
   {
+    final SubscriptionHolder subscription = this.subscription;
     if (subscription == null) {
       return new ArrayList<TeamEventDO>();
     }
@@ -523,6 +523,24 @@ public class TeamCalServiceImpl
   public static Collection<TeamEvent> getRecurrenceEvents(final java.util.Date startDate, final java.util.Date endDate,
       final TeamEventDO event,
       final java.util.TimeZone timeZone)
+  {
+    final List<java.util.Date> dates = getRecurrenceDates(startDate, endDate, event, timeZone);
+    if (dates == null) {
+      return null;
+    }
+    return getRecurrenceEvents(dates, event, timeZone);
+  }
+
+  /**
+   * Calculates the start dates of all recurrences of the given event inside the given time period (the ex-dates of the
+   * event are already excluded). This is the expensive part of {@link #getRecurrenceEvents(java.util.Date,
+   * java.util.Date, TeamEventDO, java.util.TimeZone)} and the result may be cached.
+   *
+   * @return The start dates or null, if the given event has no recurrence.
+   * @see #getRecurrenceEvents(List, TeamEventDO, java.util.TimeZone)
+   */
+  public static List<java.util.Date> getRecurrenceDates(final java.util.Date startDate, final java.util.Date endDate,
+      final TeamEventDO event, final java.util.TimeZone timeZone)
   {
     if (event.hasRecurrence() == false) {
       return null;
@@ -533,13 +551,10 @@ public class TeamCalServiceImpl
       return null;
     }
     final java.util.TimeZone timeZone4Calc = timeZone;
-    final String eventStartDateString = event.isAllDay() == true
-        ? DateHelper.formatIsoDate(event.getStartDate(), timeZone) : DateHelper
-        .formatIsoTimestamp(event.getStartDate(), DateHelper.UTC);
     java.util.Date eventStartDate = event.getStartDate();
     if (event.isAllDay() == true) {
       // eventStartDate should be midnight in user's time zone.
-      eventStartDate = DateHelper.parseIsoDate(eventStartDateString, timeZone);
+      eventStartDate = DateHelper.parseIsoDate(DateHelper.formatIsoDate(event.getStartDate(), timeZone), timeZone);
     }
     if (log.isDebugEnabled() == true) {
       log.debug("---------- startDate=" + DateHelper.formatIsoTimestamp(eventStartDate, timeZone) + ", timeZone="
@@ -573,7 +588,7 @@ public class TeamCalServiceImpl
         event.getRecurrenceExDate(),
         ical4jTimeZone);
     final DateList dateList = recur.getDates(seedDate, ical4jStartDate, ical4jEndDate, Value.DATE_TIME);
-    final Collection<TeamEvent> col = new ArrayList<TeamEvent>();
+    final List<java.util.Date> dates = new ArrayList<java.util.Date>();
     if (dateList != null) {
       OuterLoop:
       for (final Object obj : dateList) {
@@ -607,16 +622,41 @@ public class TeamCalServiceImpl
             }
           }
         }
-        if (isoDateString.equals(eventStartDateString) == true) {
-          // Put event itself to the list.
-          col.add(event);
-        } else {
-          // Now we need this event as date with the user's time-zone.
-          final Calendar userCal = Calendar.getInstance(timeZone);
-          userCal.setTime(dateTime);
-          final TeamRecurrenceEvent recurEvent = new TeamRecurrenceEvent(event, userCal);
-          col.add(recurEvent);
-        }
+        dates.add(new java.util.Date(dateTime.getTime()));
+      }
+    }
+    return dates;
+  }
+
+  /**
+   * Creates the recurrence events of the given event for the given start dates.
+   *
+   * @param dates The start dates of the recurrences calculated by
+   *          {@link #getRecurrenceDates(java.util.Date, java.util.Date, TeamEventDO, java.util.TimeZone)}.
+   * @param event
+   * @param timeZone
+   * @return The event itself for its own start date and a {@link TeamRecurrenceEvent} for every other date.
+   */
+  public static Collection<TeamEvent> getRecurrenceEvents(final List<java.util.Date> dates, final TeamEventDO event,
+      final java.util.TimeZone timeZone)
+  {
+    final String eventStartDateString = event.isAllDay() == true
+        ? DateHelper.formatIsoDate(event.getStartDate(), timeZone) : DateHelper
+        .formatIsoTimestamp(event.getStartDate(), DateHelper.UTC);
+    final Collection<TeamEvent> col = new ArrayList<TeamEvent>();
+    for (final java.util.Date date : dates) {
+      final String isoDateString = event.isAllDay() == true ? DateHelper.formatIsoDate(date, timeZone)
+          : DateHelper
+          .formatIsoTimestamp(date, DateHelper.UTC);
+      if (isoDateString.equals(eventStartDateString) == true) {
+        // Put event itself to the list.
+        col.add(event);
+      } else {
+        // Now we need this event as date with the user's time-zone.
+        final Calendar userCal = Calendar.getInstance(timeZone);
+        userCal.setTime(date);
+        final TeamRecurrenceEvent recurEvent = new TeamRecurrenceEvent(event, userCal);
+        col.add(recurEvent);
       }
     }
     if (log.isDebugEnabled() == true) {
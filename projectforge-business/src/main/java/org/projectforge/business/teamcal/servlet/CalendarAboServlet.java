@@ -23,11 +23,18 @@
 
 package org.projectforge.business.teamcal.servlet;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -60,22 +67,23 @@ import org.projectforge.framework.calendar.ICal4JUtils;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DayHolder;
+import org.projectforge.framework.utils.Crypt;
 import org.projectforge.framework.utils.NumberHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
-import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.data.FoldingWriter;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.TimeZone;
-import net.fortuna.ical4j.model.ValidationException;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.CalScale;
 import net.fortuna.ical4j.model.property.Description;
 import net.fortuna.ical4j.model.property.Location;
 import net.fortuna.ical4j.model.property.ProdId;
 import net.fortuna.ical4j.model.property.Version;
+import net.fortuna.ical4j.util.Strings;
 
 /**
  * Feed Servlet, which generates a 'text/calendar' output of the last four mounts. Currently relevant informations are
@@ -109,6 +117,9 @@ public class CalendarAboServlet extends HttpServlet
   @Autowired
   private TeamCalServiceImpl teamCalService;
 
+  @Autowired
+  private CalendarFeedCache calendarFeedCache;
+
   @Override
   public void init(final ServletConfig config) throws ServletException
   {
@@ -159,8 +170,10 @@ public class CalendarAboServlet extends HttpServlet
       }
       final Map<String, String> params = StringHelper.getKeyValues(decryptedParams, "&");
       params.put(TeamCalServiceImpl.PARAM_EXPORT_ATTENDEES, "true");
-      final Calendar calendar = createCal(params, userId, params.get("token"),
-          params.get(CalendarFeedConst.PARAM_NAME_TIMESHEET_USER));
+      final PFUserDO loggedInUser = userService.getUserByAuthenticationToken(userId, params.get("token"));
+      final Integer timesheetUserId = NumberHelper
+          .parseInteger(params.get(CalendarFeedConst.PARAM_NAME_TIMESHEET_USER));
+      final PFUserDO timesheetUser = loggedInUser != null ? getTimesheetUser(loggedInUser, timesheetUserId) : null;
       final StringBuffer buf = new StringBuffer();
       boolean first = true;
       for (final Map.Entry<String, String> entry : params.entrySet()) {
@@ -173,19 +186,44 @@ public class CalendarAboServlet extends HttpServlet
       logMessage = buf.toString();
       log.info("Getting calendar entries for: " + logMessage);
 
-      if (calendar == null) {
+      if (loggedInUser == null || (timesheetUserId != null && timesheetUser == null)) {
         resp.sendError(HttpStatus.SC_BAD_REQUEST);
         log.error("Bad request, can't find calendar.");
         return;
       }
 
+      // The feed depends on the parameters, the user's locale and time zone and the current day (time periods):
+      final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+      dayFormat.setTimeZone(ThreadLocalUserContext.getTimeZone());
+      final String key = Crypt.digest(userId + "|" + new TreeMap<String, String>(params) + "|"
+          + ThreadLocalUserContext.getLocale() + "|" + ThreadLocalUserContext.getTimeZone().getID() + "|"
+          + dayFormat.format(new Date()));
+      final String stamp = calendarFeedCache.getModificationStamp(StringUtils.split(params.get("teamCals"), ";"),
+          timesheetUser != null ? timesheetUser.getId() : null);
+      final String etag = "\"" + Crypt.digest(key + "|" + stamp) + "\"";
+      final CalendarFeedCache.Feed feed = calendarFeedCache.getFeed(key, etag);
+      resp.setHeader("ETag", etag);
+      if (isNotModified(req, etag, feed) == true) {
+        if (feed != null) {
+          resp.setDateHeader("Last-Modified", feed.getCreated());
+        }
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        log.info("Calendar not modified.");
+        return;
+      }
       resp.setContentType("text/calendar");
-      final CalendarOutputter output = new CalendarOutputter(false);
-      try {
-        output.output(calendar, resp.getOutputStream());
-      } catch (final ValidationException ex) {
-        ex.printStackTrace();
+      if (feed != null && feed.getContent() != null) {
+        resp.setDateHeader("Last-Modified", feed.getCreated());
+        resp.setContentLength(feed.getContent().length);
+        resp.getOutputStream().write(feed.getContent());
+        return;
       }
+      // The feed is written directly to the client, a copy is kept for the cache as long as it's small enough:
+      final long created = System.currentTimeMillis();
+      resp.setDateHeader("Last-Modified", created);
+      final FeedOutputStream out = new FeedOutputStream(resp.getOutputStream(), CalendarFeedCache.MAX_FEED_SIZE);
+      writeCal(out, params, loggedInUser, timesheetUser);
+      calendarFeedCache.putFeed(key, etag, created, out.getContent());
     } finally {
       log.info("Finished request: " + logMessage);
       ThreadLocalUserContext.setUser(getUserGroupCache(), null);
@@ -198,74 +236,100 @@ public class CalendarAboServlet extends HttpServlet
   }
 
   /**
-   * creates a calendar for the user, identified by his name and authentication key.
+   * The feed isn't modified if the client sends the current etag (If-None-Match) or, without an etag, if the
+   * If-Modified-Since header isn't older than the generation of the known feed with the current etag.
    *
-   * @param params
-   * @param userName
-   * @param userKey
-   * @return a calendar, null if authentication fails
+   * @param req
+   * @param etag The etag of the current modification stamp.
+   * @param feed The known feed with the current etag or null.
+   * @return true, if the client's version is up to date and the feed doesn't need to be generated.
    */
-  private Calendar createCal(final Map<String, String> params, final Integer userId, final String authKey,
-      final String timesheetUserParam)
+  static boolean isNotModified(final HttpServletRequest req, final String etag, final CalendarFeedCache.Feed feed)
   {
-    final PFUserDO loggedInUser = userService.getUserByAuthenticationToken(userId, authKey);
+    final String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      return ifNoneMatch.contains(etag);
+    }
+    if (feed == null) {
+      return false;
+    }
+    final long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+    // Http dates are in seconds:
+    return ifModifiedSince >= 0 && ifModifiedSince / 1000 >= feed.getCreated() / 1000;
+  }
 
-    if (loggedInUser == null) {
+  /**
+   * @param loggedInUser
+   * @param timesheetUserId
+   * @return The user of the time sheets to export or null, if no time sheets should be exported or if the time sheet
+   *         user isn't found or the logged-in user isn't allowed to export the time sheets.
+   */
+  private PFUserDO getTimesheetUser(final PFUserDO loggedInUser, final Integer timesheetUserId)
+  {
+    if (timesheetUserId == null) {
       return null;
     }
-    PFUserDO timesheetUser = null;
-    if (StringUtils.isNotBlank(timesheetUserParam) == true) {
-      final Integer timesheetUserId = NumberHelper.parseInteger(timesheetUserParam);
-      if (timesheetUserId != null) {
-        if (timesheetUserId.equals(loggedInUser.getId()) == false) {
-          log.error("Not yet allowed: all users are only allowed to download their own time-sheets.");
-          return null;
-        }
-        timesheetUser = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache()
-            .getUser(timesheetUserId);
-        if (timesheetUser == null) {
-          log.error("Time-sheet user with id '" + timesheetUserParam + "' not found.");
-          return null;
-        }
-      }
+    if (timesheetUserId.equals(loggedInUser.getId()) == false) {
+      log.error("Not yet allowed: all users are only allowed to download their own time-sheets.");
+      return null;
+    }
+    final PFUserDO timesheetUser = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache()
+        .getUser(timesheetUserId);
+    if (timesheetUser == null) {
+      log.error("Time-sheet user with id '" + timesheetUserId + "' not found.");
     }
-    // creating a new calendar
-    final Calendar calendar = new Calendar();
+    return timesheetUser;
+  }
+
+  /**
+   * Writes the calendar for the user (same output as {@link net.fortuna.ical4j.data.CalendarOutputter}). The events
+   * are written one by one as soon as they are created without building the ical4j calendar.
+   *
+   * @param out
+   * @param params
+   * @param loggedInUser
+   * @param timesheetUser
+   */
+  private void writeCal(final OutputStream out, final Map<String, String> params, final PFUserDO loggedInUser,
+      final PFUserDO timesheetUser) throws IOException
+  {
+    final Writer writer = new FoldingWriter(new OutputStreamWriter(out, "UTF-8"), FoldingWriter.REDUCED_FOLD_LENGTH);
+    writer.write(Calendar.BEGIN + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
     final Locale locale = ThreadLocalUserContext.getLocale();
-    calendar.getProperties().add(
-        new ProdId("-//" + loggedInUser.getDisplayUsername() + "//ProjectForge//" + locale.toString().toUpperCase()));
-    calendar.getProperties().add(Version.VERSION_2_0);
-    calendar.getProperties().add(CalScale.GREGORIAN);
+    writer.write(
+        new ProdId("-//" + loggedInUser.getDisplayUsername() + "//ProjectForge//" + locale.toString().toUpperCase())
+            .toString());
+    writer.write(Version.VERSION_2_0.toString());
+    writer.write(CalScale.GREGORIAN.toString());
 
     // setup event is needed for empty calendars
-    calendar.getComponents().add(new VEvent(new net.fortuna.ical4j.model.Date(0), SETUP_EVENT));
+    writer.write(new VEvent(new net.fortuna.ical4j.model.Date(0), SETUP_EVENT).toString());
 
     // adding events
-    for (final VEvent event : getEvents(params, timesheetUser)) {
-      calendar.getComponents().add(event);
-    }
-    return calendar;
+    writeEvents(writer, params, timesheetUser);
+    writer.write(Calendar.END + ':' + Calendar.VCALENDAR + Strings.LINE_SEPARATOR);
+    writer.flush();
   }
 
   /**
-   * builds the list of events
-   *
-   * @return
+   * writes the events
    */
-  private List<VEvent> getEvents(final Map<String, String> params, PFUserDO timesheetUser)
+  private void writeEvents(final Writer writer, final Map<String, String> params, PFUserDO timesheetUser)
+      throws IOException
   {
     final PFUserDO loggedInUser = ThreadLocalUserContext.getUser();
     if (loggedInUser == null) {
       throw new AccessException("No logged-in-user found!");
     }
-    final List<VEvent> events = new ArrayList<VEvent>();
     final TimeZone timezone = ICal4JUtils.getUserTimeZone();
     final java.util.Calendar cal = java.util.Calendar.getInstance(ThreadLocalUserContext.getTimeZone());
 
     boolean eventsExist = false;
     final List<VEvent> list = teamCalService.getEvents(params, timezone);
     if (list != null && list.size() > 0) {
-      events.addAll(list);
+      for (final VEvent event : list) {
+        writer.write(event.toString());
+      }
       eventsExist = true;
     }
 
@@ -308,7 +372,7 @@ public class CalendarAboServlet extends HttpServlet
         if (StringUtils.isNotBlank(timesheet.getLocation()) == true) {
           vEvent.getProperties().add(new Location(timesheet.getLocation()));
         }
-        events.add(vEvent);
+        writer.write(vEvent.toString());
       }
     }
     final String holidays = params.get(CalendarFeedConst.PARAM_NAME_HOLIDAYS);
@@ -316,7 +380,9 @@ public class CalendarAboServlet extends HttpServlet
       DateTime holidaysFrom = new DateTime(ThreadLocalUserContext.getDateTimeZone());
       holidaysFrom = holidaysFrom.dayOfYear().withMinimumValue().millisOfDay().withMinimumValue().minusYears(2);
       final DateTime holidayTo = holidaysFrom.plusYears(6);
-      events.addAll(teamCalService.getConfiguredHolidaysAsVEvent(holidaysFrom, holidayTo));
+      for (final VEvent event : teamCalService.getConfiguredHolidaysAsVEvent(holidaysFrom, holidayTo)) {
+        writer.write(event.toString());
+      }
     }
     final String weeksOfYear = params.get(CalendarFeedConst.PARAM_NAME_WEEK_OF_YEARS);
     if ("true".equals(weeksOfYear) == true) {
@@ -333,7 +399,7 @@ public class CalendarAboServlet extends HttpServlet
                 + paranoiaCounter,
             ThreadLocalUserContext.getLocalizedString("calendar.weekOfYearShortLabel") + " " + current.getWeekOfYear(),
             true);
-        events.add(vEvent);
+        writer.write(vEvent.toString());
         current.add(java.util.Calendar.WEEK_OF_YEAR, 1);
         if (++paranoiaCounter > 500) {
           log.warn(
@@ -361,7 +427,6 @@ public class CalendarAboServlet extends HttpServlet
     // events.add(vEvent);
     // }
     // }
-    return events;
   }
 
   /**
@@ -387,6 +452,57 @@ public class CalendarAboServlet extends HttpServlet
         ProjectForgeGroup.PROJECT_MANAGER);
   }
 
+  /**
+   * Passes all bytes to the client and keeps a copy as long as the given maximum size isn't exceeded.
+   */
+  private static class FeedOutputStream extends FilterOutputStream
+  {
+    private final int maxSize;
+
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    private FeedOutputStream(final OutputStream out, final int maxSize)
+    {
+      super(out);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public void write(final int b) throws IOException
+    {
+      out.write(b);
+      if (copy != null) {
+        copy.write(b);
+        checkSize();
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException
+    {
+      out.write(b, off, len);
+      if (copy != null) {
+        copy.write(b, off, len);
+        checkSize();
+      }
+    }
+
+    private void checkSize()
+    {
+      if (copy.size() > maxSize) {
+        copy = null;
+      }
+    }
+
+    /**
+     * @return The written content or null, if the maximum size was exceeded.
+     */
+    private byte[] getContent()
+    {
+      return copy != null ? copy.toByteArray() : null;
+    }
+  }
+
   private TenantRegistry getTenantRegistry()
   {
     return TenantRegistryMap.getInstance().getTenantRegistry();
@@ -0,0 +1,267 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.teamcal.servlet;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.projectforge.business.fibu.kost.KostCache;
+import org.projectforge.business.multitenancy.TenantRegistry;
+import org.projectforge.business.multitenancy.TenantRegistryMap;
+import org.projectforge.business.task.TaskTree;
+import org.projectforge.business.teamcal.externalsubscription.TeamEventExternalSubscriptionCache;
+import org.projectforge.business.teamcal.externalsubscription.TeamEventSubscription;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.utils.NumberHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate5.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the generated ics feeds of {@link CalendarAboServlet}. A feed is only valid for the modification stamp of its
+ * data (see {@link #getModificationStamp(String[], Integer)}), therefore any modification of the events, calendars or
+ * time sheets results in a new generation. All entries are removed on refresh (every hour) for modifications not
+ * reflected by the stamp (e. g. of the user's preferences).<br/>
+ * Feeds larger than {@link #MAX_FEED_SIZE} aren't cached, only their etag and time of generation are stored, so
+ * conditional requests are answered without generating the feed.
+ */
+@Component
+public class CalendarFeedCache extends AbstractCache
+{
+  private static final long serialVersionUID = 5236813465938472213L;
+
+  private static Logger log = Logger.getLogger(CalendarFeedCache.class);
+
+  /**
+   * Maximum sum of the sizes of all cached feeds (in bytes).
+   */
+  private static final long MAX_CACHE_SIZE = 50 * 1024 * 1024;
+
+  /**
+   * Maximum size of a single cached feed (in bytes). The content of larger feeds isn't cached.
+   */
+  public static final int MAX_FEED_SIZE = (int) (MAX_CACHE_SIZE / 10);
+
+  /**
+   * Maximum number of entries (including the entries without content).
+   */
+  private static final int MAX_ENTRIES = 10000;
+
+  @Autowired
+  private transient HibernateTemplate hibernateTemplate;
+
+  @Autowired
+  private transient TeamEventExternalSubscriptionCache teamEventExternalSubscriptionCache;
+
+  @Autowired
+  private transient KostCache kostCache;
+
+  /**
+   * Least recently used feeds first.
+   */
+  private final Map<String, Feed> feedMap = new LinkedHashMap<String, Feed>(64, 0.75f, true);
+
+  private long cacheSize;
+
+  /**
+   * @param key
+   * @param etag
+   * @return The cached feed or null, if not cached or cached with another etag (outdated).
+   */
+  public Feed getFeed(final String key, final String etag)
+  {
+    checkRefresh();
+    synchronized (feedMap) {
+      final Feed feed = feedMap.get(key);
+      if (feed == null || feed.etag.equals(etag) == false) {
+        return null;
+      }
+      return feed;
+    }
+  }
+
+  /**
+   * @param key
+   * @param etag
+   * @param created The time of generation in millis (the Last-Modified header sent to the client).
+   * @param content The ics content or null, if the feed was too large for caching (see {@link #MAX_FEED_SIZE}).
+   * @return The cached feed.
+   */
+  public Feed putFeed(final String key, final String etag, final long created, byte[] content)
+  {
+    if (content != null && content.length > MAX_FEED_SIZE) {
+      // Don't cache the content of very large feeds.
+      content = null;
+    }
+    final Feed feed = new Feed(etag, created, content);
+    synchronized (feedMap) {
+      final Feed old = feedMap.put(key, feed);
+      if (old != null) {
+        cacheSize -= old.getSize();
+      }
+      cacheSize += feed.getSize();
+      final Iterator<Feed> it = feedMap.values().iterator();
+      while ((cacheSize > MAX_CACHE_SIZE || feedMap.size() > MAX_ENTRIES) && it.hasNext() == true) {
+        cacheSize -= it.next().getSize();
+        it.remove();
+      }
+    }
+    return feed;
+  }
+
+  /**
+   * The modification stamp contains the last modification and the number of entries of all given calendars and their
+   * events, the last update of subscribed calendars and the last modification and the number of the time sheets of the
+   * given user. Deleted entries are marked as deleted, so their modification changes the stamp too.<br/>
+   * The feed also contains data of the users and groups (e. g. attendees and access rights), of the tasks, cost
+   * assignments and projects (titles of the time sheets). Therefore the last modification of these entities and the
+   * time of the last refresh of {@link org.projectforge.business.user.UserGroupCache}, {@link TaskTree} and
+   * {@link KostCache} are part of the stamp, too (tasks, costs and projects only if time sheets are requested).
+   *
+   * @param teamCalIds
+   * @param timesheetUserId
+   * @return The stamp.
+   */
+  public String getModificationStamp(final String[] teamCalIds, final Integer timesheetUserId)
+  {
+    final StringBuilder sb = new StringBuilder();
+    final TenantRegistry tenantRegistry = TenantRegistryMap.getInstance().getTenantRegistry();
+    sb.append("u").append(tenantRegistry.getUserGroupCache().getTimeOfLastRefresh()).append(':');
+    appendMaxLastUpdate(sb, "PFUserDO");
+    sb.append(':');
+    appendMaxLastUpdate(sb, "GroupDO");
+    sb.append('|');
+    if (teamCalIds != null) {
+      for (final String teamCalId : teamCalIds) {
+        final Integer calendarId = NumberHelper.parseInteger(teamCalId);
+        if (calendarId == null) {
+          continue;
+        }
+        sb.append("c").append(calendarId).append(':');
+        appendStamp(sb, hibernateTemplate.find("select c.lastUpdate, c.deleted from TeamCalDO c where c.id = ?",
+            calendarId));
+        final TeamEventSubscription subscription = teamEventExternalSubscriptionCache.getSubscription(calendarId);
+        if (subscription != null) {
+          sb.append(":s").append(subscription.getLastUpdated());
+        } else {
+          sb.append(':');
+          appendStamp(sb, hibernateTemplate.find(
+              "select max(e.lastUpdate), count(e.id) from TeamEventDO e where e.calendar.id = ?", calendarId));
+        }
+        sb.append('|');
+      }
+    }
+    if (timesheetUserId != null) {
+      sb.append("t").append(timesheetUserId).append(':');
+      appendStamp(sb, hibernateTemplate.find(
+          "select max(t.lastUpdate), count(t.id) from TimesheetDO t where t.user.id = ?", timesheetUserId));
+      final TaskTree taskTree = tenantRegistry.getTaskTree();
+      sb.append("|k").append(taskTree.getTimeOfLastRefresh()).append(',').append(taskTree.getTimeOfLastModification())
+          .append(',').append(kostCache.getTimeOfLastRefresh()).append(':');
+      appendMaxLastUpdate(sb, "TaskDO");
+      sb.append(':');
+      appendMaxLastUpdate(sb, "Kost2DO");
+      sb.append(':');
+      appendMaxLastUpdate(sb, "ProjektDO");
+    }
+    return sb.toString();
+  }
+
+  private void appendMaxLastUpdate(final StringBuilder sb, final String entity)
+  {
+    final List<?> result = hibernateTemplate.find("select max(e.lastUpdate) from " + entity + " e");
+    final Object lastUpdate = result == null || result.isEmpty() == true ? null : result.get(0);
+    sb.append(lastUpdate instanceof Date ? ((Date) lastUpdate).getTime() : lastUpdate);
+  }
+
+  private void appendStamp(final StringBuilder sb, final List<?> result)
+  {
+    if (result == null || result.isEmpty() == true) {
+      sb.append('-');
+      return;
+    }
+    final Object[] row = (Object[]) result.get(0);
+    sb.append(row[0] instanceof Date ? ((Date) row[0]).getTime() : row[0]).append(',').append(row[1]);
+  }
+
+  /**
+   * This method will be called by CacheHelper and is synchronized via getData();
+   */
+  @Override
+  protected void refresh()
+  {
+    log.info("Clearing CalendarFeedCache ...");
+    synchronized (feedMap) {
+      feedMap.clear();
+      cacheSize = 0;
+    }
+  }
+
+  public static class Feed
+  {
+    private final String etag;
+
+    private final long created;
+
+    private final byte[] content;
+
+    private Feed(final String etag, final long created, final byte[] content)
+    {
+      this.etag = etag;
+      this.created = created;
+      this.content = content;
+    }
+
+    public String getEtag()
+    {
+      return etag;
+    }
+
+    /**
+     * @return The ics content or null, if the feed was too large for caching.
+     */
+    public byte[] getContent()
+    {
+      return content;
+    }
+
+    private int getSize()
+    {
+      return content != null ? content.length : 0;
+    }
+
+    /**
+     * @return The time of generation in millis.
+     */
+    public long getCreated()
+    {
+      return created;
+    }
+  }
+}
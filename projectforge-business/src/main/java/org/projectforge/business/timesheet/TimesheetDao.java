@@ -23,12 +23,13 @@
 
 package org.projectforge.business.timesheet;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,10 +40,17 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.type.DoubleType;
+import org.hibernate.type.Type;
 import org.projectforge.business.fibu.kost.Kost2DO;
 import org.projectforge.business.fibu.kost.Kost2Dao;
 import org.projectforge.business.task.TaskDO;
@@ -53,6 +61,7 @@ import org.projectforge.business.user.ProjectForgeGroup;
 import org.projectforge.business.user.UserDao;
 import org.projectforge.common.task.TaskStatus;
 import org.projectforge.common.task.TimesheetBookingStatus;
+import org.projectforge.continuousdb.DatabaseSupport;
 import org.projectforge.framework.access.AccessException;
 import org.projectforge.framework.access.AccessType;
 import org.projectforge.framework.access.OperationType;
@@ -61,6 +70,8 @@ import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.api.BaseDao;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
 import org.projectforge.framework.persistence.api.QueryFilter;
+import org.projectforge.framework.persistence.api.ResultPage;
+import org.projectforge.framework.persistence.api.TransactionHelper;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.persistence.utils.SQLHelper;
@@ -105,7 +116,26 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   @Autowired
   private Kost2Dao kost2Dao;
 
-  private final Map<Integer, Set<Integer>> timesheetsWithOverlapByUser = new HashMap<Integer, Set<Integer>>();
+  /**
+   * Maximum number of users whose time periods are held in memory, the least recently used ones are removed first.
+   */
+  private static final int MAX_TIMESHEET_INTERVALS_USERS = 100;
+
+  /**
+   * The time periods of the time sheets by user id, loaded on demand and updated after the commit of every modification
+   * of time sheets. Every entry is locked separately, so the analysis of one user doesn't block the time sheets of other
+   * users. The map itself is access ordered (LRU) and has to be synchronized.
+   */
+  @SuppressWarnings("serial")
+  private final Map<Integer, TimesheetIntervals> timesheetIntervalsByUser = //
+      new LinkedHashMap<Integer, TimesheetIntervals>(16, 0.75f, true)
+      {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, TimesheetIntervals> eldest)
+        {
+          return size() > MAX_TIMESHEET_INTERVALS_USERS;
+        }
+      };
 
   @Override
   protected String[] getAdditionalSearchFields()
@@ -217,6 +247,8 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   public TimesheetDao()
   {
     super(TimesheetDO.class);
+    // The origin data base entry is needed in afterUpdate for updating the total durations of the task tree:
+    this.supportAfterUpdate = true;
   }
 
   /**
@@ -229,6 +261,10 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
     if (filter.getModifiedByUserId() == null) {
       timesheetFilter.setUserId(ThreadLocalUserContext.getUserId());
     }
+    if (filter.isLimitQueryToMaxRows() == true && filter.getMaxRows() > 0) {
+      // One more entry than needed for detecting further entries:
+      return getPage(timesheetFilter, filter.getMaxRows() + 1, null).getList();
+    }
     return getList(timesheetFilter);
   }
 
@@ -241,6 +277,35 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   @Override
   @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
   public List<TimesheetDO> getList(final BaseSearchFilter filter) throws AccessException
+  {
+    final TimesheetFilter myFilter = createTimesheetFilter(filter);
+    final QueryFilter queryFilter = buildQueryFilter(myFilter);
+    final List<TimesheetDO> result = getList(queryFilter);
+    if (result == null) {
+      return null;
+    }
+    return markTimeOverlaps(myFilter, result);
+  }
+
+  /**
+   * Gets one page of the list filtered by the given filter. Time sheets with time period overlaps are marked as done by
+   * {@link #getList(BaseSearchFilter)}. If only marked time sheets are requested, the page contains only the marked
+   * time sheets of the page and may be smaller than the page size.
+   *
+   * @see BaseDao#getPage(QueryFilter, int, String)
+   */
+  @Override
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<TimesheetDO> getPage(final BaseSearchFilter filter, final int pageSize,
+      final String continuationToken)
+  {
+    final TimesheetFilter myFilter = createTimesheetFilter(filter);
+    final QueryFilter queryFilter = buildQueryFilter(myFilter);
+    final ResultPage<TimesheetDO> page = getPage(queryFilter, pageSize, continuationToken);
+    return new ResultPage<TimesheetDO>(markTimeOverlaps(myFilter, page.getList()), page.getContinuationToken());
+  }
+
+  private TimesheetFilter createTimesheetFilter(final BaseSearchFilter filter)
   {
     final TimesheetFilter myFilter;
     if (filter instanceof TimesheetFilter) {
@@ -253,13 +318,20 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
       date.setEndOfDay();
       myFilter.setStopTime(date.getDate());
     }
-    final QueryFilter queryFilter = buildQueryFilter(myFilter);
-    List<TimesheetDO> result = getList(queryFilter);
-    if (result == null) {
-      return null;
-    }
+    return myFilter;
+  }
+
+  /**
+   * Marks the time sheets with time period overlaps.
+   *
+   * @param filter
+   * @param list
+   * @return The given list or only the marked time sheets, if the filter is set to marked time sheets.
+   */
+  private List<TimesheetDO> markTimeOverlaps(final TimesheetFilter filter, final List<TimesheetDO> list)
+  {
     // Check time period overlaps:
-    for (final TimesheetDO entry : result) {
+    for (final TimesheetDO entry : list) {
       Validate.notNull(entry.getUserId());
       if (entry.isMarked() == true) {
         continue; // Is already marked.
@@ -270,19 +342,104 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
         entry.setMarked(true);
       }
     }
-    if (myFilter.isMarked() == true) {
+    if (filter.isMarked() == true) {
       // Show only time sheets with time period violation (overlap):
-      final List<TimesheetDO> list = result;
-      result = new ArrayList<TimesheetDO>();
+      final List<TimesheetDO> result = new ArrayList<TimesheetDO>();
       for (final TimesheetDO entry : list) {
         if (entry.isMarked() == true) {
           result.add(entry);
         }
       }
+      return result;
+    }
+    return list;
+  }
+
+  /**
+   * Gets the total durations of all time sheets of the given time period grouped by user and task without loading the
+   * time sheets. The sums are calculated by the data base if supported (see
+   * {@link DatabaseSupport#getIntervalInSeconds(String, String)}), otherwise only the scalar values are read and summed
+   * up. The time sheets are selected with the same semantic as {@link #getList(BaseSearchFilter)} and the select access
+   * is checked for every combination of user and task.
+   *
+   * @param startTime
+   * @param stopTime The time sheets until the end of this day are selected.
+   * @return List of rows {user id, task id, duration in seconds} (may be empty but never null).
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public List<Object[]> getTotalDurationsByUserAndTask(final Date startTime, final Date stopTime)
+  {
+    checkLoggedInUserSelectAccess();
+    final List<Object[]> result = new ArrayList<Object[]>();
+    if (accessChecker.isRestrictedUser() == true) {
+      return result;
+    }
+    final DateHolder date = new DateHolder(stopTime);
+    date.setEndOfDay();
+    final QueryFilter queryFilter = new QueryFilter(new TimesheetFilter());
+    queryFilter.add(Restrictions.eq("deleted", false));
+    queryFilter.add(Restrictions.and(Restrictions.ge("stopTime", startTime),
+        Restrictions.le("startTime", date.getDate())));
+    final Criteria criteria = queryFilter.buildCriteria(getSession(), TimesheetDO.class);
+    final ProjectionList projections = Projections.projectionList().add(Projections.groupProperty("user.id"))
+        .add(Projections.groupProperty("task.id"));
+    final String intervalInSeconds = DatabaseSupport.getInstance().getIntervalInSeconds("{alias}.start_time",
+        "{alias}.stop_time");
+    final Map<Integer, Map<Integer, Long>> durations = new HashMap<Integer, Map<Integer, Long>>();
+    if (intervalInSeconds != null) {
+      criteria.setProjection(projections.add(Projections.sqlProjection(intervalInSeconds + " as duration",
+          new String[] { "duration" }, new Type[] { DoubleType.INSTANCE })));
+      @SuppressWarnings("unchecked")
+      final List<Object[]> list = criteria.list();
+      for (final Object[] oa : list) {
+        addDuration(durations, (Integer) oa[0], (Integer) oa[1], ((Number) oa[2]).longValue());
+      }
+    } else {
+      // No optimization for this data base, so sum up the durations of the (scalar) rows:
+      criteria.setProjection(Projections.projectionList().add(Projections.property("user.id"))
+          .add(Projections.property("task.id")).add(Projections.property("startTime"))
+          .add(Projections.property("stopTime")));
+      final ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+      try {
+        while (results.next() == true) {
+          final Timestamp start = (Timestamp) results.get(2);
+          final Timestamp stop = (Timestamp) results.get(3);
+          addDuration(durations, (Integer) results.get(0), (Integer) results.get(1),
+              (stop.getTime() - start.getTime()) / 1000);
+        }
+      } finally {
+        results.close();
+      }
+    }
+    final PFUserDO loggedInUser = ThreadLocalUserContext.getUser();
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree();
+    for (final Map.Entry<Integer, Map<Integer, Long>> userEntry : durations.entrySet()) {
+      final PFUserDO user = getUserGroupCache().getUser(userEntry.getKey());
+      for (final Map.Entry<Integer, Long> taskEntry : userEntry.getValue().entrySet()) {
+        // Transient time sheet for checking the select access of all time sheets of this user and task:
+        final TimesheetDO timesheet = new TimesheetDO();
+        timesheet.setUser(user);
+        timesheet.setTask(taskTree.getTaskById(taskEntry.getKey()));
+        if (hasSelectAccess(loggedInUser, timesheet, false, false) == true) {
+          result.add(new Object[] { userEntry.getKey(), taskEntry.getKey(), taskEntry.getValue() });
+        }
+      }
     }
     return result;
   }
 
+  private void addDuration(final Map<Integer, Map<Integer, Long>> durations, final Integer userId,
+      final Integer taskId, final long seconds)
+  {
+    Map<Integer, Long> taskDurations = durations.get(userId);
+    if (taskDurations == null) {
+      taskDurations = new HashMap<Integer, Long>();
+      durations.put(userId, taskDurations);
+    }
+    final Long duration = taskDurations.get(taskId);
+    taskDurations.put(taskId, duration != null ? duration + seconds : seconds);
+  }
+
   //TODO: 
   //  public List<TimesheetDO> getTimeperiodOverlapList(final TimesheetListFilter actionFilter)
   //  {
@@ -305,19 +462,90 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   //  }
 
   /**
-   * Rechecks the time sheet overlaps.
+   * Adds the duration of the new time sheet to the total duration of its task (after commit).
    *
-   * @see org.projectforge.framework.persistence.api.BaseDao#afterSaveOrModify(org.projectforge.core.ExtendedBaseDO)
+   * @see org.projectforge.framework.persistence.api.BaseDao#afterSave(org.projectforge.core.ExtendedBaseDO)
    */
   @Override
-  protected void afterSaveOrModify(final TimesheetDO obj)
+  protected void afterSave(final TimesheetDO obj)
   {
-    super.afterSaveOrModify(obj);
-    if (obj.getUser() != null) {
-      // Force re-analysis of time sheet overlaps after any modification of time sheets.
-      recheckTimesheetOverlap(obj.getUserId());
+    super.afterSave(obj);
+    if (obj.isDeleted() == false) {
+      final TaskTree taskTree = TaskTreeHelper.getTaskTree(obj);
+      final Integer taskId = obj.getTaskId();
+      final long duration = obj.getDuration() / 1000;
+      TransactionHelper.runAfterCommit(() -> taskTree.addTotalDuration(taskId, duration));
+      putToTimesheetIntervals(obj);
     }
-    TaskTreeHelper.getTaskTree(obj).resetTotalDuration(obj.getTaskId());
+  }
+
+  /**
+   * Updates the total durations of the old and new task by the duration delta (after commit).
+   *
+   * @see org.projectforge.framework.persistence.api.BaseDao#afterUpdate(org.projectforge.core.ExtendedBaseDO,
+   * org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterUpdate(final TimesheetDO obj, final TimesheetDO dbObj)
+  {
+    super.afterUpdate(obj, dbObj);
+    if (dbObj != null && dbObj.getUserId() != null && dbObj.getUserId().equals(obj.getUserId()) == false) {
+      // Time sheet was moved to another user:
+      removeFromTimesheetIntervals(dbObj.getUserId(), dbObj.getId());
+    }
+    if ((dbObj != null && dbObj.isDeleted() == true) || obj.isDeleted() == true) {
+      removeFromTimesheetIntervals(obj.getUserId(), obj.getId());
+    } else {
+      putToTimesheetIntervals(obj);
+    }
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree(obj);
+    final Integer taskId = obj.getTaskId();
+    if (dbObj == null) {
+      TransactionHelper.runAfterCommit(() -> taskTree.resetTotalDuration(taskId));
+      return;
+    }
+    if (dbObj.isDeleted() == true) {
+      // Update ignores the deleted flag, so the time sheet doesn't count.
+      return;
+    }
+    final Integer oldTaskId = dbObj.getTaskId();
+    final long oldDuration = dbObj.getDuration() / 1000;
+    final long duration = obj.getDuration() / 1000;
+    TransactionHelper.runAfterCommit(() -> {
+      taskTree.addTotalDuration(oldTaskId, -oldDuration);
+      taskTree.addTotalDuration(taskId, duration);
+    });
+  }
+
+  /**
+   * The given object may contain further modifications, so the total duration of the task will be re-read on demand.
+   *
+   * @see org.projectforge.framework.persistence.api.BaseDao#afterDelete(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterDelete(final TimesheetDO obj)
+  {
+    super.afterDelete(obj);
+    resetTotalDurationAfterCommit(obj);
+    removeFromTimesheetIntervals(obj.getUserId(), obj.getId());
+  }
+
+  /**
+   * @see org.projectforge.framework.persistence.api.BaseDao#afterUndelete(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterUndelete(final TimesheetDO obj)
+  {
+    super.afterUndelete(obj);
+    resetTotalDurationAfterCommit(obj);
+    putToTimesheetIntervals(obj);
+  }
+
+  private void resetTotalDurationAfterCommit(final TimesheetDO obj)
+  {
+    final TaskTree taskTree = TaskTreeHelper.getTaskTree(obj);
+    final Integer taskId = obj.getTaskId();
+    TransactionHelper.runAfterCommit(() -> taskTree.resetTotalDuration(taskId));
   }
 
   /**
@@ -350,14 +578,6 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
     }
   }
 
-  @Override
-  protected void onChange(final TimesheetDO obj, final TimesheetDO dbObj)
-  {
-    if (obj.getTaskId().compareTo(dbObj.getTaskId()) != 0) {
-      TaskTreeHelper.getTaskTree(obj).resetTotalDuration(dbObj.getTaskId());
-    }
-  }
-
   /**
    * @see org.projectforge.framework.persistence.api.BaseDao#prepareHibernateSearch(org.projectforge.core.ExtendedBaseDO,
    * org.projectforge.framework.access.OperationType)
@@ -389,47 +609,22 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   }
 
   /**
-   * Analyses all time sheets of the user and detects any collision (overlap) of the user's time sheets. The result will
-   * be cached and the duration of a new analysis is only a few milliseconds!
+   * Analyses all time sheets of the user and detects any collision (overlap) of the user's time sheets. The time periods
+   * of the user's time sheets are held in memory and updated on every modification, so only the first call per user
+   * needs a data base query.
    *
-   * @param user
-   * @return
+   * @param userId
+   * @return The ids of all overlapping time sheets of the given user (unmodifiable).
    */
   public Set<Integer> getTimesheetsWithTimeoverlap(final Integer userId)
   {
-    long begin = System.currentTimeMillis();
     Validate.notNull(userId);
-    final PFUserDO user = getUserGroupCache().getUser(userId);
-    Validate.notNull(user);
-    synchronized (timesheetsWithOverlapByUser) {
-      if (timesheetsWithOverlapByUser.get(userId) != null) {
-        return timesheetsWithOverlapByUser.get((userId));
-      }
-      // log.info("Getting time sheet overlaps for user: " + user.getUsername());
-      final Set<Integer> result = new HashSet<Integer>();
-      final QueryFilter queryFilter = new QueryFilter();
-      queryFilter.add(Restrictions.eq("user", user));
-      queryFilter.addOrder(Order.asc("startTime"));
-      final List<TimesheetDO> list = getList(queryFilter);
-      long endTime = 0;
-      TimesheetDO lastEntry = null;
-      for (final TimesheetDO entry : list) {
-        if (entry.getStartTime().getTime() < endTime) {
-          // Time collision!
-          result.add(entry.getId());
-          if (lastEntry != null) { // Only for first iteration
-            result.add(lastEntry.getId()); // Also collision for last entry.
-          }
-        }
-        endTime = entry.getStopTime().getTime();
-        lastEntry = entry;
-      }
-      timesheetsWithOverlapByUser.put(user.getId(), result);
-      if (CollectionUtils.isNotEmpty(result) == true) {
-        log.info("Time sheet overlaps for user '" + user.getUsername() + "': " + result);
+    final TimesheetIntervals intervals = getTimesheetIntervals(userId);
+    synchronized (intervals) {
+      final Set<Integer> result = intervals.getOverlaps();
+      if (log.isDebugEnabled() == true && CollectionUtils.isNotEmpty(result) == true) {
+        log.debug("Time sheet overlaps for user with id " + userId + ": " + result);
       }
-      long end = System.currentTimeMillis();
-      log.info("TimesheetDao.getTimesheetsWithTimeoverlap took: " + (end - begin) + " ms.");
       return result;
     }
   }
@@ -443,20 +638,89 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   public void recheckTimesheetOverlap(final Integer userId)
   {
     Validate.notNull(userId);
-    timesheetsWithOverlapByUser.remove(userId);
+    synchronized (timesheetIntervalsByUser) {
+      timesheetIntervalsByUser.remove(userId);
+    }
   }
 
   /**
    * Checks if the time sheet overlaps with another time sheet of the same user. Should be checked on every insert or
-   * update (also undelete). For time collision detection deleted time sheets are ignored.
+   * update (also undelete). For time collision detection deleted time sheets are ignored. <br/>
+   * The data base is decisive: the time periods held in memory (if already loaded for the user) only save the data base
+   * query for the colliding time sheet, if they name a candidate which is confirmed by the data base. Otherwise the
+   * data base is queried for any collision and the time periods of the user are reloaded, if they differ.
    *
    * @return The existing time sheet with the time period collision.
    */
   public boolean hasTimeOverlap(final TimesheetDO timesheet, final boolean throwException)
   {
-    long begin = System.currentTimeMillis();
     Validate.notNull(timesheet);
     Validate.notNull(timesheet.getUser());
+    if (timesheet.getStartTime() == null || timesheet.getStopTime() == null) {
+      return false;
+    }
+    Integer candidateId = null;
+    final TimesheetIntervals intervals = getLoadedTimesheetIntervals(timesheet.getUserId());
+    if (intervals != null) {
+      synchronized (intervals) {
+        final int pos = intervals.findOverlap(timesheet.getStartTime().getTime(), timesheet.getStopTime().getTime(),
+            timesheet.getId());
+        if (pos >= 0) {
+          candidateId = intervals.getId(pos);
+        }
+      }
+    }
+    TimesheetDO ts = null;
+    if (candidateId != null) {
+      ts = internalGetById(candidateId);
+      if (ts != null && isOverlapping(timesheet, ts) == false) {
+        ts = null;
+      }
+    }
+    if (ts == null) {
+      ts = getOverlappingTimesheet(timesheet);
+      if (intervals != null && (ts != null || candidateId != null)) {
+        log.info("Time periods of time sheets of user with id " + timesheet.getUserId()
+            + " are out-dated (collision " + (ts != null ? "not found in memory" : "not found in data base")
+            + "), will be reloaded.");
+        recheckTimesheetOverlap(timesheet.getUserId());
+      }
+      if (ts == null) {
+        return false;
+      }
+    }
+    if (throwException == true) {
+      log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + ts);
+      final String startTime = DateHelper.formatIsoTimestamp(ts.getStartTime());
+      final String stopTime = DateHelper.formatIsoTimestamp(ts.getStopTime());
+      throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(ts.getId()),
+          new MessageParam(startTime),
+          new MessageParam(stopTime));
+    }
+    return true;
+  }
+
+  /**
+   * @param timesheet
+   * @param other
+   * @return true, if the other time sheet is a not deleted time sheet of the same user overlapping the given one.
+   */
+  private boolean isOverlapping(final TimesheetDO timesheet, final TimesheetDO other)
+  {
+    return other.isDeleted() == false
+        && ObjectUtils.equals(timesheet.getUserId(), other.getUserId()) == true
+        && ObjectUtils.equals(timesheet.getId(), other.getId()) == false
+        && other.getStartTime().before(timesheet.getStopTime()) == true
+        && other.getStopTime().after(timesheet.getStartTime()) == true;
+  }
+
+  /**
+   * @param timesheet
+   * @return The first (not deleted) time sheet of the same user overlapping the given time sheet or null if no such time
+   *         sheet exists in the data base.
+   */
+  private TimesheetDO getOverlappingTimesheet(final TimesheetDO timesheet)
+  {
     final QueryFilter queryFilter = new QueryFilter();
     queryFilter.add(Restrictions.eq("user", timesheet.getUser()));
     queryFilter.add(Restrictions.lt("startTime", timesheet.getStopTime()));
@@ -465,24 +729,114 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
       // Update time sheet, do not compare with itself.
       queryFilter.add(Restrictions.ne("id", timesheet.getId()));
     }
-    final List<TimesheetDO> list = getList(queryFilter);
-    if (list != null && list.size() > 0) {
-      final TimesheetDO ts = list.get(0);
-      if (throwException == true) {
-        log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + ts);
-        final String startTime = DateHelper.formatIsoTimestamp(ts.getStartTime());
-        final String stopTime = DateHelper.formatIsoTimestamp(ts.getStopTime());
-        throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(ts.getId()),
-            new MessageParam(startTime),
-            new MessageParam(stopTime));
-      }
-      long end = System.currentTimeMillis();
-      log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
-      return true;
+    // Without access checking, the check shouldn't depend on the logged-in user:
+    final List<TimesheetDO> list = internalGetList(queryFilter);
+    return CollectionUtils.isNotEmpty(list) == true ? list.get(0) : null;
+  }
+
+  /**
+   * @param userId
+   * @return The time periods of all time sheets of the given user, loaded from the data base if not yet done.
+   */
+  @SuppressWarnings("unchecked")
+  private TimesheetIntervals getTimesheetIntervals(final Integer userId)
+  {
+    TimesheetIntervals intervals;
+    synchronized (timesheetIntervalsByUser) {
+      intervals = timesheetIntervalsByUser.get(userId);
+      if (intervals == null) {
+        intervals = new TimesheetIntervals();
+        timesheetIntervalsByUser.put(userId, intervals);
+      }
     }
-    long end = System.currentTimeMillis();
-    log.info("TimesheetDao.hasTimeOverlap took: " + (end - begin) + " ms.");
-    return false;
+    synchronized (intervals) {
+      if (intervals.isLoaded() == false) {
+        final long begin = System.currentTimeMillis();
+        final List<Object[]> list = (List<Object[]>) getHibernateTemplate().find(
+            "select id, startTime, stopTime from TimesheetDO t where user.id=? and deleted=false order by startTime",
+            userId);
+        for (final Object[] row : list) {
+          intervals.put((Integer) row[0], ((Date) row[1]).getTime(), ((Date) row[2]).getTime());
+        }
+        intervals.setLoaded(true);
+        log.info("Loading time periods of " + intervals.size() + " time sheets of user with id " + userId + " took: "
+            + (System.currentTimeMillis() - begin) + " ms.");
+      }
+    }
+    return intervals;
+  }
+
+  /**
+   * @param userId
+   * @return The time periods of the given user or null, if not (yet) loaded.
+   */
+  private TimesheetIntervals getLoadedTimesheetIntervals(final Integer userId)
+  {
+    final TimesheetIntervals intervals;
+    synchronized (timesheetIntervalsByUser) {
+      intervals = timesheetIntervalsByUser.get(userId);
+    }
+    if (intervals == null) {
+      return null;
+    }
+    synchronized (intervals) {
+      return intervals.isLoaded() == true ? intervals : null;
+    }
+  }
+
+  /**
+   * Adds or updates the time period of the given time sheet in the time periods of the user, if already loaded. The
+   * time periods are modified after commit, so they never contain time periods of rolled back modifications.
+   *
+   * @param obj
+   */
+  private void putToTimesheetIntervals(final TimesheetDO obj)
+  {
+    if (obj.getUserId() == null || obj.getId() == null || obj.getStartTime() == null || obj.getStopTime() == null) {
+      return;
+    }
+    final Integer userId = obj.getUserId();
+    final int id = obj.getId();
+    final long startTime = obj.getStartTime().getTime();
+    final long stopTime = obj.getStopTime().getTime();
+    TransactionHelper.runAfterCommit(() -> {
+      final TimesheetIntervals intervals;
+      synchronized (timesheetIntervalsByUser) {
+        intervals = timesheetIntervalsByUser.get(userId);
+      }
+      if (intervals == null) {
+        // Not yet loaded.
+        return;
+      }
+      synchronized (intervals) {
+        intervals.put(id, startTime, stopTime);
+      }
+    });
+  }
+
+  /**
+   * Removes the time period of the given time sheet from the time periods of the user (after commit).
+   *
+   * @param userId
+   * @param timesheetId
+   */
+  private void removeFromTimesheetIntervals(final Integer userId, final Integer timesheetId)
+  {
+    if (userId == null || timesheetId == null) {
+      return;
+    }
+    TransactionHelper.runAfterCommit(() -> {
+      final TimesheetIntervals intervals;
+      synchronized (timesheetIntervalsByUser) {
+        intervals = timesheetIntervalsByUser.get(userId);
+      }
+      if (intervals == null) {
+        return;
+      }
+      synchronized (intervals) {
+        intervals.remove(timesheetId);
+      }
+    });
   }
 
   /**
@@ -534,6 +888,17 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
    */
   @Override
   public boolean hasSelectAccess(final PFUserDO user, final TimesheetDO obj, final boolean throwException)
+  {
+    return hasSelectAccess(user, obj, throwException, true);
+  }
+
+  /**
+   * @param hideFields If false, the given time sheet isn't modified (e. g. for checking transient time sheets used only
+   *          for aggregations).
+   * @see #hasSelectAccess(PFUserDO, TimesheetDO, boolean)
+   */
+  private boolean hasSelectAccess(final PFUserDO user, final TimesheetDO obj, final boolean throwException,
+      final boolean hideFields)
   {
     if (hasAccess(user, obj, null, OperationType.SELECT, false) == false) {
       // User has no access by definition.
@@ -548,12 +913,14 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
             }
           }
         }
-        // An user should see his own time sheets, but the values should be hidden.
-        // A project manager should also see all time sheets, but the values should be hidden.
-        getSession().evict(obj);
-        obj.setDescription(HIDDEN_FIELD_MARKER);
-        obj.setLocation(HIDDEN_FIELD_MARKER);
-        log.debug("User has no access to own time sheet (or project manager): " + obj);
+        if (hideFields == true) {
+          // An user should see his own time sheets, but the values should be hidden.
+          // A project manager should also see all time sheets, but the values should be hidden.
+          getSession().evict(obj);
+          obj.setDescription(HIDDEN_FIELD_MARKER);
+          obj.setLocation(HIDDEN_FIELD_MARKER);
+          log.debug("User has no access to own time sheet (or project manager): " + obj);
+        }
         return true;
       }
     }
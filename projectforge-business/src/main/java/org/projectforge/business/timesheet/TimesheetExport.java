@@ -23,6 +23,8 @@
 
 package org.projectforge.business.timesheet;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
@@ -48,6 +50,8 @@ import org.projectforge.excel.ExportWorkbook;
 import org.projectforge.excel.I18nExportColumn;
 import org.projectforge.excel.PropertyMapping;
 import org.projectforge.export.MyXlsContentProvider;
+import org.projectforge.framework.persistence.api.BaseSearchFilter;
+import org.projectforge.framework.persistence.api.ResultPage;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateFormatType;
@@ -55,6 +59,7 @@ import org.projectforge.framework.time.DateFormats;
 import org.projectforge.framework.time.DateHolder;
 import org.projectforge.framework.time.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -68,9 +73,18 @@ public class TimesheetExport
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(TimesheetExport.class);
 
+  /**
+   * Number of time sheets read at once by {@link #export(TimesheetFilter, OutputStream)}.
+   */
+  @Value("${projectforge.timesheet.exportPageSize:1000}")
+  private int exportPageSize;
+
   @Autowired
   private DateTimeFormatter dateTimeFormatter;
 
+  @Autowired
+  private TimesheetDao timesheetDao;
+
   private class MyContentProvider extends MyXlsContentProvider
   {
     public MyContentProvider(final ExportWorkbook workbook)
@@ -116,12 +130,37 @@ public class TimesheetExport
   }
 
   /**
-   * Exports the filtered list as table with almost all fields.
+   * Exports the time sheets of the given filter as xlsx table with almost all fields. The time sheets are read page by
+   * page and the rows are streamed, so neither the list of time sheets nor the workbook is held in memory. Only time
+   * sheets with select access are exported (see {@link TimesheetDao#getPage(BaseSearchFilter, int, String)}). The rows
+   * are ordered by start time as given by {@link TimesheetFilter#getOrderType()}, other orders can't be paged by the
+   * data base.
+   * 
+   * @param out The OutputStream will be closed by this method.
+   * @return The number of exported time sheets.
+   * @see ExportWorkbook#createStreamingWorkbook()
+   * @see TimesheetDao#getPage(BaseSearchFilter, int, String)
    */
-  public byte[] export(final List<TimesheetDO> list)
+  public int export(final TimesheetFilter filter, final OutputStream out) throws IOException
+  {
+    log.info("Exporting timesheets (xlsx).");
+    final ExportWorkbook xls = ExportWorkbook.createStreamingWorkbook();
+    final ExportSheet sheet = createSheet(xls);
+    int counter = 0;
+    String continuationToken = null;
+    do {
+      final ResultPage<TimesheetDO> page = timesheetDao.getPage(filter, exportPageSize, continuationToken);
+      addRows(sheet, page.getList());
+      counter += page.getList().size();
+      continuationToken = page.getContinuationToken();
+    } while (continuationToken != null);
+    sheet.setZoom(3, 4); // 75%
+    xls.write(out);
+    return counter;
+  }
+
+  private ExportSheet createSheet(final ExportWorkbook xls)
   {
-    log.info("Exporting timesheet list.");
-    final ExportWorkbook xls = new ExportWorkbook();
     final ContentProvider contentProvider = new MyContentProvider(xls);
     // create a default Date format and currency column
     xls.setContentProvider(contentProvider);
@@ -158,7 +197,11 @@ public class TimesheetExport
     sheetProvider.putFormat(Col.DURATION, "[h]:mm");
     sheetProvider.putFormat(Col.HOURS, "#,##0.00");
     sheetProvider.putFormat(Col.ID, "0");
+    return sheet;
+  }
 
+  private void addRows(final ExportSheet sheet, final List<TimesheetDO> list)
+  {
     final PropertyMapping mapping = new PropertyMapping();
     final TaskTree taskTree = TaskTreeHelper.getTaskTree();
     final UserGroupCache userGroupCache = TenantRegistryMap.getInstance().getTenantRegistry().getUserGroupCache();
@@ -206,9 +249,6 @@ public class TimesheetExport
       mapping.add(Col.ID, timesheet.getId());
       sheet.addRow(mapping.getMapping(), 0);
     }
-    sheet.setZoom(3, 4); // 75%
-
-    return xls.getAsByteArray();
   }
 
   public void setDateTimeFormatter(final DateTimeFormatter dateTimeFormatter)
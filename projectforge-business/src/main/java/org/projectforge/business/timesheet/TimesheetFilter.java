@@ -62,6 +62,24 @@ public class TimesheetFilter extends BaseSearchFilter implements Serializable, T
     super(filter);
   }
 
+  /**
+   * Copies all fields of the given filter, e. g. for changing the order of an export without changing the filter of
+   * the list page.
+   * @param filter
+   */
+  public TimesheetFilter(final TimesheetFilter filter)
+  {
+    super(filter);
+    setStartTime(filter.getStartTime());
+    setStopTime(filter.getStopTime());
+    this.userId = filter.userId;
+    this.taskId = filter.taskId;
+    this.marked = filter.marked;
+    this.longFormat = filter.longFormat;
+    this.recursive = filter.recursive;
+    this.orderType = filter.orderType;
+  }
+
   public Integer getTaskId()
   {
     return taskId;
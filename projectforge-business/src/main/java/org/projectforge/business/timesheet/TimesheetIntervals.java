@@ -0,0 +1,222 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.timesheet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the time periods of all (not deleted) time sheets of one user sorted by start time. Used for detecting time
+ * sheet overlaps without any data base query. Overlaps of a given time period are found by binary search: only time
+ * sheets starting after (start - maximum duration) and before stop are candidates. <br/>
+ * This class isn't thread safe, the caller has to synchronize on the object.
+ */
+class TimesheetIntervals
+{
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] starts = new long[INITIAL_CAPACITY];
+
+  private long[] stops = new long[INITIAL_CAPACITY];
+
+  private int[] ids = new int[INITIAL_CAPACITY];
+
+  private int size;
+
+  /**
+   * Start time by time sheet id, for finding the position of a time sheet by binary search.
+   */
+  private final Map<Integer, Long> startById = new HashMap<Integer, Long>();
+
+  /**
+   * Maximum duration of all time sheets (limits the search window of {@link #findOverlap(long, long, Integer)}).
+   */
+  private long maxDuration;
+
+  /**
+   * Ids of all overlapping time sheets, null if not yet calculated.
+   */
+  private Set<Integer> overlaps;
+
+  private boolean loaded;
+
+  boolean isLoaded()
+  {
+    return loaded;
+  }
+
+  void setLoaded(final boolean loaded)
+  {
+    this.loaded = loaded;
+  }
+
+  int size()
+  {
+    return size;
+  }
+
+  /**
+   * Adds the time period of the given time sheet. Any previous stored period of the time sheet will be removed first.
+   *
+   * @param id
+   * @param start
+   * @param stop
+   */
+  void put(final int id, final long start, final long stop)
+  {
+    remove(id);
+    if (size == starts.length) {
+      final int capacity = size << 1;
+      starts = Arrays.copyOf(starts, capacity);
+      stops = Arrays.copyOf(stops, capacity);
+      ids = Arrays.copyOf(ids, capacity);
+    }
+    // Insert after all entries with the same start time (appending is cheap for loading sorted entries):
+    final int pos = indexOfFirstStartAfter(start);
+    final int tail = size - pos;
+    if (tail > 0) {
+      System.arraycopy(starts, pos, starts, pos + 1, tail);
+      System.arraycopy(stops, pos, stops, pos + 1, tail);
+      System.arraycopy(ids, pos, ids, pos + 1, tail);
+    }
+    starts[pos] = start;
+    stops[pos] = stop;
+    ids[pos] = id;
+    ++size;
+    startById.put(id, start);
+    if (stop - start > maxDuration) {
+      maxDuration = stop - start;
+    }
+    overlaps = null;
+  }
+
+  /**
+   * @param id
+   * @return true if the time sheet was found and removed.
+   */
+  boolean remove(final int id)
+  {
+    final Long start = startById.remove(id);
+    if (start == null) {
+      return false;
+    }
+    // Only the entries with the same start time have to be checked:
+    for (int i = indexOfFirstStartAfter(start - 1); i < size && starts[i] == start; i++) {
+      if (ids[i] == id) {
+        final int tail = size - i - 1;
+        if (tail > 0) {
+          System.arraycopy(starts, i + 1, starts, i, tail);
+          System.arraycopy(stops, i + 1, stops, i, tail);
+          System.arraycopy(ids, i + 1, ids, i, tail);
+        }
+        --size;
+        overlaps = null;
+        return true;
+      }
+    }
+    throw new IllegalStateException("Time sheet #" + id + " not found at its start time " + start + ".");
+  }
+
+  /**
+   * @param start
+   * @param stop
+   * @param excludeId Id of the time sheet to ignore (the time sheet itself on update), may be null.
+   * @return The position of the first time sheet overlapping the given time period or -1 if no overlap exists.
+   */
+  int findOverlap(final long start, final long stop, final Integer excludeId)
+  {
+    // A time sheet overlaps if it starts before stop and ends after start. It can't end after start if it starts
+    // before (start - maxDuration):
+    for (int i = indexOfFirstStartAfter(start - maxDuration); i < size && starts[i] < stop; i++) {
+      if (stops[i] > start && (excludeId == null || ids[i] != excludeId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  int getId(final int pos)
+  {
+    return ids[pos];
+  }
+
+  long getStart(final int pos)
+  {
+    return starts[pos];
+  }
+
+  long getStop(final int pos)
+  {
+    return stops[pos];
+  }
+
+  /**
+   * @return The ids of all time sheets overlapping any other time sheet (unmodifiable).
+   */
+  Set<Integer> getOverlaps()
+  {
+    if (overlaps == null) {
+      final Set<Integer> result = new HashSet<Integer>();
+      // Sweep: the time sheet with the latest stop time of all previous time sheets overlaps the current time sheet if
+      // any previous time sheet overlaps it.
+      long maxStop = Long.MIN_VALUE;
+      int maxStopId = -1;
+      for (int i = 0; i < size; i++) {
+        if (starts[i] < maxStop) {
+          result.add(ids[i]);
+          result.add(maxStopId);
+        }
+        if (stops[i] > maxStop) {
+          maxStop = stops[i];
+          maxStopId = ids[i];
+        }
+      }
+      overlaps = Collections.unmodifiableSet(result);
+    }
+    return overlaps;
+  }
+
+  /**
+   * @param time
+   * @return The position of the first entry starting after the given time (or size if no such entry exists).
+   */
+  private int indexOfFirstStartAfter(final long time)
+  {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (starts[mid] <= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
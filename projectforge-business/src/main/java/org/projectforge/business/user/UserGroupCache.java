@@ -26,10 +26,11 @@ package org.projectforge.business.user;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
@@ -47,11 +48,14 @@ import org.projectforge.framework.persistence.user.entities.GroupDO;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.persistence.user.entities.TenantDO;
 import org.projectforge.framework.persistence.user.entities.UserRightDO;
+import org.projectforge.framework.utils.IntHashMap;
 import org.springframework.context.ApplicationContext;
 import org.springframework.orm.hibernate5.HibernateTemplate;
 
 /**
- * The group user relations will be cached with this class.
+ * The group user relations will be cached with this class.<br/>
+ * All data is held by one immutable {@link UserGroupCacheSnapshot}, which is replaced as a whole on refresh or
+ * modification. So readers get a consistent view without any locking.
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -63,37 +67,17 @@ public class UserGroupCache extends AbstractCache
 
   private final TenantDO tenant;
 
+  private volatile UserGroupCacheSnapshot snapshot = UserGroupCacheSnapshot.EMPTY;
+
   /**
-   * The key is the user id and the value is a list of assigned groups.
+   * Only set for read-only views of a snapshot (see {@link #UserGroupCache(UserGroupCache, UserGroupCacheSnapshot)}).
    */
-  private Map<Integer, Set<Integer>> userGroupIdMap;
-
-  private Map<Integer, GroupDO> groupMap;
+  private final UserGroupCacheSnapshot fixedSnapshot;
 
   /**
-   * List of all rights (value) defined for the user ids (key).
+   * Employees are read from the data base on demand. Replaced by a new map on every refresh.
    */
-  private Map<Integer, List<UserRightDO>> rightMap;
-
-  private Map<Integer, PFUserDO> userMap;
-
-  private Map<Integer, EmployeeDO> employeeMap;
-
-  private Set<Integer> adminUsers;
-
-  private Set<Integer> financeUsers;
-
-  private Set<Integer> controllingUsers;
-
-  private Set<Integer> projectManagers;
-
-  private Set<Integer> projectAssistants;
-
-  private Set<Integer> marketingUsers;
-
-  private Set<Integer> orgaUsers;
-
-  private Set<Integer> hrUsers;
+  private volatile ConcurrentMap<Integer, EmployeeDO> employeeMap = new ConcurrentHashMap<Integer, EmployeeDO>();
 
   private HibernateTemplate hibernateTemplate;
 
@@ -106,17 +90,53 @@ public class UserGroupCache extends AbstractCache
   public UserGroupCache(final TenantDO tenant, ApplicationContext applicationContext)
   {
     setExpireTimeInHours(1);
+    setBackgroundRefresh(true);
     this.tenant = tenant;
     this.tenantChecker = applicationContext.getBean(TenantChecker.class);
     this.userRights = applicationContext.getBean(UserRightService.class);
     this.hibernateTemplate = applicationContext.getBean(HibernateTemplate.class);
     this.tenantService = applicationContext.getBean(TenantService.class);
+    this.fixedSnapshot = null;
   }
 
-  public GroupDO getGroup(final ProjectForgeGroup group)
+  /**
+   * Read-only view of the given snapshot, which is never refreshed. Used while refreshing: the availability of the
+   * user rights depends on the group memberships of the snapshot under construction.
+   */
+  private UserGroupCache(final UserGroupCache cache, final UserGroupCacheSnapshot snapshot)
+  {
+    this.tenant = cache.tenant;
+    this.tenantChecker = cache.tenantChecker;
+    this.userRights = cache.userRights;
+    this.hibernateTemplate = cache.hibernateTemplate;
+    this.tenantService = cache.tenantService;
+    this.fixedSnapshot = snapshot;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Read-only views are never refreshed.
+   *
+   * @see org.projectforge.framework.cache.AbstractCache#checkRefresh()
+   */
+  @Override
+  protected void checkRefresh()
+  {
+    if (fixedSnapshot != null) {
+      return;
+    }
+    super.checkRefresh();
+  }
+
+  private UserGroupCacheSnapshot getSnapshot()
   {
     checkRefresh();
-    for (final GroupDO g : groupMap.values()) {
+    return snapshot;
+  }
+
+  public GroupDO getGroup(final ProjectForgeGroup group)
+  {
+    for (final GroupDO g : getSnapshot().getAllGroups()) {
       if (group.equals(g.getName()) == true) {
         return g;
       }
@@ -129,8 +149,7 @@ public class UserGroupCache extends AbstractCache
     if (userId == null) {
       return null;
     }
-    // checkRefresh(); Done by getUserMap().
-    return getUserMap() != null ? userMap.get(userId) : null; // Only null in maintenance mode (if t_user isn't readable).
+    return getSnapshot().getUser(userId);
   }
 
   public PFUserDO getUser(final String username)
@@ -138,7 +157,7 @@ public class UserGroupCache extends AbstractCache
     if (StringUtils.isEmpty(username) == true) {
       return null;
     }
-    for (final PFUserDO user : getUserMap().values()) {
+    for (final PFUserDO user : getSnapshot().getAllUsers()) {
       if (username.equals(user.getUsername()) == true) {
         return user;
       }
@@ -151,7 +170,7 @@ public class UserGroupCache extends AbstractCache
     if (StringUtils.isEmpty(fullname) == true) {
       return null;
     }
-    for (final PFUserDO user : getUserMap().values()) {
+    for (final PFUserDO user : getSnapshot().getAllUsers()) {
       if (fullname.equals(user.getFullname()) == true) {
         return user;
       }
@@ -164,8 +183,7 @@ public class UserGroupCache extends AbstractCache
    */
   public Collection<PFUserDO> getAllUsers()
   {
-    // checkRefresh(); Done by getUserMap().
-    return getUserMap().values();
+    return getSnapshot().getAllUsers();
   }
 
   /**
@@ -173,8 +191,7 @@ public class UserGroupCache extends AbstractCache
    */
   public Collection<GroupDO> getAllGroups()
   {
-    // checkRefresh(); Done by getGMap().
-    return getGroupMap().values();
+    return getSnapshot().getAllGroups();
   }
 
   /**
@@ -182,18 +199,12 @@ public class UserGroupCache extends AbstractCache
    */
   public int internalGetNumberOfUsers()
   {
-    if (userMap == null) {
-      return 0;
-    } else {
-      // checkRefresh(); Done by getUserMap().
-      return getUserMap().size();
-    }
+    return getSnapshot().getAllUsers().size();
   }
 
   public String getUsername(final Integer userId)
   {
-    // checkRefresh(); Done by getUserMap().
-    final PFUserDO user = getUserMap().get(userId);
+    final PFUserDO user = getUser(userId);
     if (user == null) {
       return String.valueOf(userId);
     }
@@ -225,35 +236,37 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfGroup(final Integer userId, final Integer groupId)
   {
-    if (groupId == null) {
+    if (groupId == null || userId == null) {
       return false;
     }
-    checkRefresh();
-    final Set<Integer> groupSet = getUserGroupIdMap().get(userId);
-    return (groupSet != null) ? groupSet.contains(groupId) : false;
+    return getSnapshot().isUserMemberOfGroup(userId, groupId);
   }
 
   public boolean isUserMemberOfAtLeastOneGroup(final Integer userId, final Integer... groupIds)
   {
-    if (groupIds == null) {
-      return false;
-    }
-    checkRefresh();
-    final Set<Integer> groupSet = getUserGroupIdMap().get(userId);
-    if (groupSet == null) {
+    if (groupIds == null || userId == null) {
       return false;
     }
+    final UserGroupCacheSnapshot data = getSnapshot();
     for (final Integer groupId : groupIds) {
       if (groupId == null) {
         continue;
       }
-      if (groupSet.contains(groupId) == true) {
+      if (data.isUserMemberOfGroup(userId, groupId) == true) {
         return true;
       }
     }
     return false;
   }
 
+  private boolean isUserMemberOfGroup(final Integer userId, final ProjectForgeGroup group)
+  {
+    if (userId == null) {
+      return false;
+    }
+    return getSnapshot().isUserMemberOfGroup(userId, group);
+  }
+
   public boolean isUserMemberOfAdminGroup()
   {
     return isUserMemberOfAdminGroup(ThreadLocalUserContext.getUserId());
@@ -261,9 +274,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfAdminGroup(final Integer userId)
   {
-    checkRefresh();
-    // adminUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-    return adminUsers != null ? adminUsers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.ADMIN_GROUP);
   }
 
   public boolean isUserMemberOfFinanceGroup()
@@ -273,9 +284,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfFinanceGroup(final Integer userId)
   {
-    checkRefresh();
-    // financeUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-    return financeUsers != null ? financeUsers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.FINANCE_GROUP);
   }
 
   public boolean isUserMemberOfProjectManagers()
@@ -285,9 +294,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfProjectManagers(final Integer userId)
   {
-    checkRefresh();
-    // projectManagers should only be null in maintenance mode (e. g. if user table isn't readable).
-    return projectManagers != null ? projectManagers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.PROJECT_MANAGER);
   }
 
   public boolean isUserMemberOfProjectAssistant()
@@ -297,9 +304,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfProjectAssistant(final Integer userId)
   {
-    checkRefresh();
-    // projectAssistants should only be null in maintenance mode (e. g. if user table isn't readable).
-    return projectAssistants != null ? projectAssistants.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.PROJECT_ASSISTANT);
   }
 
   public boolean isUserProjectManagerOrAssistantForProject(final ProjektDO projekt)
@@ -321,9 +326,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfControllingGroup(final Integer userId)
   {
-    checkRefresh();
-    // controllingUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-    return controllingUsers != null ? controllingUsers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.CONTROLLING_GROUP);
   }
 
   public boolean isUserMemberOfMarketingGroup()
@@ -333,8 +336,7 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfMarketingGroup(final Integer userId)
   {
-    checkRefresh();
-    return marketingUsers.contains(userId);
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.MARKETING_GROUP);
   }
 
   public boolean isUserMemberOfOrgaGroup()
@@ -344,15 +346,12 @@ public class UserGroupCache extends AbstractCache
 
   public boolean isUserMemberOfOrgaGroup(final Integer userId)
   {
-    checkRefresh();
-    // orgaUsers should only be null in maintenance mode (e. g. if user table isn't readable).
-    return orgaUsers != null ? orgaUsers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.ORGA_TEAM);
   }
 
   public boolean isUserMemberOfHRGroup(final Integer userId)
   {
-    checkRefresh();
-    return hrUsers != null ? hrUsers.contains(userId) : false;
+    return isUserMemberOfGroup(userId, ProjectForgeGroup.HR_GROUP);
   }
 
   /**
@@ -367,28 +366,9 @@ public class UserGroupCache extends AbstractCache
       return false;
     }
     Validate.notNull(groups);
+    final UserGroupCacheSnapshot data = getSnapshot();
     for (final ProjectForgeGroup group : groups) {
-      boolean result = false;
-      if (group == ProjectForgeGroup.ADMIN_GROUP) {
-        result = isUserMemberOfAdminGroup(user.getId());
-      } else if (group == ProjectForgeGroup.FINANCE_GROUP) {
-        result = isUserMemberOfFinanceGroup(user.getId());
-      } else if (group == ProjectForgeGroup.PROJECT_MANAGER) {
-        result = isUserMemberOfProjectManagers(user.getId());
-      } else if (group == ProjectForgeGroup.PROJECT_ASSISTANT) {
-        result = isUserMemberOfProjectAssistant(user.getId());
-      } else if (group == ProjectForgeGroup.CONTROLLING_GROUP) {
-        result = isUserMemberOfControllingGroup(user.getId());
-      } else if (group == ProjectForgeGroup.MARKETING_GROUP) {
-        result = isUserMemberOfMarketingGroup(user.getId());
-      } else if (group == ProjectForgeGroup.ORGA_TEAM) {
-        result = isUserMemberOfOrgaGroup(user.getId());
-      } else if (group == ProjectForgeGroup.HR_GROUP) {
-        result = isUserMemberOfHRGroup(user.getId());
-      } else {
-        throw new UnsupportedOperationException("Group not yet supported: " + group);
-      }
-      if (result == true) {
+      if (data.isUserMemberOfGroup(user.getId(), group) == true) {
         return true;
       }
     }
@@ -397,7 +377,8 @@ public class UserGroupCache extends AbstractCache
 
   public List<UserRightDO> getUserRights(final Integer userId)
   {
-    return getUserRightMap().get(userId);
+    final UserGroupCacheSnapshot.UserEntry entry = getSnapshot().getUserEntry(userId);
+    return entry != null ? entry.getRights() : null;
   }
 
   public UserRightDO getUserRight(final Integer userId, final UserRightId rightId)
@@ -414,12 +395,6 @@ public class UserGroupCache extends AbstractCache
     return null;
   }
 
-  private Map<Integer, List<UserRightDO>> getUserRightMap()
-  {
-    checkRefresh();
-    return rightMap;
-  }
-
   /**
    * Returns a collection of group id's to which the user is assigned to.
    *
@@ -428,21 +403,21 @@ public class UserGroupCache extends AbstractCache
    */
   public Collection<Integer> getUserGroups(final PFUserDO user)
   {
-    checkRefresh();
     return getUserGroupIdMap().get(user.getId());
   }
 
   public EmployeeDO getEmployee(final Integer userId)
   {
     checkRefresh();
-    EmployeeDO employee = this.employeeMap.get(userId);
+    final Map<Integer, EmployeeDO> employeeMap = this.employeeMap;
+    EmployeeDO employee = employeeMap.get(userId);
     if (employee == null) {
       @SuppressWarnings("unchecked")
       final List<EmployeeDO> list = (List<EmployeeDO>) this.hibernateTemplate
           .find("from EmployeeDO e where e.user.id = ?", userId);
       if (list != null && list.size() > 0) {
         employee = list.get(0);
-        this.employeeMap.put(userId, employee);
+        employeeMap.put(userId, employee);
       }
     }
     return employee;
@@ -455,21 +430,17 @@ public class UserGroupCache extends AbstractCache
    */
   public void refreshEmployee(final Integer userId)
   {
-    if (this.employeeMap != null) {
+    if (userId != null) {
       this.employeeMap.remove(userId);
     }
   }
 
-  private Map<Integer, GroupDO> getGroupMap()
-  {
-    checkRefresh();
-    return groupMap;
-  }
-
+  /**
+   * @return The group id's (value) of all users (key). The returned map is unmodifiable.
+   */
   public Map<Integer, Set<Integer>> getUserGroupIdMap()
   {
-    checkRefresh();
-    return userGroupIdMap;
+    return getSnapshot().getUserGroupIdMap();
   }
 
   /**
@@ -478,14 +449,11 @@ public class UserGroupCache extends AbstractCache
    * @param user
    */
   void updateUser(final PFUserDO user)
-  {
-    getUserMap().put(user.getId(), user);
-  }
-
-  private Map<Integer, PFUserDO> getUserMap()
   {
     checkRefresh();
-    return userMap;
+    synchronized (this) {
+      this.snapshot = this.snapshot.withUser(user);
+    }
   }
 
   /**
@@ -501,10 +469,10 @@ public class UserGroupCache extends AbstractCache
       tenantLog = " for tenant " + tenantService.getLogName(tenant);
     }
     log.info("Initializing UserGroupCache " + tenantLog + "...");
-    // This method must not be synchronized because it works with a new copy of maps.
-    final Map<Integer, PFUserDO> uMap = new HashMap<Integer, PFUserDO>();
+    // This method must not be synchronized because it works with a new snapshot.
     // Could not autowire UserDao because of cyclic reference with AccessChecker.
     final List<PFUserDO> users = Login.getInstance().getAllUsers();
+    final IntHashMap<PFUserDO> uMap = new IntHashMap<PFUserDO>(users.size());
     for (final PFUserDO user : users) {
       if (tenant != null) {
         if (tenantChecker.isPartOfTenant(tenant, user) == false) {
@@ -516,16 +484,10 @@ public class UserGroupCache extends AbstractCache
       uMap.put(user.getId(), copiedUser);
     }
     final List<GroupDO> groups = Login.getInstance().getAllGroups();
-    final Map<Integer, GroupDO> gMap = new HashMap<Integer, GroupDO>();
-    final Map<Integer, Set<Integer>> ugIdMap = new HashMap<Integer, Set<Integer>>();
-    final Set<Integer> nAdminUsers = new HashSet<Integer>();
-    final Set<Integer> nFinanceUser = new HashSet<Integer>();
-    final Set<Integer> nControllingUsers = new HashSet<Integer>();
-    final Set<Integer> nProjectManagers = new HashSet<Integer>();
-    final Set<Integer> nProjectAssistants = new HashSet<Integer>();
-    final Set<Integer> nMarketingUsers = new HashSet<Integer>();
-    final Set<Integer> nOrgaUsers = new HashSet<Integer>();
-    final Set<Integer> nhrUsers = new HashSet<Integer>();
+    final IntHashMap<GroupDO> gMap = new IntHashMap<GroupDO>(groups.size());
+    final IntHashMap<Integer> groupIndexMap = new IntHashMap<Integer>(groups.size());
+    final Map<Integer, UserGroupCacheSnapshot.UserEntryBuilder> userEntryBuilders = //
+        new HashMap<Integer, UserGroupCacheSnapshot.UserEntryBuilder>(uMap.size());
     for (final GroupDO group : groups) {
       if (tenant != null) {
         if (tenantChecker.isPartOfTenant(tenant.getId(), group) == false) {
@@ -534,53 +496,31 @@ public class UserGroupCache extends AbstractCache
         }
       }
       gMap.put(group.getId(), group);
+      final int groupIndex = groupIndexMap.size();
+      groupIndexMap.put(group.getId(), groupIndex);
+      ProjectForgeGroup projectForgeGroup = null;
+      for (final ProjectForgeGroup pfGroup : ProjectForgeGroup.values()) {
+        if (pfGroup.equals(group.getName()) == true) {
+          projectForgeGroup = pfGroup;
+          break;
+        }
+      }
       if (group.getAssignedUsers() != null) {
         for (final PFUserDO user : group.getAssignedUsers()) {
           if (user != null) {
-            final Set<Integer> groupIdSet = ensureAndGetUserGroupIdMap(ugIdMap, user.getId());
-            groupIdSet.add(group.getId());
-            if (ProjectForgeGroup.ADMIN_GROUP.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as administrator.");
-              nAdminUsers.add(user.getId());
-            } else if (ProjectForgeGroup.FINANCE_GROUP.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' for finance.");
-              nFinanceUser.add(user.getId());
-            } else if (ProjectForgeGroup.CONTROLLING_GROUP.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' for controlling.");
-              nControllingUsers.add(user.getId());
-            } else if (ProjectForgeGroup.PROJECT_MANAGER.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as project manager.");
-              nProjectManagers.add(user.getId());
-            } else if (ProjectForgeGroup.PROJECT_ASSISTANT.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as project assistant.");
-              nProjectAssistants.add(user.getId());
-            } else if (ProjectForgeGroup.MARKETING_GROUP.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as marketing user.");
-              nMarketingUsers.add(user.getId());
-            } else if (ProjectForgeGroup.ORGA_TEAM.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as orga user.");
-              nOrgaUsers.add(user.getId());
-            } else if (ProjectForgeGroup.HR_GROUP.equals(group.getName()) == true) {
-              log.debug("Adding user '" + user.getUsername() + "' as hr user.");
-              nhrUsers.add(user.getId());
+            UserGroupCacheSnapshot.UserEntryBuilder builder = userEntryBuilders.get(user.getId());
+            if (builder == null) {
+              builder = new UserGroupCacheSnapshot.UserEntryBuilder();
+              userEntryBuilders.put(user.getId(), builder);
+            }
+            if (projectForgeGroup != null && log.isDebugEnabled() == true) {
+              log.debug("Adding user '" + user.getUsername() + "' to " + projectForgeGroup + ".");
             }
+            builder.addGroup(groupIndex, group.getId(), projectForgeGroup);
           }
         }
       }
     }
-    this.userMap = uMap;
-    this.groupMap = gMap;
-    this.adminUsers = nAdminUsers;
-    this.financeUsers = nFinanceUser;
-    this.controllingUsers = nControllingUsers;
-    this.projectManagers = nProjectManagers;
-    this.projectAssistants = nProjectAssistants;
-    this.marketingUsers = nMarketingUsers;
-    this.orgaUsers = nOrgaUsers;
-    this.hrUsers = nhrUsers;
-    this.userGroupIdMap = ugIdMap;
-    this.employeeMap = new HashMap<Integer, EmployeeDO>();
-    final Map<Integer, List<UserRightDO>> rMap = new HashMap<Integer, List<UserRightDO>>();
     List<UserRightDO> rights;
     try {
       rights = (List<UserRightDO>) hibernateTemplate.find("from UserRightDO t order by user.id, right_id");
@@ -591,6 +531,15 @@ public class UserGroupCache extends AbstractCache
           ex);
       rights = new ArrayList<UserRightDO>();
     }
+    final IntHashMap<UserGroupCacheSnapshot.UserEntry> userEntries = new IntHashMap<UserGroupCacheSnapshot.UserEntry>(
+        userEntryBuilders.size());
+    for (final Map.Entry<Integer, UserGroupCacheSnapshot.UserEntryBuilder> entry : userEntryBuilders.entrySet()) {
+      userEntries.put(entry.getKey(), entry.getValue().build());
+    }
+    // The availability of the rights depends on the new group memberships:
+    final UserGroupCacheSnapshot groupsSnapshot = new UserGroupCacheSnapshot(uMap, gMap, groupIndexMap, userEntries);
+    final UserGroupCache groupsView = new UserGroupCache(this, groupsSnapshot);
+    final Map<Integer, List<UserRightDO>> rightsMap = new HashMap<Integer, List<UserRightDO>>();
     List<UserRightDO> list = null;
     Integer userId = null;
     for (final UserRightDO right : rights) {
@@ -599,34 +548,26 @@ public class UserGroupCache extends AbstractCache
         continue;
       }
       if (right.getUserId().equals(userId) == false) {
-        list = new ArrayList<UserRightDO>();
         userId = right.getUserId();
-        if (userId != null) {
-          rMap.put(userId, list);
-        }
+        list = new ArrayList<UserRightDO>();
+        rightsMap.put(userId, list);
       }
       if (userRights.getRight(right.getRightIdString()) != null
-          && userRights.getRight(right.getRightIdString()).isAvailable(this, right.getUser()) == true) {
+          && userRights.getRight(right.getRightIdString()).isAvailable(groupsView, right.getUser()) == true) {
         list.add(right);
       }
     }
-    this.rightMap = rMap;
+    final UserGroupCacheSnapshot newSnapshot = groupsSnapshot.withRights(rightsMap);
+    synchronized (this) {
+      this.snapshot = newSnapshot;
+      this.employeeMap = new ConcurrentHashMap<Integer, EmployeeDO>();
+    }
     log.info("Initializing of UserGroupCache done" + tenantLog + ".");
     Login.getInstance().afterUserGroupCacheRefresh(users, groups);
     long end = System.currentTimeMillis();
     log.info("UserGroupCache.refresh took: " + (end - begin) + " ms.");
   }
 
-  private static Set<Integer> ensureAndGetUserGroupIdMap(final Map<Integer, Set<Integer>> ugIdMap, final Integer userId)
-  {
-    Set<Integer> set = ugIdMap.get(userId);
-    if (set == null) {
-      set = new HashSet<Integer>();
-      ugIdMap.put(userId, set);
-    }
-    return set;
-  }
-
   public synchronized void internalSetAdminUser(final PFUserDO adminUser)
   {
     if (UserFilter.isUpdateRequiredFirst() == false) {
@@ -634,7 +575,7 @@ public class UserGroupCache extends AbstractCache
           "Can't set admin user internally! This method is only available if system is under maintenance (update required first is true)!");
     }
     checkRefresh();
-    this.adminUsers.add(adminUser.getId());
+    this.snapshot = this.snapshot.withProjectForgeGroup(adminUser.getId(), ProjectForgeGroup.ADMIN_GROUP);
   }
 
   /**
@@ -0,0 +1,290 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.user;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.projectforge.framework.persistence.user.entities.UserRightDO;
+import org.projectforge.framework.utils.IntHashMap;
+
+/**
+ * Immutable data of {@link UserGroupCache}. A new snapshot is built completely by every refresh and published in one
+ * step, so readers get a consistent view without any locking. Modifications (such as {@link #withUser(PFUserDO)})
+ * create a modified copy (copy on write).<br/>
+ * The group memberships of a user are stored as bit set of group indices, the memberships of the ProjectForge groups
+ * (admin, finance etc.) as bit mask.
+ */
+class UserGroupCacheSnapshot implements Serializable
+{
+  private static final long serialVersionUID = -1389417563140936532L;
+
+  static final UserGroupCacheSnapshot EMPTY = new UserGroupCacheSnapshot(new IntHashMap<PFUserDO>(),
+      new IntHashMap<GroupDO>(), new IntHashMap<Integer>(), new IntHashMap<UserEntry>());
+
+  /**
+   * Group memberships and rights of a single user (immutable, see {@link UserEntryBuilder} for building an entry).
+   */
+  static final class UserEntry implements Serializable
+  {
+    private static final long serialVersionUID = 8716003428012557385L;
+
+    /**
+     * Indices of the assigned groups (see {@link UserGroupCacheSnapshot#getGroupIndex(Integer)}).
+     */
+    private final BitSet groupIndices;
+
+    private final Set<Integer> groupIds;
+
+    /**
+     * Bit mask of the assigned {@link ProjectForgeGroup}s (1 &lt;&lt; ordinal).
+     */
+    private final int projectForgeGroups;
+
+    private final List<UserRightDO> rights;
+
+    private UserEntry(final BitSet groupIndices, final Set<Integer> groupIds, final int projectForgeGroups,
+        final List<UserRightDO> rights)
+    {
+      this.groupIndices = (BitSet) groupIndices.clone();
+      this.groupIds = Collections.unmodifiableSet(new HashSet<Integer>(groupIds));
+      this.projectForgeGroups = projectForgeGroups;
+      this.rights = rights != null ? Collections.unmodifiableList(new ArrayList<UserRightDO>(rights)) : null;
+    }
+
+    boolean isMemberOfGroupIndex(final int groupIndex)
+    {
+      return groupIndices.get(groupIndex);
+    }
+
+    boolean isMemberOf(final ProjectForgeGroup group)
+    {
+      return (projectForgeGroups & (1 << group.ordinal())) != 0;
+    }
+
+    Set<Integer> getGroupIds()
+    {
+      return groupIds;
+    }
+
+    /**
+     * @return The rights of the user (unmodifiable) or null, if the user has no rights.
+     */
+    List<UserRightDO> getRights()
+    {
+      return rights;
+    }
+
+    UserEntry withProjectForgeGroup(final ProjectForgeGroup group)
+    {
+      return new UserEntry(groupIndices, groupIds, projectForgeGroups | 1 << group.ordinal(), rights);
+    }
+
+    UserEntry withRights(final List<UserRightDO> rights)
+    {
+      return new UserEntry(groupIndices, groupIds, projectForgeGroups, rights);
+    }
+  }
+
+  /**
+   * Collects the group memberships of a user while refreshing.
+   */
+  static final class UserEntryBuilder
+  {
+    private final BitSet groupIndices = new BitSet();
+
+    private final Set<Integer> groupIds = new HashSet<Integer>();
+
+    private int projectForgeGroups;
+
+    UserEntryBuilder addGroup(final int groupIndex, final Integer groupId, final ProjectForgeGroup projectForgeGroup)
+    {
+      groupIndices.set(groupIndex);
+      groupIds.add(groupId);
+      if (projectForgeGroup != null) {
+        projectForgeGroups |= 1 << projectForgeGroup.ordinal();
+      }
+      return this;
+    }
+
+    UserEntry build()
+    {
+      return new UserEntry(groupIndices, groupIds, projectForgeGroups, null);
+    }
+  }
+
+  private final IntHashMap<PFUserDO> userMap;
+
+  private final Collection<PFUserDO> allUsers;
+
+  private final IntHashMap<GroupDO> groupMap;
+
+  private final Collection<GroupDO> allGroups;
+
+  /**
+   * The key is the group id, the value is the index of the group used in {@link UserEntry#groupIndices}.
+   */
+  private final IntHashMap<Integer> groupIndexMap;
+
+  /**
+   * The key is the user id.
+   */
+  private final IntHashMap<UserEntry> userEntries;
+
+  private final Map<Integer, Set<Integer>> userGroupIdMap;
+
+  /**
+   * The given maps mustn't be modified after creating the snapshot.
+   */
+  UserGroupCacheSnapshot(final IntHashMap<PFUserDO> userMap, final IntHashMap<GroupDO> groupMap,
+      final IntHashMap<Integer> groupIndexMap, final IntHashMap<UserEntry> userEntries)
+  {
+    this.userMap = userMap;
+    this.allUsers = Collections.unmodifiableList(userMap.values());
+    this.groupMap = groupMap;
+    this.allGroups = Collections.unmodifiableList(groupMap.values());
+    this.groupIndexMap = groupIndexMap;
+    this.userEntries = userEntries;
+    final Map<Integer, Set<Integer>> ugIdMap = new HashMap<Integer, Set<Integer>>();
+    for (final int userId : userEntries.keys()) {
+      final UserEntry entry = userEntries.get(userId);
+      if (entry.groupIds.isEmpty() == false) {
+        ugIdMap.put(userId, entry.groupIds);
+      }
+    }
+    this.userGroupIdMap = Collections.unmodifiableMap(ugIdMap);
+  }
+
+  PFUserDO getUser(final Integer userId)
+  {
+    return userMap.get(userId);
+  }
+
+  Collection<PFUserDO> getAllUsers()
+  {
+    return allUsers;
+  }
+
+  GroupDO getGroup(final Integer groupId)
+  {
+    return groupMap.get(groupId);
+  }
+
+  Collection<GroupDO> getAllGroups()
+  {
+    return allGroups;
+  }
+
+  UserEntry getUserEntry(final Integer userId)
+  {
+    return userEntries.get(userId);
+  }
+
+  /**
+   * @param groupId
+   * @return The index of the group or -1 if not found.
+   */
+  int getGroupIndex(final Integer groupId)
+  {
+    final Integer index = groupIndexMap.get(groupId);
+    return index != null ? index : -1;
+  }
+
+  boolean isUserMemberOfGroup(final Integer userId, final Integer groupId)
+  {
+    final UserEntry entry = userEntries.get(userId);
+    if (entry == null) {
+      return false;
+    }
+    final int index = getGroupIndex(groupId);
+    return index >= 0 && entry.isMemberOfGroupIndex(index);
+  }
+
+  boolean isUserMemberOfGroup(final Integer userId, final ProjectForgeGroup group)
+  {
+    final UserEntry entry = userEntries.get(userId);
+    return entry != null && entry.isMemberOf(group);
+  }
+
+  Map<Integer, Set<Integer>> getUserGroupIdMap()
+  {
+    return userGroupIdMap;
+  }
+
+  /**
+   * @param user
+   * @return A copy of this snapshot with the given user (added or replaced).
+   */
+  UserGroupCacheSnapshot withUser(final PFUserDO user)
+  {
+    final IntHashMap<PFUserDO> nUserMap = new IntHashMap<PFUserDO>(userMap);
+    nUserMap.put(user.getId(), user);
+    return new UserGroupCacheSnapshot(nUserMap, groupMap, groupIndexMap, userEntries);
+  }
+
+  /**
+   * @param userId
+   * @param group
+   * @return A copy of this snapshot with the given user as member of the given ProjectForge group.
+   */
+  UserGroupCacheSnapshot withProjectForgeGroup(final Integer userId, final ProjectForgeGroup group)
+  {
+    final IntHashMap<UserEntry> nUserEntries = new IntHashMap<UserEntry>(userEntries);
+    final UserEntry old = userEntries.get(userId);
+    final UserEntry entry = old != null ? old : new UserEntryBuilder().build();
+    nUserEntries.put(userId, entry.withProjectForgeGroup(group));
+    return new UserGroupCacheSnapshot(userMap, groupMap, groupIndexMap, nUserEntries);
+  }
+
+  /**
+   * @param rights The rights by user id.
+   * @return A copy of this snapshot with the given rights of the users (the rights of all other users are removed).
+   */
+  UserGroupCacheSnapshot withRights(final Map<Integer, List<UserRightDO>> rights)
+  {
+    final IntHashMap<UserEntry> nUserEntries = new IntHashMap<UserEntry>(userEntries);
+    for (final int userId : userEntries.keys()) {
+      final UserEntry entry = userEntries.get(userId);
+      if (entry.rights != null && rights.containsKey(userId) == false) {
+        nUserEntries.put(userId, entry.withRights(null));
+      }
+    }
+    for (final Map.Entry<Integer, List<UserRightDO>> userRights : rights.entrySet()) {
+      final UserEntry old = userEntries.get(userRights.getKey());
+      final UserEntry entry = old != null ? old : new UserEntryBuilder().build();
+      nUserEntries.put(userRights.getKey(), entry.withRights(userRights.getValue()));
+    }
+    return new UserGroupCacheSnapshot(userMap, groupMap, groupIndexMap, nUserEntries);
+  }
+}
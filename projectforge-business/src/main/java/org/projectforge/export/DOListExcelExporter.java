@@ -42,12 +42,22 @@ public class DOListExcelExporter extends MyExcelExporter
    * @param filename
    */
   public DOListExcelExporter(final String filenameIdentifier)
+  {
+    this(filenameIdentifier, false);
+  }
+
+  /**
+   * @param filenameIdentifier
+   * @param streaming If true, the sheets are written as streamed xlsx file.
+   * @see org.projectforge.excel.ExcelExporter#ExcelExporter(String, boolean)
+   */
+  public DOListExcelExporter(final String filenameIdentifier, final boolean streaming)
   {
     super("ProjectForge-"
         + (filenameIdentifier != null ? filenameIdentifier : "export")
         + "_"
         + DateHelper.getDateAsFilenameSuffix(new Date())
-        + ".xls");
+        + (streaming == true ? ".xlsx" : ".xls"), streaming);
   }
 
   /**
@@ -24,10 +24,20 @@
 package org.projectforge.framework.cache;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class is usefull, if the stored object of derived classes has to be cached. After reaching expireTime during a
- * request, the method refresh will be called.
+ * request, the method refresh will be called.<br/>
+ * If background refresh is enabled (see {@link #setBackgroundRefresh(boolean)}), an expired cache (expireTime reached)
+ * isn't refreshed inside the calling request: the caller gets the last published data and the refresh is done by a
+ * single background worker. Derived classes have to build their data in local variables and have to publish it at
+ * the end of refresh() in one step through a volatile field (as e. g. KostCache does). Explicit calls of
+ * {@link #setExpired()} result in a synchronous refresh on next access. If a background refresh is running at that
+ * time, the callers get the last published data without waiting and the cache stays expired, so the next access
+ * after the running refresh refreshes the cache again.
  * 
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -45,13 +55,38 @@ public abstract class AbstractCache implements Serializable
 
   public static final long TICKS_PER_DAY = 24 * TICKS_PER_HOUR;
 
+  /**
+   * One worker thread shared by all caches, so at maximum one background refresh is running at the same time.
+   */
+  private static final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+  {
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+      final Thread thread = new Thread(runnable, "AbstractCache-refresh");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
   protected long expireTime = 60 * TICKS_PER_MINUTE;
 
-  private transient long timeOfLastRefresh = -1;
+  private boolean backgroundRefresh = false;
 
-  private transient boolean isExpired = true;
+  private transient volatile long timeOfLastRefresh = -1;
+
+  private transient volatile boolean isExpired = true;
+
+  /**
+   * Incremented by {@link #setExpired()}. Used for detecting expirations during a running refresh.
+   */
+  private transient volatile long expiredCounter = 0;
 
-  private transient boolean refreshInProgress = false;
+  private transient volatile boolean refreshInProgress = false;
+
+  private transient volatile long lastRefreshDuration = -1;
+
+  private transient volatile long refreshCounter = 0;
 
   protected AbstractCache()
   {
@@ -81,10 +116,30 @@ public abstract class AbstractCache implements Serializable
   }
 
   /**
-   * Cache will be refreshed before next use.
+   * If true, expired caches will be refreshed by a background worker and the callers get the last published data
+   * meanwhile. The very first refresh and refreshes forced by {@link #setExpired()} are done synchronously (unless a
+   * background refresh is already running, see {@link #setExpired()}). Default is false.
+   * 
+   * @param backgroundRefresh
+   */
+  public void setBackgroundRefresh(final boolean backgroundRefresh)
+  {
+    this.backgroundRefresh = backgroundRefresh;
+  }
+
+  public boolean isBackgroundRefresh()
+  {
+    return backgroundRefresh;
+  }
+
+  /**
+   * Cache will be refreshed before next use. If a background refresh is running, it doesn't mark the cache as up to
+   * date when finished, and the next access after it refreshes the cache synchronously. Meanwhile the callers get the
+   * last published data.
    */
   public void setExpired()
   {
+    this.expiredCounter++;
     this.isExpired = true;
   }
 
@@ -98,30 +153,106 @@ public abstract class AbstractCache implements Serializable
   }
 
   /**
-   * Checks the expire time and calls refresh, if cache is expired.
+   * Checks the expire time and calls refresh, if cache is expired. If background refresh is enabled and the cache is
+   * only outdated (expireTime reached), the refresh will be scheduled and this method returns immediately.
    */
-  protected synchronized void checkRefresh()
+  protected void checkRefresh()
   {
-    if (refreshInProgress == true) {
-      // Do nothing because refreshing is already in progress.
-      return;
+    if (this.isExpired == false) {
+      if (System.currentTimeMillis() - this.timeOfLastRefresh <= this.expireTime) {
+        // Nothing to do (no lock needed).
+        return;
+      }
+      if (this.backgroundRefresh == true && this.timeOfLastRefresh > 0) {
+        // Stale while revalidate: the last published data is still used until the background refresh is done.
+        scheduleBackgroundRefresh();
+        return;
+      }
     }
-    if (this.isExpired == true || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
-      try {
-        refreshInProgress = true;
-        this.timeOfLastRefresh = System.currentTimeMillis();
+    synchronized (this) {
+      if (refreshInProgress == true) {
+        // Do nothing because refreshing is already in progress.
+        return;
+      }
+      if (this.isExpired == true || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
         try {
-          this.refresh();
-        } catch (final Throwable ex) {
-          log.error(ex.getMessage(), ex);
+          refreshInProgress = true;
+          doRefresh();
+        } finally {
+          refreshInProgress = false;
         }
-        this.isExpired = false;
-      } finally {
+      }
+    }
+  }
+
+  /**
+   * Like {@link #checkRefresh()}, but the refresh is never done inside the calling thread, also not the very first one.
+   * Used by caches, which are expensive to initialize and whose callers have a fallback as long as no data is published.
+   */
+  protected void checkRefreshInBackground()
+  {
+    if (this.isExpired == false && System.currentTimeMillis() - this.timeOfLastRefresh <= this.expireTime) {
+      // Nothing to do (no lock needed).
+      return;
+    }
+    scheduleBackgroundRefresh();
+  }
+
+  private void scheduleBackgroundRefresh()
+  {
+    synchronized (this) {
+      if (refreshInProgress == true) {
+        return;
+      }
+      refreshInProgress = true;
+    }
+    try {
+      refreshExecutor.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try {
+            doRefresh();
+          } finally {
+            synchronized (AbstractCache.this) {
+              refreshInProgress = false;
+            }
+          }
+        }
+      });
+    } catch (final RuntimeException ex) {
+      log.error("Can't schedule background refresh of " + getClass().getName() + ": " + ex.getMessage(), ex);
+      synchronized (this) {
         refreshInProgress = false;
       }
     }
   }
 
+  /**
+   * Calls refresh and updates the statistics. The cache remains expired if {@link #setExpired()} was called during
+   * the refresh.
+   */
+  private void doRefresh()
+  {
+    final long expiredCounterBefore = this.expiredCounter;
+    final long begin = System.currentTimeMillis();
+    this.timeOfLastRefresh = begin;
+    try {
+      this.refresh();
+    } catch (final Throwable ex) {
+      log.error(ex.getMessage(), ex);
+    }
+    this.lastRefreshDuration = System.currentTimeMillis() - begin;
+    this.refreshCounter++;
+    if (expiredCounterBefore == this.expiredCounter) {
+      this.isExpired = false;
+    }
+    if (log.isDebugEnabled() == true) {
+      log.debug("Refresh of " + getClass().getName() + " took " + lastRefreshDuration + " ms.");
+    }
+  }
+
   /**
    * @return true if currently a cache refresh is running, otherwise false.
    */
@@ -130,6 +261,40 @@ public abstract class AbstractCache implements Serializable
     return refreshInProgress;
   }
 
+  /**
+   * @return the duration of the last refresh in milliseconds or -1 if the cache wasn't refreshed yet.
+   */
+  public long getLastRefreshDuration()
+  {
+    return lastRefreshDuration;
+  }
+
+  /**
+   * @return the age of the currently published data in milliseconds (time since start of the last refresh) or -1 if
+   *         the cache wasn't refreshed yet.
+   */
+  public long getAge()
+  {
+    final long time = this.timeOfLastRefresh;
+    return time < 0 ? -1 : System.currentTimeMillis() - time;
+  }
+
+  /**
+   * @return the start time of the last refresh in milliseconds or -1 if the cache wasn't refreshed yet.
+   */
+  public long getTimeOfLastRefresh()
+  {
+    return timeOfLastRefresh;
+  }
+
+  /**
+   * @return the number of refreshes since creation of this cache.
+   */
+  public long getRefreshCounter()
+  {
+    return refreshCounter;
+  }
+
   /**
    * Please implement this method refreshing the stored object _data. Do not forget to call checkRefresh in your cache
    * methods.
@@ -27,10 +27,12 @@ import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.projectforge.framework.configuration.ConfigXml;
+import org.projectforge.framework.configuration.ConfigurationListener;
 import org.projectforge.framework.time.DayHolder;
 
 /**
@@ -38,7 +40,7 @@ import org.projectforge.framework.time.DayHolder;
  * @author Kai Reinhard (k.reinhard@micromata.de)
  * 
  */
-public class Holidays
+public class Holidays implements ConfigurationListener
 {
   private static final Logger log = Logger.getLogger(Holidays.class);
 
@@ -49,8 +51,11 @@ public class Holidays
     return instance;
   }
 
-  /** Contains all holidays of a year. Key is the year. Value is a map of all holidays in the year with the day of the year as key. */
-  private Map<Integer, Map<Integer, Holiday>> holidaysByYear = new HashMap<Integer, Map<Integer, Holiday>>();
+  /**
+   * Contains all holidays and working days of a year. Key is the year. The values are immutable, so they're read without
+   * any lock.
+   */
+  private final Map<Integer, WorkingDaysOfYear> workingDaysByYear = new ConcurrentHashMap<Integer, WorkingDaysOfYear>();
 
   private Map<HolidayDefinition, ConfigureHoliday> reconfiguredHolidays = new HashMap<HolidayDefinition, ConfigureHoliday>();
 
@@ -173,42 +178,68 @@ public class Holidays
     holidays.put(dayOfYear, holiday);
   }
 
-  private synchronized Map<Integer, Holiday> getHolidays(int year)
+  /**
+   * @param year
+   * @return The holidays and working days of the given year (computed only once per year and holiday configuration).
+   */
+  public WorkingDaysOfYear getWorkingDaysOfYear(final int year)
+  {
+    final WorkingDaysOfYear workingDays = workingDaysByYear.get(year);
+    if (workingDays != null) {
+      return workingDays;
+    }
+    return computeWorkingDaysOfYear(year);
+  }
+
+  private synchronized WorkingDaysOfYear computeWorkingDaysOfYear(final int year)
   {
     if (xmlConfiguration == null) {
       xmlConfiguration = ConfigXml.getInstance();
-      if (xmlConfiguration.getHolidays() != null) {
-        for (final ConfigureHoliday holiday : xmlConfiguration.getHolidays()) {
-          if (holiday.getId() != null) {
-            reconfiguredHolidays.put(holiday.getId(), holiday);
-          }
+      xmlConfiguration.register(this);
+      readReconfiguredHolidays();
+    }
+    WorkingDaysOfYear workingDays = workingDaysByYear.get(year);
+    if (workingDays == null) {
+      workingDays = new WorkingDaysOfYear(year, computeHolidays(year));
+      workingDaysByYear.put(year, workingDays);
+    }
+    return workingDays;
+  }
+
+  private void readReconfiguredHolidays()
+  {
+    reconfiguredHolidays.clear();
+    if (xmlConfiguration.getHolidays() != null) {
+      for (final ConfigureHoliday holiday : xmlConfiguration.getHolidays()) {
+        if (holiday.getId() != null) {
+          reconfiguredHolidays.put(holiday.getId(), holiday);
         }
-        holidaysByYear.clear();
       }
     }
-    Map<Integer, Holiday> holidays = holidaysByYear.get(new Integer(year));
-    if (holidays == null) {
-      holidays = computeHolidays(year);
-      holidaysByYear.put(year, holidays);
+  }
+
+  /**
+   * The holidays may be reconfigured, so all years will be computed again.
+   * 
+   * @see org.projectforge.framework.configuration.ConfigurationListener#afterRead()
+   */
+  @Override
+  public synchronized void afterRead()
+  {
+    if (xmlConfiguration != null) {
+      readReconfiguredHolidays();
     }
-    return holidays;
+    workingDaysByYear.clear();
   }
 
   public boolean isHoliday(int year, int dayOfYear)
   {
-    return (getHolidays(year).containsKey(dayOfYear) == true);
+    return getWorkingDaysOfYear(year).getHoliday(dayOfYear) != null;
   }
 
   public boolean isWorkingDay(final DayHolder date)
   {
-    if (date.isWeekend() == true) {
-      return false;
-    }
-    final Holiday day = getHolidays(date.getYear()).get(date.getDayOfYear());
-    if (day != null && day.isWorkingDay() == false) {
-      return false;
-    }
-    return true;
+    return getWorkingDaysOfYear(date.getYear()).isWorkingDay(date.getDayOfYear());
   }
 
   public BigDecimal getWorkFraction(final DayHolder date)
@@ -216,7 +247,7 @@ public class Holidays
     if (date.isWeekend() == true) {
       return null;
     }
-    final Holiday day = getHolidays(date.getYear()).get(date.getDayOfYear());
+    final Holiday day = getWorkingDaysOfYear(date.getYear()).getHoliday(date.getDayOfYear());
     if (day == null) {
       return null;
     }
@@ -225,7 +256,7 @@ public class Holidays
 
   public String getHolidayInfo(int year, int dayOfYear)
   {
-    final Holiday day = getHolidays(year).get(dayOfYear);
+    final Holiday day = getWorkingDaysOfYear(year).getHoliday(dayOfYear);
     if (day == null) {
       return "";
     }
@@ -0,0 +1,179 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.calendar;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Immutable table of the holidays and working days of one year. Holds a bit set of the working days and the prefix sums
+ * of the full working days, so the number of working days of any period of the year is given without iterating over the
+ * days. Working days with a work fraction (e. g. Xmas eve) are rare and held separately.
+ * 
+ * @see Holidays#getWorkingDaysOfYear(int)
+ */
+public class WorkingDaysOfYear
+{
+  private final int year;
+
+  private final int numberOfDays;
+
+  private final Map<Integer, Holiday> holidays;
+
+  /**
+   * Bit n is set if the n-th day of the year is a working day.
+   */
+  private final BitSet workingDays;
+
+  /**
+   * fullWorkingDaysBefore[n] is the number of full working days before the n-th day of the year.
+   */
+  private final int[] fullWorkingDaysBefore;
+
+  /**
+   * Sorted days of year of all working days with a work fraction.
+   */
+  private final int[] fractionDays;
+
+  private final BigDecimal[] fractions;
+
+  /**
+   * @param year
+   * @param holidays The holidays of the year, key is the day of year.
+   */
+  WorkingDaysOfYear(final int year, final Map<Integer, Holiday> holidays)
+  {
+    this.year = year;
+    this.holidays = Collections.unmodifiableMap(holidays);
+    // Holidays are stored by date only, so the time zone doesn't matter:
+    final Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    cal.clear();
+    cal.set(year, Calendar.JANUARY, 1);
+    numberOfDays = cal.getActualMaximum(Calendar.DAY_OF_YEAR);
+    workingDays = new BitSet(numberOfDays + 1);
+    fullWorkingDaysBefore = new int[numberOfDays + 2];
+    final int[] fractionDaysBuffer = new int[numberOfDays];
+    final BigDecimal[] fractionsBuffer = new BigDecimal[numberOfDays];
+    int numberOfFractionDays = 0;
+    int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+    for (int dayOfYear = 1; dayOfYear <= numberOfDays; dayOfYear++) {
+      int fullWorkingDay = 0;
+      if (dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY) {
+        final Holiday holiday = holidays.get(dayOfYear);
+        if (holiday == null) {
+          workingDays.set(dayOfYear);
+          fullWorkingDay = 1;
+        } else if (holiday.isWorkingDay() == true) {
+          workingDays.set(dayOfYear);
+          if (holiday.getWorkFraction() != null) {
+            fractionDaysBuffer[numberOfFractionDays] = dayOfYear;
+            fractionsBuffer[numberOfFractionDays++] = holiday.getWorkFraction();
+          } else {
+            fullWorkingDay = 1;
+          }
+        }
+      }
+      fullWorkingDaysBefore[dayOfYear + 1] = fullWorkingDaysBefore[dayOfYear] + fullWorkingDay;
+      dayOfWeek = dayOfWeek == Calendar.SATURDAY ? Calendar.SUNDAY : dayOfWeek + 1;
+    }
+    fractionDays = Arrays.copyOf(fractionDaysBuffer, numberOfFractionDays);
+    fractions = Arrays.copyOf(fractionsBuffer, numberOfFractionDays);
+  }
+
+  public int getYear()
+  {
+    return year;
+  }
+
+  /**
+   * @return 365 or 366 for leap years.
+   */
+  public int getNumberOfDays()
+  {
+    return numberOfDays;
+  }
+
+  /**
+   * @param dayOfYear
+   * @return The holiday of the given day or null, if the day isn't a holiday.
+   */
+  public Holiday getHoliday(final int dayOfYear)
+  {
+    return holidays.get(dayOfYear);
+  }
+
+  /**
+   * @param dayOfYear
+   * @return true if the given day is neither a weekend day nor a non-working holiday.
+   */
+  public boolean isWorkingDay(final int dayOfYear)
+  {
+    return workingDays.get(dayOfYear);
+  }
+
+  /**
+   * @param fromDayOfYear First day (inclusive).
+   * @param toDayOfYear Last day (inclusive).
+   * @return The number of working days without a work fraction of the given period.
+   */
+  public int getNumberOfFullWorkingDays(final int fromDayOfYear, final int toDayOfYear)
+  {
+    validate(fromDayOfYear, toDayOfYear);
+    return fullWorkingDaysBefore[toDayOfYear + 1] - fullWorkingDaysBefore[fromDayOfYear];
+  }
+
+  /**
+   * Adds the work fractions of all working days with a work fraction of the given period to the given sum.
+   * 
+   * @param sum
+   * @param fromDayOfYear First day (inclusive).
+   * @param toDayOfYear Last day (inclusive).
+   * @return The new sum.
+   */
+  public BigDecimal addWorkFractions(final BigDecimal sum, final int fromDayOfYear, final int toDayOfYear)
+  {
+    validate(fromDayOfYear, toDayOfYear);
+    BigDecimal result = sum;
+    for (int i = 0; i < fractionDays.length && fractionDays[i] <= toDayOfYear; i++) {
+      if (fractionDays[i] >= fromDayOfYear) {
+        result = result.add(fractions[i]);
+      }
+    }
+    return result;
+  }
+
+  private void validate(final int fromDayOfYear, final int toDayOfYear)
+  {
+    Validate.isTrue(fromDayOfYear >= 1 && toDayOfYear <= numberOfDays && fromDayOfYear <= toDayOfYear + 1,
+        "Invalid period of year " + year + ": " + fromDayOfYear + "-" + toDayOfYear);
+  }
+}
@@ -51,7 +51,8 @@ public enum ConfigurationParam implements IConfigurationParam
   HR_MAILADDRESS("hr.emailaddress", ConfigurationType.STRING, true),//
   VACATION_CAL_ID("vacation.cal.id", ConfigurationType.CALENDAR, true),//
   END_DATE_VACATION_LASTR_YEAR("vacation.lastyear.enddate", ConfigurationType.STRING, true, "31.03."),
-  MIN_PASSWORD_LENGTH("minPasswordLength", ConfigurationType.INTEGER, true, 10);
+  MIN_PASSWORD_LENGTH("minPasswordLength", ConfigurationType.INTEGER, true, 10), //
+  REINDEX_RESUME_IDS("reindex.resumeIds", ConfigurationType.TEXT, true);
 
   private final String key;
 
@@ -29,6 +29,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -45,6 +46,7 @@ import org.hibernate.LockMode;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
@@ -165,6 +167,11 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
   @Autowired
   private HibernateSearchDependentObjectsReindexer hibernateSearchDependentObjectsReindexer;
 
+  /**
+   * @see #isListGivenByQuery()
+   */
+  private Boolean listGivenByQuery;
+
   /**
    * The setting of the DO class is required.
    *
@@ -299,17 +306,44 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
   }
 
   /**
-   * This method is used by the searchDao and calls {@link #getList(BaseSearchFilter)} by default.
+   * This method is used by the searchDao and calls {@link #getList(BaseSearchFilter)} by default. If the search filter
+   * is limited to max rows, only the first maxRows + 1 entries with select access are read via
+   * {@link #getPage(BaseSearchFilter, int, String)}, if the list isn't filtered or sorted by the derived dao afterwards
+   * (otherwise the whole list is read).
    *
    * @param filter
    * @return A list of found entries or empty list. PLEASE NOTE: Returns null only if any error occured.
    * @see #getList(BaseSearchFilter)
+   * @see BaseSearchFilter#isLimitQueryToMaxRows()
    */
   public List<O> getListForSearchDao(final BaseSearchFilter filter)
   {
+    if (filter.isLimitQueryToMaxRows() == true && filter.getMaxRows() > 0 && isListGivenByQuery() == true) {
+      // One more entry than needed for detecting further entries:
+      return getPage(filter, filter.getMaxRows() + 1, null).getList();
+    }
     return getList(filter);
   }
 
+  /**
+   * @return true, if neither {@link #getList(BaseSearchFilter)}, {@link #getList(QueryFilter)} nor
+   *         {@link #sort(List)} is overridden, so the list is given by the query in the order of the query.
+   */
+  private boolean isListGivenByQuery()
+  {
+    if (listGivenByQuery == null) {
+      try {
+        final Class<?> cls = getClass();
+        listGivenByQuery = cls.getMethod("getList", BaseSearchFilter.class).getDeclaringClass() == BaseDao.class
+            && cls.getMethod("getList", QueryFilter.class).getDeclaringClass() == BaseDao.class
+            && cls.getMethod("sort", List.class).getDeclaringClass() == BaseDao.class;
+      } catch (final NoSuchMethodException ex) {
+        listGivenByQuery = false;
+      }
+    }
+    return listGivenByQuery;
+  }
+
   /**
    * Builds query filter by simply calling constructor of QueryFilter with given search filter and calls
    * getList(QueryFilter). Override this method for building more complex query filters.
@@ -330,6 +364,21 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return new QueryFilter(filter);
   }
 
+  /**
+   * Builds the query filter via {@link #createQueryFilter(BaseSearchFilter)} and calls
+   * {@link #getPage(QueryFilter, int, String)}.
+   *
+   * @param filter
+   * @param pageSize
+   * @param continuationToken The token of the previous page or null for getting the first page.
+   * @return The page and the continuation token for the next page.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<O> getPage(final BaseSearchFilter filter, final int pageSize, final String continuationToken)
+  {
+    return getPage(createQueryFilter(filter), pageSize, continuationToken);
+  }
+
   /**
    * Gets the list filtered by the given filter.
    *
@@ -370,45 +419,14 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
   public List<O> internalGetList(final QueryFilter filter) throws AccessException
   {
     final BaseSearchFilter searchFilter = filter.getFilter();
-    filter.clearErrorMessage();
-    if (searchFilter.isIgnoreDeleted() == false) {
-      filter.add(Restrictions.eq("deleted", searchFilter.isDeleted()));
-    }
-    if (searchFilter.getModifiedSince() != null) {
-      filter.add(Restrictions.ge("lastUpdate", searchFilter.getModifiedSince()));
-    }
+    addSearchFilterRestrictions(filter);
 
     List<O> list = null;
     Session session = getSession();
     {
       final Criteria criteria = filter.buildCriteria(session, clazz);
       setCacheRegion(criteria);
-      if (searchFilter.isSearchNotEmpty() == true) {
-        final String searchString = HibernateSearchFilterUtils.modifySearchString(searchFilter.getSearchString());
-        final String[] searchFields = searchFilter.getSearchFields() != null ? searchFilter.getSearchFields()
-            : getSearchFields();
-        try {
-          //          String nsearch = StringUtils.replace(searchString, "*", "");
-          FullTextSession fullTextSession = Search.getFullTextSession(session);
-          final org.apache.lucene.search.Query query = HibernateSearchFilterUtils.createFullTextQuery(fullTextSession,
-              searchFields, filter, searchString, clazz);
-          final FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(query, clazz);
-          fullTextQuery.setCriteriaQuery(criteria);
-          list = fullTextQuery.list(); // return a list of managed objects
-        } catch (final Exception ex) {
-          final String errorMsg = "Lucene error message: "
-              + ex.getMessage()
-              + " (for "
-              + this.getClass().getSimpleName()
-              + ": "
-              + searchString
-              + ").";
-          filter.setErrorMessage(errorMsg);
-          log.info(errorMsg);
-        }
-      } else {
-        list = criteria.list();
-      }
+      list = internalQuery(session, filter, criteria, -1);
       if (list != null) {
         list = selectUnique(list);
         if (list.size() > 0 && searchFilter.isUseModificationFilter() == true) {
@@ -449,6 +467,183 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     return list;
   }
 
+  /**
+   * Adds the restrictions of the search filter (deleted, modified since) to the query filter and clears any previous
+   * error message.
+   *
+   * @param filter
+   */
+  private void addSearchFilterRestrictions(final QueryFilter filter)
+  {
+    final BaseSearchFilter searchFilter = filter.getFilter();
+    filter.clearErrorMessage();
+    if (searchFilter.isIgnoreDeleted() == false) {
+      filter.add(Restrictions.eq("deleted", searchFilter.isDeleted()));
+    }
+    if (searchFilter.getModifiedSince() != null) {
+      filter.add(Restrictions.ge("lastUpdate", searchFilter.getModifiedSince()));
+    }
+  }
+
+  /**
+   * Runs the given criteria or, if a search string is given, the full text query restricted by the given criteria.
+   *
+   * @param session
+   * @param filter
+   * @param criteria
+   * @param firstResult The position of the first result to return (offset) or -1 for starting with the first result.
+   * @return The result list (not unique) or null, if a lucene error occured (error message is set in filter).
+   */
+  @SuppressWarnings("unchecked")
+  private List<O> internalQuery(final Session session, final QueryFilter filter, final Criteria criteria,
+      final int firstResult)
+  {
+    final BaseSearchFilter searchFilter = filter.getFilter();
+    if (searchFilter.isSearchNotEmpty() == false) {
+      if (firstResult > 0) {
+        criteria.setFirstResult(firstResult);
+      }
+      return criteria.list();
+    }
+    final String searchString = HibernateSearchFilterUtils.modifySearchString(searchFilter.getSearchString());
+    final String[] searchFields = searchFilter.getSearchFields() != null ? searchFilter.getSearchFields()
+        : getSearchFields();
+    try {
+      //          String nsearch = StringUtils.replace(searchString, "*", "");
+      FullTextSession fullTextSession = Search.getFullTextSession(session);
+      final org.apache.lucene.search.Query query = HibernateSearchFilterUtils.createFullTextQuery(fullTextSession,
+          searchFields, filter, searchString, clazz);
+      final FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(query, clazz);
+      fullTextQuery.setCriteriaQuery(criteria);
+      if (firstResult > 0) {
+        // Paging of the full text query must be done by lucene, the criteria is only used for fetching the hits:
+        fullTextQuery.setFirstResult(firstResult);
+      }
+      if (filter.getMaxResults() > 0) {
+        fullTextQuery.setMaxResults(filter.getMaxResults());
+      }
+      return fullTextQuery.list(); // return a list of managed objects
+    } catch (final Exception ex) {
+      final String errorMsg = "Lucene error message: "
+          + ex.getMessage()
+          + " (for "
+          + this.getClass().getSimpleName()
+          + ": "
+          + searchString
+          + ").";
+      filter.setErrorMessage(errorMsg);
+      log.info(errorMsg);
+      return null;
+    }
+  }
+
+  /**
+   * Gets one page of the list filtered by the given filter. In contrast to {@link #getList(QueryFilter)} only the
+   * entries of the requested page are read from the data base (the data base is queried in chunks of the page size).
+   * Entries without select access of the logged-in user are removed chunk by chunk, so a page may contain fewer entries
+   * than requested only if there are no more entries. <br/>
+   * The order is given by the orders of the query filter (the id is appended for a stable order), {@link #sort(List)}
+   * isn't applied. If all orders are given by not nullable properties of the entity, the next page continues after the
+   * last entry of the previous page, so inserted or deleted entries don't shift the following pages. Otherwise (e. g.
+   * full text searches) the next page continues at the offset of the previous page. If the search filter uses the
+   * modification filter or the history search, the whole list has to be read and the page is taken from it.
+   *
+   * @param filter
+   * @param pageSize The maximum number of entries of the page.
+   * @param continuationToken The token of the previous page or null for getting the first page.
+   * @return The page and the continuation token for getting the next page (never null). If a lucene error occurs, the
+   *         page is empty and the error message is given by the filter.
+   * @see ResultPage#getContinuationToken()
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<O> getPage(final QueryFilter filter, final int pageSize, final String continuationToken)
+      throws AccessException
+  {
+    Validate.isTrue(pageSize > 0, "Page size must be positive.");
+    final ContinuationToken token = ContinuationToken.parse(continuationToken);
+    checkLoggedInUserSelectAccess();
+    if (accessChecker.isRestrictedUser() == true) {
+      return new ResultPage<O>(new ArrayList<O>(), null);
+    }
+    final BaseSearchFilter searchFilter = filter.getFilter();
+    if (searchFilter.isUseModificationFilter() == true
+        || (searchFilter.isSearchHistory() == true && searchFilter.isSearchNotEmpty() == true)) {
+      // The results of the data base query are filtered or completed afterwards, paging isn't possible:
+      final List<O> list = getList(filter);
+      if (list == null) {
+        return new ResultPage<O>(new ArrayList<O>(), null);
+      }
+      final int offset = token != null ? token.getOffset() : 0;
+      final int toIndex = Math.min(list.size(), offset + pageSize);
+      final List<O> page = offset < toIndex ? new ArrayList<O>(list.subList(offset, toIndex))
+          : new ArrayList<O>();
+      return new ResultPage<O>(page, toIndex < list.size() ? ContinuationToken.forOffset(toIndex) : null);
+    }
+    addSearchFilterRestrictions(filter);
+    // Lucene queries are paged by offset, the criteria is only used for fetching the hits:
+    final KeyOrder keyOrder = searchFilter.isSearchNotEmpty() == false ? KeyOrder.create(clazz, filter.getOrders())
+        : null;
+    Object[] lastKey = null;
+    int offset = 0;
+    if (token != null) {
+      if (keyOrder != null) {
+        lastKey = token.getKeyValues(keyOrder.getTypes());
+      } else {
+        offset = token.getOffset();
+      }
+    }
+    final List<O> result = new ArrayList<O>(pageSize);
+    final Session session = getSession();
+    final int maxResults = filter.getMaxResults();
+    try {
+      while (true) {
+        // Each chunk has the page size, so pages with only a few accessible entries don't need too many queries:
+        filter.setMaxResults(pageSize);
+        final Criteria criteria = filter.buildCriteria(session, clazz);
+        if (lastKey != null) {
+          criteria.add(keyOrder.createRestriction(lastKey));
+        }
+        criteria.addOrder(Order.asc("id"));
+        setCacheRegion(criteria);
+        final List<O> chunk = internalQuery(session, filter, criteria, keyOrder != null ? -1 : offset);
+        if (chunk == null) {
+          // Lucene error, error message is given by the filter.
+          return new ResultPage<O>(new ArrayList<O>(), null);
+        }
+        final Set<O> accessibleEntries = Collections.newSetFromMap(new IdentityHashMap<O, Boolean>());
+        accessibleEntries.addAll(extractEntriesWithSelectAccess(selectUnique(chunk)));
+        for (int i = 0; i < chunk.size(); i++) {
+          final O entry = chunk.get(i);
+          if (accessibleEntries.remove(entry) == false) {
+            continue; // No select access or duplicate entry.
+          }
+          result.add(entry);
+          if (result.size() >= pageSize) {
+            if (chunk.size() < pageSize && i == chunk.size() - 1) {
+              // No more entries.
+              return new ResultPage<O>(result, null);
+            }
+            final String nextToken = keyOrder != null
+                ? ContinuationToken.forKey(keyOrder.getKeyValues(entry))
+                : ContinuationToken.forOffset(offset + i + 1);
+            return new ResultPage<O>(result, nextToken);
+          }
+        }
+        if (chunk.size() < pageSize) {
+          // No more entries.
+          return new ResultPage<O>(result, null);
+        }
+        if (keyOrder != null) {
+          lastKey = keyOrder.getKeyValues(chunk.get(chunk.size() - 1));
+        } else {
+          offset += chunk.size();
+        }
+      }
+    } finally {
+      filter.setMaxResults(maxResults);
+    }
+  }
+
   /**
    * idSet.contains(entry.getId()) at default.
    *
@@ -473,10 +668,11 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
 
   protected List<O> extractEntriesWithSelectAccess(final List<O> origList)
   {
-    final List<O> result = new ArrayList<O>();
+    final List<O> result = new ArrayList<O>(origList.size());
+    // Checked once, not for every entry of (large) result sets:
+    final boolean superAdmin = TenantChecker.isSuperAdmin(ThreadLocalUserContext.getUser());
     for (final O obj : origList) {
-      if ((TenantChecker.isSuperAdmin(ThreadLocalUserContext.getUser()) == true
-          || tenantChecker.isPartOfCurrentTenant(obj) == true)
+      if ((superAdmin == true || tenantChecker.isPartOfCurrentTenant(obj) == true)
           && hasLoggedInUserSelectAccess(obj, false) == true) {
         result.add(obj);
         afterLoad(obj);
@@ -816,6 +1012,16 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
    */
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
   public Integer internalSave(final O obj)
+  {
+    return internalSave(obj, true);
+  }
+
+  /**
+   * @param obj
+   * @param flush If false, the session isn't flushed (see {@link #internalSaveOrUpdateInBatches(Collection, int)}).
+   * @return the generated identifier.
+   */
+  private Integer internalSave(final O obj, final boolean flush)
   {
     Validate.notNull(obj);
     //TODO: Muss der richtige Tenant gesetzt werden. Ist nur Workaround.
@@ -835,8 +1041,10 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
       // safe will assocated not working
       hibernateTemplate.merge(obj);
     }
-    flushSession();
-    flushSearchSession();
+    if (flush == true) {
+      flushSession();
+      flushSearchSession();
+    }
     HistoryBaseDaoAdapter.inserted(obj);
     afterSaveOrModify(obj);
     afterSave(obj);
@@ -899,6 +1107,47 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
     currentProxy.internalSaveOrUpdate(list);
   }
 
+  /**
+   * Saves or updates the given objects without access checking inside the current transaction (e. g. for imports of
+   * many objects). In contrast to {@link #internalSaveOrUpdate(Collection)} the session isn't flushed after every
+   * object but after every batchSize objects, so the inserts and updates are written as JDBC batches (see
+   * hibernate.jdbc.batch_size in persistence.xml). After every flush the session is cleared, so the number of objects
+   * held by the session doesn't grow with the size of the collection. Therefore the given objects are detached
+   * afterwards.
+   *
+   * @param col
+   * @param batchSize Number of objects to flush at once.
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRED, isolation = Isolation.REPEATABLE_READ)
+  public void internalSaveOrUpdateInBatches(final Collection<O> col, final int batchSize)
+  {
+    int counter = 0;
+    for (final O obj : col) {
+      if (obj.getId() != null) {
+        internalUpdate(obj, false, false);
+      } else {
+        internalSave(obj, false);
+      }
+      if (++counter % batchSize == 0) {
+        flushAndClearSession();
+        log.info("Saved or updated " + counter + "/" + col.size() + " objects.");
+      }
+    }
+    flushAndClearSession();
+  }
+
+  /**
+   * The full text index entries are built before clearing, because the lazy associations of the objects can't be
+   * loaded afterwards.
+   */
+  private void flushAndClearSession()
+  {
+    final FullTextSession fullTextSession = Search.getFullTextSession(getSession());
+    fullTextSession.flush();
+    fullTextSession.flushToIndexes();
+    fullTextSession.clear();
+  }
+
   /**
    * @param obj
    * @return true, if modifications were done, false if no modification detected.
@@ -941,6 +1190,17 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
    */
   @Transactional(readOnly = false, propagation = Propagation.REQUIRED, isolation = Isolation.REPEATABLE_READ)
   public ModificationStatus internalUpdate(final O obj, final boolean checkAccess)
+  {
+    return internalUpdate(obj, checkAccess, true);
+  }
+
+  /**
+   * @param obj
+   * @param checkAccess
+   * @param flush If false, the session isn't flushed (see {@link #internalSaveOrUpdateInBatches(Collection, int)}).
+   * @return true, if modifications were done, false if no modification detected.
+   */
+  private ModificationStatus internalUpdate(final O obj, final boolean checkAccess, final boolean flush)
   {
     onSaveOrModify(obj);
     if (checkAccess == true) {
@@ -976,8 +1236,10 @@ public abstract class BaseDao<O extends ExtendedBaseDO<Integer>>
         // update doesn't work, because of referenced objects
         hibernateTemplate.merge(dbObj);
       }
-      flushSession();
-      flushSearchSession();
+      if (flush == true) {
+        flushSession();
+        flushSearchSession();
+      }
       return tresult;
     });
 
@@ -64,6 +64,8 @@ public class BaseSearchFilter implements Serializable
 
   private boolean searchHistory;
 
+  private transient boolean limitQueryToMaxRows;
+
   private String errorMessage;
 
   private transient String[] searchFields;
@@ -91,6 +93,7 @@ public class BaseSearchFilter implements Serializable
     this.startTimeOfModification = filter.startTimeOfModification;
     this.stopTimeOfModification = filter.stopTimeOfModification;
     this.searchHistory = filter.searchHistory;
+    this.limitQueryToMaxRows = filter.limitQueryToMaxRows;
   }
 
   /**
@@ -252,6 +255,27 @@ public class BaseSearchFilter implements Serializable
     return this;
   }
 
+  /**
+   * If true, only the first maxRows + 1 entries with select access are read (the additional entry is for detecting
+   * further entries). Used by the search page, which shows only the first maxRows entries of each area.
+   * 
+   * @see BaseDao#getListForSearchDao(BaseSearchFilter)
+   */
+  public boolean isLimitQueryToMaxRows()
+  {
+    return limitQueryToMaxRows;
+  }
+
+  /**
+   * @param limitQueryToMaxRows
+   * @return this for chaining.
+   */
+  public BaseSearchFilter setLimitQueryToMaxRows(final boolean limitQueryToMaxRows)
+  {
+    this.limitQueryToMaxRows = limitQueryToMaxRows;
+    return this;
+  }
+
   /**
    * If true, deleted and undeleted objects will be shown.
    */
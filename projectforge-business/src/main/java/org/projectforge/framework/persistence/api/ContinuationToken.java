@@ -0,0 +1,209 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.projectforge.framework.utils.NumberHelper;
+
+/**
+ * Continuation token of {@link ResultPage}. Two kinds of tokens are supported:
+ * <ul>
+ * <li>Key tokens contain the values of the order properties and the id of the last entry of the previous page. The
+ * next page starts after this entry, so entries inserted or deleted before it don't shift the following pages.</li>
+ * <li>Offset tokens contain the position of the next entry. They are used, if the order of the query can't be
+ * continued by key (e. g. full text searches or orders by nullable or nested properties).</li>
+ * </ul>
+ * Only the types supported by {@link #isSupportedType(Class)} may be used as key values.
+ */
+class ContinuationToken
+{
+  private static final char OFFSET_PREFIX = 'o';
+
+  private static final char KEY_PREFIX = 'k';
+
+  private static final String SEPARATOR = "~";
+
+  private static final String ENCODING = "UTF-8";
+
+  private final int offset;
+
+  private final String[] keyValues;
+
+  private ContinuationToken(final int offset, final String[] keyValues)
+  {
+    this.offset = offset;
+    this.keyValues = keyValues;
+  }
+
+  /**
+   * @param offset
+   * @return The token for continuing at the given offset.
+   */
+  static String forOffset(final int offset)
+  {
+    return OFFSET_PREFIX + String.valueOf(offset);
+  }
+
+  /**
+   * @param values The values of the order properties of the last entry of the page followed by its id. Null values
+   *          aren't supported.
+   * @return The token for continuing after the entry with the given values.
+   */
+  static String forKey(final Object[] values)
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(KEY_PREFIX);
+    for (int i = 0; i < values.length; i++) {
+      Validate.notNull(values[i], "Null values aren't supported by key tokens.");
+      if (i > 0) {
+        sb.append(SEPARATOR);
+      }
+      final Object value = values[i];
+      final String str = value instanceof Date ? String.valueOf(((Date) value).getTime()) : value.toString();
+      sb.append(encode(str));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param continuationToken
+   * @return The parsed token or null, if the given token is null or blank (first page).
+   * @throws IllegalArgumentException if the given token is invalid.
+   */
+  static ContinuationToken parse(final String continuationToken)
+  {
+    if (StringUtils.isBlank(continuationToken) == true) {
+      return null;
+    }
+    final char prefix = continuationToken.charAt(0);
+    final String value = continuationToken.substring(1);
+    if (prefix == OFFSET_PREFIX) {
+      final Integer offset = NumberHelper.parseInteger(value);
+      Validate.isTrue(offset != null && offset >= 0, "Invalid continuation token: " + continuationToken);
+      return new ContinuationToken(offset, null);
+    }
+    Validate.isTrue(prefix == KEY_PREFIX && value.length() > 0, "Invalid continuation token: " + continuationToken);
+    final String[] encodedValues = StringUtils.splitPreserveAllTokens(value, SEPARATOR);
+    final String[] keyValues = new String[encodedValues.length];
+    for (int i = 0; i < encodedValues.length; i++) {
+      keyValues[i] = decode(encodedValues[i]);
+    }
+    return new ContinuationToken(-1, keyValues);
+  }
+
+  /**
+   * @param type
+   * @return true, if values of the given type may be part of key tokens.
+   */
+  static boolean isSupportedType(final Class<?> type)
+  {
+    return Date.class.isAssignableFrom(type) == true
+        || type == String.class
+        || type == Integer.class
+        || type == Long.class
+        || type == BigDecimal.class;
+  }
+
+  boolean isKeyToken()
+  {
+    return keyValues != null;
+  }
+
+  /**
+   * @return The offset of an offset token.
+   */
+  int getOffset()
+  {
+    Validate.isTrue(isKeyToken() == false, "Key token given, offset token expected.");
+    return offset;
+  }
+
+  /**
+   * @param types The types of the order properties followed by the type of the id.
+   * @return The values of a key token converted to the given types.
+   * @throws IllegalArgumentException if the token doesn't match the given types (e. g. the order has changed).
+   */
+  Object[] getKeyValues(final Class<?>[] types)
+  {
+    Validate.isTrue(isKeyToken() == true, "Offset token given, key token expected.");
+    Validate.isTrue(keyValues.length == types.length, "Continuation token doesn't match the order of the query.");
+    final Object[] values = new Object[types.length];
+    for (int i = 0; i < types.length; i++) {
+      values[i] = convert(keyValues[i], types[i]);
+    }
+    return values;
+  }
+
+  private static Object convert(final String value, final Class<?> type)
+  {
+    try {
+      if (Date.class.isAssignableFrom(type) == true) {
+        final long millis = Long.parseLong(value);
+        if (Timestamp.class.isAssignableFrom(type) == true) {
+          return new Timestamp(millis);
+        } else if (java.sql.Date.class.isAssignableFrom(type) == true) {
+          return new java.sql.Date(millis);
+        }
+        return new Date(millis);
+      } else if (type == Integer.class) {
+        return Integer.valueOf(value);
+      } else if (type == Long.class) {
+        return Long.valueOf(value);
+      } else if (type == BigDecimal.class) {
+        return new BigDecimal(value);
+      } else if (type == String.class) {
+        return value;
+      }
+    } catch (final NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid value of continuation token: " + value);
+    }
+    throw new IllegalArgumentException("Unsupported type of continuation token: " + type);
+  }
+
+  private static String encode(final String value)
+  {
+    try {
+      return URLEncoder.encode(value, ENCODING);
+    } catch (final UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static String decode(final String value)
+  {
+    try {
+      return URLDecoder.decode(value, ENCODING);
+    } catch (final UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.projectforge.common.BeanHelper;
+
+/**
+ * The order of a paged query, if it can be continued by the key of the last entry of the previous page (see
+ * {@link ContinuationToken}). The order properties of the query are followed by the id as last order property.
+ */
+class KeyOrder
+{
+  private static final String ID_PROPERTY = "id";
+
+  private final String[] properties;
+
+  private final boolean[] ascending;
+
+  private final Method[] getters;
+
+  private final Class<?>[] types;
+
+  private KeyOrder(final String[] properties, final boolean[] ascending, final Method[] getters,
+      final Class<?>[] types)
+  {
+    this.properties = properties;
+    this.ascending = ascending;
+    this.getters = getters;
+    this.types = types;
+  }
+
+  /**
+   * @param clazz The entity class.
+   * @param orders The orders of the query.
+   * @return The key order or null, if the query can't be continued by key: orders of nested properties (aliases),
+   *         ignore case orders, nullable properties (the order of null values depends on the data base) or properties
+   *         of types not supported by {@link ContinuationToken#isSupportedType(Class)}.
+   */
+  static KeyOrder create(final Class<?> clazz, final List<Order> orders)
+  {
+    final List<String> properties = new ArrayList<String>();
+    final List<Boolean> ascending = new ArrayList<Boolean>();
+    for (final Order order : orders) {
+      final String property = order.getPropertyName();
+      if (order.isIgnoreCase() == true || property.indexOf('.') >= 0) {
+        return null;
+      }
+      properties.add(property);
+      ascending.add(order.isAscending());
+      if (ID_PROPERTY.equals(property) == true) {
+        // The id is unique, following orders are irrelevant.
+        break;
+      }
+    }
+    if (properties.contains(ID_PROPERTY) == false) {
+      properties.add(ID_PROPERTY);
+      ascending.add(true);
+    }
+    final int size = properties.size();
+    final Method[] getters = new Method[size];
+    final Class<?>[] types = new Class<?>[size];
+    final boolean[] asc = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      final Method getter = BeanHelper.determineGetter(clazz, properties.get(i));
+      if (getter == null || isNotNull(getter) == false
+          || ContinuationToken.isSupportedType(getter.getReturnType()) == false) {
+        return null;
+      }
+      getters[i] = getter;
+      types[i] = getter.getReturnType();
+      asc[i] = ascending.get(i);
+    }
+    return new KeyOrder(properties.toArray(new String[size]), asc, getters, types);
+  }
+
+  private static boolean isNotNull(final Method getter)
+  {
+    if (getter.isAnnotationPresent(Id.class) == true) {
+      return true;
+    }
+    final Column column = getter.getAnnotation(Column.class);
+    return column != null && column.nullable() == false;
+  }
+
+  /**
+   * @return The types of the order properties (the type of the id is the last one).
+   */
+  Class<?>[] getTypes()
+  {
+    return types;
+  }
+
+  /**
+   * @param entry
+   * @return The values of the order properties of the given entry (the id is the last one).
+   */
+  Object[] getKeyValues(final Object entry)
+  {
+    final Object[] values = new Object[getters.length];
+    for (int i = 0; i < getters.length; i++) {
+      values[i] = BeanHelper.invoke(entry, getters[i]);
+    }
+    return values;
+  }
+
+  /**
+   * @param values The values of the order properties of an entry, see {@link #getKeyValues(Object)}.
+   * @return The restriction for all entries following the entry with the given values.
+   */
+  Criterion createRestriction(final Object[] values)
+  {
+    final Disjunction disjunction = Restrictions.disjunction();
+    for (int i = 0; i < properties.length; i++) {
+      final Conjunction conjunction = Restrictions.conjunction();
+      for (int j = 0; j < i; j++) {
+        conjunction.add(Restrictions.eq(properties[j], values[j]));
+      }
+      if (ascending[i] == true) {
+        conjunction.add(Restrictions.gt(properties[i], values[i]));
+      } else {
+        conjunction.add(Restrictions.lt(properties[i], values[i]));
+      }
+      disjunction.add(conjunction);
+    }
+    return disjunction;
+  }
+}
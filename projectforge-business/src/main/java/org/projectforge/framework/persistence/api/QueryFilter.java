@@ -191,6 +191,20 @@ public class QueryFilter
     return this;
   }
 
+  /**
+   * @return The orders added via {@link #addOrder(Order)} (orders of sub criterias aren't included).
+   */
+  public List<Order> getOrders()
+  {
+    final List<Order> orders = new ArrayList<Order>();
+    for (final Object obj : filterSettings) {
+      if (obj instanceof Order) {
+        orders.add((Order) obj);
+      }
+    }
+    return orders;
+  }
+
   public void setFetchMode(final String associationPath, final FetchMode mode)
   {
     this.associationPath = associationPath;
@@ -0,0 +1,73 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a result list returned by {@link BaseDao#getPage(QueryFilter, int, String)} including the continuation
+ * token for getting the next page.
+ */
+public class ResultPage<O> implements Serializable
+{
+  private static final long serialVersionUID = -4193727382553541722L;
+
+  private final List<O> list;
+
+  private final String continuationToken;
+
+  public ResultPage(final List<O> list, final String continuationToken)
+  {
+    this.list = list;
+    this.continuationToken = continuationToken;
+  }
+
+  /**
+   * @return The entries of this page (may be empty but not null).
+   */
+  public List<O> getList()
+  {
+    return list;
+  }
+
+  /**
+   * The continuation token is opaque for the caller and should only be given to
+   * {@link BaseDao#getPage(QueryFilter, int, String)} with the same filter settings for getting the next page.
+   *
+   * @return The token for the next page or null, if this is the last page.
+   */
+  public String getContinuationToken()
+  {
+    return continuationToken;
+  }
+
+  /**
+   * @return true, if more entries are available (continuation token is given).
+   */
+  public boolean hasMore()
+  {
+    return continuationToken != null;
+  }
+}
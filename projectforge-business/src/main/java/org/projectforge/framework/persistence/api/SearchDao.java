@@ -24,11 +24,28 @@
 package org.projectforge.framework.persistence.api;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
+import org.projectforge.framework.persistence.user.api.UserContext;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de) TODO RK check if needed and may replace
@@ -39,6 +56,124 @@ public class SearchDao
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(SearchDao.class);
 
+  /**
+   * Maximum number of areas searched at the same time (by all users).
+   */
+  private static final int MAX_PARALLEL_SEARCHES = 4;
+
+  private static final long SEARCH_TIMEOUT_MS = 60 * 1000;
+
+  private static final ExecutorService searchExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_SEARCHES,
+      new ThreadFactory()
+      {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+          final Thread thread = new Thread(runnable, "SearchDao-search-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  @Autowired
+  private TransactionTemplate txTemplate;
+
+  /**
+   * Starts the search of {@link #getEntries(BaseSearchFilter, Class, BaseDao)} in a worker thread (with the user
+   * context of the caller), so the areas of the search page are searched concurrently. The result has to be fetched by
+   * {@link #getEntries(Future, BaseDao)}.
+   * 
+   * @param filter Should not be shared with other areas, because it's modified by the search.
+   * @param clazz
+   * @param baseDao
+   * @return The future result.
+   */
+  public Future<List<SearchResultData>> submit(final BaseSearchFilter filter, final Class<?> clazz,
+      final BaseDao<?> baseDao)
+  {
+    final UserContext userContext = ThreadLocalUserContext.getUserContext();
+    return searchExecutor.submit(new Callable<List<SearchResultData>>()
+    {
+      @Override
+      public List<SearchResultData> call()
+      {
+        ThreadLocalUserContext.setUserContext(userContext);
+        try {
+          return txTemplate.execute(new TransactionCallback<List<SearchResultData>>()
+          {
+            @Override
+            public List<SearchResultData> doInTransaction(final TransactionStatus status)
+            {
+              status.setRollbackOnly(); // Read only.
+              return getEntries(filter, clazz, baseDao);
+            }
+          });
+        } finally {
+          ThreadLocalUserContext.clear();
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for the result of a search started by {@link #submit(BaseSearchFilter, Class, BaseDao)}. The found objects
+   * are re-read by id in the current session of the caller (the session of the worker thread is already closed, so lazy
+   * associations of the found objects couldn't be loaded).
+   * 
+   * @param future
+   * @param baseDao
+   * @return The search result, null if any error occurred.
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public List<SearchResultData> getEntries(final Future<List<SearchResultData>> future, final BaseDao baseDao)
+  {
+    final List<SearchResultData> list;
+    try {
+      list = future.get(SEARCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException ex) {
+      log.error("Search in " + baseDao.getEntityClass() + " not finished after " + (SEARCH_TIMEOUT_MS / 1000) + "s.");
+      future.cancel(true);
+      return null;
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (final ExecutionException ex) {
+      log.error("Exception while searching in " + baseDao.getEntityClass() + ": " + ex.getCause().getMessage(),
+          ex.getCause());
+      return null;
+    }
+    if (list == null || list.size() == 0) {
+      return list;
+    }
+    final List<Integer> ids = new ArrayList<Integer>(list.size());
+    for (final SearchResultData data : list) {
+      if (data.dataObject != null) {
+        ids.add(data.dataObject.getId());
+      }
+    }
+    final Map<Integer, ExtendedBaseDO<Integer>> objects = new HashMap<Integer, ExtendedBaseDO<Integer>>();
+    for (final Object obj : baseDao.internalLoad(ids)) {
+      final ExtendedBaseDO<Integer> dataObject = (ExtendedBaseDO<Integer>) obj;
+      baseDao.afterLoad(dataObject);
+      objects.put(dataObject.getId(), dataObject);
+    }
+    final List<SearchResultData> result = new ArrayList<SearchResultData>(list.size());
+    for (final SearchResultData data : list) {
+      if (data.dataObject == null) {
+        result.add(data); // Null entry for 'more entries'.
+        continue;
+      }
+      final ExtendedBaseDO<Integer> dataObject = objects.get(data.dataObject.getId());
+      if (dataObject != null) {
+        data.dataObject = dataObject;
+        result.add(data);
+      }
+    }
+    return result;
+  }
+
   public List<SearchResultData> getEntries(final BaseSearchFilter filter, final Class clazz, final BaseDao baseDao)
   {
     if (filter == null) {
@@ -57,6 +192,8 @@ public class SearchDao
     } else {
       filter.setUseModificationFilter(false);
     }
+    // Only maxRows entries are shown, so only maxRows + 1 entries should be read from the data base:
+    filter.setLimitQueryToMaxRows(true);
     final List<ExtendedBaseDO> list = baseDao.getListForSearchDao(filter);
     if (list == null) {
       // An error occured.
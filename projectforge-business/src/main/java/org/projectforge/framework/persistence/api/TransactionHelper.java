@@ -0,0 +1,55 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helper for keeping caches and indexes in sync with the committed state of the data base.
+ */
+public class TransactionHelper
+{
+  /**
+   * Runs the given action after the commit of the current transaction. The action isn't run, if the transaction is
+   * rolled back. If no transaction synchronization is active, the action is run immediately.
+   *
+   * @param action
+   */
+  public static void runAfterCommit(final Runnable action)
+  {
+    if (TransactionSynchronizationManager.isSynchronizationActive() == false) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+    {
+      @Override
+      public void afterCommit()
+      {
+        action.run();
+      }
+    });
+  }
+}
@@ -27,8 +27,12 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.StringUtils;
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FlushMode;
@@ -39,23 +43,29 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.Search;
 import org.hibernate.search.SearchFactory;
-import org.projectforge.business.timesheet.TimesheetDO;
+import org.projectforge.framework.configuration.ConfigurationParam;
 import org.projectforge.framework.persistence.api.ExtendedBaseDO;
 import org.projectforge.framework.persistence.api.ReindexSettings;
 import org.projectforge.framework.persistence.entities.AbstractBaseDO;
 import org.projectforge.framework.persistence.hibernate.HibernateCompatUtils;
-import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.framework.time.DateTimeFormatter;
 import org.projectforge.framework.time.DayHolder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import de.micromata.genome.jpa.StdRecord;
 
@@ -70,9 +80,28 @@ public class DatabaseDao
 {
   private static final int MIN_REINDEX_ENTRIES_4_USE_SCROLL_MODE = 2000;
 
+  /**
+   * Minimum interval between two progress log messages of a re-index run.
+   */
+  private static final long PROGRESS_LOG_INTERVAL = 10000;
+
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(DatabaseDao.class);
 
-  private Date currentReindexRun = null;
+  /**
+   * The classes currently re-indexed (with start time of the run). Different classes may be re-indexed in parallel.
+   */
+  private final Map<Class<?>, Date> currentReindexRuns = new ConcurrentHashMap<Class<?>, Date>();
+
+  /**
+   * Guards the read and write access of the resume ids of all classes (stored in one configuration entry).
+   */
+  private final Object resumeIdsLock = new Object();
+
+  /**
+   * Number of objects re-indexed in one chunk (full re-index runs are resumable after every chunk).
+   */
+  @Value("${projectforge.reindex.batchSize:1000}")
+  private int reindexBatchSize = 1000;
 
   @Autowired
   private SessionFactory sessionFactory;
@@ -96,6 +125,7 @@ public class DatabaseDao
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
   public String rebuildDatabaseSearchIndices(final Class<?> clazz, final ReindexSettings settings)
   {
+    final Date currentReindexRun = currentReindexRuns.get(clazz);
     if (currentReindexRun != null) {
       return "Another re-index job is already running. The job was started at: "
           + DateTimeFormatter.instance().getFormattedDateTime(currentReindexRun, Locale.ENGLISH, DateHelper.UTC)
@@ -109,49 +139,34 @@ public class DatabaseDao
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
   public void reindex(final Class<?> clazz, final ReindexSettings settings, final StringBuffer buf)
   {
-    if (currentReindexRun != null) {
+    if (currentReindexRuns.putIfAbsent(clazz, new Date()) != null) {
       buf.append(" (cancelled due to another running index-job)");
       return;
     }
-    synchronized (this) {
-      try {
-        currentReindexRun = new Date();
-        buf.append(ClassUtils.getShortClassName(clazz));
-        reindex(clazz, settings);
-        buf.append(", ");
-      } finally {
-        currentReindexRun = null;
-      }
+    try {
+      buf.append(ClassUtils.getShortClassName(clazz));
+      reindex(clazz, settings);
+      buf.append(", ");
+    } finally {
+      currentReindexRuns.remove(clazz);
     }
   }
 
   /**
    * @param clazz
+   * @return Number of re-indexed objects.
    */
-  private long reindex(final Class<?> clazz, final ReindexSettings settings)
+  long reindex(final Class<?> clazz, final ReindexSettings settings)
   {
     if (settings.getLastNEntries() != null || settings.getFromDate() != null) {
       // OK, only partly re-index required:
       return reindexObjects(clazz, settings);
     }
-    // OK, full re-index required:
-    if (isIn(clazz, TimesheetDO.class, PfHistoryMasterDO.class) == true) {
-      // MassIndexer throws LazyInitializationException for some classes, so use it only for the important classes (with most entries):
-      return reindexMassIndexer(clazz);
-    }
+    // OK, full re-index required (also for the classes with most entries, e. g. time sheets and history entries,
+    // which are processed in resumable chunks):
     return reindexObjects(clazz, null);
   }
 
-  private boolean isIn(final Class<?> clazz, final Class<?>... classes)
-  {
-    for (final Class<?> cls : classes) {
-      if (clazz.equals(cls) == true) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   private long reindexObjects(final Class<?> clazz, final ReindexSettings settings)
   {
     final Session session = sessionFactory.getCurrentSession();
@@ -165,12 +180,16 @@ public class DatabaseDao
         + " with scrollMode="
         + scrollMode
         + "...");
-    final int batchSize = 1000;// NumberUtils.createInteger(System.getProperty("hibernate.search.worker.batch_size")
+    final int batchSize = reindexBatchSize;// NumberUtils.createInteger(System.getProperty("hibernate.search.worker.batch_size")
     final FullTextSession fullTextSession = Search.getFullTextSession(session);
     HibernateCompatUtils.setFlushMode(fullTextSession, FlushMode.MANUAL);
     HibernateCompatUtils.setCacheMode(fullTextSession, CacheMode.IGNORE);
     long index = 0;
-    if (scrollMode == true) {
+    final String idProperty = getNumericIdProperty(clazz);
+    if (settings == null && number > batchSize && idProperty != null) {
+      // Full re-index of more than one chunk: process the objects in id ranges, so an interrupted run may be resumed.
+      index = reindexObjectsByIdRanges(fullTextSession, clazz, idProperty, number, batchSize);
+    } else if (scrollMode == true) {
       // Scroll-able results will avoid loading too many objects in memory
       criteria = createCriteria(fullTextSession, clazz, settings, false);
       final ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
@@ -204,32 +223,178 @@ public class DatabaseDao
   }
 
   /**
-   * @param clazz
+   * Re-indexes the objects ordered by id in chunks of batchSize objects. After each chunk the index is written, the
+   * session is cleared and the last id is stored in the configuration ({@link ConfigurationParam#REINDEX_RESUME_IDS}),
+   * so the next run resumes after this id, if this run is interrupted (thread interrupted), fails or ProjectForge is
+   * shut down.
+   *
+   * @return Number of re-indexed objects.
    */
-  private long reindexMassIndexer(final Class<?> clazz)
+  private long reindexObjectsByIdRanges(final FullTextSession fullTextSession, final Class<?> clazz,
+      final String idProperty, final long total, final int batchSize)
   {
-    final Session session = sessionFactory.getCurrentSession();
-    final Criteria criteria = createCriteria(session, clazz, null, true);
-    final Long number = (Long) criteria.uniqueResult(); // Get number of objects to re-index (select count(*) from).
-    log.info("Starting (mass) re-indexing of " + number + " entries of type " + clazz.getName() + "...");
-    final FullTextSession fullTextSession = Search.getFullTextSession(session);
-    try {
+    Number lastId = getResumeId(clazz);
+    long alreadyIndexed = 0;
+    if (lastId != null) {
+      alreadyIndexed = total - (Long) fullTextSession.createCriteria(clazz).setProjection(Projections.rowCount())
+          .add(Restrictions.gt(idProperty, lastId)).uniqueResult();
+      log.info("Resuming interrupted re-indexing of type " + clazz.getName() + " after id " + lastId + " ("
+          + alreadyIndexed + " entries already done).");
+    }
+    final long start = System.currentTimeMillis();
+    long lastLog = start;
+    long index = 0;
+    while (true) {
+      if (Thread.currentThread().isInterrupted() == true) {
+        log.warn("Re-indexing of type " + clazz.getName() + " interrupted after id " + lastId
+            + ", the next run will resume after this id.");
+        break;
+      }
+      final Criteria criteria = fullTextSession.createCriteria(clazz).addOrder(Order.asc(idProperty))
+          .setMaxResults(batchSize);
+      if (lastId != null) {
+        criteria.add(Restrictions.gt(idProperty, lastId));
+      }
+      final List<?> list = criteria.list();
+      if (list.isEmpty() == true) {
+        storeResumeId(clazz, null);
+        break;
+      }
+      for (final Object obj : list) {
+        if (obj instanceof ExtendedBaseDO<?>) {
+          ((ExtendedBaseDO<?>) obj).recalculate();
+        }
+        HibernateCompatUtils.index(fullTextSession, obj);
+      }
+      lastId = (Number) fullTextSession.getIdentifier(list.get(list.size() - 1));
+      fullTextSession.flushToIndexes();
+      fullTextSession.clear(); // Free memory of the processed chunk.
+      storeResumeId(clazz, lastId);
+      index += list.size();
+      final long now = System.currentTimeMillis();
+      if (now - lastLog >= PROGRESS_LOG_INTERVAL) {
+        lastLog = now;
+        final long done = alreadyIndexed + index;
+        final long remaining = Math.max(total - done, 0);
+        final long eta = (now - start) * remaining / index;
+        log.info("Re-indexing of type " + clazz.getName() + ": " + done + "/" + total + " entries ("
+            + (total > 0 ? done * 100 / total : 100) + "%), estimated time remaining: " + (eta / 1000) + "s.");
+      }
+    }
+    return index;
+  }
 
-      fullTextSession.createIndexer(clazz)//
-          .batchSizeToLoadObjects(25) //
-          //.cacheMode(CacheMode.NORMAL) //
-          .threadsToLoadObjects(5) //
-          //.threadsForIndexWriter(1) //
-          .threadsForSubsequentFetching(20) //
-          .startAndWait();
-    } catch (final InterruptedException ex) {
-      log.error("Exception encountered while reindexing: " + ex.getMessage(), ex);
+  /**
+   * @return The id after which the next full re-index run of the given class resumes or null, if the last run was
+   *         finished.
+   */
+  Number getResumeId(final Class<?> clazz)
+  {
+    synchronized (resumeIdsLock) {
+      final String value = executeInNewTransaction(new TransactionCallback<Map<String, String>>()
+      {
+        @Override
+        public Map<String, String> doInTransaction(final TransactionStatus status)
+        {
+          return readResumeIds();
+        }
+      }).get(clazz.getName());
+      if (value == null) {
+        return null;
+      }
+      try {
+        final Class<?> idType = sessionFactory.getClassMetadata(clazz).getIdentifierType().getReturnedClass();
+        return Long.class.equals(idType) == true ? (Number) Long.valueOf(value) : (Number) Integer.valueOf(value);
+      } catch (final NumberFormatException ex) {
+        log.error("Invalid resume id of re-indexing of type " + clazz.getName() + " ignored: " + value);
+        return null;
+      }
     }
-    final SearchFactory searchFactory = fullTextSession.getSearchFactory();
-    searchFactory.optimize(clazz);
-    log.info("Re-indexing of " + number + " objects of type " + clazz.getName() + " done.");
-    return number;
+  }
+
+  /**
+   * Stores the resume id of the given class in its own transaction, because the transaction of the re-index run isn't
+   * committed.
+   *
+   * @param lastId The id of the last re-indexed object or null, if the run is finished.
+   */
+  private void storeResumeId(final Class<?> clazz, final Number lastId)
+  {
+    synchronized (resumeIdsLock) {
+      executeInNewTransaction(new TransactionCallback<Void>()
+      {
+        @Override
+        public Void doInTransaction(final TransactionStatus status)
+        {
+          final Map<String, String> resumeIds = readResumeIds();
+          if (lastId == null) {
+            if (resumeIds.remove(clazz.getName()) == null) {
+              return null;
+            }
+          } else {
+            resumeIds.put(clazz.getName(), String.valueOf(lastId));
+          }
+          final StringBuilder sb = new StringBuilder();
+          for (final Map.Entry<String, String> entry : resumeIds.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+          }
+          // Directly updated (no history entries and no reload of the configuration for every chunk):
+          final int updated = sessionFactory.getCurrentSession()
+              .createQuery("update ConfigurationDO c set c.stringValue = :value where c.parameter = :parameter")
+              .setParameter("value", sb.length() > 0 ? sb.toString() : null)
+              .setParameter("parameter", ConfigurationParam.REINDEX_RESUME_IDS.getKey()).executeUpdate();
+          if (updated == 0) {
+            log.warn("Configuration entry '" + ConfigurationParam.REINDEX_RESUME_IDS.getKey()
+                + "' not found, re-indexing of type " + clazz.getName() + " can't be resumed.");
+          }
+          return null;
+        }
+      });
+    }
+  }
 
+  /**
+   * @return The resume ids by class name (one line per class: class name=id).
+   */
+  private Map<String, String> readResumeIds()
+  {
+    final Map<String, String> resumeIds = new TreeMap<String, String>();
+    final List<?> values = sessionFactory.getCurrentSession()
+        .createQuery("select c.stringValue from ConfigurationDO c where c.parameter = :parameter")
+        .setParameter("parameter", ConfigurationParam.REINDEX_RESUME_IDS.getKey()).list();
+    if (values.isEmpty() == true || values.get(0) == null) {
+      return resumeIds;
+    }
+    for (final String line : StringUtils.split((String) values.get(0), "\r\n")) {
+      final int pos = line.indexOf('=');
+      if (pos > 0) {
+        resumeIds.put(line.substring(0, pos).trim(), line.substring(pos + 1).trim());
+      }
+    }
+    return resumeIds;
+  }
+
+  private <T> T executeInNewTransaction(final TransactionCallback<T> callback)
+  {
+    final TransactionTemplate tx = new TransactionTemplate(new HibernateTransactionManager(sessionFactory));
+    tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    return tx.execute(callback);
+  }
+
+  /**
+   * @return The name of the id property, if the id of the given entity class is numeric, otherwise null.
+   */
+  private String getNumericIdProperty(final Class<?> clazz)
+  {
+    final ClassMetadata classMetadata = sessionFactory.getClassMetadata(clazz);
+    if (classMetadata == null || classMetadata.getIdentifierPropertyName() == null) {
+      return null;
+    }
+    final Class<?> idType = classMetadata.getIdentifierType().getReturnedClass();
+    if (Integer.class.equals(idType) == true || Long.class.equals(idType) == true) {
+      return classMetadata.getIdentifierPropertyName();
+    }
+    return null;
   }
 
   private Criteria createCriteria(final Session session, final Class<?> clazz, final ReindexSettings settings,
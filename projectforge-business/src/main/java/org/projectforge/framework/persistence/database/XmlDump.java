@@ -40,8 +40,12 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +54,8 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.PostConstruct;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.Transient;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -57,6 +63,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
 import org.hibernate.EmptyInterceptor;
@@ -100,6 +107,7 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.persistence.user.entities.UserPrefDO;
 import org.projectforge.framework.persistence.user.entities.UserPrefEntryDO;
 import org.projectforge.framework.persistence.user.entities.UserRightDO;
+import org.projectforge.framework.persistence.xstream.EntityReferenceConverter;
 import org.projectforge.framework.persistence.xstream.HibernateXmlConverter;
 import org.projectforge.framework.persistence.xstream.XStreamSavingConverter;
 import org.projectforge.framework.xstream.XStreamHelper;
@@ -111,6 +119,10 @@ import org.springframework.orm.hibernate5.HibernateTemplate;
 import org.springframework.stereotype.Service;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.collections.CollectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
 
 import de.micromata.genome.db.jpa.history.api.HistoryEntry;
 import de.micromata.genome.jpa.metainf.EntityMetadata;
@@ -129,6 +141,11 @@ public class XmlDump
 {
   private static final Logger log = Logger.getLogger(XmlDump.class);
 
+  /**
+   * Number of restored objects after which the session is flushed and cleared.
+   */
+  private static final int RESTORE_BATCH_SIZE = 500;
+
   private static final String XML_DUMP_FILENAME = System.getProperty("user.home") + "/tmp/database-dump.xml.gz";
 
   @Autowired
@@ -292,19 +309,7 @@ public class XmlDump
     };
     // UserRightDO is inserted on cascade while inserting PFUserDO.
     xstreamSavingConverter.appendIgnoredObjects(embeddedClasses);
-    // automatically detect insert order.
-    List<EntityMetadata> ents = emf.getMetadataRepository().getTableEntities();
-    List<Class<?>> classList = ents.stream().map((e) -> e.getJavaType()).collect(Collectors.toList());
-    // first entities with now deps
-    Collections.reverse(classList);
-
-    xstreamSavingConverter.appendOrderedType(PFUserDO.class, GroupDO.class, TaskDO.class, KundeDO.class,
-        ProjektDO.class, Kost1DO.class,
-        Kost2ArtDO.class, Kost2DO.class, AuftragDO.class, //
-        RechnungDO.class, EingangsrechnungDO.class, EmployeeSalaryDO.class, KostZuweisungDO.class, //
-        UserPrefEntryDO.class, UserPrefDO.class, //
-        AccessEntryDO.class, GroupTaskAccessDO.class, ConfigurationDO.class);
-    xstreamSavingConverter.appendOrderedType(classList.toArray(new Class<?>[] {}));
+    xstreamSavingConverter.appendOrderedType(getOrderedTypes());
 
     //    if (plugins != null) {
     //      for (final AbstractPlugin plugin : plugins) {
@@ -316,16 +321,22 @@ public class XmlDump
       final SessionFactory sessionFactory = hibernate.getSessionFactory();
       session = HibernateCompatUtils.openSession(sessionFactory, EmptyInterceptor.INSTANCE);
       session.setFlushMode(FlushMode.AUTO);
-      final XStream xstream = XStreamHelper.createXStream();
-      xstream.setMode(XStream.ID_REFERENCES);
       xstreamSavingConverter.setSession(session);
-      xstream.registerConverter(xstreamSavingConverter, 10);
-      xstream.registerConverter(new UserRightIdSingleValueConverter(userRights), 20);
-      xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
-      // alle Objekte Laden und speichern
-      xstream.fromXML(reader);
+      final HierarchicalStreamReader xmlReader = new XppDriver().createReader(reader);
+      if (HibernateXmlConverter.ROOT_NODE.equals(xmlReader.getNodeName()) == true) {
+        // Dump written entity by entity:
+        restoreEntities(xmlReader, xstreamSavingConverter, session);
+      } else {
+        final XStream xstream = XStreamHelper.createXStream();
+        xstream.setMode(XStream.ID_REFERENCES);
+        xstream.registerConverter(xstreamSavingConverter, 10);
+        xstream.registerConverter(new UserRightIdSingleValueConverter(userRights), 20);
+        xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
+        // alle Objekte Laden und speichern
+        xstream.unmarshal(xmlReader);
 
-      xstreamSavingConverter.saveObjects();
+        xstreamSavingConverter.saveObjects();
+      }
     } catch (final Exception ex) {
       log.error(ex.getMessage(), ex);
       throw new RuntimeException(ex);
@@ -338,6 +349,316 @@ public class XmlDump
     return xstreamSavingConverter;
   }
 
+  /**
+   * Reads the entities of a dump written by {@link HibernateXmlConverter} one by one and saves each entity directly.
+   * References to other entities are resolved by their new ids. References to entities not yet saved (e. g. the parent
+   * task of a moved task written after the task itself) are set after all entities are saved. Entities with such a
+   * forward reference in a not nullable column can't be saved without the referenced entity, so they're saved after all
+   * other entities.
+   */
+  private void restoreEntities(final HierarchicalStreamReader xmlReader,
+      final XStreamSavingConverter xstreamSavingConverter, final Session session)
+  {
+    final List<PendingReference> pendingReferences = new ArrayList<PendingReference>();
+    final List<UnresolvedReference> unresolvedReferences = new ArrayList<UnresolvedReference>();
+    final List<DeferredObject> deferredObjects = new ArrayList<DeferredObject>();
+    final XStream xstream = XStreamHelper.createXStream();
+    xstream.setMode(XStream.ID_REFERENCES);
+    xstream.registerConverter(new EntityReferenceConverter(xstream,
+        new HashSet<Class<?>>(Arrays.asList(embeddedClasses)), new EntityReferenceConverter.Resolver()
+        {
+          @Override
+          public Object resolve(final Class<?> type, final String id)
+          {
+            final Serializable newId = xstreamSavingConverter.getNewId(type, id);
+            if (newId == null) {
+              return null;
+            }
+            return session.load(type, newId);
+          }
+
+          @Override
+          public void unresolved(final Object owner, final Field field, final Class<?> type, final String id)
+          {
+            if (field == null) {
+              log.warn("Referenced object of type '" + type.getName() + "' with id " + id + " not found (ignored).");
+              return;
+            }
+            pendingReferences.add(new PendingReference(owner, field, type, id));
+          }
+        }), XStream.PRIORITY_VERY_HIGH);
+    xstream.registerConverter(new UserRightIdSingleValueConverter(userRights), 20);
+    xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
+    // Don't add the references not found to collections:
+    xstream.registerConverter(new CollectionConverter(xstream.getMapper())
+    {
+      @SuppressWarnings({ "rawtypes", "unchecked" })
+      @Override
+      protected void addCurrentElementToCollection(final HierarchicalStreamReader reader,
+          final UnmarshallingContext context, final Collection collection, final Collection target)
+      {
+        final Object item = readItem(reader, context, collection);
+        if (item != null) {
+          target.add(item);
+        }
+      }
+    }, XStream.PRIORITY_NORMAL + 1);
+    xstreamSavingConverter.setBatchSize(RESTORE_BATCH_SIZE);
+    int counter = 0;
+    while (xmlReader.hasMoreChildren() == true) {
+      xmlReader.moveDown(); // Entities of one type.
+      log.info("Restoring objects of type " + xmlReader.getAttribute(HibernateXmlConverter.TYPE_ATTRIBUTE));
+      while (xmlReader.hasMoreChildren() == true) {
+        xmlReader.moveDown();
+        final Object obj = xstream.unmarshal(xmlReader);
+        final DeferredObject deferredObject = new DeferredObject(obj,
+            new ArrayList<PendingReference>(pendingReferences));
+        pendingReferences.clear();
+        if (restoreObject(deferredObject, xstreamSavingConverter, session, unresolvedReferences) == false) {
+          deferredObjects.add(deferredObject);
+        }
+        xmlReader.moveUp();
+        ++counter;
+      }
+      xmlReader.moveUp();
+    }
+    restoreDeferredObjects(deferredObjects, xstreamSavingConverter, session, unresolvedReferences);
+    xstreamSavingConverter.flushSession();
+    log.info("Restored " + (counter - deferredObjects.size()) + " objects.");
+    restoreUnresolvedReferences(unresolvedReferences, xstreamSavingConverter, session);
+  }
+
+  /**
+   * Saves the given object, if all its not nullable references are resolvable. The references resolvable now are set
+   * and the other ones are added to the given unresolved references (by the new id of their owners).
+   *
+   * @return false, if the object isn't saved because of a not nullable reference to an entity not yet saved.
+   */
+  private boolean restoreObject(final DeferredObject deferredObject,
+      final XStreamSavingConverter xstreamSavingConverter, final Session session,
+      final List<UnresolvedReference> unresolvedReferences)
+  {
+    for (final PendingReference ref : deferredObject.pendingReferences) {
+      if (ref.notNullable == true && xstreamSavingConverter.getNewId(ref.type, ref.id) == null) {
+        return false;
+      }
+    }
+    final List<PendingReference> unresolved = new ArrayList<PendingReference>();
+    for (final PendingReference ref : deferredObject.pendingReferences) {
+      final Serializable newId = xstreamSavingConverter.getNewId(ref.type, ref.id);
+      if (newId != null) {
+        setField(ref.field, ref.owner, session.load(ref.type, newId));
+      } else {
+        unresolved.add(ref);
+      }
+    }
+    xstreamSavingConverter.saveObject(deferredObject.obj);
+    for (final PendingReference ref : unresolved) {
+      // The owner is saved now (by itself or as part of its parent), so it's id is the new id:
+      final Serializable ownerId = HibernateUtils.getIdentifier(ref.owner);
+      if (ownerId == null) {
+        log.warn("Object of type '" + ref.owner.getClass().getName() + "' not saved, reference to '"
+            + ref.type.getName() + "' with id " + ref.id + " ignored.");
+        continue;
+      }
+      unresolvedReferences.add(new UnresolvedReference(ref.owner.getClass(), ownerId, ref.field, ref.type, ref.id));
+    }
+    return true;
+  }
+
+  /**
+   * Saves the objects deferred because of not nullable forward references. Repeated as long as objects are saved,
+   * because a deferred object may reference another deferred object.
+   */
+  private void restoreDeferredObjects(final List<DeferredObject> deferredObjects,
+      final XStreamSavingConverter xstreamSavingConverter, final Session session,
+      final List<UnresolvedReference> unresolvedReferences)
+  {
+    if (deferredObjects.isEmpty() == true) {
+      return;
+    }
+    log.info("Restoring " + deferredObjects.size() + " objects with not nullable forward references.");
+    boolean restored = true;
+    while (restored == true && deferredObjects.isEmpty() == false) {
+      restored = false;
+      final Iterator<DeferredObject> it = deferredObjects.iterator();
+      while (it.hasNext() == true) {
+        if (restoreObject(it.next(), xstreamSavingConverter, session, unresolvedReferences) == true) {
+          it.remove();
+          restored = true;
+        }
+      }
+    }
+    for (final DeferredObject deferredObject : deferredObjects) {
+      for (final PendingReference ref : deferredObject.pendingReferences) {
+        if (ref.notNullable == true && xstreamSavingConverter.getNewId(ref.type, ref.id) == null) {
+          log.error("Object of type '" + deferredObject.obj.getClass().getName() + "' not restored: the not nullable '"
+              + ref.field.getName() + "' references the object of type '" + ref.type.getName() + "' with id " + ref.id
+              + ", which isn't part of the dump.");
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the references which couldn't be resolved while reading the entities (all entities are saved now).
+   */
+  private void restoreUnresolvedReferences(final List<UnresolvedReference> unresolvedReferences,
+      final XStreamSavingConverter xstreamSavingConverter, final Session session)
+  {
+    if (unresolvedReferences.isEmpty() == true) {
+      return;
+    }
+    log.info("Restoring " + unresolvedReferences.size() + " forward references.");
+    int counter = 0;
+    for (final UnresolvedReference ref : unresolvedReferences) {
+      final Serializable newId = xstreamSavingConverter.getNewId(ref.type, ref.id);
+      if (newId == null) {
+        log.warn("Referenced object of type '" + ref.type.getName() + "' with id " + ref.id + " not found (ignored).");
+        continue;
+      }
+      final Object owner = session.get(ref.ownerType, ref.ownerId);
+      if (owner == null) {
+        log.warn("Object of type '" + ref.ownerType.getName() + "' with id " + ref.ownerId
+            + " not found, reference to '" + ref.type.getName() + "' with id " + ref.id + " ignored.");
+        continue;
+      }
+      setField(ref.field, owner, session.load(ref.type, newId));
+      if (++counter % RESTORE_BATCH_SIZE == 0) {
+        session.flush();
+        session.clear();
+      }
+    }
+    session.flush();
+    session.clear();
+  }
+
+  private static void setField(final Field field, final Object obj, final Object value)
+  {
+    field.setAccessible(true);
+    try {
+      field.set(obj, value);
+    } catch (final IllegalAccessException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * @return true, if the column of the given reference field is declared as not nullable (at the field or its getter).
+   */
+  private static boolean isNotNullable(final Class<?> clazz, final Field field)
+  {
+    if (isNotNullable(field) == true) {
+      return true;
+    }
+    try {
+      return isNotNullable(clazz.getMethod("get" + StringUtils.capitalize(field.getName())));
+    } catch (final NoSuchMethodException ex) {
+      return false;
+    }
+  }
+
+  private static boolean isNotNullable(final AccessibleObject member)
+  {
+    final JoinColumn joinColumn = member.getAnnotation(JoinColumn.class);
+    if (joinColumn != null && joinColumn.nullable() == false) {
+      return true;
+    }
+    final ManyToOne manyToOne = member.getAnnotation(ManyToOne.class);
+    return manyToOne != null && manyToOne.optional() == false;
+  }
+
+  /**
+   * A reference of a read object, which couldn't be resolved while reading.
+   */
+  private static class PendingReference
+  {
+    private final Object owner;
+
+    private final Field field;
+
+    private final Class<?> type;
+
+    private final String id;
+
+    private final boolean notNullable;
+
+    private PendingReference(final Object owner, final Field field, final Class<?> type, final String id)
+    {
+      this.owner = owner;
+      this.field = field;
+      this.type = type;
+      this.id = id;
+      this.notNullable = isNotNullable(owner.getClass(), field);
+    }
+  }
+
+  /**
+   * A read object with its pending references, held back if a not nullable reference isn't resolvable yet.
+   */
+  private static class DeferredObject
+  {
+    private final Object obj;
+
+    private final List<PendingReference> pendingReferences;
+
+    private DeferredObject(final Object obj, final List<PendingReference> pendingReferences)
+    {
+      this.obj = obj;
+      this.pendingReferences = pendingReferences;
+    }
+  }
+
+  /**
+   * A reference of a saved object to be set after all objects are saved. Only the ids are stored, so the saved objects
+   * aren't held in memory.
+   */
+  private static class UnresolvedReference
+  {
+    private final Class<?> ownerType;
+
+    private final Serializable ownerId;
+
+    private final Field field;
+
+    private final Class<?> type;
+
+    private final String id;
+
+    private UnresolvedReference(final Class<?> ownerType, final Serializable ownerId, final Field field,
+        final Class<?> type, final String id)
+    {
+      this.ownerType = ownerType;
+      this.ownerId = ownerId;
+      this.field = field;
+      this.type = type;
+      this.id = id;
+    }
+  }
+
+  /**
+   * @return The types in order of saving (the explicit listed ones followed by all other entities with the entities
+   *         without dependencies first).
+   */
+  private Class<?>[] getOrderedTypes()
+  {
+    // automatically detect insert order.
+    final List<EntityMetadata> ents = emf.getMetadataRepository().getTableEntities();
+    final List<Class<?>> classList = ents.stream().map((e) -> e.getJavaType()).collect(Collectors.toList());
+    // first entities with now deps
+    Collections.reverse(classList);
+    final List<Class<?>> result = new ArrayList<Class<?>>();
+    Collections.addAll(result, PFUserDO.class, GroupDO.class, TaskDO.class, KundeDO.class,
+        ProjektDO.class, Kost1DO.class,
+        Kost2ArtDO.class, Kost2DO.class, AuftragDO.class, //
+        RechnungDO.class, EingangsrechnungDO.class, EmployeeSalaryDO.class, KostZuweisungDO.class, //
+        UserPrefEntryDO.class, UserPrefDO.class, //
+        AccessEntryDO.class, GroupTaskAccessDO.class, ConfigurationDO.class);
+    result.addAll(classList);
+    return result.toArray(new Class<?>[result.size()]);
+  }
+
   /**
    * @return Only for test cases.
    */
@@ -366,9 +687,10 @@ public class XmlDump
   }
 
   /**
+   * Writes the dump entity by entity to the given stream (the whole data base isn't hold in memory).
    * 
    * @param filename virtual filename: If the filename suffix is "gz" then the dump will be compressed.
-   * @param out
+   * @param out The stream isn't closed.
    */
   public void dumpDatabase(final String filename, final OutputStream out)
   {
@@ -385,9 +707,10 @@ public class XmlDump
     };
     converter.setHibernate(hibernate);
     converter.appendIgnoredTopLevelObjects(embeddedClasses);
-    Writer writer = null;
-    GZIPOutputStream gzipOut = null;
+    converter.appendOrderedTypes(getOrderedTypes());
     try {
+      GZIPOutputStream gzipOut = null;
+      final Writer writer;
       if (filename.endsWith(".gz") == true) {
         gzipOut = new GZIPOutputStream(out);
         writer = new OutputStreamWriter(gzipOut, "utf-8");
@@ -395,11 +718,12 @@ public class XmlDump
         writer = new OutputStreamWriter(out, "utf-8");
       }
       converter.dumpDatabaseToXml(writer, true); // history=false, preserveIds=true
+      writer.flush();
+      if (gzipOut != null) {
+        gzipOut.finish();
+      }
     } catch (final IOException ex) {
       log.error(ex.getMessage(), ex);
-    } finally {
-      IOUtils.closeQuietly(gzipOut);
-      IOUtils.closeQuietly(writer);
     }
   }
 
@@ -23,9 +23,20 @@
 
 package org.projectforge.framework.persistence.history;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.HibernateException;
@@ -41,6 +52,7 @@ import org.projectforge.framework.time.DateTimeFormatter;
 import org.projectforge.mail.Mail;
 import org.projectforge.mail.SendMail;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.orm.hibernate5.HibernateCallback;
 import org.springframework.orm.hibernate5.HibernateTemplate;
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
@@ -64,7 +76,16 @@ public class HibernateSearchReindexer
   @Autowired
   private DatabaseDao databaseDao;
 
-  private Date currentReindexRun = null;
+  /**
+   * Start time of the currently running re-index job or null, if no job is running.
+   */
+  private final AtomicReference<Date> currentReindexRun = new AtomicReference<Date>();
+
+  /**
+   * Number of entity classes re-indexed in parallel.
+   */
+  @Value("${projectforge.reindex.threads:4}")
+  private int reindexThreads = 4;
 
   @Autowired
   private HibernateTemplate hibernate;
@@ -99,7 +120,9 @@ public class HibernateSearchReindexer
 
   public String rebuildDatabaseSearchIndices(final ReindexSettings settings, final Class<?>... classes)
   {
-    if (currentReindexRun != null) {
+    final Date startTime = new Date();
+    if (currentReindexRun.compareAndSet(null, startTime) == false) {
+      // Don't wait for the running job:
       final StringBuffer buf = new StringBuffer();
       if (classes != null && classes.length > 0) {
         boolean first = true;
@@ -107,31 +130,79 @@ public class HibernateSearchReindexer
           first = StringHelper.append(buf, first, cls.getName(), ", ");
         }
       }
-      final String date = DateTimeFormatter.instance().getFormattedDateTime(currentReindexRun, Locale.ENGLISH,
-          DateHelper.UTC);
+      final Date runningSince = currentReindexRun.get();
+      final String date = runningSince != null
+          ? DateTimeFormatter.instance().getFormattedDateTime(runningSince, Locale.ENGLISH, DateHelper.UTC) : "-";
       log.info("Re-indexing of '" + buf.toString()
           + "' cancelled due to another already running re-index job started at " + date + " (UTC):");
       return "Another re-index job is already running. The job was started at: " + date;
     }
-    synchronized (this) {
-      try {
-        currentReindexRun = new Date();
-        final StringBuffer buf = new StringBuffer();
-        if (classes != null && classes.length > 0) {
-          for (final Class<?> cls : classes) {
+    try {
+      final Collection<Class<?>> entities;
+      if (classes != null && classes.length > 0) {
+        entities = Arrays.asList(classes);
+      } else {
+        // Re-index of all ProjectForge entities:
+        entities = emf.getSearchableEntities();
+      }
+      return reindex(entities, settings);
+    } finally {
+      currentReindexRun.set(null);
+    }
+  }
+
+  /**
+   * Re-indexes the given classes in parallel (every class in its own transaction, see
+   * {@link #reindex(Class, ReindexSettings, StringBuffer)}).
+   *
+   * @return The result of all classes in the order of the given classes.
+   */
+  private String reindex(final Collection<Class<?>> classes, final ReindexSettings settings)
+  {
+    final int threads = Math.max(1, Math.min(reindexThreads, classes.size()));
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+    {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "HibernateSearchReindexer-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final List<Future<String>> results = new ArrayList<Future<String>>(classes.size());
+    try {
+      for (final Class<?> cls : classes) {
+        results.add(executor.submit(new Callable<String>()
+        {
+          @Override
+          public String call()
+          {
+            final StringBuffer buf = new StringBuffer();
             reindex(cls, settings, buf);
+            return buf.toString();
           }
-        } else {
-          // Re-index of all ProjectForge entities:
-          Set<Class<?>> clsses = emf.getSearchableEntities();
-          for (Class<?> clz : clsses) {
-            reindex(clz, settings, buf);
-          }
+        }));
+      }
+      final StringBuffer buf = new StringBuffer();
+      for (final Future<String> result : results) {
+        try {
+          buf.append(result.get());
+        } catch (final ExecutionException ex) {
+          buf.append(" (an error occured, see log file for further information.), ");
+          log.error("While rebuilding data-base-search-index: " + ex.getMessage(), ex);
         }
-        return buf.toString();
-      } finally {
-        currentReindexRun = null;
       }
+      return buf.toString();
+    } catch (final InterruptedException ex) {
+      log.error("Re-indexing interrupted, unfinished classes will be resumed by the next run: " + ex.getMessage(), ex);
+      Thread.currentThread().interrupt();
+      return " (interrupted)";
+    } finally {
+      // Interrupts the running re-index jobs if this thread was interrupted:
+      executor.shutdownNow();
     }
   }
 
@@ -0,0 +1,180 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.projectforge.framework.cache.AbstractCache;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.orm.hibernate5.HibernateTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the {@link HistoryModificationIndex} of the newest history entries, used by list filters for the modifications
+ * (modified by user and/or modified in a time period) instead of querying the whole history table. New history entries
+ * are added by {@link HistoryModificationListener}, the index is re-read from the data base once per hour by a
+ * background worker. Only the newest maxEntries history entries are indexed. Until the index is read the first time and
+ * for time periods not covered by the index, the history table is queried by the callers.
+ */
+@Component
+public class HistoryModificationCache extends AbstractCache
+{
+  private static final long serialVersionUID = -2370584960314127958L;
+
+  private static Logger log = Logger.getLogger(HistoryModificationCache.class);
+
+  private static final int FETCH_SIZE = 1000;
+
+  @Autowired
+  private transient HibernateTemplate hibernateTemplate;
+
+  /**
+   * Maximum number of history entries read into the index.
+   */
+  @Value("${projectforge.historyModificationCache.maxEntries:1000000}")
+  private int maxEntries = 1000000;
+
+  private transient volatile HistoryModificationIndex index;
+
+  /**
+   * History entries added while refreshing. They're added to the new index afterwards, because they may be missed by the
+   * running query.
+   */
+  private transient List<PfHistoryMasterDO> addedWhileRefreshing;
+
+  private final transient Object addLock = new Object();
+
+  public HistoryModificationCache()
+  {
+    setBackgroundRefresh(true);
+  }
+
+  /**
+   * @return false, if the index isn't available (not yet initialized or initialization failed) or doesn't cover the
+   *         given time period, otherwise true.
+   * @see HistoryModificationIndex#getEntityIds(String, Integer, Date, Date, Set)
+   */
+  public boolean getEntityIds(final String entityName, final Integer modifiedByUserId,
+      final Date startTimeOfModification, final Date stopTimeOfModification, final Set<Integer> idSet)
+  {
+    checkRefreshInBackground();
+    final HistoryModificationIndex current = index;
+    if (current == null || current.covers(startTimeOfModification) == false) {
+      return false;
+    }
+    current.getEntityIds(entityName, modifiedByUserId, startTimeOfModification, stopTimeOfModification, idSet);
+    return true;
+  }
+
+  /**
+   * Adds a new history entry to the index. Does nothing, if the index isn't yet initialized.
+   * 
+   * @param historyEntry
+   */
+  void add(final PfHistoryMasterDO historyEntry)
+  {
+    synchronized (addLock) {
+      if (addedWhileRefreshing != null) {
+        addedWhileRefreshing.add(historyEntry);
+      }
+    }
+    final HistoryModificationIndex current = index;
+    if (current != null) {
+      current.add(historyEntry.getEntityName(), historyEntry.getModifiedBy(), historyEntry.getModifiedAt(),
+          historyEntry.getEntityId());
+    }
+  }
+
+  /**
+   * This method will be called by the background worker of {@link AbstractCache}.
+   */
+  @Override
+  protected void refresh()
+  {
+    log.info("Initializing HistoryModificationCache ...");
+    synchronized (addLock) {
+      addedWhileRefreshing = new ArrayList<PfHistoryMasterDO>();
+    }
+    try {
+      final HistoryModificationIndex newIndex = hibernateTemplate
+          .execute(new HibernateCallback<HistoryModificationIndex>()
+          {
+            @Override
+            public HistoryModificationIndex doInHibernate(final Session session)
+            {
+              // The modification time of the newest entry not indexed any more (null, if all entries fit):
+              final Date indexedAfter = (Date) session
+                  .createQuery("select h.modifiedAt from PfHistoryMasterDO h order by h.modifiedAt desc")
+                  .setFirstResult(maxEntries).setMaxResults(1).uniqueResult();
+              final HistoryModificationIndex result = new HistoryModificationIndex(indexedAfter);
+              final Query query;
+              if (indexedAfter == null) {
+                query = session.createQuery(
+                    "select h.entityName, h.modifiedBy, h.modifiedAt, h.entityId from PfHistoryMasterDO h order by h.modifiedAt");
+              } else {
+                query = session.createQuery(
+                    "select h.entityName, h.modifiedBy, h.modifiedAt, h.entityId from PfHistoryMasterDO h where h.modifiedAt > :indexedAfter order by h.modifiedAt")
+                    .setParameter("indexedAfter", indexedAfter);
+              }
+              final ScrollableResults results = query.setReadOnly(true).setFetchSize(FETCH_SIZE)
+                  .scroll(ScrollMode.FORWARD_ONLY);
+              try {
+                while (results.next() == true) {
+                  result.add((String) results.get(0), (String) results.get(1), (Date) results.get(2),
+                      (Number) results.get(3));
+                }
+              } finally {
+                results.close();
+              }
+              return result;
+            }
+          });
+      synchronized (addLock) {
+        for (final PfHistoryMasterDO historyEntry : addedWhileRefreshing) {
+          // Entries already read by the query are added twice, this doesn't matter for the resulting id sets.
+          newIndex.add(historyEntry.getEntityName(), historyEntry.getModifiedBy(), historyEntry.getModifiedAt(),
+              historyEntry.getEntityId());
+        }
+        this.index = newIndex;
+      }
+      log.info("Initializing of HistoryModificationCache done (" + newIndex.size() + " history entries).");
+    } finally {
+      synchronized (addLock) {
+        addedWhileRefreshing = null;
+      }
+    }
+  }
+}
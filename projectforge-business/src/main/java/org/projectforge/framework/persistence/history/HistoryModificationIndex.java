@@ -0,0 +1,224 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of all history entries by entity name and modifying user: for every pair the modification times and the ids of
+ * the modified entities are stored in primitive arrays sorted by time. So the ids of all entities modified by a user
+ * and/or in a given time period are found by binary search without querying the history table.<br/>
+ * The index may be restricted to the history entries modified after a given time (for limiting the memory usage), see
+ * {@link #covers(Date)}.
+ */
+public class HistoryModificationIndex
+{
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * Key is the entity name (class name), value is the map of entries by modifying user (user id as string).
+   */
+  private final Map<String, Map<String, Entries>> entriesByEntityName = new ConcurrentHashMap<String, Map<String, Entries>>();
+
+  /**
+   * Only history entries modified after this time are indexed.
+   */
+  private final long indexedAfter;
+
+  /**
+   * Creates an index of all history entries.
+   */
+  public HistoryModificationIndex()
+  {
+    this(null);
+  }
+
+  /**
+   * @param indexedAfter Only history entries modified after this time are indexed (older entries are ignored by
+   *          {@link #add(String, String, Date, Number)}). If null, all history entries are indexed.
+   */
+  public HistoryModificationIndex(final Date indexedAfter)
+  {
+    this.indexedAfter = indexedAfter != null ? indexedAfter.getTime() : Long.MIN_VALUE;
+  }
+
+  /**
+   * @param startTimeOfModification
+   * @return true, if all history entries modified at or after the given time are indexed (null means no lower limit).
+   */
+  public boolean covers(final Date startTimeOfModification)
+  {
+    if (indexedAfter == Long.MIN_VALUE) {
+      return true;
+    }
+    return startTimeOfModification != null && startTimeOfModification.getTime() > indexedAfter;
+  }
+
+  /**
+   * @param entityName The class name of the modified entity.
+   * @param modifiedBy The user id (as string) of the modifying user, may be null.
+   * @param modifiedAt
+   * @param entityId
+   */
+  public void add(final String entityName, final String modifiedBy, final Date modifiedAt, final Number entityId)
+  {
+    if (entityName == null || modifiedAt == null || entityId == null || modifiedAt.getTime() <= indexedAfter) {
+      return;
+    }
+    Map<String, Entries> entriesByUser = entriesByEntityName.get(entityName);
+    if (entriesByUser == null) {
+      entriesByUser = new ConcurrentHashMap<String, Entries>();
+      final Map<String, Entries> existing = entriesByEntityName.putIfAbsent(entityName, entriesByUser);
+      if (existing != null) {
+        entriesByUser = existing;
+      }
+    }
+    final String userKey = modifiedBy != null ? modifiedBy : "";
+    Entries entries = entriesByUser.get(userKey);
+    if (entries == null) {
+      entries = new Entries();
+      final Entries existing = entriesByUser.putIfAbsent(userKey, entries);
+      if (existing != null) {
+        entries = existing;
+      }
+    }
+    entries.add(modifiedAt.getTime(), entityId.intValue());
+  }
+
+  /**
+   * Adds the ids of all entities of the given entity name modified by the given user in the given time period.
+   * 
+   * @param entityName The class name of the modified entities.
+   * @param modifiedByUserId If null, the modifications of all users are used.
+   * @param startTimeOfModification Including, if null, there is no lower limit.
+   * @param stopTimeOfModification Including, if null, there is no upper limit.
+   * @param idSet The found entity ids are added to this set.
+   */
+  public void getEntityIds(final String entityName, final Integer modifiedByUserId,
+      final Date startTimeOfModification, final Date stopTimeOfModification, final Set<Integer> idSet)
+  {
+    final Map<String, Entries> entriesByUser = entriesByEntityName.get(entityName);
+    if (entriesByUser == null) {
+      return;
+    }
+    final long from = startTimeOfModification != null ? startTimeOfModification.getTime() : Long.MIN_VALUE;
+    final long to = stopTimeOfModification != null ? stopTimeOfModification.getTime() : Long.MAX_VALUE;
+    if (from > to) {
+      return;
+    }
+    if (modifiedByUserId != null) {
+      final Entries entries = entriesByUser.get(modifiedByUserId.toString());
+      if (entries == null) {
+        return;
+      }
+      entries.getEntityIds(from, to, idSet);
+    } else {
+      for (final Entries entries : entriesByUser.values()) {
+        entries.getEntityIds(from, to, idSet);
+      }
+    }
+  }
+
+  /**
+   * @return The number of all indexed history entries.
+   */
+  public int size()
+  {
+    int size = 0;
+    for (final Map<String, Entries> entriesByUser : entriesByEntityName.values()) {
+      for (final Entries entries : entriesByUser.values()) {
+        size += entries.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Modification times (sorted ascending) and entity ids of one entity name and user.
+   */
+  private static class Entries
+  {
+    private long[] times = new long[INITIAL_CAPACITY];
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    synchronized void add(final long time, final int id)
+    {
+      if (size == times.length) {
+        final int capacity = size + (size >> 1);
+        times = Arrays.copyOf(times, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+      }
+      // Normally the entries are added in chronological order, otherwise the entry is inserted:
+      int pos = size;
+      if (size > 0 && times[size - 1] > time) {
+        pos = firstIndexAfter(time);
+        System.arraycopy(times, pos, times, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+      }
+      times[pos] = time;
+      ids[pos] = id;
+      ++size;
+    }
+
+    synchronized void getEntityIds(final long from, final long to, final Set<Integer> idSet)
+    {
+      final int fromIndex = from == Long.MIN_VALUE ? 0 : firstIndexAfter(from - 1);
+      final int toIndex = to == Long.MAX_VALUE ? size : firstIndexAfter(to);
+      for (int i = fromIndex; i < toIndex; i++) {
+        idSet.add(ids[i]);
+      }
+    }
+
+    synchronized int size()
+    {
+      return size;
+    }
+
+    /**
+     * @return The index of the first entry with a time greater than the given time (size, if no such entry exists).
+     */
+    private int firstIndexAfter(final long time)
+    {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (times[mid] <= time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import javax.persistence.PostPersist;
+
+import org.projectforge.framework.configuration.ApplicationContextProvider;
+import org.projectforge.framework.persistence.api.TransactionHelper;
+import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Adds new history entries to the {@link HistoryModificationCache}. If a transaction is active, the entry is added
+ * after the commit.
+ */
+public class HistoryModificationListener
+{
+  @PostPersist
+  public void afterPersist(final PfHistoryMasterDO historyEntry)
+  {
+    final ApplicationContext applicationContext = ApplicationContextProvider.getApplicationContext();
+    if (applicationContext == null) {
+      return;
+    }
+    final HistoryModificationCache cache = applicationContext.getBean(HistoryModificationCache.class);
+    TransactionHelper.runAfterCommit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        cache.add(historyEntry);
+      }
+    });
+  }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -23,6 +24,7 @@ import org.hibernate.search.annotations.Field;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.annotations.Resolution;
 import org.hibernate.search.annotations.Store;
+import org.projectforge.framework.persistence.history.HistoryModificationListener;
 
 import de.micromata.genome.db.jpa.history.entities.HistoryMasterBaseDO;
 import de.micromata.genome.db.jpa.tabattr.entities.JpaTabAttrBaseDO;
@@ -46,6 +48,7 @@ import de.micromata.mgc.jpa.hibernatesearch.bridges.HistoryMasterClassBridge;
 @ClassBridge(impl = HistoryMasterClassBridge.class)
 @HibernateSearchInfo(param = "oldValue")
 @JpaXmlPersist(beforePersistListener = PfHistoryMasterXmlBeforePersistListener.class)
+@EntityListeners(HistoryModificationListener.class)
 public class PfHistoryMasterDO extends HistoryMasterBaseDO<PfHistoryMasterDO, Long>
 {
 
@@ -28,6 +28,7 @@ import org.projectforge.common.BeanHelper;
 import org.projectforge.framework.configuration.ApplicationContextProvider;
 import org.projectforge.framework.persistence.api.BaseSearchFilter;
 import org.projectforge.framework.persistence.api.QueryFilter;
+import org.projectforge.framework.persistence.history.HistoryModificationCache;
 import org.projectforge.framework.persistence.history.entities.PfHistoryMasterDO;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.time.DateFormats;
@@ -228,9 +229,30 @@ public class HibernateSearchFilterUtils
     }
   }
 
+  /**
+   * Adds the ids of all entities of the given class (and of the nested history entities) modified by the user and/or in
+   * the time period of the given filter. The ids are taken from the {@link HistoryModificationCache}, only if this
+   * isn't available the history table is queried.
+   */
   public static void getHistoryEntriesDirect(Session session, BaseSearchFilter filter,
       Set<Integer> idSet,
       Class<?> clazz)
+  {
+    final HistoryModificationCache historyModificationCache = ApplicationContextProvider.getApplicationContext()
+        .getBean(HistoryModificationCache.class);
+    if (historyModificationCache.getEntityIds(clazz.getName(), filter.getModifiedByUserId(),
+        filter.getStartTimeOfModification(), filter.getStopTimeOfModification(), idSet) == true) {
+      for (Class<?> nested : getNestedHistoryEntities(clazz)) {
+        getHistoryEntriesDirect(session, filter, idSet, nested);
+      }
+      return;
+    }
+    getHistoryEntriesFromDatabase(session, filter, idSet, clazz);
+  }
+
+  private static void getHistoryEntriesFromDatabase(Session session, BaseSearchFilter filter,
+      Set<Integer> idSet,
+      Class<?> clazz)
   {
     Criteria criteria = session.createCriteria(PfHistoryMasterDO.class);
 
@@ -263,7 +285,7 @@ public class HibernateSearchFilterUtils
       }
     }
     for (Class<?> nested : getNestedHistoryEntities(clazz)) {
-      getHistoryEntriesDirect(session, filter, idSet, nested);
+      getHistoryEntriesFromDatabase(session, filter, idSet, nested);
     }
   }
 
@@ -0,0 +1,264 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.xstream;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.projectforge.framework.persistence.api.HibernateUtils;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+/**
+ * Writes every entity referenced by the entity currently written (the root object) only as reference (the id in the
+ * attribute {@link #ATTRIBUTE}) instead of the whole object graph. So every entity of a dump can be written and read on
+ * its own. Entities of the embedded types (saved by their parent objects) are written completely.<br/>
+ * While reading, references which can't be resolved yet (e. g. the parent task of a moved task written after the task
+ * itself) are reported to the {@link Resolver}, so they may be set after all entities are saved.
+ */
+public class EntityReferenceConverter implements Converter
+{
+  public static final String ATTRIBUTE = "entity-ref";
+
+  /**
+   * Resolves the references while reading.
+   */
+  public interface Resolver
+  {
+    /**
+     * @param type The type of the referenced entity.
+     * @param id The id of the referenced entity (as written in the dump).
+     * @return The referenced entity or null, if not found.
+     */
+    Object resolve(Class<?> type, String id);
+
+    /**
+     * Called, if a reference couldn't be resolved. The reference is set to null (or not added to its collection).
+     *
+     * @param owner The object containing the reference.
+     * @param field The field of the reference or null, if the reference can't be set later (e. g. collection items).
+     * @param type The type of the referenced entity.
+     * @param id The id of the referenced entity (as written in the dump).
+     */
+    void unresolved(Object owner, Field field, Class<?> type, String id);
+  }
+
+  private final ReflectionConverter reflectionConverter;
+
+  private final Mapper mapper;
+
+  /**
+   * The objects currently marshalled or unmarshalled by the reflection converter (innermost object on top).
+   */
+  private final Deque<Object> objectStack = new ArrayDeque<Object>();
+
+  /**
+   * If not null, the ids are written renumbered (key is type and original id).
+   */
+  private Map<String, Serializable> idMapping;
+
+  private final Map<Class<?>, Long> idCounters = new HashMap<Class<?>, Long>();
+
+  private final Set<Class<?>> embeddedTypes;
+
+  private final Resolver resolver;
+
+  private Object root;
+
+  /**
+   * @param xstream
+   * @param embeddedTypes These types are written completely.
+   * @param resolver Needed only for reading.
+   */
+  public EntityReferenceConverter(final XStream xstream, final Set<Class<?>> embeddedTypes, final Resolver resolver)
+  {
+    this.mapper = xstream.getMapper();
+    this.reflectionConverter = new ReflectionConverter(mapper, xstream.getReflectionProvider())
+    {
+      @Override
+      protected void doMarshal(final Object source, final HierarchicalStreamWriter writer,
+          final MarshallingContext context)
+      {
+        objectStack.push(source);
+        try {
+          super.doMarshal(source, writer, context);
+        } finally {
+          objectStack.pop();
+        }
+      }
+
+      @Override
+      protected void marshallField(final MarshallingContext context, final Object newObj, final Field field)
+      {
+        final Object owner = objectStack.peek();
+        if (idMapping != null && newObj instanceof Serializable && "id".equals(field.getName()) == true
+            && newObj.equals(HibernateUtils.getIdentifier(owner)) == true) {
+          // Id of an entity written completely:
+          super.marshallField(context, mapId(owner.getClass(), (Serializable) newObj), field);
+          return;
+        }
+        super.marshallField(context, newObj, field);
+      }
+
+      @Override
+      public Object doUnmarshal(final Object result, final HierarchicalStreamReader reader,
+          final UnmarshallingContext context)
+      {
+        objectStack.push(result);
+        try {
+          return super.doUnmarshal(result, reader, context);
+        } finally {
+          objectStack.pop();
+        }
+      }
+    };
+    this.embeddedTypes = embeddedTypes;
+    this.resolver = resolver;
+  }
+
+  /**
+   * If called before writing, the ids of the entities are renumbered (1, 2, ... per type in order of their first
+   * occurrence) instead of writing the original ids of the data base.
+   */
+  public void renumberIds()
+  {
+    this.idMapping = new HashMap<String, Serializable>();
+  }
+
+  /**
+   * Must be called before writing an entity.
+   *
+   * @param root The entity to write completely.
+   */
+  public void setRoot(final Object root)
+  {
+    this.root = root;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public boolean canConvert(final Class type)
+  {
+    return HibernateProxy.class.isAssignableFrom(type) == true || HibernateUtils.isEntity(type) == true;
+  }
+
+  @Override
+  public void marshal(final Object source, final HierarchicalStreamWriter writer, final MarshallingContext context)
+  {
+    Object item = source;
+    if (item instanceof HibernateProxy) {
+      final Class<?> persistentClass = ((HibernateProxy) item).getHibernateLazyInitializer().getPersistentClass();
+      if (isReference(persistentClass) == true) {
+        writer.addAttribute(ATTRIBUTE, String.valueOf(
+            mapId(persistentClass, ((HibernateProxy) item).getHibernateLazyInitializer().getIdentifier())));
+        return;
+      }
+      item = ((HibernateProxy) item).getHibernateLazyInitializer().getImplementation();
+    }
+    if (item != root && isReference(item.getClass()) == true) {
+      final Serializable id = HibernateUtils.getIdentifier(item);
+      if (id != null) {
+        writer.addAttribute(ATTRIBUTE, String.valueOf(mapId(item.getClass(), id)));
+        return;
+      }
+    }
+    reflectionConverter.marshal(item, writer, context);
+  }
+
+  @Override
+  public Object unmarshal(final HierarchicalStreamReader reader, final UnmarshallingContext context)
+  {
+    final String id = reader.getAttribute(ATTRIBUTE);
+    if (id != null) {
+      if (resolver == null) {
+        return null;
+      }
+      final Class<?> type = context.getRequiredType();
+      final Object value = resolver.resolve(type, id);
+      if (value == null) {
+        final Object owner = objectStack.peek();
+        Field field = null;
+        if (owner != null) {
+          field = getField(owner.getClass(), mapper.realMember(owner.getClass(), reader.getNodeName()));
+          if (field != null && field.getType().isAssignableFrom(type) == false) {
+            field = null; // E. g. item of a collection.
+          }
+        }
+        resolver.unresolved(owner, field, type, id);
+      }
+      return value;
+    }
+    return reflectionConverter.unmarshal(reader, context);
+  }
+
+  private Serializable mapId(final Class<?> type, final Serializable id)
+  {
+    if (idMapping == null || id == null) {
+      return id;
+    }
+    final String key = type.getName() + ":" + id;
+    Serializable newId = idMapping.get(key);
+    if (newId == null) {
+      final Long counter = idCounters.get(type);
+      final long next = counter != null ? counter + 1 : 1;
+      idCounters.put(type, next);
+      newId = id instanceof Long ? Long.valueOf(next) : Integer.valueOf((int) next);
+      idMapping.put(key, newId);
+    }
+    return newId;
+  }
+
+  /**
+   * @return The field of the given class or its super classes or null, if not found.
+   */
+  private Field getField(final Class<?> clazz, final String name)
+  {
+    for (Class<?> cls = clazz; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+      try {
+        return cls.getDeclaredField(name);
+      } catch (final NoSuchFieldException ex) {
+        // Try super class.
+      }
+    }
+    return null;
+  }
+
+  private boolean isReference(final Class<?> type)
+  {
+    return embeddedTypes.contains(type) == false;
+  }
+}
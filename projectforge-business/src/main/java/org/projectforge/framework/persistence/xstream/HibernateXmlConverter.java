@@ -27,21 +27,16 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.PredicateUtils;
-import org.apache.commons.io.output.NullWriter;
-import org.hibernate.EntityMode;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
-import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxyHelper;
-import org.projectforge.framework.persistence.hibernate.HibernateCompatUtils;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate5.HibernateCallback;
@@ -51,10 +46,8 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import com.thoughtworks.xstream.MarshallingStrategy;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
-import com.thoughtworks.xstream.io.xml.CompactWriter;
 import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
 import com.thoughtworks.xstream.mapper.MapperWrapper;
 
@@ -71,12 +64,32 @@ public class HibernateXmlConverter
   /** The logger */
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(HibernateXmlConverter.class);
 
+  /**
+   * Root element of the dump.
+   */
+  public static final String ROOT_NODE = "database-dump";
+
+  /**
+   * Element containing all entities of one type.
+   */
+  public static final String ENTITIES_NODE = "entities";
+
+  public static final String TYPE_ATTRIBUTE = "type";
+
+  /**
+   * Number of entities read from the data base before the session is cleared.
+   */
+  private static final int CHUNK_SIZE = 500;
+
   /** the wrapper to hibernate */
   private HibernateTemplate hibernate;
 
   // Ignore these objects listing in the top level list saving because the are saved implicit by their parent objects.
   private final Set<Class<?>> ignoreFromTopLevelListing = new HashSet<Class<?>>();
 
+  // Write the entities of these types first.
+  private final List<Class<?>> orderOfWriting = new ArrayList<Class<?>>();
+
   public HibernateXmlConverter()
   {
     // TODO HISTORY
@@ -98,6 +111,9 @@ public class HibernateXmlConverter
 
   /**
    * Schreibt alle Objekte der Datenbank in den angegebenen Writer.<br/>
+   * The entities are written type by type (see {@link #appendOrderedTypes(Class...)}) and every entity on its own:
+   * referenced entities are only written as references (see {@link EntityReferenceConverter}), so the entities are
+   * read from the data base in chunks and the memory usage doesn't depend on the size of the data base.<br/>
    * <b>Warnung!</b> Bei der Serialisierung von Collections wird derzeit nur {@link java.util.Set} sauber unterstützt.
    * 
    * @param writer Ziel für die XML-Datei.
@@ -109,12 +125,12 @@ public class HibernateXmlConverter
   }
 
   /**
-   * Schreibt alle Objekte der Datenbank in den angegebenen Writer.<br/>
-   * <b>Warnung!</b> Bei der Serialisierung von Collections wird derzeit nur {@link java.util.Set} sauber unterstützt.
+   * Schreibt alle Objekte der Datenbank in den angegebenen Writer (see {@link #dumpDatabaseToXml(Writer, boolean)}).
    * 
    * @param writer Ziel für die XML-Datei.
    * @param includeHistory bei false werden die History Einträge nicht geschrieben
-   * @param preserveIds If true, the object ids will be preserved, otherwise new ids will be assigned through xstream.
+   * @param preserveIds If true, the object ids will be preserved, otherwise the ids are renumbered per type (see
+   *          {@link EntityReferenceConverter#renumberIds()}). The entity ids of the history entries aren't renumbered.
    */
   public void dumpDatabaseToXml(final Writer writer, final boolean includeHistory, final boolean preserveIds)
   {
@@ -150,79 +166,142 @@ public class HibernateXmlConverter
     return this;
   }
 
+  /**
+   * The entities of these types are written first (in the given order) followed by all other entities and the history
+   * entries. Referenced entities should be written before, so the dump can be restored in one pass.
+   * 
+   * @param types
+   * @return this for chaining.
+   */
+  public HibernateXmlConverter appendOrderedTypes(final Class<?>... types)
+  {
+    if (types != null) {
+      for (final Class<?> type : types) {
+        if (this.orderOfWriting.contains(type) == false) {
+          this.orderOfWriting.add(type);
+        }
+      }
+    }
+    return this;
+  }
+
   /**
    * @param writer
    * @param includeHistory
    * @param session
+   * @param preserveIds
    * @throws DataAccessException
    * @throws HibernateException
    */
   private void writeObjects(final Writer writer, final boolean includeHistory, final Session session,
       final boolean preserveIds)
-          throws DataAccessException, HibernateException
+      throws DataAccessException, HibernateException
   {
-    // Container für die Objekte
-    final List<Object> all = new ArrayList<Object>();
     final XStream stream = initXStream(session, true);
-    final XStream defaultXStream = initXStream(session, false);
+    final EntityReferenceConverter referenceConverter = new EntityReferenceConverter(stream,
+        ignoreFromTopLevelListing, null);
+    if (preserveIds == false) {
+      referenceConverter.renumberIds();
+    }
+    stream.registerConverter(referenceConverter, XStream.PRIORITY_VERY_HIGH);
+    stream.setMarshallingStrategy(new ProxyIdRefMarshallingStrategy());
 
     session.flush();
-    // Alles laden
-    //    final List<Class<?>> entities = new ArrayList<Class<?>>();
-    final List<Class<?>> entities = PfEmgrFactory.get().getMetadataRepository().getTableEntities().stream()
-        .map((e) -> e.getJavaType()).collect(Collectors.toList());
-    //    entities.addAll(HibernateEntities.instance().getOrderedEntities());
-    //    entities.addAll(HibernateEntities.instance().getOrderedHistoryEntities());
-    for (final Class<?> entityClass : entities) {
-      final String entitySimpleName = entityClass.getSimpleName();
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
+    } catch (final IOException ex) {
+      // ignore, will fail on stream.marshal()
+    }
+    final PrettyPrintWriter xmlWriter = new PrettyPrintWriter(writer);
+    xmlWriter.startNode(ROOT_NODE);
+    int total = 0;
+    for (final Class<?> entityClass : getEntitiesInOrderOfWriting()) {
       final String entityType = entityClass.getName();
-
-      if (includeHistory == false
-          && entityType.startsWith("org.projectforge.framework.persistence.history.entities.") == true) {
+      if (includeHistory == false && isHistoryEntity(entityClass) == true) {
         // Skip history entries.
         continue;
       }
-      List<?> list = session.createQuery("select o from " + entityType + " o").setReadOnly(true).list();
-      list = (List<?>) CollectionUtils.select(list, PredicateUtils.uniquePredicate());
-      final int size = list.size();
-      log.info("Writing " + size + " objects");
-      for (final Iterator<?> it = list.iterator(); it.hasNext();) {
-        final Object obj = it.next();
-        if (log.isDebugEnabled()) {
-          log.debug("loaded object " + obj);
-        }
-        Hibernate.initialize(obj);
-        final Class<?> targetClass = HibernateProxyHelper.getClassWithoutInitializingProxy(obj);
-        final ClassMetadata classMetadata = session.getSessionFactory().getClassMetadata(targetClass);
-        if (classMetadata == null) {
-          log.fatal("Can't init " + obj + " of type " + targetClass);
-          continue;
+      if (this.ignoreFromTopLevelListing.contains(entityClass) == true) {
+        // Written by their parent objects.
+        continue;
+      }
+      xmlWriter.startNode(ENTITIES_NODE);
+      xmlWriter.addAttribute(TYPE_ATTRIBUTE, entityType);
+      int counter = 0;
+      final ScrollableResults results = session.createQuery("select o from " + entityType + " o").setReadOnly(true)
+          .setFetchSize(CHUNK_SIZE).scroll(ScrollMode.FORWARD_ONLY);
+      try {
+        while (results.next() == true) {
+          final Object obj = results.get(0);
+          if (obj == null) {
+            continue;
+          }
+          Hibernate.initialize(obj);
+          final Class<?> targetClass = HibernateProxyHelper.getClassWithoutInitializingProxy(obj);
+          if (targetClass.equals(entityClass) == false) {
+            // Object of a sub class (polymorphic query), written with the entities of its own type.
+            continue;
+          }
+          if (session.getSessionFactory().getClassMetadata(targetClass) == null) {
+            log.fatal("Can't init " + obj + " of type " + targetClass);
+            continue;
+          }
+          if (log.isDebugEnabled()) {
+            log.debug("loaded object " + obj);
+          }
+          referenceConverter.setRoot(obj);
+          stream.marshal(obj, xmlWriter);
+          if (++counter % CHUNK_SIZE == 0) {
+            // Free the memory of the already written objects:
+            xmlWriter.flush();
+            session.clear();
+          }
         }
-        // initalisierung des Objekts...
-        defaultXStream.marshal(obj, new CompactWriter(new NullWriter()));
+      } finally {
+        results.close();
+      }
+      xmlWriter.endNode();
+      xmlWriter.flush();
+      session.clear();
+      if (counter > 0) {
+        log.info("Wrote " + counter + " objects of type " + entityType);
+      }
+      total += counter;
+    }
+    xmlWriter.endNode();
+    xmlWriter.flush();
+    log.info("Wrote " + total + " objects");
+  }
 
-        if (preserveIds == false) {
-          // Nun kann die ID gelöscht werden
-          HibernateCompatUtils.setClassMetaDataSetIdentifier(classMetadata, obj, EntityMode.POJO);
-        }
-        if (log.isDebugEnabled()) {
-          log.debug("loading evicted object " + obj);
-        }
-        if (this.ignoreFromTopLevelListing.contains(targetClass) == false) {
-          all.add(obj);
-        }
+  /**
+   * @return The ordered types followed by all other entities and the history entities.
+   */
+  private List<Class<?>> getEntitiesInOrderOfWriting()
+  {
+    final List<Class<?>> entities = PfEmgrFactory.get().getMetadataRepository().getTableEntities().stream()
+        .map((e) -> e.getJavaType()).collect(Collectors.toList());
+    final List<Class<?>> result = new ArrayList<Class<?>>();
+    for (final Class<?> entityClass : orderOfWriting) {
+      if (entities.contains(entityClass) == true && isHistoryEntity(entityClass) == false) {
+        result.add(entityClass);
       }
     }
-    // und schreiben
-    try {
-      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
-    } catch (final IOException ex) {
-      // ignore, will fail on stream.marshal()
+    for (final Class<?> entityClass : entities) {
+      if (result.contains(entityClass) == false && isHistoryEntity(entityClass) == false) {
+        result.add(entityClass);
+      }
+    }
+    for (final Class<?> entityClass : entities) {
+      if (result.contains(entityClass) == false) {
+        result.add(entityClass);
+      }
     }
-    log.info("Wrote " + all.size() + " objects");
-    final MarshallingStrategy marshallingStrategy = new ProxyIdRefMarshallingStrategy();
-    stream.setMarshallingStrategy(marshallingStrategy);
-    stream.marshal(all, new PrettyPrintWriter(writer));
+    return result;
+  }
+
+  private boolean isHistoryEntity(final Class<?> entityClass)
+  {
+    return entityClass.getName().startsWith("org.projectforge.framework.persistence.history.entities.") == true;
   }
 
   /**
@@ -90,6 +90,10 @@ public class XStreamSavingConverter implements Converter
 
   private Session session;
 
+  private int batchSize;
+
+  private int savedObjectsCounter;
+
   public XStreamSavingConverter() throws HibernateException
   {
     final XStream xstream = new XStream();
@@ -106,6 +110,18 @@ public class XStreamSavingConverter implements Converter
     this.session = session;
   }
 
+  /**
+   * If greater than 0, the session isn't flushed after every saved object but is flushed and cleared after every
+   * batchSize objects saved by {@link #saveObject(Object)}. The saved objects and history entries aren't hold in
+   * memory in this mode. Default is 0.
+   * 
+   * @param batchSize
+   */
+  public void setBatchSize(final int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
   public Map<Class<?>, List<Object>> getAllObjects()
   {
     return allObjects;
@@ -138,6 +154,7 @@ public class XStreamSavingConverter implements Converter
     if (types != null) {
       for (final Class<?> type : types) {
         this.ignoreFromSaving.add(type);
+        this.historyClassMapping.put(getClassname4History(type), type);
       }
     }
     return this;
@@ -157,12 +174,51 @@ public class XStreamSavingConverter implements Converter
       this.historyClassMapping.put(getClassname4History(type), type);
       save(type);
     }
-    for (final Class<?> type : ignoreFromSaving) {
-      this.historyClassMapping.put(getClassname4History(type), type);
-    }
     save(PfHistoryMasterDO.class);
   }
 
+  /**
+   * Saves the given object immediately (without registering it for {@link #saveObjects()}). Used for dumps which are
+   * read object by object: the order of the dump must be the order of saving.
+   * 
+   * @param obj
+   * @see #setBatchSize(int)
+   */
+  public void saveObject(final Object obj)
+  {
+    if (obj == null || HibernateUtils.isEntity(obj.getClass()) == false) {
+      return;
+    }
+    final Class<?> type = obj.getClass();
+    this.historyClassMapping.put(getClassname4History(type), type);
+    if (ignoreFromSaving.contains(type) == true) {
+      return;
+    }
+    saveObjectAndCallHooks(obj);
+    ++savedObjectsCounter;
+    if (batchSize > 0 && savedObjectsCounter % batchSize == 0) {
+      flushSession();
+    }
+  }
+
+  /**
+   * @return The number of objects saved by {@link #saveObject(Object)}.
+   */
+  public int getSavedObjectsCounter()
+  {
+    return savedObjectsCounter;
+  }
+
+  /**
+   * Flushes and clears the session. Must be called after the last {@link #saveObject(Object)} call if a batch size is
+   * given.
+   */
+  public void flushSession()
+  {
+    session.flush();
+    session.clear();
+  }
+
   /**
    * Will be called directly before an object will be saved.
    * 
@@ -195,7 +251,9 @@ public class XStreamSavingConverter implements Converter
       //        list.add(deltaEntry);
       //        save(deltaEntry);
       //      }
-      this.historyEntries.add(entry);
+      if (batchSize == 0) {
+        this.historyEntries.add(entry);
+      }
       return id;
     }
     return null;
@@ -316,23 +374,28 @@ public class XStreamSavingConverter implements Converter
       if (session.contains(obj) == true) {
         continue;
       }
-      try {
-        if (log.isDebugEnabled()) {
-          log.debug("Try to write object " + obj);
-        }
-        Serializable id = onBeforeSave(session, obj);
-        if (id == null) {
-          id = save(obj);
-        }
-        onAfterSave(obj, id);
-        if (log.isDebugEnabled() == true) {
-          log.debug("wrote object " + obj + " under id " + id);
-        }
-      } catch (final HibernateException ex) {
-        log.fatal("Failed to write " + obj + " ex=" + ex, ex);
-      } catch (final NullPointerException ex) {
-        log.fatal("Failed to write " + obj + " ex=" + ex, ex);
+      saveObjectAndCallHooks(obj);
+    }
+  }
+
+  private void saveObjectAndCallHooks(final Object obj)
+  {
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Try to write object " + obj);
+      }
+      Serializable id = onBeforeSave(session, obj);
+      if (id == null) {
+        id = save(obj);
       }
+      onAfterSave(obj, id);
+      if (log.isDebugEnabled() == true) {
+        log.debug("wrote object " + obj + " under id " + id);
+      }
+    } catch (final HibernateException ex) {
+      log.fatal("Failed to write " + obj + " ex=" + ex, ex);
+    } catch (final NullPointerException ex) {
+      log.fatal("Failed to write " + obj + " ex=" + ex, ex);
     }
   }
 
@@ -360,7 +423,9 @@ public class XStreamSavingConverter implements Converter
         if (oldId != null) {
           registerEntityMapping(obj.getClass(), oldId, id);
         }
-        writtenObjects.add(obj);
+        if (batchSize == 0) {
+          writtenObjects.add(obj);
+        }
       } else if (obj instanceof HistoryEntry) {
         // HistoryEntry
         ((HistoryEntry) obj).setPk(null);
@@ -380,7 +445,9 @@ public class XStreamSavingConverter implements Converter
       session.saveOrUpdate(obj);
       id = ((BaseDO<?>) obj).getId();
     }
-    session.flush();
+    if (batchSize == 0) {
+      session.flush();
+    }
     return id;
   }
 
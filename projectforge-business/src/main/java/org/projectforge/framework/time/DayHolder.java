@@ -33,6 +33,7 @@ import java.util.TimeZone;
 
 import org.apache.commons.lang.Validate;
 import org.projectforge.framework.calendar.Holidays;
+import org.projectforge.framework.calendar.WorkingDaysOfYear;
 import org.projectforge.framework.i18n.UserException;
 
 /**
@@ -92,33 +93,36 @@ public class DayHolder extends DateHolder
         return BigDecimal.ZERO;
       }
     }
-    final DayHolder day = new DayHolder(from);
+    final int fromYear = from.getYear();
+    final int toYear = to.getYear();
+    if (toYear - fromYear > 3) {
+      throw new UserException(
+          "getNumberOfWorkingDays does not support calculation of working days for a time period greater than two years!");
+    }
+    final Holidays holidays = Holidays.getInstance();
+    final WorkingDaysOfYear[] years = new WorkingDaysOfYear[toYear - fromYear + 1];
+    int numberOfDays = 0;
+    for (int year = fromYear; year <= toYear; year++) {
+      final WorkingDaysOfYear workingDaysOfYear = holidays.getWorkingDaysOfYear(year);
+      years[year - fromYear] = workingDaysOfYear;
+      final int firstDay = year == fromYear ? from.getDayOfYear() : 1;
+      final int lastDay = year == toYear ? to.getDayOfYear() : workingDaysOfYear.getNumberOfDays();
+      numberOfDays += lastDay - firstDay + 1;
+    }
+    if (numberOfDays > 741) { // Time period greater 2 years.
+      throw new UserException(
+          "getNumberOfWorkingDays does not support calculation of working days for a time period greater than two years!");
+    }
+    // Prefix sums of the working days of each year, no iteration over the days needed:
     BigDecimal numberOfWorkingDays = BigDecimal.ZERO;
     int numberOfFullWorkingDays = 0;
-    int dayCounter = 1;
-    if (day.isWorkingDay() == true) {
-      final BigDecimal workFraction = day.getWorkFraction();
-      if (workFraction != null) {
-        numberOfWorkingDays = numberOfWorkingDays.add(day.getWorkFraction());
-      } else {
-        numberOfFullWorkingDays++;
-      }
+    for (final WorkingDaysOfYear workingDaysOfYear : years) {
+      final int firstDay = workingDaysOfYear.getYear() == fromYear ? from.getDayOfYear() : 1;
+      final int lastDay = workingDaysOfYear.getYear() == toYear ? to.getDayOfYear()
+          : workingDaysOfYear.getNumberOfDays();
+      numberOfFullWorkingDays += workingDaysOfYear.getNumberOfFullWorkingDays(firstDay, lastDay);
+      numberOfWorkingDays = workingDaysOfYear.addWorkFractions(numberOfWorkingDays, firstDay, lastDay);
     }
-    do {
-      day.add(Calendar.DAY_OF_MONTH, 1);
-      if (dayCounter++ > 740) { // Endless loop protection, time period greater 2 years.
-        throw new UserException(
-            "getNumberOfWorkingDays does not support calculation of working days for a time period greater than two years!");
-      }
-      if (day.isWorkingDay() == true) {
-        final BigDecimal workFraction = day.getWorkFraction();
-        if (workFraction != null) {
-          numberOfWorkingDays = numberOfWorkingDays.add(day.getWorkFraction());
-        } else {
-          numberOfFullWorkingDays++;
-        }
-      }
-    } while (day.isSameDay(to) == false);
     numberOfWorkingDays = numberOfWorkingDays.add(new BigDecimal(numberOfFullWorkingDays));
     return numberOfWorkingDays;
   }
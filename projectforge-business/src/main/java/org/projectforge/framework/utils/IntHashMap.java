@@ -0,0 +1,206 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash map with primitive int keys (no boxing of the keys). Open addressing with linear probing is used, null values
+ * aren't supported.<br/>
+ * This map isn't synchronized. It's designed for caches: fill it once and publish it afterwards (e. g. via a final or
+ * volatile field), then it may be read by any number of threads without any locking.
+ */
+public class IntHashMap<V> implements Serializable
+{
+  private static final long serialVersionUID = 2375180924513614361L;
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] keys;
+
+  private Object[] values;
+
+  private int size;
+
+  public IntHashMap()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize The number of entries expected, the map will be resized if needed.
+   */
+  public IntHashMap(final int expectedSize)
+  {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new int[capacity];
+    this.values = new Object[capacity];
+  }
+
+  /**
+   * Copy constructor.
+   *
+   * @param other
+   */
+  public IntHashMap(final IntHashMap<V> other)
+  {
+    this.keys = other.keys.clone();
+    this.values = other.values.clone();
+    this.size = other.size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(final int key)
+  {
+    final int mask = keys.length - 1;
+    int pos = hash(key) & mask;
+    Object value;
+    while ((value = values[pos]) != null) {
+      if (keys[pos] == key) {
+        return (V) value;
+      }
+      pos = (pos + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * @param key
+   * @return The value or null if key is null or not found.
+   */
+  public V get(final Integer key)
+  {
+    if (key == null) {
+      return null;
+    }
+    return get(key.intValue());
+  }
+
+  public boolean containsKey(final int key)
+  {
+    return get(key) != null;
+  }
+
+  /**
+   * @param key
+   * @param value Must not be null.
+   * @return The previous value or null if not exist.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(final int key, final V value)
+  {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values aren't supported.");
+    }
+    if ((size + 1) * 2 > keys.length) {
+      resize(keys.length << 1);
+    }
+    final int mask = keys.length - 1;
+    int pos = hash(key) & mask;
+    Object old;
+    while ((old = values[pos]) != null) {
+      if (keys[pos] == key) {
+        values[pos] = value;
+        return (V) old;
+      }
+      pos = (pos + 1) & mask;
+    }
+    keys[pos] = key;
+    values[pos] = value;
+    ++size;
+    return null;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * @return A new list containing all values (in no specific order).
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> values()
+  {
+    final List<V> list = new ArrayList<V>(size);
+    for (final Object value : values) {
+      if (value != null) {
+        list.add((V) value);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * @return A new array containing all keys (in no specific order).
+   */
+  public int[] keys()
+  {
+    final int[] result = new int[size];
+    int i = 0;
+    for (int pos = 0; pos < keys.length; pos++) {
+      if (values[pos] != null) {
+        result[i++] = keys[pos];
+      }
+    }
+    return result;
+  }
+
+  private void resize(final int newCapacity)
+  {
+    final int[] oldKeys = keys;
+    final Object[] oldValues = values;
+    keys = new int[newCapacity];
+    values = new Object[newCapacity];
+    final int mask = newCapacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] == null) {
+        continue;
+      }
+      int pos = hash(oldKeys[i]) & mask;
+      while (values[pos] != null) {
+        pos = (pos + 1) & mask;
+      }
+      keys[pos] = oldKeys[i];
+      values[pos] = oldValues[i];
+    }
+  }
+
+  private static int hash(final int key)
+  {
+    // Spread the bits, because data base ids are often sequential:
+    final int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -28,19 +28,35 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
 import javax.activation.MimetypesFileTypeMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
+import javax.mail.internet.ParseException;
 import javax.mail.util.ByteArrayDataSource;
 
 import org.apache.commons.lang.StringUtils;
@@ -52,6 +68,7 @@ import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import de.micromata.genome.util.runtime.config.MailSessionLocalSettingsConfigModel;
@@ -59,7 +76,10 @@ import de.micromata.genome.util.validation.ValContext;
 import de.micromata.genome.util.validation.ValMessage;
 
 /**
- * Helper class for creating and transporting E-Mails. Groovy script is use-able for e-mail template mechanism.
+ * Helper class for creating and transporting E-Mails. Groovy script is use-able for e-mail template mechanism.<br/>
+ * The mails are queued and sent by a small pool of send threads. Every send thread keeps its SMTP connection open as
+ * long as further mails are queued. Mails failed due to transient errors are queued again after increasing delays
+ * (see {@link #isTransientError(MessagingException)}).
  *
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
@@ -70,9 +90,111 @@ public class SendMail
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(SendMail.class);
 
+  static final int MAX_SEND_ATTEMPTS = 3;
+
+  /**
+   * SMTP reply codes 5xx (permanent negative completion), as first token of the server response or as response of the
+   * greeting.
+   */
+  private static final Pattern PERMANENT_SMTP_REPLY = Pattern.compile("(^|response: )5\\d\\d\\b");
+
   @Autowired
   private ConfigurationService configurationService;
 
+  /**
+   * Number of threads sending the queued mails.
+   */
+  @Value("${projectforge.mail.sendThreads:2}")
+  private int sendThreads = 2;
+
+  /**
+   * Maximum number of queued mails. If the queue is full, further mails are sent by the calling thread (one attempt,
+   * the retries are queued).
+   */
+  @Value("${projectforge.mail.queueSize:1000}")
+  private int queueSize = 1000;
+
+  /**
+   * Delay before the first retry of a failed mail in ms, doubled for every further retry.
+   */
+  @Value("${projectforge.mail.retryDelay:2000}")
+  private long retryDelay = 2000;
+
+  private ThreadPoolExecutor sendExecutor;
+
+  /**
+   * Queues the failed mails again after their retry delay.
+   */
+  private ScheduledExecutorService retryExecutor;
+
+  private final AtomicLong sentMails = new AtomicLong();
+
+  private final AtomicLong failedMails = new AtomicLong();
+
+  /**
+   * Sum of the durations from queuing until sending of all sent mails (in ms).
+   */
+  private final AtomicLong totalSendDuration = new AtomicLong();
+
+  @PostConstruct
+  public void init()
+  {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory()
+        {
+          @Override
+          public Thread newThread(final Runnable runnable)
+          {
+            final Thread thread = new SendThread(runnable, "SendMail-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new RejectedExecutionHandler()
+        {
+          @Override
+          public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor)
+          {
+            if (executor.isShutdown() == true) {
+              throw new RejectedExecutionException("Mail queue is already shut down.");
+            }
+            log.warn("Mail queue is full (" + queueSize + " mails), sending mail directly.");
+            runnable.run();
+          }
+        });
+    retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "SendMail-Retry");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Sends the mails already queued before shutdown.
+   */
+  @PreDestroy
+  public void shutdown()
+  {
+    final List<Runnable> retries = retryExecutor.shutdownNow();
+    if (retries.isEmpty() == false) {
+      failedMails.addAndGet(retries.size());
+      log.error("Shutdown of mail queue, " + retries.size() + " mails waiting for retry not sent.");
+    }
+    sendExecutor.shutdown();
+    try {
+      if (sendExecutor.awaitTermination(30, TimeUnit.SECONDS) == false) {
+        log.error("Shutdown of mail queue timed out, " + sendExecutor.getQueue().size() + " mails not sent.");
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * Get the ProjectForge standard subject: "[ProjectForge] ..."
    *
@@ -85,7 +207,8 @@ public class SendMail
 
   /**
    * @param composedMessage
-   * @return true for successful sending, otherwise an exception will be thrown.
+   * @return true for successful queuing (or sending), false if sending of mails is disabled or the mail queue is shut
+   *         down, otherwise an exception will be thrown.
    * @throws UserException          if to address is not given.
    * @throws InternalErrorException due to technical failures.
    */
@@ -102,11 +225,90 @@ public class SendMail
       log.error("No e-mail host configured. E-Mail not sent: " + composedMessage.toString());
       return false;
     }
-    new Thread(
-        () -> sendIt(composedMessage, icalContent, attachments)).start();
+    try {
+      sendExecutor.execute(new SendTask(composedMessage, icalContent, attachments));
+    } catch (final RejectedExecutionException ex) {
+      log.error(ex.getMessage() + " E-Mail not sent: " + composedMessage.toString());
+      return false;
+    }
     return true;
   }
 
+  /**
+   * @return The number of mails waiting in the queue.
+   */
+  public int getQueueSize()
+  {
+    return sendExecutor.getQueue().size();
+  }
+
+  public long getSentMails()
+  {
+    return sentMails.get();
+  }
+
+  /**
+   * @return The number of mails not sent due to permanent errors or after {@link #MAX_SEND_ATTEMPTS} attempts.
+   */
+  public long getFailedMails()
+  {
+    return failedMails.get();
+  }
+
+  /**
+   * @return The average duration from queuing until sending of the sent mails in ms.
+   */
+  public long getAverageSendDuration()
+  {
+    final long sent = sentMails.get();
+    return sent > 0 ? totalSendDuration.get() / sent : 0;
+  }
+
+  /**
+   * Queues the failed mail again after the retry delay (doubled for every further attempt). The send threads aren't
+   * blocked while waiting.
+   */
+  private void scheduleRetry(final SendTask task)
+  {
+    final long delay = retryDelay << (task.attempt - 1);
+    log.info("Sending of mail failed (attempt " + task.attempt + "), retrying in " + delay + "ms: "
+        + task.composedMessage.toString());
+    task.attempt++;
+    try {
+      retryExecutor.schedule(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try {
+            sendExecutor.execute(task);
+          } catch (final RejectedExecutionException ex) {
+            failedMails.incrementAndGet();
+            log.error(ex.getMessage() + " E-Mail not sent: " + task.composedMessage.toString());
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (final RejectedExecutionException ex) {
+      failedMails.incrementAndGet();
+      log.error("Mail queue is already shut down, E-Mail not sent: " + task.composedMessage.toString());
+    }
+  }
+
+  /**
+   * @return true for errors, which may not occur on a later attempt: connection problems (e. g. refused or lost
+   *         connections) and SMTP 4xx replies outside of the mail transaction (e. g. greeting 421). Rejected senders,
+   *         recipients or messages ({@link SendFailedException}), failed authentication, invalid addresses and SMTP 5xx
+   *         replies are permanent.
+   */
+  static boolean isTransientError(final MessagingException ex)
+  {
+    if (ex instanceof SendFailedException || ex instanceof AuthenticationFailedException
+        || ex instanceof ParseException) {
+      return false;
+    }
+    return PERMANENT_SMTP_REPLY.matcher(StringUtils.defaultString(ex.getMessage())).find() == false;
+  }
+
   private Session getSession()
   {
     MailSessionLocalSettingsConfigModel cf = configurationService.createMailSessionLocalSettingsConfigModel();
@@ -129,45 +331,88 @@ public class SendMail
     return cf.createMailSession(addp);
   }
 
+  /**
+   * @throws InternalErrorException if the mail configuration is missing or invalid.
+   */
   private void sendIt(final Mail composedMessage, final String icalContent,
-      final Collection<? extends MailAttachment> attachments)
+      final Collection<? extends MailAttachment> attachments) throws MessagingException
   {
-    try {
-      final Session session = getSession();
-      final MimeMessage message = new MimeMessage(session);
-      if (composedMessage.getFrom() != null) {
-        message.setFrom(new InternetAddress(composedMessage.getFrom()));
-      } else {
-        message.setFrom();
-      }
-      message.setRecipients(Message.RecipientType.TO,
-          composedMessage.getTo().toArray(new Address[composedMessage.getTo().size()]));
-      final String subject = composedMessage.getSubject();
-      final SendMailConfig sendMailConfig = configurationService.getSendMailConfiguration();
-      message.setSubject(subject, sendMailConfig.getCharset());
-      message.setSentDate(new Date());
-
-      if (StringUtils.isBlank(icalContent) == true && attachments == null) {
-        // create message without attachments
-        if (composedMessage.getContentType() != null) {
-          message.setText(composedMessage.getContent(), composedMessage.getCharset(), composedMessage.getContentType());
-        } else {
-          message.setText(composedMessage.getContent(), sendMailConfig.getCharset());
-        }
+    final Session session = getSession();
+    final MimeMessage message = new MimeMessage(session);
+    if (composedMessage.getFrom() != null) {
+      message.setFrom(new InternetAddress(composedMessage.getFrom()));
+    } else {
+      message.setFrom();
+    }
+    message.setRecipients(Message.RecipientType.TO,
+        composedMessage.getTo().toArray(new Address[composedMessage.getTo().size()]));
+    final String subject = composedMessage.getSubject();
+    final SendMailConfig sendMailConfig = configurationService.getSendMailConfiguration();
+    message.setSubject(subject, sendMailConfig.getCharset());
+    message.setSentDate(new Date());
+
+    if (StringUtils.isBlank(icalContent) == true && attachments == null) {
+      // create message without attachments
+      if (composedMessage.getContentType() != null) {
+        message.setText(composedMessage.getContent(), composedMessage.getCharset(), composedMessage.getContentType());
       } else {
-        // create message with attachments
-        final MimeMultipart mp = createMailAttachmentContent(message, composedMessage, icalContent, attachments, sendMailConfig);
-        message.setContent(mp);
+        message.setText(composedMessage.getContent(), sendMailConfig.getCharset());
       }
+    } else {
+      // create message with attachments
+      final MimeMultipart mp = createMailAttachmentContent(message, composedMessage, icalContent, attachments, sendMailConfig);
+      message.setContent(mp);
+    }
 
-      message.saveChanges(); // don't forget this
-      Transport.send(message);
+    message.saveChanges(); // don't forget this
+    transport(session, message);
+    log.info("E-Mail successfully sent: " + composedMessage.toString());
+  }
 
+  /**
+   * Send threads reuse their open connection, the connection is closed if no further mails are queued.
+   */
+  private void transport(final Session session, final MimeMessage message) throws MessagingException
+  {
+    if (Thread.currentThread() instanceof SendThread == false) {
+      // Mail queue is full, the calling thread sends the mail.
+      Transport.send(message);
+      return;
+    }
+    final SendThread sendThread = (SendThread) Thread.currentThread();
+    final String connectionKey = getConnectionKey(session);
+    try {
+      if (sendThread.transport != null && (sendThread.transport.isConnected() == false
+          || connectionKey.equals(sendThread.connectionKey) == false)) {
+        // Connection lost or SMTP configuration changed:
+        sendThread.closeTransport();
+      }
+      if (sendThread.transport == null) {
+        final Transport transport = session.getTransport(message.getAllRecipients()[0]);
+        transport.connect();
+        sendThread.transport = transport;
+        sendThread.connectionKey = connectionKey;
+      }
+      sendThread.transport.sendMessage(message, message.getAllRecipients());
     } catch (final MessagingException ex) {
-      log.error("While creating and sending message: " + composedMessage.toString(), ex);
-      throw new InternalErrorException("mail.error.exception");
+      // Don't reuse a connection in an unknown state:
+      sendThread.closeTransport();
+      throw ex;
+    } finally {
+      if (sendExecutor.getQueue().isEmpty() == true) {
+        sendThread.closeTransport();
+      }
     }
-    log.info("E-Mail successfully sent: " + composedMessage.toString());
+  }
+
+  /**
+   * @return Protocol, user, host and port of the SMTP server configured in the given session.
+   */
+  private String getConnectionKey(final Session session)
+  {
+    final String protocol = StringUtils.defaultIfEmpty(session.getProperty("mail.transport.protocol"), "smtp");
+    return protocol + "://" + session.getProperty("mail." + protocol + ".user") + "@"
+        + session.getProperty("mail." + protocol + ".host") + ":" + session.getProperty("mail." + protocol + ".port");
   }
 
   private MimeMultipart createMailAttachmentContent(MimeMessage message, final Mail composedMessage, final String icalContent,
@@ -253,4 +498,86 @@ public class SendMail
     return engine.executeTemplateFile(groovyTemplate);
   }
 
+  /**
+   * A queued mail. Every execution is one attempt to send the mail.
+   */
+  private class SendTask implements Runnable
+  {
+    private final Mail composedMessage;
+
+    private final String icalContent;
+
+    private final Collection<? extends MailAttachment> attachments;
+
+    private final long queued = System.currentTimeMillis();
+
+    private int attempt = 1;
+
+    private SendTask(final Mail composedMessage, final String icalContent,
+        final Collection<? extends MailAttachment> attachments)
+    {
+      this.composedMessage = composedMessage;
+      this.icalContent = icalContent;
+      this.attachments = attachments;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        sendIt(composedMessage, icalContent, attachments);
+        sentMails.incrementAndGet();
+        totalSendDuration.addAndGet(System.currentTimeMillis() - queued);
+      } catch (final MessagingException ex) {
+        if (isTransientError(ex) == false) {
+          failedMails.incrementAndGet();
+          log.error("Sending of mail failed permanently, not retried: " + composedMessage.toString(), ex);
+          return;
+        }
+        if (attempt >= MAX_SEND_ATTEMPTS) {
+          failedMails.incrementAndGet();
+          log.error("Giving up sending of mail after " + attempt + " attempts: " + composedMessage.toString(), ex);
+          return;
+        }
+        scheduleRetry(this);
+      } catch (final InternalErrorException ex) {
+        // Missing or invalid mail configuration (already logged), not retried.
+        failedMails.incrementAndGet();
+        log.error("E-Mail not sent: " + composedMessage.toString());
+      }
+    }
+  }
+
+  /**
+   * Send thread of the mail queue holding its open connection.
+   */
+  private static class SendThread extends Thread
+  {
+    private Transport transport;
+
+    /**
+     * SMTP server of the open connection (see {@link SendMail#getConnectionKey(Session)}).
+     */
+    private String connectionKey;
+
+    private SendThread(final Runnable runnable, final String name)
+    {
+      super(runnable, name);
+    }
+
+    private void closeTransport()
+    {
+      if (transport == null) {
+        return;
+      }
+      try {
+        transport.close();
+      } catch (final MessagingException ex) {
+        log.warn("Error while closing mail connection: " + ex.getMessage());
+      }
+      transport = null;
+      connectionKey = null;
+    }
+  }
+
 }
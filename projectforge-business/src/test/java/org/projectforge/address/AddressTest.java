@@ -35,6 +35,7 @@ import org.apache.log4j.Logger;
 import org.hibernate.criterion.Order;
 import org.projectforge.business.address.AddressDO;
 import org.projectforge.business.address.AddressDao;
+import org.projectforge.business.address.AddressFilter;
 import org.projectforge.business.address.InstantMessagingType;
 import org.projectforge.framework.access.AccessException;
 import org.projectforge.framework.access.AccessType;
@@ -307,6 +308,40 @@ public class AddressTest extends AbstractTestBase
     }
   }
 
+  @Test
+  public void getListByPhoneNumber()
+  {
+    logon(ADMIN);
+    AddressDO a1 = new AddressDO();
+    a1.setName("phone1");
+    a1.setBusinessPhone("+49 561 998877-66");
+    a1.setTask(getTask("ta_1_siud"));
+    addressDao.internalSave(a1);
+    AddressDO a2 = new AddressDO();
+    a2.setName("phone2");
+    a2.setMobilePhone("0561 / 99887766");
+    a2.setTask(getTask("ta_4_xxxx"));
+    addressDao.internalSave(a2);
+    AddressDO a3 = new AddressDO();
+    a3.setName("phone3");
+    a3.setMobilePhone("0561 / 99887765");
+    a3.setTask(getTask("ta_1_siud"));
+    addressDao.internalSave(a3);
+
+    AddressFilter filter = new AddressFilter().setPhoneNumber("887766");
+    List<AddressDO> result = addressDao.getList(filter);
+    assertEquals(2, result.size());
+    assertEquals("phone1", result.get(0).getName());
+    assertEquals("phone2", result.get(1).getName());
+    assertEquals(0, addressDao.getList(new AddressFilter().setPhoneNumber("00887766")).size());
+
+    logon(AbstractTestBase.TEST_USER);
+    result = addressDao.getList(filter);
+    assertEquals("No select access to phone2.", 1, result.size());
+    assertEquals("phone1", result.get(0).getName());
+    assertEquals(2, addressDao.internalGetListByPhoneNumber("887766").size());
+  }
+
   @Test
   public void testInstantMessagingField() throws Exception
   {
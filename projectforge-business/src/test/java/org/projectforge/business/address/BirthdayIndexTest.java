@@ -0,0 +1,114 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class BirthdayIndexTest
+{
+  @Test
+  public void getAddressIds()
+  {
+    final BirthdayIndex index = new BirthdayIndex();
+    index.put(1, createDate(1970, Calendar.JANUARY, 1));
+    index.put(2, createDate(1980, Calendar.JANUARY, 15));
+    index.put(3, createDate(1990, Calendar.JANUARY, 15));
+    index.put(4, createDate(1975, Calendar.MARCH, 3));
+    index.put(5, createDate(1985, Calendar.DECEMBER, 31));
+    index.put(6, null); // Ignored.
+    assertEquals(5, index.size());
+    assertIds(index.getAddressIds(Calendar.JANUARY, 2, Calendar.JANUARY, 14), 1, 2, 3); // Including day before and after.
+    assertIds(index.getAddressIds(Calendar.JANUARY, 15, Calendar.JANUARY, 15), 2, 3);
+    assertIds(index.getAddressIds(Calendar.JANUARY, 20, Calendar.JANUARY, 10)); // Empty time period.
+    assertIds(index.getAddressIds(Calendar.JANUARY, 1, Calendar.FEBRUARY, 28), 5, 1, 2, 3);
+    assertIds(index.getAddressIds(Calendar.FEBRUARY, 1, Calendar.DECEMBER, 30), 4, 5);
+    // Over the end of the year:
+    assertIds(index.getAddressIds(Calendar.DECEMBER, 1, Calendar.JANUARY, 13), 5, 1);
+    assertIds(index.getAddressIds(Calendar.NOVEMBER, 1, Calendar.MARCH, 1), 5, 1, 2, 3);
+    assertIds(index.getAddressIds(Calendar.DECEMBER, 31, Calendar.MARCH, 2), 5, 1, 2, 3, 4); // Including day after.
+
+    index.put(2, createDate(1980, Calendar.MARCH, 3)); // Modified.
+    index.remove(3);
+    assertEquals(4, index.size());
+    assertIds(index.getAddressIds(Calendar.JANUARY, 15, Calendar.JANUARY, 15));
+    assertIds(index.getAddressIds(Calendar.MARCH, 3, Calendar.MARCH, 3), 2, 4);
+  }
+
+  @Test
+  public void dayBeforeAndAfterEndOfMonth()
+  {
+    final BirthdayIndex index = new BirthdayIndex();
+    index.put(1, createDate(1970, Calendar.APRIL, 30));
+    index.put(2, createDate(1980, Calendar.MAY, 1));
+    assertIds(index.getAddressIds(Calendar.MAY, 1, Calendar.MAY, 10), 1, 2);
+    assertIds(index.getAddressIds(Calendar.MAY, 2, Calendar.MAY, 10), 2);
+    assertIds(index.getAddressIds(Calendar.APRIL, 20, Calendar.APRIL, 29), 1);
+    assertIds(index.getAddressIds(Calendar.APRIL, 20, Calendar.APRIL, 30), 1, 2);
+  }
+
+  @Test
+  public void dayBeforeAndAfterFebruary()
+  {
+    final BirthdayIndex index = new BirthdayIndex();
+    index.put(1, createDate(1970, Calendar.FEBRUARY, 28));
+    index.put(2, createDate(1980, Calendar.FEBRUARY, 29));
+    index.put(3, createDate(1990, Calendar.MARCH, 1));
+    // The day before March 1st is February 28th (or 29th in leap years):
+    assertIds(index.getAddressIds(Calendar.MARCH, 1, Calendar.MARCH, 10), 1, 2, 3);
+    assertIds(index.getAddressIds(Calendar.MARCH, 2, Calendar.MARCH, 10), 3);
+    // The day after February 28th is March 1st (or February 29th in leap years):
+    assertIds(index.getAddressIds(Calendar.FEBRUARY, 20, Calendar.FEBRUARY, 28), 1, 2, 3);
+    assertIds(index.getAddressIds(Calendar.FEBRUARY, 20, Calendar.FEBRUARY, 27), 1);
+    assertIds(index.getAddressIds(Calendar.FEBRUARY, 29, Calendar.FEBRUARY, 29), 1, 2, 3);
+  }
+
+  private void assertIds(final List<List<Integer>> idsByDay, final Integer... expectedIds)
+  {
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (final List<Integer> idsOfDay : idsByDay) {
+      final List<Integer> sorted = new ArrayList<Integer>(idsOfDay);
+      Collections.sort(sorted);
+      ids.addAll(sorted);
+    }
+    assertEquals(Arrays.asList(expectedIds), ids);
+  }
+
+  private Date createDate(final int year, final int month, final int dayOfMonth)
+  {
+    final Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(year, month, dayOfMonth);
+    return cal.getTime();
+  }
+}
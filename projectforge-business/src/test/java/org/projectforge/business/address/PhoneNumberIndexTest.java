@@ -0,0 +1,65 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.business.address;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+public class PhoneNumberIndexTest
+{
+  @Test
+  public void getAddressIds()
+  {
+    final PhoneNumberIndex index = new PhoneNumberIndex("+49");
+    index.put(1, new Date(1000), "+49 561 / 316793-0", null, "");
+    index.put(2, new Date(3000), "0561 316793-11", "+39 123456");
+    index.put(3, new Date(2000), "(0561) 316793 - 0");
+    assertEquals(3, index.size());
+    assertEquals(Arrays.asList(3, 1), index.getAddressIds("05613167930"));
+    assertEquals(Arrays.asList(3, 1), index.getAddressIds("+49 561 3167930"));
+    assertEquals(Arrays.asList(3, 1), index.getAddressIds("3167930")); // End of the number.
+    assertEquals(Arrays.asList(2), index.getAddressIds("316793-11"));
+    assertEquals(Arrays.asList(2), index.getAddressIds("0039123456"));
+    assertEquals(Arrays.asList(2), index.getAddressIds("123456"));
+    assertEquals(Arrays.asList(3, 1), index.getAddressIds("0"));
+    assertTrue(index.getAddressIds("").isEmpty());
+    assertTrue(index.getAddressIds("4711").isEmpty());
+
+    // Modification of an address:
+    index.put(2, new Date(4000), "05613167930");
+    assertEquals(Arrays.asList(2, 3, 1), index.getAddressIds("3167930"));
+    assertTrue(index.getAddressIds("123456").isEmpty());
+
+    index.remove(3);
+    index.remove(4); // Not indexed.
+    assertEquals(2, index.size());
+    assertEquals(Arrays.asList(2, 1), index.getAddressIds("3167930"));
+  }
+}
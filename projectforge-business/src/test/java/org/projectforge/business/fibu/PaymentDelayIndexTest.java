@@ -0,0 +1,151 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Random;
+
+import org.projectforge.business.fibu.PaymentDelayIndex.Aggregate;
+import org.projectforge.business.fibu.PaymentDelayIndex.Area;
+import org.testng.annotations.Test;
+
+public class PaymentDelayIndexTest
+{
+  @Test
+  public void testWeightedAverage()
+  {
+    final PaymentDelayIndex index = new PaymentDelayIndex();
+    assertNull(index.getAggregate(Area.PROJECT, 1));
+    index.put(1, 10, 2, 1, 2, 3, "ACME Corporation");
+    index.put(2, 20, 3, 1, 2, null, "Acme Inc.");
+    index.put(3, 0, 0, 4, 2, null, null);
+    assertAggregate(16, 2, index.getAggregate(Area.PROJECT, 1));
+    assertAggregate(16, 3, index.getAggregate(Area.CUSTOMER, 2));
+    assertAggregate(10, 1, index.getAggregate(Area.ACCOUNT, 3));
+    assertAggregate(0, 1, index.getAggregate(Area.PROJECT, 4));
+    assertAggregate(10, 1, index.getAggregate(Area.CUSTOMER_TEXT, "acme corporation"));
+    assertNull(index.getAggregate(Area.CUSTOMER_TEXT, "ACME"));
+    assertAggregate(16, 2, index.getAggregate(Area.SHORT_CUSTOMER_TEXT, "ACME Ltd."));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  public void testReplaceAndRemove()
+  {
+    final PaymentDelayIndex index = new PaymentDelayIndex();
+    index.put(1, 10, 100, 1, 2, null, "ACME");
+    index.put(2, 30, 100, 1, 2, null, "ACME");
+    assertAggregate(20, 2, index.getAggregate(Area.PROJECT, 1));
+    // Invoice 2 moved to another project:
+    index.put(2, 40, 300, 5, 2, null, "ACME");
+    assertAggregate(10, 1, index.getAggregate(Area.PROJECT, 1));
+    assertAggregate(40, 1, index.getAggregate(Area.PROJECT, 5));
+    assertAggregate(32, 2, index.getAggregate(Area.CUSTOMER, 2));
+    index.remove(1);
+    assertNull(index.getAggregate(Area.PROJECT, 1));
+    assertAggregate(40, 1, index.getAggregate(Area.CUSTOMER_TEXT, "acme"));
+    index.remove(1); // Nothing to do.
+    index.remove(2);
+    assertNull(index.getAggregate(Area.CUSTOMER, 2));
+    assertNull(index.getAggregate(Area.SHORT_CUSTOMER_TEXT, "acme"));
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testCopy()
+  {
+    final PaymentDelayIndex index = new PaymentDelayIndex();
+    index.put(1, 10, 100, 1, null, null, null);
+    final Aggregate aggregate = index.getAggregate(Area.PROJECT, 1);
+    index.put(2, 30, 100, 1, null, null, null);
+    assertAggregate(10, 1, aggregate);
+    assertAggregate(20, 2, index.getAggregate(Area.PROJECT, 1));
+  }
+
+  /**
+   * Compares the incremental path (replacing invoices in an index of a synthetic history of 100,000 paid invoices and
+   * looking up the aggregates of the open invoices) with the full path (re-aggregating the whole history as done before
+   * the index was introduced). The incremental path has to be at least ten times faster, so a regression to a linear
+   * cost per modification or per forecast entry fails this test.
+   */
+  @Test
+  public void testIncrementalUpdateIsFasterThanRebuild()
+  {
+    final int historySize = 100000;
+    final int modifications = 1000;
+    PaymentDelayIndex index = null;
+    long rebuildNanos = Long.MAX_VALUE;
+    // The first runs warm up the JIT:
+    for (int i = 0; i < 3; i++) {
+      final long begin = System.nanoTime();
+      index = buildIndex(historySize);
+      rebuildNanos = Math.min(rebuildNanos, System.nanoTime() - begin);
+    }
+    assertEquals(historySize, index.size());
+    long incrementalNanos = Long.MAX_VALUE;
+    for (int i = 0; i < 3; i++) {
+      final Random random = new Random(i);
+      final long begin = System.nanoTime();
+      for (int j = 0; j < modifications; j++) {
+        // Invoice marked as paid (replaces the values of an existing invoice):
+        put(index, random.nextInt(historySize), random);
+        // Forecast of an open invoice:
+        index.getAggregate(Area.PROJECT, random.nextInt(1000));
+        index.getAggregate(Area.CUSTOMER, random.nextInt(200));
+        index.getAggregate(Area.SHORT_CUSTOMER_TEXT, "Customer " + random.nextInt(200));
+      }
+      incrementalNanos = Math.min(incrementalNanos, System.nanoTime() - begin);
+    }
+    assertEquals(historySize, index.size());
+    assertTrue("Incremental path took " + incrementalNanos / 1000 + "us, full rebuild " + rebuildNanos / 1000 + "us.",
+        incrementalNanos * 10 < rebuildNanos);
+  }
+
+  private PaymentDelayIndex buildIndex(final int historySize)
+  {
+    final PaymentDelayIndex index = new PaymentDelayIndex();
+    final Random random = new Random(42);
+    for (int i = 0; i < historySize; i++) {
+      put(index, i, random);
+    }
+    return index;
+  }
+
+  private void put(final PaymentDelayIndex index, final int invoiceId, final Random random)
+  {
+    final int customerId = random.nextInt(200);
+    index.put(invoiceId, random.nextInt(90), 100 + random.nextInt(10000), random.nextInt(1000), customerId,
+        random.nextInt(50), "Customer " + customerId);
+  }
+
+  private void assertAggregate(final int expectedWeightedAverage, final int expectedNumberOfValues,
+      final Aggregate aggregate)
+  {
+    assertEquals(expectedWeightedAverage, aggregate.getWeightedAverage());
+    assertEquals(expectedNumberOfValues, aggregate.getNumberOfValues());
+  }
+}
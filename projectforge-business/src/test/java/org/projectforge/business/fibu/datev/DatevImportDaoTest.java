@@ -0,0 +1,201 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.fibu.datev;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.projectforge.business.fibu.KontoDO;
+import org.projectforge.business.fibu.KontoDao;
+import org.projectforge.business.fibu.kost.BuchungssatzDO;
+import org.projectforge.business.fibu.kost.BuchungssatzDao;
+import org.projectforge.business.fibu.kost.Kost1DO;
+import org.projectforge.business.fibu.kost.Kost1Dao;
+import org.projectforge.business.fibu.kost.Kost2ArtDO;
+import org.projectforge.business.fibu.kost.Kost2DO;
+import org.projectforge.business.fibu.kost.Kost2Dao;
+import org.projectforge.business.fibu.kost.SHType;
+import org.projectforge.framework.persistence.utils.ImportStatus;
+import org.projectforge.framework.persistence.utils.ImportStorage;
+import org.projectforge.framework.persistence.utils.ImportedElement;
+import org.projectforge.framework.persistence.utils.ImportedSheet;
+import org.projectforge.test.AbstractTestBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.Test;
+
+public class DatevImportDaoTest extends AbstractTestBase
+{
+  /**
+   * More than two blocks of the import (flushed every 50 entries).
+   */
+  private static final int NUMBER_OF_ENTRIES = 120;
+
+  private static final int KONTO_NUMMER = 91000;
+
+  private static final int YEAR = 2099;
+
+  @Autowired
+  private DatevImportDao datevImportDao;
+
+  @Autowired
+  private KontoDao kontoDao;
+
+  @Autowired
+  private BuchungssatzDao buchungssatzDao;
+
+  @Autowired
+  private Kost1Dao kost1Dao;
+
+  @Autowired
+  private Kost2Dao kost2Dao;
+
+  @Test
+  public void commit()
+  {
+    logon(TEST_FINANCE_USER);
+    final Kost1DO kost1 = new Kost1DO();
+    kost1.setNummernkreis(3);
+    kost1.setBereich(917);
+    kost1.setTeilbereich(1);
+    kost1.setEndziffer(1);
+    kost1Dao.save(kost1);
+    final Kost2DO kost2 = kost2Dao.getById(kost2Dao.save(new Kost2DO().setNummernkreis(4).setBereich(917)
+        .setTeilbereich(1).setKost2Art(new Kost2ArtDO().withId(1))));
+
+    // Kontenplan:
+    final ImportStorage<KontoDO> kontenplan = new ImportStorage<KontoDO>(DatevImportDao.Type.KONTENPLAN);
+    final ImportedSheet<KontoDO> kontenSheet = createSheet(kontenplan, "Kontenplan");
+    for (int i = 0; i < NUMBER_OF_ENTRIES; i++) {
+      final KontoDO konto = new KontoDO();
+      konto.setNummer(KONTO_NUMMER + i);
+      konto.setBezeichnung("Konto " + i);
+      addElement(kontenSheet, KontoDO.class, DatevImportDao.KONTO_DIFF_PROPERTIES, konto);
+    }
+    datevImportDao.reconcile(kontenplan, "Kontenplan");
+    assertEquals(NUMBER_OF_ENTRIES, kontenSheet.getNumberOfNewElements());
+    datevImportDao.commit(kontenplan, "Kontenplan");
+    assertEquals(ImportStatus.IMPORTED, kontenSheet.getStatus());
+    assertEquals(NUMBER_OF_ENTRIES, kontenSheet.getNumberOfCommittedElements());
+    for (int i = 0; i < NUMBER_OF_ENTRIES; i++) {
+      final KontoDO konto = kontoDao.getKonto(KONTO_NUMMER + i);
+      assertNotNull(konto);
+      assertEquals("Konto " + i, konto.getBezeichnung());
+    }
+    final KontoDO konto = kontoDao.getKonto(KONTO_NUMMER);
+    final KontoDO gegenKonto = kontoDao.getKonto(KONTO_NUMMER + 1);
+
+    // Buchungssätze:
+    ImportStorage<BuchungssatzDO> storage = createBuchungsdaten(konto, gegenKonto, kost1, kost2, BigDecimal.ONE);
+    datevImportDao.reconcile(storage, "01");
+    assertEquals(NUMBER_OF_ENTRIES, storage.getNamedSheet("01").getNumberOfNewElements());
+    datevImportDao.commit(storage, "01");
+    assertEquals(NUMBER_OF_ENTRIES, storage.getNamedSheet("01").getNumberOfCommittedElements());
+    assertBuchungssaetze(konto, gegenKonto, kost1, kost2, BigDecimal.ONE);
+
+    // Import again with modified values, the existing Buchungssätze are updated:
+    storage = createBuchungsdaten(konto, gegenKonto, kost1, kost2, BigDecimal.TEN);
+    datevImportDao.reconcile(storage, "01");
+    assertEquals(0, storage.getNamedSheet("01").getNumberOfNewElements());
+    assertEquals(NUMBER_OF_ENTRIES, storage.getNamedSheet("01").getNumberOfModifiedElements());
+    datevImportDao.commit(storage, "01");
+    assertBuchungssaetze(konto, gegenKonto, kost1, kost2, BigDecimal.TEN);
+  }
+
+  private ImportStorage<BuchungssatzDO> createBuchungsdaten(final KontoDO konto, final KontoDO gegenKonto,
+      final Kost1DO kost1, final Kost2DO kost2, final BigDecimal betrag)
+  {
+    final ImportStorage<BuchungssatzDO> storage = new ImportStorage<BuchungssatzDO>(
+        DatevImportDao.Type.BUCHUNGSSAETZE);
+    final ImportedSheet<BuchungssatzDO> sheet = createSheet(storage, "01");
+    final Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(YEAR, Calendar.JANUARY, 15);
+    for (int i = 1; i <= NUMBER_OF_ENTRIES; i++) {
+      final BuchungssatzDO satz = new BuchungssatzDO();
+      satz.setYear(YEAR);
+      satz.setMonth(0);
+      satz.setSatznr(i);
+      satz.setDatum(cal.getTime());
+      satz.setBetrag(betrag.add(new BigDecimal(i)));
+      satz.setSh(SHType.SOLL);
+      satz.setKonto(konto);
+      satz.setGegenKonto(gegenKonto);
+      satz.setKost1(kost1);
+      satz.setKost2(kost2);
+      satz.setText("Satz " + i);
+      addElement(sheet, BuchungssatzDO.class, DatevImportDao.BUCHUNGSSATZ_DIFF_PROPERTIES, satz);
+    }
+    return storage;
+  }
+
+  private void assertBuchungssaetze(final KontoDO konto, final KontoDO gegenKonto, final Kost1DO kost1,
+      final Kost2DO kost2, final BigDecimal betrag)
+  {
+    final List<BuchungssatzDO> list = buchungssatzDao.getBuchungssaetze(YEAR, Arrays.asList(0));
+    assertEquals(NUMBER_OF_ENTRIES, list.size());
+    Collections.sort(list, new Comparator<BuchungssatzDO>()
+    {
+      @Override
+      public int compare(final BuchungssatzDO o1, final BuchungssatzDO o2)
+      {
+        return o1.getSatznr().compareTo(o2.getSatznr());
+      }
+    });
+    for (int i = 1; i <= NUMBER_OF_ENTRIES; i++) {
+      final BuchungssatzDO satz = list.get(i - 1);
+      assertEquals(Integer.valueOf(i), satz.getSatznr());
+      assertEquals(0, betrag.add(new BigDecimal(i)).compareTo(satz.getBetrag()));
+      assertEquals("Satz " + i, satz.getText());
+      assertEquals(konto.getId(), satz.getKontoId());
+      assertEquals(gegenKonto.getId(), satz.getGegenKontoId());
+      assertEquals(kost1.getId(), satz.getKost1Id());
+      assertEquals(kost2.getId(), satz.getKost2Id());
+    }
+  }
+
+  private <T> ImportedSheet<T> createSheet(final ImportStorage<T> storage, final String name)
+  {
+    final ImportedSheet<T> sheet = new ImportedSheet<T>();
+    sheet.setName(name);
+    storage.addSheet(sheet);
+    return sheet;
+  }
+
+  private <T> void addElement(final ImportedSheet<T> sheet, final Class<T> clazz, final String[] diffProperties,
+      final T value)
+  {
+    final ImportedElement<T> element = new ImportedElement<T>(sheet.getElements() != null
+        ? sheet.getElements().size() : 0, clazz, diffProperties);
+    element.setValue(value);
+    element.setSelected(true);
+    sheet.addElement(element);
+  }
+}
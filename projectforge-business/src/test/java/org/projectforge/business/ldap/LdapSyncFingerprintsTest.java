@@ -0,0 +1,125 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.ldap;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class LdapSyncFingerprintsTest
+{
+  @Test
+  public void unmodified()
+  {
+    final LdapSyncFingerprints fingerprints = new LdapSyncFingerprints();
+    final byte[] fingerprint = LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("kai", "Kai"));
+    assertFalse(fingerprints.isUnmodified(1, fingerprint));
+    fingerprints.setUnmodified(1, fingerprint);
+    assertTrue(fingerprints.isUnmodified(1, fingerprint));
+    assertFalse(fingerprints.isUnmodified(2, fingerprint));
+    // Fresh objects with the same values:
+    assertTrue(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("kai", "Kai"))));
+    fingerprints.remove(1);
+    assertFalse(fingerprints.isUnmodified(1, fingerprint));
+    assertEquals(0, fingerprints.size());
+  }
+
+  @Test
+  public void modified()
+  {
+    final LdapSyncFingerprints fingerprints = new LdapSyncFingerprints();
+    fingerprints.setUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("kai", "Kai")));
+    // User modified in ProjectForge:
+    assertFalse(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai Horst"), createUser("kai", "Kai"))));
+    // Ldap entry modified by someone else:
+    assertFalse(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("kai", "Kai Horst"))));
+    final LdapUser ldapUser = createUser("kai", "Kai");
+    ldapUser.setMail("k.reinhard@acme.com");
+    assertFalse(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), ldapUser)));
+  }
+
+  @Test
+  public void groupMembers()
+  {
+    final LdapSyncFingerprints fingerprints = new LdapSyncFingerprints();
+    final LdapGroup group = createGroup("uid=kai,ou=users");
+    fingerprints.setUnmodified(1, LdapSyncFingerprints.getFingerprint(group, group));
+    assertTrue(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createGroup("uid=kai,ou=users"), createGroup("uid=kai,ou=users"))));
+    assertFalse(fingerprints.isUnmodified(1, LdapSyncFingerprints
+        .getFingerprint(createGroup("uid=kai,ou=users", "uid=horst,ou=users"), createGroup("uid=kai,ou=users"))));
+  }
+
+  @Test
+  public void swappedValues()
+  {
+    final LdapSyncFingerprints fingerprints = new LdapSyncFingerprints();
+    fingerprints.setUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("kai", "Kai")));
+    final LdapUser swapped = createUser("kai", "Reinhard");
+    swapped.setSurname("Kai");
+    assertFalse(fingerprints.isUnmodified(1, LdapSyncFingerprints.getFingerprint(swapped, createUser("kai", "Kai"))));
+    // Values moved between the converted object and the ldap entry:
+    assertFalse(fingerprints.isUnmodified(1,
+        LdapSyncFingerprints.getFingerprint(createUser("kai", "Kai"), createUser("ka", "iKai"))));
+  }
+
+  @Test
+  public void membersInAnyOrder()
+  {
+    assertTrue(Arrays.equals(
+        LdapSyncFingerprints.getFingerprint(createGroup("uid=kai,ou=users", "uid=horst,ou=users"), createGroup()),
+        LdapSyncFingerprints.getFingerprint(createGroup("uid=horst,ou=users", "uid=kai,ou=users"), createGroup())));
+  }
+
+  private LdapUser createUser(final String uid, final String givenName)
+  {
+    final LdapUser user = new LdapUser();
+    user.setUid(uid);
+    user.setGivenName(givenName);
+    user.setSurname("Reinhard");
+    user.setEmployeeNumber("pf-id-42");
+    return user;
+  }
+
+  private LdapGroup createGroup(final String... members)
+  {
+    final LdapGroup group = new LdapGroup();
+    group.setCommonName("developers");
+    group.setBusinessCategory("pf-group-1");
+    for (final String member : members) {
+      group.addMember(member, "dc=acme,dc=com");
+    }
+    return group;
+  }
+}
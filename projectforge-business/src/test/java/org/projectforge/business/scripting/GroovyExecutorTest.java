@@ -0,0 +1,107 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.scripting;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import groovy.lang.Script;
+
+public class GroovyExecutorTest
+{
+  @Test
+  public void scriptCache()
+  {
+    final GroovyExecutor executor = new GroovyExecutor();
+    GroovyExecutor.clearCaches();
+    final String script = "return a * 2 // scriptCache";
+    final long hits = GroovyExecutor.getCacheHits();
+    final long misses = GroovyExecutor.getCacheMisses();
+    assertEquals(2, executor.execute(script, createVariables("a", 1)).getResult());
+    assertEquals("First execution must compile the script.", misses + 1, GroovyExecutor.getCacheMisses());
+    assertEquals(hits, GroovyExecutor.getCacheHits());
+    assertEquals(4, executor.execute(script, createVariables("a", 2)).getResult());
+    assertEquals(misses + 1, GroovyExecutor.getCacheMisses());
+    assertEquals("Second execution must use the cached script.", hits + 1, GroovyExecutor.getCacheHits());
+    // Other executor instances share the cache:
+    assertEquals(6, new GroovyExecutor().execute(script, createVariables("a", 3)).getResult());
+    assertEquals(misses + 1, GroovyExecutor.getCacheMisses());
+    assertEquals(hits + 2, GroovyExecutor.getCacheHits());
+    GroovyExecutor.clearCaches();
+    assertEquals(8, executor.execute(script, createVariables("a", 4)).getResult());
+    assertEquals("Cleared cache, script must be compiled again.", misses + 2, GroovyExecutor.getCacheMisses());
+  }
+
+  @Test
+  public void templateCache()
+  {
+    final GroovyExecutor executor = new GroovyExecutor();
+    GroovyExecutor.clearCaches();
+    final String template = "Hello ${name} (templateCache)";
+    final long hits = GroovyExecutor.getCacheHits();
+    final long misses = GroovyExecutor.getCacheMisses();
+    assertEquals("Hello Kai (templateCache)", executor.executeTemplate(template, createVariables("name", "Kai")));
+    assertEquals(misses + 1, GroovyExecutor.getCacheMisses());
+    assertEquals(hits, GroovyExecutor.getCacheHits());
+    assertEquals("Hello Jan (templateCache)", executor.executeTemplate(template, createVariables("name", "Jan")));
+    assertEquals(misses + 1, GroovyExecutor.getCacheMisses());
+    assertEquals(hits + 1, GroovyExecutor.getCacheHits());
+  }
+
+  @Test
+  public void freshScriptInstancePerCall()
+  {
+    final GroovyExecutor executor = new GroovyExecutor();
+    final String script = "b = a; return binding.hasVariable('c') ? 'shared' : a // freshScriptInstancePerCall";
+    final Script script1 = executor.compileGroovy(script, true);
+    final Script script2 = executor.compileGroovy(script, true);
+    assertSame("Compiled class should be cached.", script1.getClass(), script2.getClass());
+    assertNotSame(script1, script2);
+    assertNotSame(script1.getBinding(), script2.getBinding());
+    assertNotSame(script1.getBinding().getVariable("scriptResult"), script2.getBinding().getVariable("scriptResult"));
+    final Map<String, Object> variables = createVariables("a", "first");
+    variables.put("c", "only first");
+    assertEquals("shared", executor.execute(script1, variables).getResult());
+    assertEquals("second", executor.execute(script2, createVariables("a", "second")).getResult());
+    assertFalse("Variables of other executions mustn't be visible.", script2.getBinding().hasVariable("c"));
+    assertEquals("first", script1.getBinding().getVariable("b"));
+    assertEquals("second", script2.getBinding().getVariable("b"));
+    // The script executed via source gets also a new instance:
+    assertEquals("third", executor.execute(script, createVariables("a", "third")).getResult());
+  }
+
+  private Map<String, Object> createVariables(final String name, final Object value)
+  {
+    final Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put(name, value);
+    return variables;
+  }
+}
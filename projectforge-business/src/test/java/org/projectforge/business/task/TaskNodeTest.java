@@ -0,0 +1,101 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.task;
+
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.projectforge.framework.access.AccessType;
+import org.projectforge.framework.access.GroupTaskAccessDO;
+import org.projectforge.framework.access.OperationType;
+import org.projectforge.framework.persistence.user.entities.GroupDO;
+import org.testng.annotations.Test;
+
+public class TaskNodeTest
+{
+  private static final Integer GROUP1 = 1;
+
+  private static final Integer GROUP2 = 2;
+
+  @Test
+  public void compiledPermissions()
+  {
+    final TaskNode root = createNode(1, null);
+    final TaskNode a = createNode(2, root);
+    final TaskNode a1 = createNode(3, a);
+    final TaskNode a11 = createNode(4, a1);
+    final TaskNode b = createNode(5, root);
+    root.compilePermissionsOfSubtree();
+    assertFalse(a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+
+    a.setGroupTaskAccess(createAccess(a, GROUP1, true, true, false));
+    a.compilePermissionsOfSubtree();
+    assertTrue(a.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(a.hasPermission(GROUP1, AccessType.TASKS, OperationType.DELETE));
+    assertFalse(a.hasPermission(GROUP1, AccessType.TIMESHEETS, OperationType.SELECT));
+    assertTrue("Recursive access is inherited.", a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(a11.hasPermission(GROUP2, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(b.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(root.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(a.hasPermission(null, AccessType.TASKS, OperationType.SELECT));
+
+    // Explicit access overwrites inherited access:
+    a1.setGroupTaskAccess(createAccess(a1, GROUP1, false, false, true));
+    a1.compilePermissionsOfSubtree();
+    assertFalse(a1.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertTrue(a1.hasPermission(GROUP1, AccessType.TASKS, OperationType.DELETE));
+    assertFalse("Non recursive access isn't inherited.",
+        a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.DELETE));
+    assertFalse(a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+
+    a1.removeGroupTaskAccess(GROUP1);
+    a1.compilePermissionsOfSubtree();
+    assertTrue(a1.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertTrue(a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(a11.hasPermission(GROUP1, AccessType.TASKS, OperationType.DELETE));
+  }
+
+  private TaskNode createNode(final Integer id, final TaskNode parent)
+  {
+    final TaskDO task = new TaskDO();
+    task.setId(id);
+    final TaskNode node = new TaskNode();
+    node.setTask(task);
+    node.internalSetParent(parent);
+    return node;
+  }
+
+  private GroupTaskAccessDO createAccess(final TaskNode node, final Integer groupId, final boolean select,
+      final boolean recursive, final boolean delete)
+  {
+    final GroupDO group = new GroupDO();
+    group.setId(groupId);
+    final GroupTaskAccessDO access = new GroupTaskAccessDO();
+    access.setGroup(group);
+    access.setTask(node.getTask());
+    access.setRecursive(recursive);
+    access.ensureAndGetTasksEntry().setAccess(select, false, false, delete);
+    return access;
+  }
+}
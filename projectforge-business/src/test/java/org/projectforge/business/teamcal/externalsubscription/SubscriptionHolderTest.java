@@ -0,0 +1,85 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.teamcal.externalsubscription;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.projectforge.business.teamcal.event.model.TeamEventDO;
+import org.testng.annotations.Test;
+
+public class SubscriptionHolderTest
+{
+  private static final long HOUR = 60 * 60 * 1000;
+
+  private static final long DAY = 24 * HOUR;
+
+  @Test
+  public void testGetResultList()
+  {
+    final SubscriptionHolder holder = new SubscriptionHolder();
+    holder.add(createEvent("long", 0, 100 * DAY)); // Long event starting first.
+    holder.add(createEvent("d10", 10 * DAY, 10 * DAY + HOUR));
+    holder.add(createEvent("d5", 5 * DAY, 5 * DAY + HOUR));
+    holder.add(createEvent("d20", 20 * DAY, 20 * DAY + HOUR));
+    holder.add(createEvent("d2-d12", 2 * DAY, 12 * DAY));
+    holder.sort();
+    assertResult(holder.getResultList(10 * DAY, 11 * DAY, false), "long", "d2-d12", "d10");
+    // Period is extended by one day (all day events):
+    assertResult(holder.getResultList(6 * DAY, 8 * DAY, false), "long", "d2-d12", "d5");
+    assertResult(holder.getResultList(14 * DAY, 15 * DAY, false), "long");
+    assertResult(holder.getResultList(200 * DAY, 300 * DAY, false));
+    assertResult(holder.getResultList(-10 * DAY, -5 * DAY, false));
+  }
+
+  @Test
+  public void testUnsorted()
+  {
+    final SubscriptionHolder holder = new SubscriptionHolder();
+    assertResult(holder.getResultList(0L, 10 * DAY, false));
+    holder.add(createEvent("d5", 5 * DAY, 5 * DAY + HOUR));
+    holder.add(createEvent("d1", DAY, DAY + HOUR));
+    // Index is built on demand:
+    assertResult(holder.getResultList(0L, 10 * DAY, false), "d1", "d5");
+    holder.add(createEvent("d3", 3 * DAY, 3 * DAY + HOUR));
+    assertResult(holder.getResultList(0L, 10 * DAY, false), "d1", "d3", "d5");
+    assertEquals(3, holder.size());
+  }
+
+  private void assertResult(final List<TeamEventDO> result, final String... subjects)
+  {
+    assertEquals(subjects.length, result.size());
+    for (int i = 0; i < subjects.length; i++) {
+      assertEquals(subjects[i], result.get(i).getSubject());
+    }
+  }
+
+  private TeamEventDO createEvent(final String subject, final long startTime, final long endTime)
+  {
+    return new TeamEventDO().setSubject(subject).setStartDate(new Timestamp(startTime))
+        .setEndDate(new Timestamp(endTime));
+  }
+}
@@ -0,0 +1,233 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.teamcal.externalsubscription;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.projectforge.business.teamcal.admin.TeamCalDao;
+import org.projectforge.business.teamcal.admin.model.TeamCalDO;
+import org.projectforge.business.teamcal.event.model.TeamEventDO;
+import org.projectforge.business.teamcal.service.TeamCalServiceImpl;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+/**
+ * Tests the conditional download of subscribed calendars against a local http server.
+ */
+public class TeamEventSubscriptionTest
+{
+  private static final String ICS = "BEGIN:VCALENDAR\r\n"
+      + "VERSION:2.0\r\n"
+      + "PRODID:-//ProjectForge//Test//EN\r\n"
+      + "BEGIN:VEVENT\r\n"
+      + "UID:test-1\r\n"
+      + "DTSTAMP:20300101T000000Z\r\n"
+      + "DTSTART:20300101T100000Z\r\n"
+      + "DTEND:20300101T110000Z\r\n"
+      + "SUMMARY:Test\r\n"
+      + "END:VEVENT\r\n"
+      + "END:VCALENDAR\r\n";
+
+  private static final String ETAG = "\"4711\"";
+
+  private HttpServer server;
+
+  private int statusCode;
+
+  private int numberOfRequests;
+
+  /**
+   * If set, the server sends only the first part of the calendar and waits for this latch (stalled download).
+   */
+  private volatile CountDownLatch stalled;
+
+  private final Semaphore requestReceived = new Semaphore(0);
+
+  private TeamCalDao teamCalDao;
+
+  private TeamCalServiceImpl teamEventConverter;
+
+  @BeforeMethod
+  public void startServer() throws IOException
+  {
+    statusCode = 200;
+    numberOfRequests = 0;
+    stalled = null;
+    requestReceived.drainPermits();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/calendar.ics", new HttpHandler()
+    {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException
+      {
+        ++numberOfRequests;
+        requestReceived.release();
+        if (statusCode == 200 && ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) == true) {
+          exchange.sendResponseHeaders(304, -1);
+          exchange.close();
+          return;
+        }
+        final byte[] body = ICS.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        exchange.sendResponseHeaders(statusCode, body.length);
+        final OutputStream out = exchange.getResponseBody();
+        final CountDownLatch latch = stalled;
+        if (latch != null) {
+          final int half = body.length / 2;
+          out.write(body, 0, half);
+          out.flush();
+          try {
+            latch.await(10, TimeUnit.SECONDS);
+          } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          out.write(body, half, body.length - half);
+        } else {
+          out.write(body);
+        }
+        out.close();
+      }
+    });
+    server.start();
+    teamCalDao = mock(TeamCalDao.class);
+    teamEventConverter = mock(TeamCalServiceImpl.class);
+    when(teamEventConverter.createTeamEventDO(any(VEvent.class), any(TimeZone.class))).thenReturn(
+        new TeamEventDO().setStartDate(new Timestamp(1893492000000L)).setEndDate(new Timestamp(1893495600000L)));
+  }
+
+  @AfterMethod
+  public void stopServer()
+  {
+    server.stop(0);
+  }
+
+  @Test
+  public void testConditionalUpdate()
+  {
+    final TeamCalDO calendar = createCalendar();
+    final TeamEventSubscription subscription = new TeamEventSubscription();
+    subscription.update(teamCalDao, calendar, teamEventConverter);
+    assertEquals(1, numberOfRequests);
+    assertEquals(0, subscription.getNumberOfFailedUpdates());
+    assertNotNull(subscription.getLastUpdated());
+    assertNotNull(subscription.getLastUpdateDuration());
+    assertEquals(1, subscription.getEvents(1893400000000L, 1893600000000L, false).size());
+    verify(teamEventConverter, times(1)).createTeamEventDO(any(VEvent.class), any(TimeZone.class));
+
+    // Not modified (304), so the calendar isn't parsed again:
+    subscription.update(teamCalDao, calendar, teamEventConverter);
+    assertEquals(2, numberOfRequests);
+    assertEquals(0, subscription.getNumberOfFailedUpdates());
+    assertEquals(1, subscription.getEvents(1893400000000L, 1893600000000L, false).size());
+    verify(teamEventConverter, times(1)).createTeamEventDO(any(VEvent.class), any(TimeZone.class));
+  }
+
+  @Test
+  public void testFailedUpdate()
+  {
+    statusCode = 500;
+    final TeamCalDO calendar = createCalendar();
+    final TeamEventSubscription subscription = new TeamEventSubscription();
+    subscription.update(teamCalDao, calendar, teamEventConverter);
+    subscription.update(teamCalDao, calendar, teamEventConverter);
+    assertEquals(2, subscription.getNumberOfFailedUpdates());
+    assertNotNull(subscription.getLastFailedUpdate());
+    assertNull(subscription.getLastUpdated());
+    assertEquals(0, subscription.getEvents(1893400000000L, 1893600000000L, false).size());
+
+    statusCode = 200;
+    subscription.update(teamCalDao, calendar, teamEventConverter);
+    assertEquals(0, subscription.getNumberOfFailedUpdates());
+    assertNotNull(subscription.getLastUpdated());
+    assertEquals(1, subscription.getEvents(1893400000000L, 1893600000000L, false).size());
+  }
+
+  @Test
+  public void testAbortStalledUpdate() throws InterruptedException
+  {
+    stalled = new CountDownLatch(1);
+    try {
+      final TeamCalDO calendar = createCalendar();
+      final TeamEventSubscription subscription = new TeamEventSubscription();
+      final Thread thread = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          subscription.update(teamCalDao, calendar, teamEventConverter);
+        }
+      };
+      thread.start();
+      assertTrue(requestReceived.tryAcquire(10, TimeUnit.SECONDS));
+      Thread.sleep(200); // The update thread is now blocked by reading the response.
+      assertTrue(thread.isAlive());
+      subscription.abortUpdate();
+      thread.join(5000);
+      assertFalse("Update should be finished after aborting the download.", thread.isAlive());
+      assertTrue(subscription.getNumberOfFailedUpdates() > 0);
+      assertNull(subscription.getLastUpdated());
+    } finally {
+      stalled.countDown();
+    }
+  }
+
+  private TeamCalDO createCalendar()
+  {
+    final PFUserDO owner = new PFUserDO();
+    owner.setTimeZone("UTC");
+    final TeamCalDO calendar = new TeamCalDO();
+    calendar.setId(42);
+    calendar.setOwner(owner);
+    calendar.setExternalSubscription(true);
+    calendar.setExternalSubscriptionUrl("http://localhost:" + server.getAddress().getPort() + "/calendar.ics");
+    return calendar;
+  }
+}
@@ -0,0 +1,91 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.teamcal.servlet;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.testng.annotations.Test;
+
+public class CalendarFeedCacheTest
+{
+  private static final String ETAG = "\"etag-1\"";
+
+  @Test
+  public void cachedFeeds()
+  {
+    final CalendarFeedCache cache = new CalendarFeedCache();
+    assertNull(cache.getFeed("key", ETAG));
+    final byte[] content = "BEGIN:VCALENDAR".getBytes();
+    cache.putFeed("key", ETAG, 1000L, content);
+    final CalendarFeedCache.Feed feed = cache.getFeed("key", ETAG);
+    assertNotNull(feed);
+    assertEquals(1000L, feed.getCreated());
+    assertEquals(content, feed.getContent());
+    assertNull("Outdated feed (other etag).", cache.getFeed("key", "\"etag-2\""));
+    assertNull(cache.getFeed("other key", ETAG));
+
+    cache.putFeed("large", ETAG, 2000L, new byte[CalendarFeedCache.MAX_FEED_SIZE + 1]);
+    final CalendarFeedCache.Feed large = cache.getFeed("large", ETAG);
+    assertNotNull("Etag and time of generation of large feeds are known.", large);
+    assertEquals(2000L, large.getCreated());
+    assertNull("Content of large feeds isn't cached.", large.getContent());
+  }
+
+  @Test
+  public void notModified()
+  {
+    final CalendarFeedCache cache = new CalendarFeedCache();
+    assertNull(cache.getFeed("key", ETAG));
+    final CalendarFeedCache.Feed feed = cache.putFeed("key", ETAG, 10500L, null);
+
+    // If-None-Match is decisive:
+    assertTrue(CalendarAboServlet.isNotModified(createRequest(ETAG, -1), ETAG, null));
+    assertTrue(CalendarAboServlet.isNotModified(createRequest("\"etag-0\", " + ETAG, -1), ETAG, feed));
+    assertFalse(CalendarAboServlet.isNotModified(createRequest("\"etag-0\"", -1), ETAG, feed));
+    assertFalse(CalendarAboServlet.isNotModified(createRequest("\"etag-0\"", 20000L), ETAG, feed));
+
+    // If-Modified-Since only for known feeds (http dates in seconds):
+    assertTrue(CalendarAboServlet.isNotModified(createRequest(null, 10000L), ETAG, feed));
+    assertTrue(CalendarAboServlet.isNotModified(createRequest(null, 11000L), ETAG, feed));
+    assertFalse(CalendarAboServlet.isNotModified(createRequest(null, 9000L), ETAG, feed));
+    assertFalse(CalendarAboServlet.isNotModified(createRequest(null, 20000L), ETAG, null));
+    assertFalse(CalendarAboServlet.isNotModified(createRequest(null, -1), ETAG, feed));
+  }
+
+  private HttpServletRequest createRequest(final String ifNoneMatch, final long ifModifiedSince)
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(ifModifiedSince);
+    return request;
+  }
+}
@@ -0,0 +1,104 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.business.timesheet;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class TimesheetIntervalsTest
+{
+  private static final long HOUR = 3600000;
+
+  @Test
+  public void findOverlap()
+  {
+    final TimesheetIntervals intervals = new TimesheetIntervals();
+    intervals.put(1, 8 * HOUR, 10 * HOUR);
+    intervals.put(2, 10 * HOUR, 12 * HOUR);
+    intervals.put(3, 0, 20 * HOUR); // Long time sheet.
+    assertEquals(3, intervals.size());
+    assertEquals(3, intervals.getId(intervals.findOverlap(19 * HOUR, 22 * HOUR, null)));
+    assertEquals(-1, intervals.findOverlap(20 * HOUR, 22 * HOUR, null));
+    intervals.remove(3);
+    assertEquals(-1, intervals.findOverlap(12 * HOUR, 13 * HOUR, null));
+    assertEquals(-1, intervals.findOverlap(6 * HOUR, 8 * HOUR, null));
+    assertEquals(1, intervals.getId(intervals.findOverlap(7 * HOUR, 9 * HOUR, null)));
+    assertEquals(2, intervals.getId(intervals.findOverlap(11 * HOUR, 13 * HOUR, null)));
+    assertEquals("Time sheet itself should be ignored.", -1, intervals.findOverlap(8 * HOUR, 10 * HOUR, 1));
+    // Update of time sheet:
+    intervals.put(1, 9 * HOUR, 11 * HOUR);
+    assertEquals(2, intervals.size());
+    assertEquals(2, intervals.getId(intervals.findOverlap(9 * HOUR, 11 * HOUR, 1)));
+  }
+
+  @Test
+  public void getOverlaps()
+  {
+    final TimesheetIntervals intervals = new TimesheetIntervals();
+    intervals.put(1, 0, 10 * HOUR);
+    intervals.put(2, 1 * HOUR, 2 * HOUR);
+    intervals.put(3, 3 * HOUR, 4 * HOUR);
+    intervals.put(4, 10 * HOUR, 11 * HOUR);
+    intervals.put(5, 12 * HOUR, 13 * HOUR);
+    Set<Integer> overlaps = intervals.getOverlaps();
+    assertEquals(3, overlaps.size());
+    assertTrue(overlaps.contains(1));
+    assertTrue(overlaps.contains(2));
+    assertTrue("Overlaps only with the first time sheet, not with the previous one.", overlaps.contains(3));
+    assertFalse(overlaps.contains(4));
+    intervals.remove(1);
+    overlaps = intervals.getOverlaps();
+    assertTrue(overlaps.isEmpty());
+  }
+
+  @Test
+  public void remove()
+  {
+    final TimesheetIntervals intervals = new TimesheetIntervals();
+    intervals.put(1, 8 * HOUR, 9 * HOUR);
+    intervals.put(2, 8 * HOUR, 10 * HOUR);
+    intervals.put(3, 8 * HOUR, 11 * HOUR);
+    intervals.put(4, 7 * HOUR, 8 * HOUR);
+    assertTrue(intervals.remove(2));
+    assertFalse("Already removed.", intervals.remove(2));
+    assertFalse("Unknown time sheet.", intervals.remove(5));
+    assertEquals(3, intervals.size());
+    assertEquals(4, intervals.getId(0));
+    assertEquals(1, intervals.getId(1));
+    assertEquals(3, intervals.getId(2));
+    // Moving a time sheet removes the old time period:
+    intervals.put(3, 12 * HOUR, 13 * HOUR);
+    assertEquals(3, intervals.size());
+    assertEquals(-1, intervals.findOverlap(10 * HOUR, 11 * HOUR, null));
+    assertTrue(intervals.remove(3));
+    assertTrue(intervals.remove(4));
+    assertTrue(intervals.remove(1));
+    assertEquals(0, intervals.size());
+  }
+}
@@ -37,6 +37,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.testng.PowerMockTestCase;
 import org.projectforge.framework.configuration.ConfigXml;
+import org.projectforge.framework.i18n.UserException;
 import org.projectforge.framework.persistence.user.api.ThreadLocalUserContext;
 import org.projectforge.framework.time.DateHolder;
 import org.projectforge.framework.time.DayHolder;
@@ -87,6 +88,33 @@ public class DayHolderTest extends PowerMockTestCase
     assertBigDecimal(41, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
   }
 
+  @Test
+  public void testGetNumberOfWorkingDaysOverYears()
+  {
+    final DayHolder fromDay = new DayHolder();
+    fromDay.setDate(2008, Calendar.DECEMBER, 1, 0, 0, 0);
+    final DayHolder toDay = new DayHolder();
+    toDay.setDate(2009, Calendar.JANUARY, 31, 0, 0, 0);
+    // December 2008: 23 weekdays without Xmas days (25th and 26th).
+    assertBigDecimal(42, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
+    toDay.setDate(2010, Calendar.JUNE, 30, 0, 0, 0);
+    final BigDecimal twoYears = DayHolder.getNumberOfWorkingDays(fromDay, toDay);
+    fromDay.setDate(2009, Calendar.JANUARY, 1, 0, 0, 0);
+    assertEquals(twoYears.subtract(new BigDecimal(21)), DayHolder.getNumberOfWorkingDays(fromDay, toDay));
+    toDay.setDate(2008, Calendar.DECEMBER, 31, 0, 0, 0);
+    assertBigDecimal(0, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
+  }
+
+  @Test(expectedExceptions = UserException.class)
+  public void testGetNumberOfWorkingDaysMoreThanTwoYears()
+  {
+    final DayHolder fromDay = new DayHolder();
+    fromDay.setDate(2008, Calendar.JANUARY, 1, 0, 0, 0);
+    final DayHolder toDay = new DayHolder();
+    toDay.setDate(2010, Calendar.FEBRUARY, 1, 0, 0, 0);
+    DayHolder.getNumberOfWorkingDays(fromDay, toDay);
+  }
+
   @Test
   public void testGetNumberOfWorkingDaysOneDay()
   {
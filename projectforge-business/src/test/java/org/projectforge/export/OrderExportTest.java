@@ -12,12 +12,13 @@ import java.util.List;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.projectforge.business.fibu.AuftragDO;
 import org.projectforge.business.fibu.AuftragsStatus;
 import org.projectforge.business.fibu.KundeDO;
 import org.projectforge.business.fibu.OrderExport;
 import org.projectforge.business.fibu.PaymentScheduleDO;
-import org.projectforge.excel.ExcelImport;
 import org.projectforge.framework.i18n.I18nHelper;
 import org.projectforge.test.AbstractTestBase;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,11 +52,11 @@ public class OrderExportTest extends AbstractTestBase
         new Date(LocalDateTime.of(2030, Month.OCTOBER, 2, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli()));
 
     auftragDOList.add(e);
-    byte[] export = orderExport.export(auftragDOList);
+    byte[] export = orderExport.export(auftragDOList).getAsByteArray();
     boolean hasperformaceBegin = false, hasPerformanceEnd = false, hasStatusBeschreibung = false;
     try {
-      ExcelImport excelImport = new ExcelImport(new ByteArrayInputStream(export));
-      for (Row row : excelImport.getWorkbook().getSheetAt(0)) {
+      Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(export));
+      for (Row row : workbook.getSheetAt(0)) {
         for (Cell cell : row) {
           if (cell.toString().equals("02-Okt-2020")) {
             hasperformaceBegin = true;
@@ -122,13 +123,13 @@ public class OrderExportTest extends AbstractTestBase
     paymentSchedules.add(new PaymentScheduleDO());
     e.setPaymentSchedules(paymentSchedules);
     auftragDOList.add(e);
-    byte[] export = orderExport.export(auftragDOList);
+    byte[] export = orderExport.export(auftragDOList).getAsByteArray();
     boolean hasFirstScheduleDate = false, hasSecondScheduleDate = false, hasCommentfirstSchedule = false,
         hasCommentSecondSchedule = false, hasScheduleNumber = false, hasSetBoolean = false,
         hasAmount1 = false, hasAmount2 = false;
     try {
-      ExcelImport excelImport = new ExcelImport(new ByteArrayInputStream(export));
-      for (Row row : excelImport.getWorkbook().getSheetAt(2)) {
+      Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(export));
+      for (Row row : workbook.getSheetAt(2)) {
         for (Cell cell : row) {
           if (cell.toString().equals("02-Okt-2020")) {
             hasFirstScheduleDate = true;
@@ -149,7 +150,7 @@ public class OrderExportTest extends AbstractTestBase
           }
 
           if (cell.getCellType() == Cell.CELL_TYPE_STRING && cell.getRichStringCellValue().toString().trim()
-              .equals("#2") && excelImport.getWorkbook().getSheetAt(2).getRow(2) == row) {
+              .equals("#2") && workbook.getSheetAt(2).getRow(2) == row) {
             hasScheduleNumber = true;
           }
 
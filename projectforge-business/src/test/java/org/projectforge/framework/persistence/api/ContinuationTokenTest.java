@@ -0,0 +1,94 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import static org.testng.AssertJUnit.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.testng.annotations.Test;
+
+public class ContinuationTokenTest
+{
+  @Test
+  public void offsetToken()
+  {
+    assertNull(ContinuationToken.parse(null));
+    assertNull(ContinuationToken.parse(" "));
+    final ContinuationToken token = ContinuationToken.parse(ContinuationToken.forOffset(42));
+    assertFalse(token.isKeyToken());
+    assertEquals(42, token.getOffset());
+    try {
+      token.getKeyValues(new Class<?>[] { Integer.class });
+      fail("IllegalArgumentException expected, offset token isn't a key token.");
+    } catch (final IllegalArgumentException ex) {
+      // OK
+    }
+  }
+
+  @Test
+  public void keyToken()
+  {
+    final Timestamp timestamp = new Timestamp(1234567890000L);
+    final String str = ContinuationToken.forKey(new Object[] { timestamp, "Hello~world %7E, ä", new BigDecimal("1.50"),
+        4711L, 42 });
+    final ContinuationToken token = ContinuationToken.parse(str);
+    assertTrue(token.isKeyToken());
+    final Object[] values = token.getKeyValues(
+        new Class<?>[] { Timestamp.class, String.class, BigDecimal.class, Long.class, Integer.class });
+    assertEquals(timestamp, values[0]);
+    assertEquals("Hello~world %7E, ä", values[1]);
+    assertEquals(new BigDecimal("1.50"), values[2]);
+    assertEquals(4711L, values[3]);
+    assertEquals(42, values[4]);
+    final ContinuationToken emptyString = ContinuationToken.parse(ContinuationToken.forKey(new Object[] { "", 1 }));
+    assertEquals("", emptyString.getKeyValues(new Class<?>[] { String.class, Integer.class })[0]);
+    try {
+      token.getKeyValues(new Class<?>[] { Integer.class });
+      fail("IllegalArgumentException expected, number of values doesn't match.");
+    } catch (final IllegalArgumentException ex) {
+      // OK
+    }
+  }
+
+  @Test
+  public void invalidTokens()
+  {
+    for (final String str : new String[] { "x1", "o", "o-1", "oabc", "k" }) {
+      try {
+        ContinuationToken.parse(str);
+        fail("IllegalArgumentException expected for token: " + str);
+      } catch (final IllegalArgumentException ex) {
+        // OK
+      }
+    }
+    try {
+      ContinuationToken.parse("kabc").getKeyValues(new Class<?>[] { Integer.class });
+      fail("IllegalArgumentException expected, value isn't a number.");
+    } catch (final IllegalArgumentException ex) {
+      // OK
+    }
+  }
+}
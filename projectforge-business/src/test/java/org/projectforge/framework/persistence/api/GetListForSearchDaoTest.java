@@ -0,0 +1,110 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.api;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.sql.Date;
+import java.util.List;
+
+import org.projectforge.business.fibu.EingangsrechnungDO;
+import org.projectforge.business.fibu.EingangsrechnungDao;
+import org.projectforge.business.fibu.EingangsrechnungsPositionDO;
+import org.projectforge.business.gantt.GanttChartDO;
+import org.projectforge.business.gantt.GanttChartDao;
+import org.projectforge.business.task.TaskDO;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.projectforge.test.AbstractTestBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link BaseDao#getListForSearchDao(BaseSearchFilter)} limited to max rows.
+ */
+public class GetListForSearchDaoTest extends AbstractTestBase
+{
+  @Autowired
+  private GanttChartDao ganttChartDao;
+
+  @Autowired
+  private EingangsrechnungDao eingangsrechnungDao;
+
+  @Test
+  public void limitedToMaxRows()
+  {
+    logon(TEST_ADMIN_USER);
+    final String prefix = "SearchDaoTest";
+    final TaskDO rootTask = initTestDB.addTask(prefix, "root");
+    final PFUserDO user1 = initTestDB.addUser(prefix + "User1");
+    final PFUserDO user2 = initTestDB.addUser(prefix + "User2");
+    // The first gantt charts are only visible for their owner user2:
+    for (int i = 0; i < 5; i++) {
+      ganttChartDao.internalSave(new GanttChartDO().setTask(rootTask).setOwner(user2).setName(prefix + i));
+    }
+    for (int i = 5; i < 9; i++) {
+      ganttChartDao.internalSave(new GanttChartDO().setTask(rootTask).setOwner(user1).setName(prefix + i));
+    }
+    logon(user1);
+    final BaseSearchFilter filter = new BaseSearchFilter();
+    filter.setMaxRows(2);
+    filter.setLimitQueryToMaxRows(true);
+    List<GanttChartDO> list = ganttChartDao.getListForSearchDao(filter);
+    assertEquals("maxRows + 1 entries with select access expected.", 3, list.size());
+    for (final GanttChartDO chart : list) {
+      assertEquals(user1.getId(), chart.getOwnerId());
+    }
+    filter.setMaxRows(10);
+    list = ganttChartDao.getListForSearchDao(filter);
+    assertEquals(4, list.size());
+  }
+
+  /**
+   * The dao of creditor invoices filters and sorts the list itself (getList and sort are overridden), so the list of
+   * the search can't be limited by the query and the whole list is returned.
+   */
+  @Test
+  public void fullListIfOverridden()
+  {
+    logon(TEST_FINANCE_USER);
+    for (int i = 0; i < 5; i++) {
+      final EingangsrechnungDO invoice = new EingangsrechnungDO();
+      invoice.setDatum(new Date(System.currentTimeMillis()));
+      invoice.setFaelligkeit(new Date(System.currentTimeMillis()));
+      invoice.setKreditor("SearchDaoTest" + i);
+      invoice.addPosition(new EingangsrechnungsPositionDO());
+      eingangsrechnungDao.save(invoice);
+    }
+    final BaseSearchFilter filter = new BaseSearchFilter();
+    filter.setMaxRows(2);
+    filter.setLimitQueryToMaxRows(true);
+    final List<EingangsrechnungDO> list = eingangsrechnungDao.getListForSearchDao(filter);
+    final List<EingangsrechnungDO> expected = eingangsrechnungDao.getList(new BaseSearchFilter());
+    assertTrue(expected.size() >= 5);
+    assertEquals(expected.size(), list.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals("Same order as getList expected.", expected.get(i).getId(), list.get(i).getId());
+    }
+  }
+}
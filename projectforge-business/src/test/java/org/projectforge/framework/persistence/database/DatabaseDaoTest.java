@@ -0,0 +1,108 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.persistence.database;
+
+import static org.testng.AssertJUnit.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.projectforge.business.task.TaskDO;
+import org.projectforge.business.task.TaskDao;
+import org.projectforge.framework.configuration.ConfigurationDao;
+import org.projectforge.framework.configuration.ConfigurationParam;
+import org.projectforge.framework.configuration.entities.ConfigurationDO;
+import org.projectforge.framework.persistence.api.ReindexSettings;
+import org.projectforge.test.AbstractTestBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.annotations.Test;
+
+public class DatabaseDaoTest extends AbstractTestBase
+{
+  @Autowired
+  private DatabaseDao databaseDao;
+
+  @Autowired
+  private TaskDao taskDao;
+
+  @Autowired
+  private ConfigurationDao configurationDao;
+
+  @Autowired
+  private TransactionTemplate txTemplate;
+
+  @Test
+  public void resumeInterruptedReindex()
+  {
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (final TaskDO task : taskDao.internalLoadAll()) {
+      ids.add(task.getId());
+    }
+    Collections.sort(ids);
+    assertTrue("Test data base should contain more tasks than one chunk.", ids.size() > 5);
+    // The test configuration sets projectforge.reindex.batchSize=2, so the tasks are re-indexed in several chunks.
+    try {
+      // Interrupted run after the first 3 tasks (resume id stored in the configuration):
+      setResumeIds(TaskDO.class.getName() + "=" + ids.get(2));
+      assertEquals(ids.get(2), databaseDao.getResumeId(TaskDO.class));
+      assertEquals("Only the remaining tasks should be re-indexed.", ids.size() - 3, reindexTasks());
+      assertNull("Finished run, nothing to resume.", databaseDao.getResumeId(TaskDO.class));
+      assertEquals("All tasks should be re-indexed.", ids.size(), reindexTasks());
+      assertNull(databaseDao.getResumeId(TaskDO.class));
+    } finally {
+      setResumeIds(null);
+    }
+  }
+
+  private void setResumeIds(final String value)
+  {
+    txTemplate.execute(new TransactionCallback<Void>()
+    {
+      @Override
+      public Void doInTransaction(final TransactionStatus status)
+      {
+        final ConfigurationDO entry = configurationDao.getEntry(ConfigurationParam.REINDEX_RESUME_IDS);
+        entry.setStringValue(value);
+        configurationDao.internalUpdate(entry);
+        return null;
+      }
+    });
+  }
+
+  private long reindexTasks()
+  {
+    return txTemplate.execute(new TransactionCallback<Long>()
+    {
+      @Override
+      public Long doInTransaction(final TransactionStatus status)
+      {
+        return databaseDao.reindex(TaskDO.class, new ReindexSettings());
+      }
+    });
+  }
+}
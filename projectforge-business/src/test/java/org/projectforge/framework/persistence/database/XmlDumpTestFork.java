@@ -23,6 +23,24 @@
 
 package org.projectforge.framework.persistence.database;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.projectforge.business.book.BookDO;
+import org.projectforge.business.book.BookDao;
+import org.projectforge.business.book.BookStatus;
+import org.projectforge.business.task.TaskDO;
+import org.projectforge.business.task.TaskDao;
 import org.projectforge.test.AbstractTestBase;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.testng.annotations.Test;
@@ -37,6 +55,12 @@ public class XmlDumpTestFork extends AbstractTestBase
   @Autowired
   private XmlDump xmlDump;
 
+  @Autowired
+  private TaskDao taskDao;
+
+  @Autowired
+  private BookDao bookDao;
+
   @Override
   protected void initDb()
   {
@@ -62,4 +86,84 @@ public class XmlDumpTestFork extends AbstractTestBase
     //    assertEquals("Error should be detected.", -counter, xmlDump.verifyDump(converter));
     //    log.info("****** } The previous import error from XmlDump are OK.");
   }
+
+  @Test
+  public void dumpAndRestoreMovedTasks() throws UnsupportedEncodingException
+  {
+    initTestDB.addTask("xmlDump", null);
+    initTestDB.addTask("xmlDump.a", "xmlDump");
+    initTestDB.addTask("xmlDump.a.1", "xmlDump.a");
+    initTestDB.addTask("xmlDump.b", "xmlDump");
+    // Move the sub tree a under the task b created later (so the parent task is written after its child):
+    final TaskDO task = taskDao.internalGetById(initTestDB.getTask("xmlDump.a").getId());
+    taskDao.setParentTask(task, initTestDB.getTask("xmlDump.b").getId());
+    taskDao.internalUpdate(task);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlDump.dumpDatabase("xmlDump.xml", out);
+    clearDatabase();
+    xmlDump.restoreDatabase(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), "utf-8"));
+
+    final Map<String, TaskDO> tasks = new HashMap<String, TaskDO>();
+    for (final TaskDO restored : taskDao.internalLoadAll()) {
+      tasks.put(restored.getTitle(), restored);
+    }
+    final TaskDO root = tasks.get("xmlDump");
+    final TaskDO a = tasks.get("xmlDump.a");
+    final TaskDO b = tasks.get("xmlDump.b");
+    assertNotNull(root);
+    assertNotNull(a);
+    assertNotNull(b);
+    assertNull(root.getParentTaskId());
+    assertEquals(root.getId(), b.getParentTaskId());
+    assertEquals("Forward reference to the parent task lost.", b.getId(), a.getParentTaskId());
+    assertEquals(a.getId(), tasks.get("xmlDump.a.1").getParentTaskId());
+  }
+
+  @Test
+  public void restoreNotNullableForwardReference() throws UnsupportedEncodingException
+  {
+    initTestDB.addTask("xmlDumpBooks", null);
+    final BookDO book = new BookDO().setTitle("xmlDump book").setStatus(BookStatus.PRESENT)
+        .setTask(initTestDB.getTask("xmlDumpBooks"));
+    bookDao.internalSave(book);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlDump.dumpDatabase("xmlDump.xml", out);
+    // Write the books before the tasks, so the not nullable task of the book is a forward reference:
+    final String xml = moveEntities(new String(out.toByteArray(), "utf-8"), BookDO.class, TaskDO.class);
+    clearDatabase();
+    xmlDump.restoreDatabase(new StringReader(xml));
+
+    Integer taskId = null;
+    for (final TaskDO restored : taskDao.internalLoadAll()) {
+      if ("xmlDumpBooks".equals(restored.getTitle()) == true) {
+        taskId = restored.getId();
+      }
+    }
+    assertNotNull(taskId);
+    BookDO restoredBook = null;
+    for (final BookDO restored : bookDao.internalLoadAll()) {
+      if ("xmlDump book".equals(restored.getTitle()) == true) {
+        restoredBook = restored;
+      }
+    }
+    assertNotNull("Book with forward reference to its task not restored.", restoredBook);
+    assertEquals(taskId, restoredBook.getTaskId());
+  }
+
+  /**
+   * @return The given dump with the entities of the given type moved in front of the entities of the other type.
+   */
+  private String moveEntities(final String xml, final Class<?> type, final Class<?> beforeType)
+  {
+    final int begin = xml.indexOf("<entities type=\"" + type.getName() + "\">");
+    final int end = xml.indexOf("</entities>", begin) + "</entities>".length();
+    assertTrue(begin >= 0);
+    final String entities = xml.substring(begin, end);
+    final String rest = xml.substring(0, begin) + xml.substring(end);
+    final int pos = rest.indexOf("<entities type=\"" + beforeType.getName() + "\">");
+    assertTrue(pos >= 0);
+    return rest.substring(0, pos) + entities + rest.substring(pos);
+  }
 }
@@ -0,0 +1,112 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+
+package org.projectforge.framework.persistence.history;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class HistoryModificationIndexTest
+{
+  private static final String TASK = "org.projectforge.business.task.TaskDO";
+
+  private static final String USER = "org.projectforge.framework.persistence.user.entities.PFUserDO";
+
+  @Test
+  public void getEntityIds()
+  {
+    final HistoryModificationIndex index = new HistoryModificationIndex();
+    index.add(TASK, "1", new Date(1000), 10L);
+    index.add(TASK, "1", new Date(3000), 11L);
+    index.add(TASK, "2", new Date(2000), 12L);
+    index.add(TASK, "1", new Date(2000), 13L); // Not in chronological order.
+    index.add(USER, "1", new Date(2000), 14L);
+    index.add(TASK, null, new Date(2000), 15L);
+    index.add(TASK, "1", null, 16L); // Ignored.
+    assertEquals(6, index.size());
+    assertIds(index, TASK, null, null, null, 10, 11, 12, 13, 15);
+    assertIds(index, TASK, 1, null, null, 10, 11, 13);
+    assertIds(index, TASK, 2, null, null, 12);
+    assertIds(index, TASK, 3, null, null);
+    assertIds(index, TASK, 1, 2000L, null, 11, 13);
+    assertIds(index, TASK, 1, null, 2000L, 10, 13);
+    assertIds(index, TASK, null, 2000L, 2000L, 12, 13, 15);
+    assertIds(index, TASK, null, 2001L, 2999L);
+    assertIds(index, TASK, null, 3000L, 1000L);
+    assertIds(index, USER, null, null, null, 14);
+    assertIds(index, "unknown", null, null, null);
+  }
+
+  @Test
+  public void growAndInsert()
+  {
+    final HistoryModificationIndex index = new HistoryModificationIndex();
+    for (int i = 0; i < 100; i++) {
+      // Even times first, odd times afterwards (inserted):
+      final int time = i < 50 ? 2 * i : 2 * (i - 50) + 1;
+      index.add(TASK, "1", new Date(time), time);
+    }
+    assertEquals(100, index.size());
+    final Set<Integer> idSet = new HashSet<Integer>();
+    index.getEntityIds(TASK, 1, new Date(10), new Date(19), idSet);
+    assertEquals(10, idSet.size());
+    for (int i = 10; i < 20; i++) {
+      assertTrue(idSet.contains(i));
+    }
+  }
+
+  @Test
+  public void indexedAfter()
+  {
+    final HistoryModificationIndex index = new HistoryModificationIndex(new Date(2000));
+    index.add(TASK, "1", new Date(1000), 10L); // Ignored.
+    index.add(TASK, "1", new Date(2000), 11L); // Ignored.
+    index.add(TASK, "1", new Date(3000), 12L);
+    assertEquals(1, index.size());
+    assertIds(index, TASK, 1, 2001L, null, 12);
+    assertFalse(index.covers(null));
+    assertFalse(index.covers(new Date(2000)));
+    assertTrue(index.covers(new Date(2001)));
+    assertTrue(new HistoryModificationIndex().covers(null));
+  }
+
+  private void assertIds(final HistoryModificationIndex index, final String entityName, final Integer userId,
+      final Long from, final Long to, final int... expectedIds)
+  {
+    final Set<Integer> idSet = new HashSet<Integer>();
+    index.getEntityIds(entityName, userId, from != null ? new Date(from) : null, to != null ? new Date(to) : null,
+        idSet);
+    assertEquals(expectedIds.length, idSet.size());
+    for (final int id : expectedIds) {
+      assertTrue("Id " + id + " expected.", idSet.contains(id));
+    }
+  }
+}
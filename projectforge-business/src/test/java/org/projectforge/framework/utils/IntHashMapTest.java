@@ -0,0 +1,89 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.framework.utils;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class IntHashMapTest
+{
+  @Test
+  public void testPutAndGet()
+  {
+    final IntHashMap<String> map = new IntHashMap<String>();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(42));
+    assertNull(map.get((Integer) null));
+    assertNull(map.put(42, "42"));
+    assertNull(map.put(0, "0"));
+    assertNull(map.put(-1, "-1"));
+    assertEquals("42", map.put(42, "forty-two"));
+    assertEquals(3, map.size());
+    assertEquals("forty-two", map.get(42));
+    assertEquals("forty-two", map.get(Integer.valueOf(42)));
+    assertEquals("0", map.get(0));
+    assertEquals("-1", map.get(-1));
+    assertFalse(map.containsKey(43));
+    final int[] keys = map.keys();
+    Arrays.sort(keys);
+    assertTrue(Arrays.equals(new int[] { -1, 0, 42 }, keys));
+    assertEquals(3, map.values().size());
+  }
+
+  @Test
+  public void testResizeAndCopy()
+  {
+    final Random random = new Random(42);
+    final IntHashMap<Integer> map = new IntHashMap<Integer>(2);
+    final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    for (int i = 0; i < 10000; i++) {
+      final int key = random.nextInt(1000000);
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    assertEquals(expected.size(), map.size());
+    for (final Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+    final IntHashMap<Integer> copy = new IntHashMap<Integer>(map);
+    copy.put(-5, -5);
+    assertEquals(expected.size() + 1, copy.size());
+    assertNull("Origin map mustn't be modified by copy.", map.get(-5));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullValue()
+  {
+    new IntHashMap<String>().put(1, null);
+  }
+}
@@ -0,0 +1,386 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.mail;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.AddressException;
+
+import org.projectforge.business.configuration.ConfigurationService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import de.micromata.genome.util.runtime.config.MailSessionLocalSettingsConfigModel;
+
+/**
+ * Sends the mails to a local SMTP stub.
+ */
+public class SendMailTest
+{
+  private static final long TIMEOUT = 10000;
+
+  private SmtpStub smtpStub;
+
+  private SendMail sendMail;
+
+  @BeforeMethod
+  public void setUp() throws IOException
+  {
+    smtpStub = new SmtpStub();
+    final Properties properties = new Properties();
+    properties.put("mail.transport.protocol", "smtp");
+    properties.put("mail.smtp.host", "localhost");
+    properties.put("mail.smtp.port", String.valueOf(smtpStub.getPort()));
+    properties.put("mail.from", "projectforge@localhost");
+    final MailSessionLocalSettingsConfigModel mailConfig = mock(MailSessionLocalSettingsConfigModel.class);
+    when(mailConfig.isEmailEnabled()).thenReturn(true);
+    when(mailConfig.createMailSession(any(Properties.class))).thenReturn(Session.getInstance(properties));
+    final SendMailConfig sendMailConfig = mock(SendMailConfig.class);
+    when(sendMailConfig.getCharset()).thenReturn("UTF-8");
+    final ConfigurationService configurationService = mock(ConfigurationService.class);
+    when(configurationService.createMailSessionLocalSettingsConfigModel()).thenReturn(mailConfig);
+    when(configurationService.getSendMailConfiguration()).thenReturn(sendMailConfig);
+
+    sendMail = new SendMail();
+    ReflectionTestUtils.setField(sendMail, "configurationService", configurationService);
+    ReflectionTestUtils.setField(sendMail, "sendThreads", 1);
+    ReflectionTestUtils.setField(sendMail, "retryDelay", 10L);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException
+  {
+    smtpStub.releaseFirstMessage();
+    sendMail.shutdown();
+    smtpStub.close();
+  }
+
+  @Test
+  public void reuseConnectionForQueuedMails() throws InterruptedException
+  {
+    sendMail.init();
+    smtpStub.blockFirstMessage();
+    assertTrue(sendMail.send(createMail("1"), null, null));
+    smtpStub.awaitFirstMessage();
+    // Queued while the send thread is blocked by the first mail:
+    for (int i = 2; i <= 5; i++) {
+      assertTrue(sendMail.send(createMail(String.valueOf(i)), null, null));
+    }
+    assertEquals(4, sendMail.getQueueSize());
+    smtpStub.releaseFirstMessage();
+    awaitSentMails(5);
+    assertEquals(5, smtpStub.getMessages().size());
+    assertEquals("All queued mails should be sent by one connection.", 1, smtpStub.getConnections());
+  }
+
+  @Test
+  public void retryAfterTransientError() throws InterruptedException
+  {
+    sendMail.init();
+    smtpStub.refuseConnections(1); // Greeting 421
+    assertTrue(sendMail.send(createMail("1"), null, null));
+    awaitSentMails(1);
+    assertEquals(2, smtpStub.getConnections());
+    assertEquals(1, smtpStub.getMessages().size());
+    assertEquals(0, sendMail.getFailedMails());
+  }
+
+  @Test
+  public void giveUpAfterMaxSendAttempts() throws InterruptedException
+  {
+    sendMail.init();
+    smtpStub.refuseConnections(Integer.MAX_VALUE);
+    assertTrue(sendMail.send(createMail("1"), null, null));
+    awaitFailedMails(1);
+    assertEquals(SendMail.MAX_SEND_ATTEMPTS, smtpStub.getConnections());
+    assertEquals(0, sendMail.getSentMails());
+  }
+
+  @Test
+  public void noRetryAfterPermanentError() throws InterruptedException
+  {
+    sendMail.init();
+    smtpStub.rejectRecipients(); // 550
+    assertTrue(sendMail.send(createMail("1"), null, null));
+    awaitFailedMails(1);
+    Thread.sleep(200); // Enough time for a retry.
+    assertEquals(1, smtpStub.getConnections());
+    assertEquals(0, sendMail.getSentMails());
+    assertEquals(0, smtpStub.getMessages().size());
+  }
+
+  @Test
+  public void sendDirectlyIfQueueIsFull() throws InterruptedException
+  {
+    ReflectionTestUtils.setField(sendMail, "queueSize", 1);
+    sendMail.init();
+    smtpStub.blockFirstMessage();
+    assertTrue(sendMail.send(createMail("1"), null, null));
+    smtpStub.awaitFirstMessage();
+    assertTrue(sendMail.send(createMail("2"), null, null));
+    assertEquals(1, sendMail.getQueueSize());
+    // Queue is full, so the calling thread sends the mail by its own connection:
+    assertTrue(sendMail.send(createMail("3"), null, null));
+    assertEquals(1, sendMail.getSentMails());
+    assertEquals(1, smtpStub.getMessages().size());
+    assertTrue(smtpStub.getMessages().get(0).contains("Subject: Test 3"));
+    assertEquals(2, smtpStub.getConnections());
+    smtpStub.releaseFirstMessage();
+    awaitSentMails(3);
+    assertEquals(3, smtpStub.getMessages().size());
+  }
+
+  @Test
+  public void transientErrors() throws AddressException
+  {
+    assertTrue(SendMail.isTransientError(new MessagingException("Could not connect to SMTP host: localhost, port: 25",
+        new ConnectException("Connection refused"))));
+    assertTrue(SendMail.isTransientError(
+        new MessagingException("Got bad greeting from SMTP host: localhost, port: 25, response: 421")));
+    assertFalse(SendMail.isTransientError(
+        new MessagingException("Got bad greeting from SMTP host: localhost, port: 25, response: 554")));
+    assertFalse(SendMail.isTransientError(new MessagingException("501 5.5.4 Invalid argument")));
+    assertFalse(SendMail.isTransientError(new SendFailedException("Invalid Addresses")));
+    assertFalse(SendMail.isTransientError(new AuthenticationFailedException("535 5.7.8 Authentication failed")));
+    assertFalse(SendMail.isTransientError(new AddressException("Illegal address", "a@@b")));
+  }
+
+  private Mail createMail(final String subject)
+  {
+    final Mail mail = new Mail();
+    mail.addTo("user@localhost");
+    mail.setSubject("Test " + subject);
+    mail.setContent("Hello world.");
+    return mail;
+  }
+
+  private void awaitSentMails(final long number) throws InterruptedException
+  {
+    final long timeout = System.currentTimeMillis() + TIMEOUT;
+    while (sendMail.getSentMails() < number && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(number, sendMail.getSentMails());
+  }
+
+  private void awaitFailedMails(final long number) throws InterruptedException
+  {
+    final long timeout = System.currentTimeMillis() + TIMEOUT;
+    while (sendMail.getFailedMails() < number && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(number, sendMail.getFailedMails());
+  }
+
+  /**
+   * Minimal SMTP server accepting every mail. Every connection is served by its own thread.
+   */
+  private static class SmtpStub implements Runnable
+  {
+    private final ServerSocket serverSocket;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final AtomicInteger refusedConnections = new AtomicInteger();
+
+    private final AtomicInteger receivedMessages = new AtomicInteger();
+
+    private final List<String> messages = new CopyOnWriteArrayList<String>();
+
+    private final CountDownLatch firstMessageReceived = new CountDownLatch(1);
+
+    private volatile CountDownLatch firstMessageLatch;
+
+    private volatile boolean rejectRecipients;
+
+    private SmtpStub() throws IOException
+    {
+      serverSocket = new ServerSocket(0);
+      final Thread thread = new Thread(this, "SmtpStub");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private int getPort()
+    {
+      return serverSocket.getLocalPort();
+    }
+
+    private int getConnections()
+    {
+      return connections.get();
+    }
+
+    /**
+     * @return The acknowledged messages (headers and body).
+     */
+    private List<String> getMessages()
+    {
+      return messages;
+    }
+
+    /**
+     * The next connections are answered with greeting 421 (service not available).
+     */
+    private void refuseConnections(final int number)
+    {
+      refusedConnections.set(number);
+    }
+
+    private void rejectRecipients()
+    {
+      rejectRecipients = true;
+    }
+
+    /**
+     * The reply to the first message is delayed until {@link #releaseFirstMessage()} is called.
+     */
+    private void blockFirstMessage()
+    {
+      firstMessageLatch = new CountDownLatch(1);
+    }
+
+    private void awaitFirstMessage() throws InterruptedException
+    {
+      assertTrue(firstMessageReceived.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    private void releaseFirstMessage()
+    {
+      if (firstMessageLatch != null) {
+        firstMessageLatch.countDown();
+      }
+    }
+
+    private void close() throws IOException
+    {
+      serverSocket.close();
+    }
+
+    @Override
+    public void run()
+    {
+      while (serverSocket.isClosed() == false) {
+        try {
+          final Socket socket = serverSocket.accept();
+          final Thread thread = new Thread(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              serve(socket);
+            }
+          }, "SmtpStub-" + connections.incrementAndGet());
+          thread.setDaemon(true);
+          thread.start();
+        } catch (final IOException ex) {
+          // Server socket closed.
+        }
+      }
+    }
+
+    private void serve(final Socket socket)
+    {
+      try {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+        final Writer out = new OutputStreamWriter(socket.getOutputStream(), "ISO-8859-1");
+        if (refusedConnections.getAndDecrement() > 0) {
+          reply(out, "421 Service not available");
+          return;
+        }
+        reply(out, "220 localhost SMTP stub");
+        String line;
+        while ((line = in.readLine()) != null) {
+          final String command = line.toUpperCase();
+          if (command.startsWith("RCPT") == true && rejectRecipients == true) {
+            reply(out, "550 5.1.1 User unknown");
+          } else if (command.equals("DATA") == true) {
+            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+            final StringBuilder message = new StringBuilder();
+            while ((line = in.readLine()) != null && line.equals(".") == false) {
+              message.append(line).append("\n");
+            }
+            if (receivedMessages.incrementAndGet() == 1) {
+              firstMessageReceived.countDown();
+              final CountDownLatch latch = firstMessageLatch;
+              if (latch != null) {
+                latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+              }
+            }
+            messages.add(message.toString());
+            reply(out, "250 OK");
+          } else if (command.equals("QUIT") == true) {
+            reply(out, "221 Bye");
+            return;
+          } else {
+            // EHLO, HELO, MAIL, RCPT, RSET and NOOP:
+            reply(out, "250 OK");
+          }
+        }
+      } catch (final IOException ex) {
+        // Connection closed by client.
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } finally {
+        try {
+          socket.close();
+        } catch (final IOException ex) {
+          // Nothing to do.
+        }
+      }
+    }
+
+    private void reply(final Writer out, final String reply) throws IOException
+    {
+      out.write(reply + "\r\n");
+      out.flush();
+    }
+  }
+}
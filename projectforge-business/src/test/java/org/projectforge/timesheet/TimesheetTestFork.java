@@ -24,21 +24,42 @@
 package org.projectforge.timesheet;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskDao;
 import org.projectforge.business.timesheet.TimesheetDO;
+import org.projectforge.business.timesheet.OrderDirection;
 import org.projectforge.business.timesheet.TimesheetDao;
+import org.projectforge.business.timesheet.TimesheetExport;
+import org.projectforge.business.timesheet.TimesheetFilter;
+import org.projectforge.common.DatabaseDialect;
 import org.projectforge.common.task.TaskStatus;
+import org.projectforge.continuousdb.DatabaseSupport;
 import org.projectforge.framework.access.AccessException;
 import org.projectforge.framework.i18n.UserException;
+import org.projectforge.framework.persistence.api.ResultPage;
+import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateHolder;
 import org.projectforge.framework.time.DatePrecision;
 import org.projectforge.test.AbstractTestBase;
@@ -58,6 +79,9 @@ public class TimesheetTestFork extends AbstractTestBase
   @Autowired
   TaskDao taskDao;
 
+  @Autowired
+  TimesheetExport timesheetExport;
+
   @Autowired
   private TransactionTemplate txTemplate;
 
@@ -203,6 +227,49 @@ public class TimesheetTestFork extends AbstractTestBase
     }
   }
 
+  @Test
+  public void testOverlapNotInMemory()
+  {
+    logon(ADMIN);
+    initTestDB.addTask("timesheet-notInMemory", "root");
+    final PFUserDO user = initTestDB.addUser("timesheet-notInMemory-user");
+    final TimesheetDO ts1 = new TimesheetDO().setTask(getTask("timesheet-notInMemory")).setUser(user);
+    setTimeperiod(ts1, 22, 8, 0, 22, 12, 0); // 11/22 from 8:00 to 12:00
+    timesheetDao.save(ts1);
+    final TimesheetDO ts2 = new TimesheetDO().setTask(getTask("timesheet-notInMemory")).setUser(user);
+    setTimeperiod(ts2, 23, 14, 0, 23, 16, 0); // 11/23 from 14:00 to 16:00
+    final Integer id2 = timesheetDao.save(ts2);
+    // Loads the time periods of the user into memory:
+    assertTrue(timesheetDao.getTimesheetsWithTimeoverlap(user.getId()).isEmpty());
+
+    // Moved without the dao, so the time periods in memory don't know the new time period of ts2:
+    setTimeperiod(ts2, 22, 14, 0, 22, 16, 0); // 11/22 from 14:00 to 16:00
+    txTemplate.execute(new TransactionCallback()
+    {
+      public Object doInTransaction(final TransactionStatus status)
+      {
+        hibernateTemplate.bulkUpdate("update TimesheetDO set startTime=?, stopTime=? where id=?", ts2.getStartTime(),
+            ts2.getStopTime(), id2);
+        return null;
+      }
+    });
+
+    final TimesheetDO ts3 = new TimesheetDO().setTask(getTask("timesheet-notInMemory")).setUser(user);
+    setTimeperiod(ts3, 22, 15, 0, 22, 17, 0); // 11/22 from 15:00 to 17:00
+    assertTrue("The data base is decisive, not the time periods in memory.", timesheetDao.hasTimeOverlap(ts3, false));
+    try {
+      timesheetDao.save(ts3); // Overlap with ts2!
+      fail();
+    } catch (final UserException ex) {
+      assertEquals("timesheet.error.timeperiodOverlapDetection", ex.getI18nKey());
+    }
+    // The time periods were reloaded:
+    setTimeperiod(ts3, 22, 11, 0, 22, 13, 0); // 11/22 from 11:00 to 13:00
+    assertTrue(timesheetDao.hasTimeOverlap(ts3, false));
+    setTimeperiod(ts3, 22, 12, 0, 22, 14, 0); // 11/22 from 12:00 to 14:00
+    assertFalse(timesheetDao.hasTimeOverlap(ts3, false));
+  }
+
   @Test
   public void testTimesheetProtection()
   {
@@ -303,6 +370,181 @@ public class TimesheetTestFork extends AbstractTestBase
     }
   }
 
+  @Test
+  public void getPage()
+  {
+    logon(ADMIN);
+    final Integer taskId = initTestDB.addTask("ts-getPage-task", "root").getId();
+    final PFUserDO user1 = initTestDB.addUser("ts-getPage-user1");
+    final PFUserDO user2 = initTestDB.addUser("ts-getPage-user2");
+    // The first time sheets belong to user2 and aren't visible for user1:
+    for (int day = 1; day <= 5; day++) {
+      saveTimesheet(user2, "ts-getPage-task", day);
+    }
+    final Integer firstId = saveTimesheet(user1, "ts-getPage-task", 10);
+    for (int day = 12; day <= 18; day += 2) {
+      saveTimesheet(user1, "ts-getPage-task", day);
+    }
+    final TimesheetFilter filter = new TimesheetFilter();
+    filter.setTaskId(taskId);
+    filter.setOrderType(OrderDirection.ASC);
+    logon(user1);
+    ResultPage<TimesheetDO> page = timesheetDao.getPage(filter, 2, null);
+    assertDays(page, 10, 12);
+    assertTrue(page.hasMore());
+
+    // Time sheets inserted or deleted before the last entry of the previous page mustn't shift the following pages:
+    logon(ADMIN);
+    saveTimesheet(user1, "ts-getPage-task", 11);
+    timesheetDao.internalMarkAsDeleted(timesheetDao.internalGetById(firstId));
+    saveTimesheet(user1, "ts-getPage-task", 20);
+    logon(user1);
+    page = timesheetDao.getPage(filter, 2, page.getContinuationToken());
+    assertDays(page, 14, 16);
+    page = timesheetDao.getPage(filter, 2, page.getContinuationToken());
+    assertDays(page, 18, 20);
+    page = timesheetDao.getPage(filter, 2, page.getContinuationToken());
+    assertDays(page);
+    assertFalse(page.hasMore());
+
+    // Page size greater than the number of entries:
+    page = timesheetDao.getPage(filter, 100, null);
+    assertDays(page, 11, 12, 14, 16, 18, 20);
+    assertFalse(page.hasMore());
+
+    filter.setOrderType(OrderDirection.DESC);
+    page = timesheetDao.getPage(filter, 4, null);
+    assertDays(page, 20, 18, 16, 14);
+    page = timesheetDao.getPage(filter, 4, page.getContinuationToken());
+    assertDays(page, 12, 11);
+    assertFalse(page.hasMore());
+  }
+
+  @Test
+  public void export() throws IOException
+  {
+    logon(ADMIN);
+    final Integer taskId = initTestDB.addTask("ts-export-task", "root").getId();
+    final PFUserDO user1 = initTestDB.addUser("ts-export-user1");
+    final PFUserDO user2 = initTestDB.addUser("ts-export-user2");
+    // The time sheets of user2 aren't visible for user1 and are spread over the pages (page size of the tests is 3):
+    final List<Integer> expectedIds = new ArrayList<Integer>();
+    for (int day = 1; day <= 14; day++) {
+      if (day % 3 == 0) {
+        saveTimesheet(user2, "ts-export-task", day);
+      } else {
+        expectedIds.add(saveTimesheet(user1, "ts-export-task", day));
+      }
+    }
+    final TimesheetFilter filter = new TimesheetFilter();
+    filter.setTaskId(taskId);
+    filter.setOrderType(OrderDirection.ASC);
+    logon(user1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(expectedIds.size(), timesheetExport.export(filter, out));
+    assertEquals(expectedIds, getExportedIds(out.toByteArray()));
+
+    filter.setOrderType(OrderDirection.DESC);
+    out = new ByteArrayOutputStream();
+    assertEquals(expectedIds.size(), timesheetExport.export(filter, out));
+    Collections.reverse(expectedIds);
+    assertEquals(expectedIds, getExportedIds(out.toByteArray()));
+  }
+
+  private List<Integer> getExportedIds(final byte[] xlsx) throws IOException
+  {
+    final Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(xlsx));
+    final Sheet sheet = workbook.getSheetAt(0);
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 1; i <= sheet.getLastRowNum(); i++) { // First row is the header.
+      final Row row = sheet.getRow(i);
+      ids.add((int) row.getCell(row.getLastCellNum() - 1).getNumericCellValue());
+    }
+    return ids;
+  }
+
+  @Test
+  public void getTotalDurationsByUserAndTask()
+  {
+    logon(ADMIN);
+    final String prefix = "ts-durations-";
+    final Integer task1Id = initTestDB.addTask(prefix + "task1", "root").getId();
+    final Integer task2Id = initTestDB.addTask(prefix + "task2", "root").getId();
+    final PFUserDO user1 = initTestDB.addUser(prefix + "user1");
+    final PFUserDO user2 = initTestDB.addUser(prefix + "user2");
+    saveTimesheet(user1, prefix + "task1", 4, 8, 0, 9, 30);
+    saveTimesheet(user1, prefix + "task1", 5, 10, 0, 10, 15);
+    saveTimesheet(user1, prefix + "task2", 5, 11, 0, 12, 0);
+    saveTimesheet(user2, prefix + "task1", 6, 8, 0, 16, 45);
+    saveTimesheet(user2, prefix + "task1", 10, 23, 0, 23, 45); // Last day of the time period.
+    saveTimesheet(user2, prefix + "task1", 11, 8, 0, 9, 0); // Outside the time period.
+    final Integer deletedId = saveTimesheet(user1, prefix + "task1", 7, 8, 0, 9, 0);
+    timesheetDao.internalMarkAsDeleted(timesheetDao.internalGetById(deletedId));
+    date.setDate(1971, Calendar.JANUARY, 1, 0, 0, 0);
+    final Date startTime = date.getDate();
+    date.setDate(1971, Calendar.JANUARY, 10, 0, 0, 0);
+    final Date stopTime = date.getDate();
+    // Expected: the former sum of the loaded time sheets.
+    final TimesheetFilter filter = new TimesheetFilter();
+    filter.setStartTime(startTime);
+    filter.setStopTime(stopTime);
+    final Map<String, Long> expected = new HashMap<String, Long>();
+    for (final TimesheetDO timesheet : timesheetDao.getList(filter)) {
+      final String key = timesheet.getUserId() + ":" + timesheet.getTaskId();
+      final Long seconds = expected.get(key);
+      expected.put(key, (seconds != null ? seconds : 0) + timesheet.getDuration() / 1000);
+    }
+    assertEquals(Long.valueOf(6300), expected.get(user1.getId() + ":" + task1Id));
+    assertEquals(Long.valueOf(3600), expected.get(user1.getId() + ":" + task2Id));
+    assertEquals(Long.valueOf(34200), expected.get(user2.getId() + ":" + task1Id));
+    final DatabaseSupport databaseSupport = DatabaseSupport.getInstance();
+    try {
+      // Sums of the scrolled rows (without data base optimization):
+      DatabaseSupport.setInstance(new DatabaseSupport(DatabaseDialect.HSQL));
+      assertDurations(expected, timesheetDao.getTotalDurationsByUserAndTask(startTime, stopTime));
+    } finally {
+      DatabaseSupport.setInstance(databaseSupport);
+    }
+    if (databaseSupport.getIntervalInSeconds("start_time", "stop_time") != null) {
+      // Sums calculated by the data base (e. g. EXTRACT(EPOCH FROM SUM(...)) of PostgreSQL):
+      assertDurations(expected, timesheetDao.getTotalDurationsByUserAndTask(startTime, stopTime));
+    }
+  }
+
+  private void assertDurations(final Map<String, Long> expected, final List<Object[]> durations)
+  {
+    final Map<String, Long> actual = new HashMap<String, Long>();
+    for (final Object[] row : durations) {
+      final String key = row[0] + ":" + row[1];
+      assertFalse("User and task expected only once: " + key, actual.containsKey(key));
+      actual.put(key, (Long) row[2]);
+    }
+    assertEquals(expected, actual);
+  }
+
+  private Integer saveTimesheet(final PFUserDO user, final String taskName, final int day, final int fromHour,
+      final int fromMinute, final int toHour, final int toMinute)
+  {
+    final TimesheetDO timesheet = new TimesheetDO().setUser(user).setTask(getTask(taskName));
+    setTimeperiod(timesheet, 1971, Calendar.JANUARY, day, fromHour, fromMinute, day, toHour, toMinute);
+    return timesheetDao.internalSave(timesheet);
+  }
+
+  private Integer saveTimesheet(final PFUserDO user, final String taskName, final int day)
+  {
+    final TimesheetDO timesheet = new TimesheetDO().setUser(user).setTask(getTask(taskName));
+    setTimeperiod(timesheet, 1970, Calendar.DECEMBER, day, 8, 0, day, 9, 0);
+    return timesheetDao.internalSave(timesheet);
+  }
+
+  private void assertDays(final ResultPage<TimesheetDO> page, final int... days)
+  {
+    assertEquals(days.length, page.getList().size());
+    for (int i = 0; i < days.length; i++) {
+      assertEquals(days[i], new DateHolder(page.getList().get(i).getStartTime()).getDayOfMonth());
+    }
+  }
+
   private void setTimeperiod(final TimesheetDO timesheet, final int fromDay, final int fromHour, final int fromMinute,
       final int toDay, final int toHour, final int toMinute)
   {
@@ -42,7 +42,17 @@ public class ExcelExporter
 
   public ExcelExporter(final String filename)
   {
-    this.workBook = new ExportWorkbook();
+    this(filename, false);
+  }
+
+  /**
+   * @param filename
+   * @param streaming If true, an xlsx workbook is created which holds only a window of rows per sheet in memory.
+   * @see ExportWorkbook#createStreamingWorkbook()
+   */
+  public ExcelExporter(final String filename, final boolean streaming)
+  {
+    this.workBook = streaming == true ? ExportWorkbook.createStreamingWorkbook() : new ExportWorkbook();
     this.workBook.setFilename(filename);
   }
 
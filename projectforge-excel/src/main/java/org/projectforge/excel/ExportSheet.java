@@ -23,6 +23,7 @@
 
 package org.projectforge.excel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -33,6 +34,7 @@ import org.apache.poi.ss.usermodel.PrintSetup;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 
 public class ExportSheet
 {
@@ -58,9 +60,31 @@ public class ExportSheet
 
   private boolean imported;
 
+  /**
+   * Number of rows held in memory for streaming sheets, otherwise -1.
+   */
+  private final int rowWindowSize;
+
+  /**
+   * The first row (head row) is held for streaming sheets, also after being flushed.
+   */
+  private ExportRow firstRow;
+
   public ExportSheet(final ContentProvider contentProvider, final String name, final Sheet poiSheet)
+  {
+    this(contentProvider, name, poiSheet, -1);
+  }
+
+  /**
+   * @param rowWindowSize Number of rows held in memory for streaming sheets (poiSheet must be an {@link SXSSFSheet}),
+   *          -1 for non-streaming sheets.
+   * @see ExportWorkbook#createStreamingWorkbook(int)
+   */
+  public ExportSheet(final ContentProvider contentProvider, final String name, final Sheet poiSheet,
+      final int rowWindowSize)
   {
     this.contentProvider = contentProvider;
+    this.rowWindowSize = rowWindowSize;
     this.name = name;
     this.poiSheet = poiSheet;
     this.rows = new ArrayList<ExportRow>();
@@ -140,8 +164,32 @@ public class ExportSheet
     return poiSheet.getPrintSetup();
   }
 
+  /**
+   * Inserts a copy of the given row (values, styles and merged regions). The copy is placed at the position of the given
+   * row and all following rows are shifted down by one. <br/>
+   * Rows of streaming sheets can't be shifted, therefore only the last added row may be copied: the copy is appended
+   * and the given row is returned. The result is the same, both rows are equal.
+   * 
+   * @param targetRow The row to copy.
+   * @return The row at the position of the given row (the following row is the copy).
+   * @throws IllegalArgumentException if the sheet is streaming and the given row isn't the last added row.
+   * @see #isStreaming()
+   */
   public ExportRow copyRow(ExportRow targetRow)
   {
+    if (isStreaming() == true) {
+      if (targetRow.getRowNum() != rowCounter - 1) {
+        throw new IllegalArgumentException("Only the last row of streaming sheet '" + name + "' may be copied, not row "
+            + targetRow.getRowNum() + ".");
+      }
+      final ExportRow row = addRow(); // The given row is the last one and isn't flushed.
+      copyCells(poiSheet, targetRow.getPoiRow(), row.getPoiRow(), null, false);
+      copyMergedRegions(poiSheet, targetRow.getPoiRow(), row.getPoiRow());
+      for (final Cell poiCell : row.getPoiRow()) {
+        row.addPoiCell(poiCell.getColumnIndex(), poiCell);
+      }
+      return targetRow;
+    }
     final Row poiRow = copyRow(targetRow.getSheet().getPoiSheet(), targetRow.getRowNum());
     initRowList();
     return rows.get(poiRow.getRowNum());
@@ -149,12 +197,49 @@ public class ExportSheet
 
   public ExportRow addRow()
   {
+    if (isStreaming() == true && rows.size() >= rowWindowSize) {
+      flushRows();
+    }
     final Row poiRow = poiSheet.createRow(rowCounter);
     final ExportRow row = new ExportRow(contentProvider, this, poiRow, rowCounter++);
     this.rows.add(row);
+    if (rowCounter == 1) {
+      firstRow = row;
+    }
     return row;
   }
 
+  /**
+   * Styles and flushes all held rows of a streaming sheet to the temporary file except the last one (the caller may
+   * still fill the last added row).
+   */
+  private void flushRows()
+  {
+    final ExportRow lastRow = rows.get(rows.size() - 1);
+    for (final ExportRow row : rows) {
+      if (row != lastRow) {
+        row.updateStyles(contentProvider);
+      }
+    }
+    try {
+      ((SXSSFSheet) poiSheet).flushRows(1);
+    } catch (final IOException ex) {
+      log.error("Exception encountered while flushing rows of sheet '" + name + "': " + ex, ex);
+      throw new RuntimeException(ex);
+    }
+    rows.clear();
+    rows.add(lastRow);
+  }
+
+  /**
+   * @return true if only the last rows are held in memory.
+   * @see ExportWorkbook#createStreamingWorkbook(int)
+   */
+  public boolean isStreaming()
+  {
+    return rowWindowSize > 0;
+  }
+
   public ExportRow addRow(final Object... values)
   {
     final ExportRow row = addRow();
@@ -203,9 +288,24 @@ public class ExportSheet
     return name;
   }
 
+  /**
+   * For streaming sheets only the first row and the rows not yet flushed are available.
+   * 
+   * @param row
+   */
   public ExportRow getRow(final int row)
   {
-    return this.rows.get(row);
+    if (isStreaming() == false) {
+      return this.rows.get(row);
+    }
+    if (row == 0 && firstRow != null) {
+      return firstRow;
+    }
+    final int index = rows.isEmpty() == true ? -1 : row - rows.get(0).getRowNum();
+    if (index < 0 || index >= rows.size()) {
+      throw new IllegalArgumentException("Row " + row + " of streaming sheet '" + name + "' was already flushed.");
+    }
+    return rows.get(index);
   }
 
   /**
@@ -216,6 +316,9 @@ public class ExportSheet
     return rowCounter;
   }
 
+  /**
+   * @return All rows or for streaming sheets only the rows not yet flushed.
+   */
   public List<ExportRow> getRows()
   {
     return rows;
@@ -361,7 +464,20 @@ public class ExportSheet
     worksheet.shiftRows(rowNum, worksheet.getLastRowNum(), 1);
     Row newRow = sourceRow; //Now sourceRow is the empty line, so let's rename it
     sourceRow = worksheet.getRow(rowNum + 1); //Now the source row is at rowNum+1
+    copyCells(worksheet, sourceRow, newRow, formulasArray, true);
+    copyMergedRegions(worksheet, sourceRow, newRow);
+    return newRow;
+  }
 
+  /**
+   * @param formulasArray The formulas of the source row saved before shifting the rows or null, if the formulas should
+   *          be read from the source row.
+   * @param cloneStyles If false, the cell styles are shared instead of cloned (streaming sheets may contain a lot of
+   *          rows, the number of cell styles of a workbook is limited).
+   */
+  private static void copyCells(Sheet worksheet, Row sourceRow, Row newRow, String[] formulasArray,
+      boolean cloneStyles)
+  {
     // Loop through source columns to add to new row
     for (int i = 0; i < sourceRow.getLastCellNum(); i++) {
       // Grab a copy of the old/new cell
@@ -376,9 +492,13 @@ public class ExportSheet
       }
 
       // Copy style from old cell and apply to new cell
-      CellStyle newCellStyle = worksheet.getWorkbook().createCellStyle();
-      newCellStyle.cloneStyleFrom(oldCell.getCellStyle());
-      newCell.setCellStyle(newCellStyle);
+      if (cloneStyles == true) {
+        CellStyle newCellStyle = worksheet.getWorkbook().createCellStyle();
+        newCellStyle.cloneStyleFrom(oldCell.getCellStyle());
+        newCell.setCellStyle(newCellStyle);
+      } else {
+        newCell.setCellStyle(oldCell.getCellStyle());
+      }
 
       // If there is a cell comment, copy
       if (oldCell.getCellComment() != null) {
@@ -404,7 +524,7 @@ public class ExportSheet
           newCell.setCellErrorValue(oldCell.getErrorCellValue());
           break;
         case Cell.CELL_TYPE_FORMULA:
-          newCell.setCellFormula(formulasArray[i]);
+          newCell.setCellFormula(formulasArray != null ? formulasArray[i] : oldCell.getCellFormula());
           break;
         case Cell.CELL_TYPE_NUMERIC:
           newCell.setCellValue(oldCell.getNumericCellValue());
@@ -416,7 +536,10 @@ public class ExportSheet
           break;
       }
     }
+  }
 
+  private static void copyMergedRegions(Sheet worksheet, Row sourceRow, Row newRow)
+  {
     // If there are any merged regions in the source row, copy to new row
     for (int i = 0; i < worksheet.getNumMergedRegions(); i++) {
       CellRangeAddress cellRangeAddress = worksheet.getMergedRegion(i);
@@ -429,6 +552,5 @@ public class ExportSheet
         worksheet.addMergedRegion(newCellRangeAddress);
       }
     }
-    return newRow;
   }
 }
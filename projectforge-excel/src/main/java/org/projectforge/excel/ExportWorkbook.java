@@ -43,13 +43,25 @@ import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 public class ExportWorkbook
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(ExportWorkbook.class);
 
+  /**
+   * Default number of rows per sheet held in memory by streaming workbooks.
+   */
+  public static final int DEFAULT_ROW_WINDOW_SIZE = 100;
+
   private Workbook poiWorkbook;
 
+  /**
+   * Number of rows per sheet held in memory, -1 if the workbook isn't a streaming workbook (all rows are held in
+   * memory).
+   */
+  private int rowWindowSize = -1;
+
   private List<ExportSheet> sheets;
 
   private ContentProvider contentProvider;
@@ -68,6 +80,39 @@ public class ExportWorkbook
     poiWorkbook = new HSSFWorkbook();
   }
 
+  /**
+   * Creates a streaming xlsx workbook with the default row window size.
+   * 
+   * @see #createStreamingWorkbook(int)
+   */
+  public static ExportWorkbook createStreamingWorkbook()
+  {
+    return createStreamingWorkbook(DEFAULT_ROW_WINDOW_SIZE);
+  }
+
+  /**
+   * Creates a streaming xlsx workbook (without the row limit of the xls format). Only the last rows of each sheet are
+   * held in memory: if the given row window size is exceeded, the older rows are styled and flushed to a compressed
+   * temporary file. Therefore rows may not be modified any more after being flushed, {@link ExportSheet#copyRow} supports
+   * only the last added row and {@link #cloneSheet(int, String)} isn't supported. The temporary files are deleted by
+   * {@link #write(OutputStream)}.
+   * 
+   * @param rowWindowSize Number of rows per sheet held in memory.
+   */
+  public static ExportWorkbook createStreamingWorkbook(final int rowWindowSize)
+  {
+    // Flushing is done by ExportSheet (-1), so the rows are styled before written to the temporary file.
+    final ExportWorkbook workbook = new ExportWorkbook(new SXSSFWorkbook(null, -1, true));
+    workbook.rowWindowSize = rowWindowSize;
+    return workbook;
+  }
+
+  private ExportWorkbook(final Workbook poiWorkbook)
+  {
+    sheets = new ArrayList<ExportSheet>();
+    this.poiWorkbook = poiWorkbook;
+  }
+
   public ExportWorkbook(final File excelFile) throws FileNotFoundException, IOException
   {
     this(new FileInputStream(excelFile));
@@ -121,6 +166,31 @@ public class ExportWorkbook
     return filename;
   }
 
+  /**
+   * @return true if this workbook is a streaming xlsx workbook.
+   * @see #createStreamingWorkbook(int)
+   */
+  public boolean isStreaming()
+  {
+    return rowWindowSize > 0;
+  }
+
+  /**
+   * @return Number of rows per sheet held in memory or -1 if this workbook isn't a streaming workbook.
+   */
+  public int getRowWindowSize()
+  {
+    return rowWindowSize;
+  }
+
+  /**
+   * @return ".xlsx" for streaming workbooks, otherwise ".xls".
+   */
+  public String getFilenameExtension()
+  {
+    return isStreaming() == true ? ".xlsx" : ".xls";
+  }
+
   /**
    * Calls updateStyle for all containing sheets.
    * 
@@ -137,7 +207,8 @@ public class ExportWorkbook
   }
 
   /**
-   * Calls updateStyles first. The OutputStream will be closed by this method.
+   * Calls updateStyles first. The OutputStream will be closed by this method. The temporary files of streaming workbooks
+   * are deleted afterwards, so streaming workbooks may be written only once.
    * 
    * @param out
    * @throws IOException
@@ -156,6 +227,9 @@ public class ExportWorkbook
       }
     } finally {
       out.close();
+      if (isStreaming() == true) {
+        ((SXSSFWorkbook) poiWorkbook).dispose();
+      }
     }
   }
 
@@ -194,7 +268,7 @@ public class ExportWorkbook
     } else {
       cp = ExportConfig.getInstance().createNewContentProvider(this);
     }
-    final ExportSheet sheet = new ExportSheet(cp, name, poiSheet);
+    final ExportSheet sheet = new ExportSheet(cp, name, poiSheet, rowWindowSize);
     sheets.add(sheet);
     return sheet;
   }
@@ -23,8 +23,16 @@
 
 package org.projectforge.excel;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.testng.annotations.Test;
 
 public class ExportWorkbookTest
@@ -34,4 +42,51 @@ public class ExportWorkbookTest
   {
     SimpleExample.main();
   }
+
+  @Test
+  public void streamingWorkbook() throws IOException
+  {
+    final ExportWorkbook workbook = ExportWorkbook.createStreamingWorkbook(10);
+    assertTrue(workbook.isStreaming());
+    final ExportSheet sheet = workbook.addSheet("Streamed");
+    sheet.addRow().setValues("Name", "Number");
+    for (int i = 1; i <= 100; i++) {
+      sheet.addRow().setValues("Row " + i, i);
+    }
+    assertEquals("Head row is held after being flushed.", "Name",
+        sheet.getRow(0).getPoiRow().getCell(0).getStringCellValue());
+    try {
+      sheet.getRow(50);
+      fail("IllegalArgumentException expected, row was already flushed.");
+    } catch (final IllegalArgumentException ex) {
+      // OK
+    }
+    try {
+      sheet.copyRow(sheet.getRow(99)); // Not yet flushed, but not the last row.
+      fail("IllegalArgumentException expected, only the last row of streaming sheets can be copied.");
+    } catch (final IllegalArgumentException ex) {
+      // OK
+    }
+    final ExportRow lastRow = sheet.getRow(100);
+    assertTrue(lastRow == sheet.copyRow(lastRow));
+    assertEquals(102, sheet.getRowCounter());
+
+    final XSSFWorkbook readWorkbook = new XSSFWorkbook(new ByteArrayInputStream(workbook.getAsByteArray()));
+    try {
+      final Sheet readSheet = readWorkbook.getSheet("Streamed");
+      assertEquals(101, readSheet.getLastRowNum());
+      assertEquals("Name", readSheet.getRow(0).getCell(0).getStringCellValue());
+      assertEquals("Number", readSheet.getRow(0).getCell(1).getStringCellValue());
+      for (int i = 1; i <= 100; i++) {
+        final Row row = readSheet.getRow(i);
+        assertEquals("Row " + i, row.getCell(0).getStringCellValue());
+        assertEquals(i, (int) row.getCell(1).getNumericCellValue());
+      }
+      // The copy of the last row:
+      assertEquals("Row 100", readSheet.getRow(101).getCell(0).getStringCellValue());
+      assertEquals(100, (int) readSheet.getRow(101).getCell(1).getNumericCellValue());
+    } finally {
+      readWorkbook.close();
+    }
+  }
 }
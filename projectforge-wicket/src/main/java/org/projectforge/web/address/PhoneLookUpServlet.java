@@ -39,9 +39,6 @@ import org.projectforge.business.address.AddressDO;
 import org.projectforge.business.address.AddressDao;
 import org.projectforge.business.configuration.ConfigurationService;
 import org.projectforge.common.StringHelper;
-import org.projectforge.framework.persistence.api.BaseSearchFilter;
-import org.projectforge.framework.persistence.api.QueryFilter;
-import org.projectforge.framework.utils.NumberHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.web.context.WebApplicationContext;
@@ -105,25 +102,14 @@ public class PhoneLookUpServlet extends HttpServlet
       return;
     }
 
-    final String searchNumber = NumberHelper.extractPhonenumber(number);
-
-    final BaseSearchFilter filter = new BaseSearchFilter();
-    filter.setSearchString("*" + searchNumber);
-    final QueryFilter queryFilter = new QueryFilter(filter);
-
     final StringBuffer buf = new StringBuffer();
     // Use internal get list method for avoiding access checking (no user is logged-in):
-    final List<AddressDO> list = addressDao.internalGetList(queryFilter);
+    final List<AddressDO> list = addressDao.internalGetListByPhoneNumber(number);
     if (list != null && list.size() >= 1) {
-      AddressDO result = list.get(0);
+      // The newest one is the first entry:
+      final AddressDO result = list.get(0);
       if (list.size() > 1) {
-        // More than one result, therefore find the newest one:
         buf.append("+"); // Mark that more than one entry does exist.
-        for (final AddressDO matchingUser : list) {
-          if (matchingUser.getLastUpdate().after(result.getLastUpdate()) == true) {
-            result = matchingUser;
-          }
-        }
       }
       resp.setContentType("text/plain");
       final String fullname = result.getFullName();
@@ -23,9 +23,9 @@
 
 package org.projectforge.web.admin;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -34,12 +34,13 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
+import org.apache.wicket.util.resource.IResourceStream;
 import org.projectforge.business.book.BookDO;
 import org.projectforge.business.book.BookDao;
 import org.projectforge.business.book.BookStatus;
@@ -56,8 +57,8 @@ import org.projectforge.framework.configuration.ConfigurationParam;
 import org.projectforge.framework.i18n.I18nHelper;
 import org.projectforge.framework.persistence.api.ReindexSettings;
 import org.projectforge.framework.persistence.database.DatabaseUpdateService;
+import org.projectforge.framework.persistence.database.XmlDump;
 import org.projectforge.framework.persistence.history.HibernateSearchReindexer;
-import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.plugins.core.PluginAdminService;
 import org.projectforge.web.MenuBuilder;
@@ -72,9 +73,6 @@ import org.projectforge.web.wicket.WicketApplication;
 import org.projectforge.web.wicket.WicketUtils;
 import org.projectforge.web.wicket.components.ContentMenuEntryPanel;
 
-import de.micromata.genome.db.jpa.xmldump.api.JpaXmlDumpService;
-import de.micromata.genome.util.runtime.RuntimeIOException;
-
 public class AdminPage extends AbstractStandardFormPage implements ISelectCallerPage
 {
   private static final long serialVersionUID = 8345068133036236305L;
@@ -87,7 +85,7 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
   private BookDao bookDao;
 
   @SpringBean
-  private JpaXmlDumpService jpaXmlDumpService;
+  private XmlDump xmlDump;
 
   @SpringBean
   private SystemDao systemDao;
@@ -107,9 +105,6 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
   @SpringBean
   private UserXmlPreferencesMigrationDao userXmlPreferencesMigrationDao;
 
-  @SpringBean
-  private PfEmgrFactory emf;
-
   @SpringBean
   MenuBuilder menuBuilder;
 
@@ -508,14 +503,24 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
     checkAccess();
     String ts = DateHelper.getTimestampAsFilenameSuffix(new Date());
     String filename = "projectforgedump_" + ts + ".xml.gz";
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    try (GZIPOutputStream gzout = new GZIPOutputStream(out)) {
-      jpaXmlDumpService.dumpToXml(emf, gzout);
-    } catch (IOException ex) {
-      throw new RuntimeIOException(ex);
-    }
+    // The dump is written directly to the response instead of holding the whole (compressed) dump in memory:
+    final IResourceStream resourceStream = new AbstractResourceStreamWriter()
+    {
+      private static final long serialVersionUID = 2956183711541398617L;
 
-    DownloadUtils.setDownloadTarget(out.toByteArray(), filename);
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        xmlDump.dumpDatabase(filename, output);
+      }
+    };
+    DownloadUtils.setDownloadTarget(filename, resourceStream);
   }
 
   protected void reindex()
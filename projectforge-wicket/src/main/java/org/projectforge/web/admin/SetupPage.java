@@ -23,7 +23,10 @@
 
 package org.projectforge.web.admin;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang.StringUtils;
@@ -42,10 +45,12 @@ import org.projectforge.framework.persistence.database.DatabaseCoreUpdates;
 import org.projectforge.framework.persistence.database.DatabaseUpdateService;
 import org.projectforge.framework.persistence.database.InitDatabaseDao;
 import org.projectforge.framework.persistence.database.PfJpaXmlDumpService;
+import org.projectforge.framework.persistence.database.XmlDump;
 import org.projectforge.framework.persistence.history.HibernateSearchReindexer;
 import org.projectforge.framework.persistence.jpa.PfEmgrFactory;
 import org.projectforge.framework.persistence.user.api.UserContext;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
+import org.projectforge.framework.persistence.xstream.HibernateXmlConverter;
 import org.projectforge.web.LoginPage;
 import org.projectforge.web.MenuItemRegistry;
 import org.projectforge.web.session.MySession;
@@ -76,6 +81,9 @@ public class SetupPage extends AbstractUnsecureBasePage
   @SpringBean
   private PfJpaXmlDumpService jpaXmlDumpService;
 
+  @SpringBean
+  private XmlDump xmlDump;
+
   private final SetupForm setupForm;
 
   private final SetupImportForm importForm;
@@ -204,10 +212,14 @@ public class SetupPage extends AbstractUnsecureBasePage
         error(getString("administration.setup.error.uploadfile"));
         return;
       }
-      //      final XStreamSavingConverter converter = xmlDump.restoreDatabase(reader);
-      //      final int counter = xmlDump.verifyDump(converter);
-      //      configurationDao.checkAndUpdateDatabaseEntries();
-      int counter = jpaXmlDumpService.restoreDb(PfEmgrFactory.get(), is, RestoreMode.InsertAll);
+      final BufferedInputStream in = new BufferedInputStream(is);
+      final int counter;
+      if (isDatabaseDump(in) == true) {
+        // Dump written entity by entity (e. g. by the administration page):
+        counter = xmlDump.restoreDatabase(new InputStreamReader(in, "utf-8")).getSavedObjectsCounter();
+      } else {
+        counter = jpaXmlDumpService.restoreDb(PfEmgrFactory.get(), in, RestoreMode.InsertAll);
+      }
       Configuration.getInstance().setExpired();
       final TaskTree taskTree = TaskTreeHelper.getTaskTree();
       taskTree.setExpired();
@@ -232,6 +244,23 @@ public class SetupPage extends AbstractUnsecureBasePage
     }
   }
 
+  /**
+   * @return true, if the root element of the given xml stream is the root element of dumps written by {@link XmlDump}.
+   *         The stream is reset afterwards.
+   */
+  private boolean isDatabaseDump(final BufferedInputStream in) throws IOException
+  {
+    final byte[] head = new byte[1024];
+    in.mark(head.length);
+    int length = 0;
+    int read;
+    while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+      length += read;
+    }
+    in.reset();
+    return new String(head, 0, length, "utf-8").contains("<" + HibernateXmlConverter.ROOT_NODE) == true;
+  }
+
   @Override
   protected String getTitle()
   {
@@ -26,6 +26,7 @@ package org.projectforge.web.core;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
@@ -72,9 +73,24 @@ public class SearchAreaPanel extends Panel
    * @param filter
    * @param registryEntry the area to show.
    */
-  @SuppressWarnings("serial")
   public SearchAreaPanel(final WebPage page, final String id, final SearchPageFilter filter,
       final WebRegistryEntry webRegistryEntry)
+  {
+    this(page, id, filter, webRegistryEntry, null);
+  }
+
+  /**
+   * @param page Needed, because in constructor this panel is not yet added to a page.
+   * @param id
+   * @param filter
+   * @param registryEntry the area to show.
+   * @param searchResultFuture The result of the search already started via
+   *          {@link SearchDao#submit(BaseSearchFilter, Class, org.projectforge.framework.persistence.api.BaseDao)}. If
+   *          null, the area is searched by this panel.
+   */
+  @SuppressWarnings("serial")
+  public SearchAreaPanel(final WebPage page, final String id, final SearchPageFilter filter,
+      final WebRegistryEntry webRegistryEntry, final Future<List<SearchResultData>> searchResultFuture)
   {
     super(id);
     final long millis = System.currentTimeMillis();
@@ -90,32 +106,19 @@ public class SearchAreaPanel extends Panel
     if (listPageColumnsCreator instanceof AbstractListPage) {
       ((AbstractListPage<?, ?, ?>) listPageColumnsCreator).setCalledBySearchPage(true);
     }
-    final Integer number = statisticsCache.getNumberOfEntities(webRegistryEntry.getDOClass());
-    final Class<? extends BaseSearchFilter> registeredFilterClass = webRegistryEntry.getSearchFilterClass();
-    final boolean isTaskDependentFilter = registeredFilterClass != null
-        && TaskDependentFilter.class.isAssignableFrom(registeredFilterClass);
-    if (number > MAXIMUM_ENTRIES_WITHOUT_FILTER_SETTINGS
-        && (filter.getSearchString() == null || filter.getSearchString().length() < 3)
-        && (isTaskDependentFilter == false || filter.getTask() == null)
-        && filter.getStartTimeOfModification() == null
-        && filter.getStopTimeOfModification() == null) {
-      // Don't search to large tables if to less filter settings are given.
-      setVisible(false);
-      return;
-    }
-    filter.updateUseModificationFilterFlag();
-    final BaseSearchFilter baseSearchFilter;
-    if (isTaskDependentFilter == true) {
-      baseSearchFilter = (BaseSearchFilter) BeanHelper.newInstance(registeredFilterClass,
-          new Class<?>[] { BaseSearchFilter.class },
-          filter);
-      ((TaskDependentFilter) baseSearchFilter).setTaskId(filter.getTaskId());
-      baseSearchFilter.copyBaseSearchFieldsFrom(filter);
+    final List<SearchResultData> searchResult;
+    if (searchResultFuture != null) {
+      searchResult = searchDao.getEntries(searchResultFuture, webRegistryEntry.getDao());
     } else {
-      baseSearchFilter = filter;
+      final BaseSearchFilter baseSearchFilter = createSearchFilter(filter, webRegistryEntry,
+          statisticsCache.getNumberOfEntities(webRegistryEntry.getDOClass()));
+      if (baseSearchFilter == null) {
+        // Don't search to large tables if to less filter settings are given.
+        setVisible(false);
+        return;
+      }
+      searchResult = searchDao.getEntries(baseSearchFilter, webRegistryEntry.getDOClass(), webRegistryEntry.getDao());
     }
-    final List<SearchResultData> searchResult = searchDao.getEntries(baseSearchFilter, webRegistryEntry.getDOClass(),
-        webRegistryEntry.getDao());
     boolean hasError = false;
     if (searchResult == null) {
       // An error occured!
@@ -217,4 +220,38 @@ public class SearchAreaPanel extends Panel
     add(new Label("areaTitle", page.getString(webRegistryEntry.getI18nTitleHeading())));
     add(new Label("timeOfSearch", NumberFormatter.format(duration)));
   }
+
+  /**
+   * @param filter
+   * @param webRegistryEntry
+   * @param numberOfEntities The number of entities of the area (from the {@link StatisticsCache}).
+   * @return The filter to use for searching the given area or null, if the area shouldn't be searched (to large tables
+   *         if to less filter settings are given). The filter is a copy, so the areas may be searched concurrently.
+   */
+  static BaseSearchFilter createSearchFilter(final SearchPageFilter filter, final WebRegistryEntry webRegistryEntry,
+      final Integer numberOfEntities)
+  {
+    final Class<? extends BaseSearchFilter> registeredFilterClass = webRegistryEntry.getSearchFilterClass();
+    final boolean isTaskDependentFilter = registeredFilterClass != null
+        && TaskDependentFilter.class.isAssignableFrom(registeredFilterClass);
+    if (numberOfEntities != null && numberOfEntities > MAXIMUM_ENTRIES_WITHOUT_FILTER_SETTINGS
+        && (filter.getSearchString() == null || filter.getSearchString().length() < 3)
+        && (isTaskDependentFilter == false || filter.getTask() == null)
+        && filter.getStartTimeOfModification() == null
+        && filter.getStopTimeOfModification() == null) {
+      return null;
+    }
+    filter.updateUseModificationFilterFlag();
+    final BaseSearchFilter baseSearchFilter;
+    if (isTaskDependentFilter == true) {
+      baseSearchFilter = (BaseSearchFilter) BeanHelper.newInstance(registeredFilterClass,
+          new Class<?>[] { BaseSearchFilter.class },
+          filter);
+      ((TaskDependentFilter) baseSearchFilter).setTaskId(filter.getTaskId());
+      baseSearchFilter.copyBaseSearchFieldsFrom(filter);
+    } else {
+      baseSearchFilter = new BaseSearchFilter(filter);
+    }
+    return baseSearchFilter;
+  }
 }
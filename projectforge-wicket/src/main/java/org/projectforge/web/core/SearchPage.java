@@ -23,6 +23,11 @@
 
 package org.projectforge.web.core;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.wicket.Component;
 import org.apache.wicket.extensions.ajax.markup.html.AjaxLazyLoadPanel;
@@ -31,6 +36,11 @@ import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.markup.repeater.RepeatingView;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.projectforge.framework.persistence.api.BaseSearchFilter;
+import org.projectforge.framework.persistence.api.SearchDao;
+import org.projectforge.framework.persistence.api.SearchResultData;
+import org.projectforge.framework.persistence.database.StatisticsCache;
 import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.web.fibu.ISelectCallerPage;
 import org.projectforge.web.registry.WebRegistry;
@@ -47,6 +57,18 @@ public class SearchPage extends AbstractStandardFormPage implements ISelectCalle
 
   private final RepeatingView areaRepeater;
 
+  @SpringBean
+  private SearchDao searchDao;
+
+  @SpringBean
+  private StatisticsCache statisticsCache;
+
+  /**
+   * The searches of all areas are started concurrently by {@link #refresh()}, the lazy loaded area panels are waiting for
+   * their results. Not serializable, so the area panel searches by itself if the page was serialized in the meantime.
+   */
+  private transient Map<String, Future<List<SearchResultData>>> searchResultFutures;
+
   // Do not execute the search on the first call (due to performance issues):
   private boolean refreshed = true;
 
@@ -115,6 +137,7 @@ public class SearchPage extends AbstractStandardFormPage implements ISelectCalle
     }
     refreshed = true;
     areaRepeater.removeAll();
+    searchResultFutures = new HashMap<String, Future<List<SearchResultData>>>();
     if (form.filter.isEmpty() == true) {
       return;
     }
@@ -137,13 +160,24 @@ public class SearchPage extends AbstractStandardFormPage implements ISelectCalle
 
   private void addArea(final WebRegistryEntry webRegistryEntry)
   {
+    final BaseSearchFilter searchFilter = SearchAreaPanel.createSearchFilter(form.filter, webRegistryEntry,
+        statisticsCache.getNumberOfEntities(webRegistryEntry.getDOClass()));
+    if (searchFilter == null) {
+      // Don't search to large tables if to less filter settings are given.
+      return;
+    }
+    searchResultFutures.put(webRegistryEntry.getId(),
+        searchDao.submit(searchFilter, webRegistryEntry.getDOClass(), webRegistryEntry.getDao()));
     @SuppressWarnings("serial")
     final Panel panel = new AjaxLazyLoadPanel(areaRepeater.newChildId())
     {
       @Override
       public final Component getLazyLoadComponent(final String id)
       {
-        final SearchAreaPanel searchAreaPanel = new SearchAreaPanel(SearchPage.this, id, form.filter, webRegistryEntry);
+        final Future<List<SearchResultData>> future = searchResultFutures != null
+            ? searchResultFutures.remove(webRegistryEntry.getId()) : null;
+        final SearchAreaPanel searchAreaPanel = new SearchAreaPanel(SearchPage.this, id, form.filter, webRegistryEntry,
+            future);
         return searchAreaPanel;
       }
     };
@@ -54,6 +54,7 @@ import org.projectforge.business.task.formatter.WicketTaskFormatter;
 import org.projectforge.business.user.UserFormatter;
 import org.projectforge.business.utils.CurrencyFormatter;
 import org.projectforge.framework.time.DateHelper;
+import org.projectforge.excel.ExportWorkbook;
 import org.projectforge.framework.utils.NumberFormatter;
 import org.projectforge.web.wicket.AbstractListPage;
 import org.projectforge.web.wicket.CellItemListener;
@@ -258,13 +259,13 @@ public class AuftragListPage extends AbstractListPage<AuftragListForm, AuftragDa
           public void onClick()
           {
             final List<AuftragDO> list = getList();
-            final byte[] xls = orderExport.export(list);
-            if (xls == null || xls.length == 0) {
+            final ExportWorkbook xls = orderExport.export(list);
+            if (xls == null) {
               form.addError("datatable.no-records-found");
               return;
             }
             final String filename = "ProjectForge-OrderExport_" + DateHelper.getDateAsFilenameSuffix(new Date())
-                + ".xls";
+                + xls.getFilenameExtension();
             DownloadUtils.setDownloadTarget(xls, filename);
           }
         }, getString("exportAsXls")).setTooltip(getString("tooltip.export.excel"));
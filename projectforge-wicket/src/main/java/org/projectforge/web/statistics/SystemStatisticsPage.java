@@ -30,8 +30,10 @@ import javax.sql.DataSource;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.projectforge.business.scripting.GroovyExecutor;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskTree;
+import org.projectforge.business.teamcal.externalsubscription.TeamEventExternalSubscriptionCache;
 import org.projectforge.business.tasktree.TaskTreeHelper;
 import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.framework.persistence.api.HibernateUtils;
@@ -40,7 +42,10 @@ import org.projectforge.framework.persistence.user.entities.PFUserDO;
 import org.projectforge.framework.time.DateHelper;
 import org.projectforge.framework.utils.NumberFormatter;
 import org.projectforge.framework.utils.NumberHelper;
+import org.projectforge.mail.SendMail;
 import org.projectforge.web.wicket.AbstractSecuredPage;
+import org.projectforge.web.wicket.InMemoryPageStore;
+import org.projectforge.web.wicket.WicketApplication;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 public class SystemStatisticsPage extends AbstractSecuredPage
@@ -52,6 +57,12 @@ public class SystemStatisticsPage extends AbstractSecuredPage
   @SpringBean
   private DataSource dataSource;
 
+  @SpringBean
+  private SendMail sendMail;
+
+  @SpringBean
+  private TeamEventExternalSubscriptionCache teamEventExternalSubscriptionCache;
+
   public SystemStatisticsPage(final PageParameters parameters)
   {
     super(parameters);
@@ -70,6 +81,34 @@ public class SystemStatisticsPage extends AbstractSecuredPage
     final int totalNumberOfHistoryEntries = getTableCount(jdbc, PfHistoryMasterDO.class)
         + getTableCount(jdbc, PfHistoryMasterDO.class);
     body.add(new Label("totalNumberOfHistoryEntries", NumberFormatter.format(totalNumberOfHistoryEntries)));
+    body.add(new Label("groovyCacheHitRate",
+        NumberFormatter.formatPercent(new BigDecimal(GroovyExecutor.getCacheHitRate()).setScale(3,
+            BigDecimal.ROUND_HALF_UP)) + " ("
+            + NumberFormatter.format(GroovyExecutor.getCacheHits() + GroovyExecutor.getCacheMisses()) + ")"));
+    body.add(new Label("mailQueue", NumberFormatter.format(sendMail.getQueueSize()) + " ("
+        + NumberFormatter.format(sendMail.getSentMails()) + ", " + NumberFormatter.format(sendMail.getFailedMails())
+        + ", " + NumberFormatter.format(sendMail.getAverageSendDuration()) + " ms)"));
+    body.add(new Label("externalSubscriptions",
+        NumberFormatter.format(teamEventExternalSubscriptionCache.getNumberOfSubscriptions()) + " ("
+            + NumberFormatter.format(teamEventExternalSubscriptionCache.getNumberOfFailingSubscriptions()) + ", "
+            + NumberFormatter.format(teamEventExternalSubscriptionCache.getNumberOfTimedOutUpdates()) + ", "
+            + NumberFormatter.format(teamEventExternalSubscriptionCache.getLastUpdateCacheDuration()) + " ms)"));
+    final InMemoryPageStore pageStore = getApplication() instanceof WicketApplication
+        ? ((WicketApplication) getApplication()).getPageStore() : null;
+    final boolean pageStoreAvailable = pageStore != null;
+    body.add(new Label("pageStoreHitRate", pageStoreAvailable == true
+        ? NumberFormatter.formatPercent(new BigDecimal(pageStore.getHitRate()).setScale(3, BigDecimal.ROUND_HALF_UP))
+        : "-"));
+    body.add(new Label("pageStoreHeapSize", pageStoreAvailable == true
+        ? NumberHelper.formatBytes(pageStore.getHeapSize()) + " (" + NumberFormatter.format(pageStore.getSessionCount())
+            + ")"
+        : "-"));
+    body.add(new Label("pageStoreSessionHeapSize", pageStoreAvailable == true
+        ? NumberHelper.formatBytes(pageStore.getHeapSize(getSession().getId())) + " ("
+            + NumberHelper.formatBytes(pageStore.getMaxSessionHeapSize()) + ")"
+        : "-"));
+    body.add(new Label("pageStoreEvictions",
+        pageStoreAvailable == true ? NumberFormatter.format(pageStore.getEvictionCount()) : "-"));
   }
 
   private int getTableCount(final JdbcTemplate jdbc, final Class<?> entity)
@@ -23,6 +23,8 @@
 
 package org.projectforge.web.timesheet;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -47,12 +49,15 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
+import org.apache.wicket.util.resource.IResourceStream;
 import org.hibernate.Hibernate;
 import org.projectforge.business.systeminfo.SystemInfoCache;
 import org.projectforge.business.task.TaskDO;
 import org.projectforge.business.task.TaskTree;
 import org.projectforge.business.tasktree.TaskTreeHelper;
 import org.projectforge.business.teamcal.service.CalendarFeedService;
+import org.projectforge.business.timesheet.OrderDirection;
 import org.projectforge.business.timesheet.TimesheetDO;
 import org.projectforge.business.timesheet.TimesheetDao;
 import org.projectforge.business.timesheet.TimesheetExport;
@@ -586,22 +591,53 @@ public class TimesheetListPage extends AbstractListPage<TimesheetListForm, Times
     DownloadUtils.setDownloadTarget(content, filename);
   }
 
+  /**
+   * The time sheets are exported in the order of the list, if the list is sorted by start time. All other orders of the
+   * list (user, task, duration etc.) are sorted in memory and can't be used for paging the export through the data
+   * base, so the export is ordered by start time (descending) in these cases.
+   */
   protected void exportExcel()
   {
     refresh();
-    final List<TimesheetDO> timeSheets = getList();
-    if (timeSheets == null || timeSheets.size() == 0) {
+    final TimesheetFilter filter = new TimesheetFilter(form.getSearchFilter());
+    final SortParam<String> sortParam = listPageSortableDataProvider != null ? listPageSortableDataProvider.getSort()
+        : null;
+    if (sortParam != null && "startTime".equals(sortParam.getProperty()) == true) {
+      filter.setOrderType(sortParam.isAscending() == true ? OrderDirection.ASC : OrderDirection.DESC);
+    } else {
+      filter.setOrderType(OrderDirection.DESC);
+    }
+    if ((filter.getStartTime() == null && filter.getStopTime() == null && filter.getTaskId() == null)
+        || timesheetDao.getPage(filter, 1, null).getList().isEmpty() == true) {
       // Nothing to export.
       form.addError("validation.error.nothingToExport");
       return;
     }
-    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xls";
-    final byte[] xls = timesheetExport.export(timeSheets);
-    if (xls == null || xls.length == 0) {
-      log.error("Oups, xls has zero size. Filename: " + filename);
-      return;
-    }
-    DownloadUtils.setDownloadTarget(xls, filename);
+    final String filename = "ProjectForge-TimesheetExport_" + DateHelper.getDateAsFilenameSuffix(new Date()) + ".xlsx";
+    // The time sheets are read page by page and the xlsx file is streamed directly to the response (big exports would
+    // exceed the xls row limit).
+    final IResourceStream resourceStream = new AbstractResourceStreamWriter()
+    {
+      private static final long serialVersionUID = -4166392651398742365L;
+
+      @Override
+      public String getContentType()
+      {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+      }
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        try {
+          timesheetExport.export(filter, output);
+        } catch (final IOException ex) {
+          log.error("Exception encountered while exporting timesheets: " + ex.getMessage(), ex);
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+    DownloadUtils.setDownloadTarget(filename, resourceStream);
   }
 
   /**
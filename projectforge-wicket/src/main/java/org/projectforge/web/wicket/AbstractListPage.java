@@ -794,7 +794,7 @@ public abstract class AbstractListPage<F extends AbstractListForm<?, ?>, D exten
       form.addError("validation.error.nothingToExport");
       return;
     }
-    DownloadUtils.setDownloadTarget(exporter.getWorkbook().getAsByteArray(), exporter.getFilename());
+    DownloadUtils.setDownloadTarget(exporter.getWorkbook(), exporter.getFilename());
   }
 
   /**
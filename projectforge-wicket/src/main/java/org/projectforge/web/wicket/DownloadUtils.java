@@ -23,14 +23,19 @@
 
 package org.projectforge.web.wicket;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.handler.resource.ResourceStreamRequestHandler;
 import org.apache.wicket.request.resource.ContentDisposition;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.projectforge.common.MimeType;
+import org.projectforge.excel.ExportWorkbook;
 
 public class DownloadUtils
 {
@@ -98,6 +103,39 @@ public class DownloadUtils
     log.info("Starting download for file. filename:" + filename + ", content-type:" + resourceStream.getContentType());
   }
 
+  /**
+   * The workbook is written directly to the response. Streaming workbooks hold only a window of rows in memory, so big
+   * exports don't need the whole file as byte array.
+   * @param workbook
+   * @param filename
+   * @see ExportWorkbook#createStreamingWorkbook()
+   */
+  public static void setDownloadTarget(final ExportWorkbook workbook, final String filename)
+  {
+    final String contentType = getContentType(filename);
+    @SuppressWarnings("serial")
+    final IResourceStream resourceStream = new AbstractResourceStreamWriter()
+    {
+      @Override
+      public String getContentType()
+      {
+        return contentType;
+      }
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        try {
+          workbook.write(output);
+        } catch (final IOException ex) {
+          log.error("Exception encountered while writing workbook '" + filename + "': " + ex.getMessage(), ex);
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+    setDownloadTarget(filename, resourceStream);
+  }
+
   /**
    * Determines content type dependent on the file name suffix. Yet supported: application/pdf (*.pdf), application/vnd.ms-excel (*.xls),
    * image/jpeg (*.jpg, *.jpeg), image/svg+xml (*.svg), image/png (*.xml), application/xml (*.xml) and text (*.txt, *.csv).
@@ -1,25 +1,37 @@
 package org.projectforge.web.wicket;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.apache.wicket.Application;
 import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.serialize.ISerializer;
 
 /**
- * A custom IPageStore implementation, that keeps pages in memory without serialization.
- * 
+ * A custom IPageStore implementation, that keeps the serialized (and optionally compressed) pages in memory. Every
+ * session holds its most recently used pages (see {@link org.apache.wicket.settings.IStoreSettings#getInmemoryCacheSize()}).
+ * If the pages of all sessions exceed the given heap size, the least recently used pages are moved to the given data
+ * store (Wicket's disk store). The pages of the data store are read again, if requested later.
+ *
  * @author Roger Rene Kommer (r.kommer.extern@micromata.de)
  *
  */
-@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
 public class InMemoryPageStore implements IPageStore
 {
 
@@ -29,101 +41,134 @@ public class InMemoryPageStore implements IPageStore
   /** The configured cache size (per session). */
   private final int cacheSize;
 
+  /** The maximum size of all serialized pages held in memory (in bytes). */
+  private final long maxHeapSize;
+
+  /** Store for the pages not held in memory, may be null. */
+  private final IDataStore dataStore;
+
+  private final boolean compress;
+
+  private final ISerializer serializer;
+
   /** Data structure to store pages per sessionId and per pageId. */
-  private final Map<String, Map<Integer, SoftReference<IManageablePage>>> cache;
+  private final ConcurrentMap<String, SessionCache> cache = new ConcurrentHashMap<>();
+
+  /** Size of all serialized pages held in memory. */
+  private final AtomicLong heapSize = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
 
   /**
-   * Map that holds the indices of last/least recently used page ids. The most recently used page id is in the tail, the
-   * least recently used is in the head.
+   * The sessions with pages held in memory, ordered from least recently used to most recently used. Used for finding
+   * the pages to move to the data store without scanning all sessions. Guarded by itself.
    */
-  private final Map<String, Queue<Integer>> indices;
+  private final LinkedHashMap<String, SessionCache> lruSessions = new LinkedHashMap<>(16, 0.75f, true);
 
   /**
    * Constructor.
+   *
+   * @param dataStore The store of the pages which don't fit into memory. If null, these pages will be dropped.
+   * @param maxHeapSize The maximum size of all serialized pages held in memory (in bytes).
+   * @param compress If true, the serialized pages will be compressed.
    */
-  public InMemoryPageStore()
+  public InMemoryPageStore(final IDataStore dataStore, final long maxHeapSize, final boolean compress)
   {
     this.cacheSize = Application.get().getStoreSettings().getInmemoryCacheSize();
-    this.cache = new HashMap<>();
-    this.indices = new HashMap<>();
+    this.serializer = Application.get().getFrameworkSettings().getSerializer();
+    this.dataStore = dataStore;
+    this.maxHeapSize = maxHeapSize;
+    this.compress = compress;
   }
 
   @Override
   public void destroy()
   {
-    synchronized (cache) {
-      cache.clear();
-      indices.clear();
+    synchronized (lruSessions) {
+      lruSessions.clear();
+    }
+    cache.clear();
+    heapSize.set(0);
+    if (dataStore != null) {
+      dataStore.destroy();
     }
   }
 
   @Override
   public IManageablePage getPage(String sessionId, int pageId)
   {
-    Map<Integer, SoftReference<IManageablePage>> sessionCache = getSessionCache(sessionId);
-    SoftReference<IManageablePage> reference = sessionCache.get(pageId);
-    if (reference == null) {
-      return null;
+    final SessionCache sessionCache = getSessionCache(sessionId);
+    byte[] data = sessionCache.get(pageId);
+    if (data == null && dataStore != null) {
+      data = dataStore.getData(sessionId, pageId);
+      if (data != null) {
+        // The page is used again, so hold it in memory:
+        putPage(sessionId, sessionCache, pageId, data);
+      }
     }
-
-    IManageablePage page = reference.get();
-    Queue<Integer> sessionIndex = getSessionIndex(sessionId);
-
-    synchronized (sessionIndex) {
-      updateIndex(sessionId, pageId);
-      return page;
+    if (data == null) {
+      misses.incrementAndGet();
+      return null;
     }
+    touch(sessionId, sessionCache);
+    hits.incrementAndGet();
+    return deserialize(data);
   }
 
   @Override
   public void removePage(String sessionId, int pageId)
   {
-    Map<Integer, SoftReference<IManageablePage>> sessionCache = getSessionCache(sessionId);
+    final SessionCache sessionCache = cache.get(sessionId);
     if (sessionCache != null) {
-      synchronized (sessionCache) {
-        sessionCache.remove(pageId);
-        getSessionIndex(sessionId).remove(pageId);
-      }
+      sessionCache.remove(pageId);
+    }
+    if (dataStore != null) {
+      dataStore.removeData(sessionId, pageId);
     }
   }
 
   @Override
   public void storePage(String sessionId, IManageablePage page)
   {
-    Map<Integer, SoftReference<IManageablePage>> sessionCache = getSessionCache(sessionId);
-    SoftReference<IManageablePage> reference = new SoftReference<>(page);
-
-    synchronized (sessionCache) {
-      sessionCache.put(page.getPageId(), reference);
-      updateIndex(sessionId, page.getPageId());
-
-      if (sessionCache.size() > cacheSize) {
-        // Remove oldest page
-        Integer oldestPageId = getOldestPageId(sessionId);
-        removePage(sessionId, oldestPageId);
-      }
+    final byte[] data = serialize(page);
+    if (data == null) {
+      return;
     }
+    putPage(sessionId, getSessionCache(sessionId), page.getPageId(), data);
   }
 
   @Override
   public void unbind(String sessionId)
   {
-    synchronized (getSessionCache(sessionId)) {
-      cache.remove(sessionId);
-      indices.remove(sessionId);
+    final SessionCache sessionCache = cache.remove(sessionId);
+    synchronized (lruSessions) {
+      lruSessions.remove(sessionId);
+    }
+    if (sessionCache != null) {
+      sessionCache.clear();
+    }
+    if (dataStore != null) {
+      dataStore.removeData(sessionId);
     }
   }
 
   @Override
   public Serializable prepareForSerialization(String sessionId, Object page)
   {
-    throw new UnsupportedOperationException(getClass() + " does not support serialization");
+    if (page instanceof IManageablePage) {
+      return serialize((IManageablePage) page);
+    }
+    return (Serializable) page;
   }
 
   @Override
   public Object restoreAfterSerialization(Serializable serializable)
   {
-    throw new UnsupportedOperationException(getClass() + " does not support serialization");
+    return serializable;
   }
 
   @Override
@@ -132,76 +177,268 @@ public class InMemoryPageStore implements IPageStore
     if (page instanceof IManageablePage) {
       return (IManageablePage) page;
     }
+    if (page instanceof byte[]) {
+      return deserialize((byte[]) page);
+    }
     logger.warn("page is not an instance of " + IManageablePage.class);
     return null;
   }
 
+  /**
+   * @return The number of found pages divided by the number of requested pages (0, if no page was requested yet).
+   */
+  public double getHitRate()
+  {
+    final long found = hits.get();
+    final long total = found + misses.get();
+    return total > 0 ? (double) found / total : 0;
+  }
+
+  public long getHits()
+  {
+    return hits.get();
+  }
+
+  public long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * @return The number of pages removed from memory (moved to the data store, if given).
+   */
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * @return The size of all serialized pages held in memory (in bytes).
+   */
+  public long getHeapSize()
+  {
+    return heapSize.get();
+  }
+
+  public int getSessionCount()
+  {
+    return cache.size();
+  }
+
+  /**
+   * @param sessionId
+   * @return The size of the serialized pages of the given session held in memory (in bytes).
+   */
+  public long getHeapSize(final String sessionId)
+  {
+    final SessionCache sessionCache = cache.get(sessionId);
+    return sessionCache != null ? sessionCache.getSize() : 0;
+  }
+
+  /**
+   * @return The size of the serialized pages held in memory of the session with the most pages in memory (in bytes).
+   */
+  public long getMaxSessionHeapSize()
+  {
+    long max = 0;
+    for (final SessionCache sessionCache : cache.values()) {
+      max = Math.max(max, sessionCache.getSize());
+    }
+    return max;
+  }
+
   /**
    * Returns the cache for stored pages for the given session id.
    *
    * @param sessionId the session id
    * @return the cache for stored pages for this session
    */
-  private Map<Integer, SoftReference<IManageablePage>> getSessionCache(String sessionId)
+  private SessionCache getSessionCache(String sessionId)
   {
-    Map<Integer, SoftReference<IManageablePage>> sessionCache = cache.get(sessionId);
+    SessionCache sessionCache = cache.get(sessionId);
     if (sessionCache == null) {
-      sessionCache = new ConcurrentHashMap<>();
-      cache.put(sessionId, sessionCache);
+      sessionCache = new SessionCache();
+      final SessionCache existing = cache.putIfAbsent(sessionId, sessionCache);
+      if (existing != null) {
+        sessionCache = existing;
+      }
     }
     return sessionCache;
   }
 
-  /**
-   * Returns the index queue of page ids for the given session id. The ordering is from least recently used (head) to
-   * most recently used (tail).
-   *
-   * @param sessionId the session id
-   * @return index of least recently used pages for the given session id
-   */
-  private Queue<Integer> getSessionIndex(String sessionId)
+  private void putPage(final String sessionId, final SessionCache sessionCache, final int pageId, final byte[] data)
   {
-    Queue<Integer> sessionIndex = indices.get(sessionId);
-    if (sessionIndex == null) {
-      sessionIndex = new ConcurrentLinkedQueue<>();
-      indices.put(sessionId, sessionIndex);
+    final Map.Entry<Integer, byte[]> eldest = sessionCache.put(pageId, data);
+    touch(sessionId, sessionCache);
+    if (eldest != null) {
+      // More pages than the configured cache size per session:
+      spill(sessionId, eldest.getKey(), eldest.getValue());
+    }
+    while (heapSize.get() > maxHeapSize) {
+      if (spillLeastRecentlyUsedPage() == false) {
+        break;
+      }
     }
-    return sessionIndex;
   }
 
   /**
-   * Returns the oldest (i.e. least recently used) page id for the given session id.
-   *
-   * @param sessionId the session id
-   * @return id of the least recently used page for the given session id
+   * Marks the given session as most recently used.
    */
-  protected Integer getOldestPageId(String sessionId)
+  private void touch(final String sessionId, final SessionCache sessionCache)
   {
-    return getSessionIndex(sessionId).peek();
+    synchronized (lruSessions) {
+      if (cache.get(sessionId) == sessionCache) {
+        // Not unbound meanwhile.
+        lruSessions.put(sessionId, sessionCache);
+      }
+    }
   }
 
   /**
-   * Updates the index for the given sessionId and pageId. This will remove the pageId from the queue and reinsert it
-   * (at the end).
+   * Moves the least recently used page of the least recently used session to the data store. Sessions without pages
+   * in memory are removed from the least recently used order.
    *
-   * @param sessionId the session id
-   * @param pageId the page id
+   * @return false, if no page was found.
    */
-  private void updateIndex(String sessionId, Integer pageId)
+  private boolean spillLeastRecentlyUsedPage()
+  {
+    String sessionId;
+    Map.Entry<Integer, byte[]> eldest;
+    synchronized (lruSessions) {
+      final Iterator<Map.Entry<String, SessionCache>> it = lruSessions.entrySet().iterator();
+      do {
+        if (it.hasNext() == false) {
+          return false;
+        }
+        final Map.Entry<String, SessionCache> entry = it.next();
+        sessionId = entry.getKey();
+        eldest = entry.getValue().removeEldest();
+        if (eldest == null || entry.getValue().isEmpty() == true) {
+          it.remove();
+        }
+      } while (eldest == null);
+    }
+    spill(sessionId, eldest.getKey(), eldest.getValue());
+    return true;
+  }
+
+  private void spill(final String sessionId, final Integer pageId, final byte[] data)
+  {
+    evictions.incrementAndGet();
+    if (dataStore != null) {
+      dataStore.storeData(sessionId, pageId, data);
+    }
+  }
+
+  private byte[] serialize(final IManageablePage page)
   {
-    Queue<Integer> index = getSessionIndex(sessionId);
-    index.remove(pageId);
-    index.offer(pageId);
+    final byte[] data = serializer.serialize(page);
+    if (data == null) {
+      logger.warn("Can't serialize page " + page.getPageId() + ": " + page.getClass());
+      return null;
+    }
+    if (compress == false) {
+      return data;
+    }
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 2);
+    OutputStream out = null;
+    try {
+      out = new DeflaterOutputStream(baos);
+      out.write(data);
+      out.close();
+      return baos.toByteArray();
+    } catch (final IOException ex) {
+      logger.error("Error while compressing page " + page.getPageId() + ": " + ex.getMessage(), ex);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private IManageablePage deserialize(byte[] data)
+  {
+    if (compress == true) {
+      InputStream in = null;
+      try {
+        in = new InflaterInputStream(new ByteArrayInputStream(data));
+        data = IOUtils.toByteArray(in);
+      } catch (final IOException ex) {
+        logger.error("Error while decompressing page: " + ex.getMessage(), ex);
+        return null;
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return convertToPage(serializer.deserialize(data));
   }
 
   /**
-   * Returns the page cache, for testing purposes.
-   *
-   * @return the page cache
+   * The serialized pages of one session ordered from least recently used to most recently used.
    */
-  protected Map<String, Map<Integer, SoftReference<IManageablePage>>> getCache()
+  private class SessionCache
   {
-    return cache;
-  }
+    private final LinkedHashMap<Integer, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    synchronized byte[] get(final int pageId)
+    {
+      return pages.get(pageId);
+    }
+
+    /**
+     * @return The eldest entry, if removed because the cache size is exceeded, otherwise null.
+     */
+    synchronized Map.Entry<Integer, byte[]> put(final int pageId, final byte[] data)
+    {
+      final byte[] old = pages.put(pageId, data);
+      updateSize(data.length - (old != null ? old.length : 0));
+      if (pages.size() > cacheSize) {
+        return removeEldest();
+      }
+      return null;
+    }
 
+    synchronized void remove(final int pageId)
+    {
+      final byte[] old = pages.remove(pageId);
+      if (old != null) {
+        updateSize(-old.length);
+      }
+    }
+
+    synchronized Map.Entry<Integer, byte[]> removeEldest()
+    {
+      final Iterator<Map.Entry<Integer, byte[]>> it = pages.entrySet().iterator();
+      if (it.hasNext() == false) {
+        return null;
+      }
+      final Map.Entry<Integer, byte[]> eldest = it.next();
+      it.remove();
+      updateSize(-eldest.getValue().length);
+      return eldest;
+    }
+
+    synchronized void clear()
+    {
+      pages.clear();
+      updateSize(-size);
+    }
+
+    synchronized boolean isEmpty()
+    {
+      return pages.isEmpty();
+    }
+
+    synchronized long getSize()
+    {
+      return size;
+    }
+
+    private void updateSize(final long delta)
+    {
+      size += delta;
+      heapSize.addAndGet(delta);
+    }
+  }
 }
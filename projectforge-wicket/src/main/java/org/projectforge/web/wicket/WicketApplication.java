@@ -135,6 +135,18 @@ public class WicketApplication extends WebApplication implements WicketApplicati
   @Value("${projectforge.base.dir}")
   private String baseDir;
 
+  /**
+   * Maximum size of the serialized pages of all sessions held in memory, the least recently used pages exceeding this
+   * size are moved to the disk store.
+   */
+  @Value("${projectforge.wicket.pageStore.maxHeapSizeMB:100}")
+  private int pageStoreMaxHeapSizeMB;
+
+  @Value("${projectforge.wicket.pageStore.compress:true}")
+  private boolean pageStoreCompress;
+
+  private InMemoryPageStore pageStore;
+
   private ProjectForgeApp projectForgeApp;
 
   /**
@@ -462,11 +474,20 @@ public class WicketApplication extends WebApplication implements WicketApplicati
       @Override
       protected IPageStore newPageStore(IDataStore dataStore)
       {
-        return new InMemoryPageStore();
+        pageStore = new InMemoryPageStore(dataStore, pageStoreMaxHeapSizeMB * 1024L * 1024L, pageStoreCompress);
+        return pageStore;
       }
     });
   }
 
+  /**
+   * @return The page store for getting its statistics.
+   */
+  public InMemoryPageStore getPageStore()
+  {
+    return pageStore;
+  }
+
   private void mountPageWithPageParameterAwareness(final String path, final Class<? extends WebPage> pageClass)
   {
     mount(new PageParameterAwareMountedMapper(path, pageClass));
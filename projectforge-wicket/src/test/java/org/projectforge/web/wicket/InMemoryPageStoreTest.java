@@ -0,0 +1,204 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2014 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.web.wicket;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.Serializable;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.pageStore.IDataStore;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class InMemoryPageStoreTest
+{
+  private WicketTester tester;
+
+  private IDataStore dataStore;
+
+  @BeforeMethod
+  public void setUp()
+  {
+    tester = new WicketTester(new WebApplication()
+    {
+      @Override
+      public Class<? extends Page> getHomePage()
+      {
+        return null;
+      }
+    });
+    tester.getApplication().getStoreSettings().setInmemoryCacheSize(2);
+    dataStore = mock(IDataStore.class);
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    tester.destroy();
+  }
+
+  @Test
+  public void pagesPerSession()
+  {
+    final InMemoryPageStore store = new InMemoryPageStore(dataStore, Long.MAX_VALUE, true);
+    store.storePage("s1", new TestPage(1));
+    store.storePage("s1", new TestPage(2));
+    store.storePage("s2", new TestPage(1));
+    assertEquals(2, store.getSessionCount());
+    assertEquals(0, store.getEvictionCount());
+    assertEquals(1, store.getPage("s1", 1).getPageId());
+    // Page 2 is the least recently used page of session s1 now:
+    store.storePage("s1", new TestPage(3));
+    verify(dataStore).storeData(eq("s1"), eq(2), any(byte[].class));
+    assertEquals(1, store.getEvictionCount());
+    assertNotNull(store.getPage("s1", 1));
+    assertNotNull(store.getPage("s1", 3));
+    assertNotNull(store.getPage("s2", 1));
+    assertNull(store.getPage("s1", 4));
+    assertEquals(store.getHeapSize(), store.getHeapSize("s1") + store.getHeapSize("s2"));
+
+    store.unbind("s1");
+    verify(dataStore).removeData("s1");
+    assertEquals(0, store.getHeapSize("s1"));
+    assertEquals(store.getHeapSize("s2"), store.getHeapSize());
+    assertEquals(1, store.getSessionCount());
+  }
+
+  @Test
+  public void readSpilledPage()
+  {
+    final InMemoryPageStore store = new InMemoryPageStore(dataStore, Long.MAX_VALUE, true);
+    store.storePage("s1", new TestPage(1));
+    store.storePage("s1", new TestPage(2));
+    store.storePage("s1", new TestPage(3));
+    final ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+    verify(dataStore).storeData(eq("s1"), eq(1), data.capture());
+    when(dataStore.getData("s1", 1)).thenReturn(data.getValue());
+
+    final TestPage page = (TestPage) store.getPage("s1", 1);
+    assertEquals(1, page.getPageId());
+    assertEquals(1000, page.content.length);
+    // The page read from the data store is held in memory again, so page 2 is moved to the data store:
+    verify(dataStore).storeData(eq("s1"), eq(2), any(byte[].class));
+    assertEquals(2, store.getEvictionCount());
+    assertEquals(1, store.getHits());
+    assertEquals(0, store.getMisses());
+  }
+
+  @Test
+  public void heapLimit()
+  {
+    final InMemoryPageStore probe = new InMemoryPageStore(null, Long.MAX_VALUE, false);
+    probe.storePage("s", new TestPage(1));
+    final long pageSize = probe.getHeapSize();
+    assertTrue(pageSize > 1000);
+
+    // Room for 3 pages:
+    final InMemoryPageStore store = new InMemoryPageStore(dataStore, 3 * pageSize, false);
+    store.storePage("s1", new TestPage(1));
+    store.storePage("s2", new TestPage(1));
+    store.storePage("s3", new TestPage(1));
+    assertEquals(3 * pageSize, store.getHeapSize());
+    // s1 is used, so s2 is the least recently used session:
+    assertNotNull(store.getPage("s1", 1));
+    store.storePage("s4", new TestPage(1));
+    verify(dataStore).storeData(eq("s2"), eq(1), any(byte[].class));
+    verify(dataStore, never()).storeData(eq("s1"), anyInt(), any(byte[].class));
+    assertEquals(3 * pageSize, store.getHeapSize());
+    assertEquals(0, store.getHeapSize("s2"));
+    assertEquals(pageSize, store.getMaxSessionHeapSize());
+
+    // s2 has no pages in memory, so s3 is the next one:
+    store.storePage("s1", new TestPage(2));
+    verify(dataStore).storeData(eq("s3"), eq(1), any(byte[].class));
+    assertEquals(2 * pageSize, store.getMaxSessionHeapSize());
+    assertEquals(2, store.getEvictionCount());
+    assertTrue(store.getHeapSize() <= 3 * pageSize);
+  }
+
+  @Test
+  public void withoutDataStore()
+  {
+    final InMemoryPageStore store = new InMemoryPageStore(null, Long.MAX_VALUE, false);
+    store.storePage("s1", new TestPage(1));
+    store.storePage("s1", new TestPage(2));
+    store.storePage("s1", new TestPage(3));
+    assertEquals(1, store.getEvictionCount());
+    assertNull("Page is dropped.", store.getPage("s1", 1));
+    assertEquals(1, store.getMisses());
+  }
+
+  private static class TestPage implements IManageablePage, Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int pageId;
+
+    private final byte[] content = new byte[1000];
+
+    private TestPage(final int pageId)
+    {
+      this.pageId = pageId;
+    }
+
+    @Override
+    public boolean isPageStateless()
+    {
+      return false;
+    }
+
+    @Override
+    public int getPageId()
+    {
+      return pageId;
+    }
+
+    @Override
+    public void detach()
+    {
+    }
+
+    @Override
+    public boolean setFreezePageId(final boolean freeze)
+    {
+      return false;
+    }
+  }
+}